@@ -0,0 +1,347 @@
+package org.maox.emulator.build;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generador de los manejadores especializados de instrucciones del Z80
+ * <p>
+ * Lee la especificación de códigos (src/build/spec/Z80_handlers.txt) y genera una clase por código y modo de
+ * direccionamiento que hereda de la instrucción genérica, de la que conserva el ensamblador y los modos para la
+ * decodificación y el debug, y sustituye su ejecución por el acceso directo a los operandos y los ciclos como
+ * constante. Maven lo lanza como programa de un único fichero en la fase generate-sources:
+ * 
+ * <pre>
+ * java HandlerGenerator.java &lt;especificación&gt; &lt;directorio de fuentes generadas&gt;
+ * </pre>
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public class HandlerGenerator {
+
+	/* Paquete y nombre de la clase generada */
+	final private static String PACKAGE = "org.maox.emulator.cpu.z80.asm";
+	final private static String CLASS = "Handlers";
+
+	/* Registros de 8 bits con su nombre en el ensamblador */
+	final private static String REGISTERS = "ABCDEHL";
+
+	/* Modo de direccionamiento de cada operando */
+	final private static Map<String, String> MODES = new HashMap<String, String>();
+	static {
+		for (char reg : REGISTERS.toCharArray()) {
+			MODES.put(String.valueOf(reg), "REG_" + reg);
+		}
+		MODES.put("(BC)", "ADDR_BC");
+		MODES.put("(DE)", "ADDR_DE");
+		MODES.put("(HL)", "ADDR_HL");
+		MODES.put("(nn)", "ADDR_NN");
+		MODES.put("n", "DIRECT_8");
+		MODES.put("(IX+d)", "IX_D");
+		MODES.put("(IY+d)", "IY_D");
+	}
+
+	/* Operación del acumulador de cada instrucción aritmético lógica, %s es el operando */
+	final private static Map<String, String> ALU = new HashMap<String, String>();
+	static {
+		ALU.put("ADD", "z80.addWithCarry(%s, (byte) 0)");
+		ALU.put("ADC", "z80.addWithCarry(%s, z80.getCarry())");
+		ALU.put("SUB", "z80.subWithCarry(%s, (byte) 0)");
+		ALU.put("SBC", "z80.subWithCarry(%s, z80.getCarry())");
+		ALU.put("AND", "z80.and8(%s)");
+		ALU.put("OR", "z80.or8(%s)");
+		ALU.put("XOR", "z80.xor8(%s)");
+		ALU.put("CP", "z80.cp8(%s)");
+	}
+
+	/**
+	 * Instrucción de la especificación
+	 */
+	private static class Spec {
+		String table; // Tabla de códigos (MAIN, DD, FD...)
+		String opCode; // Código en hexadecimal
+		int cycles; // Ciclos de ejecución
+		String mnemonic; // Código mnemónico
+		String[] operands; // Operandos con la sintaxis de la especificación
+
+		/**
+		 * @return nombre de la clase del manejador
+		 */
+		String getClassName() {
+			StringBuilder name = new StringBuilder(mnemonic);
+			for (String operand : operands) {
+				/* Los operandos entre paréntesis son accesos a memoria: (HL) -> PHL, (IX+d) -> PIXd */
+				name.append('_').append(operand.replace("(", "P").replace(")", "").replace("+", ""));
+			}
+			return name.toString();
+		}
+	}
+
+	/**
+	 * Lanzador del generador
+	 * 
+	 * @param args especificación y directorio de fuentes generadas
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			throw new IllegalArgumentException("Usage: HandlerGenerator <spec> <output directory>");
+		}
+
+		List<Spec> specs = parse(Paths.get(args[0]));
+		Path file = Paths.get(args[1], PACKAGE.replace('.', '/'), CLASS + ".java");
+		Files.createDirectories(file.getParent());
+		Files.write(file, generate(specs).getBytes(StandardCharsets.UTF_8));
+
+		System.out.println("Generated " + specs.size() + " Z80 handlers in " + file);
+	}
+
+	/**
+	 * Compone el código fuente de la clase con todos los manejadores
+	 * 
+	 * @param specs instrucciones de la especificación
+	 * @return código fuente
+	 */
+	private static String generate(List<Spec> specs) {
+		StringBuilder src = new StringBuilder();
+		src.append("package ").append(PACKAGE).append(";\n\n");
+		src.append("import org.maox.emulator.core.Instruction;\n");
+		src.append("import org.maox.emulator.cpu.z80.Z80;\n");
+		src.append("import org.maox.emulator.cpu.z80.Z80Map;\n");
+		src.append("import org.maox.emulator.exceptions.IllegalAddressException;\n");
+		src.append("import org.maox.emulator.exceptions.UnknowInstructionException;\n\n");
+		src.append("/**\n");
+		src.append(" * Manejadores especializados de instrucciones del Z80\n");
+		src.append(" * <p>\n");
+		src.append(" * Generado por HandlerGenerator a partir de Z80_handlers.txt, no editar\n");
+		src.append(" */\n");
+		src.append("public class ").append(CLASS).append(" {\n\n");
+
+		/* Carga de la tabla */
+		src.append("\t/**\n");
+		src.append("\t * Carga los manejadores en la tabla de códigos del mapa de instrucciones\n");
+		src.append("\t * \n");
+		src.append("\t * @param table tabla de códigos\n");
+		src.append("\t * @throws UnknowInstructionException\n");
+		src.append("\t */\n");
+		src.append("\tpublic static void load(Instruction[] table) throws UnknowInstructionException {\n");
+		for (Spec spec : specs) {
+			src.append("\t\ttable[Z80Map.TABLE_").append(spec.table).append(" + 0x").append(spec.opCode)
+					.append("] = new ").append(spec.getClassName()).append("();\n");
+		}
+		src.append("\t}\n");
+
+		for (Spec spec : specs) {
+			src.append('\n');
+			generateHandler(src, spec);
+		}
+
+		src.append("}\n");
+		return src.toString();
+	}
+
+	/**
+	 * Compone el código fuente de un manejador
+	 * 
+	 * @param src código fuente
+	 * @param spec instrucción
+	 */
+	private static void generateHandler(StringBuilder src, Spec spec) {
+		String superClass;
+		List<String> body = new ArrayList<String>();
+
+		if (spec.mnemonic.equals("LD")) {
+			superClass = "LD";
+			String destination = spec.operands[0];
+			String source = spec.operands[1];
+
+			if (isIndexed(destination) && source.equals("n")) {
+				/* LD (IX+d), n: el desplazamiento va antes que el dato */
+				body.add("cpu.loadIR();");
+				body.add("int address = z80.get" + indexRegister(destination) + "() + z80.getIR();");
+				body.add("cpu.loadIR();");
+				body.add("z80.write8(address, z80.getIR());");
+			} else {
+				String value = read(body, source);
+				write(body, destination, value);
+			}
+		} else if (spec.mnemonic.equals("INC") || spec.mnemonic.equals("DEC")) {
+			superClass = spec.mnemonic;
+			String operand = spec.operands[0];
+			String operation = "z80." + spec.mnemonic.toLowerCase() + "8(%s)";
+
+			if (isRegister(operand)) {
+				body.add("z80.set" + operand + "(" + String.format(operation, "z80.get" + operand + "()") + ");");
+			} else {
+				body.add("int address = " + address(body, operand) + ";");
+				body.add("z80.write8(address, " + String.format(operation, "z80.read8(address)") + ");");
+			}
+		} else if (ALU.containsKey(spec.mnemonic)) {
+			superClass = spec.mnemonic;
+			/* ADD, ADC y SBC llevan el acumulador como primer operando */
+			String source = spec.operands[spec.operands.length - 1];
+			body.add(String.format(ALU.get(spec.mnemonic), read(body, source)) + ";");
+		} else {
+			throw new IllegalArgumentException("Unsupported instruction " + spec.mnemonic);
+		}
+
+		StringBuilder modes = new StringBuilder();
+		for (int idx = superClass.equals("LD") ? 0 : spec.operands.length - 1; idx < spec.operands.length; idx++) {
+			modes.append(modes.length() == 0 ? "" : ", ").append("Z80.").append(mode(spec.operands[idx]));
+		}
+
+		String name = spec.getClassName();
+		src.append("\t/* ").append(spec.table.equals("MAIN") ? "" : spec.table + " ").append(spec.opCode).append(' ')
+				.append(spec.mnemonic).append(' ').append(String.join(", ", spec.operands)).append(" */\n");
+		src.append("\tfinal static class ").append(name).append(" extends ").append(superClass).append(" {\n\n");
+		src.append("\t\t").append(name).append("() throws UnknowInstructionException {\n");
+		src.append("\t\t\tsuper(").append(modes).append(");\n");
+		src.append("\t\t}\n\n");
+		src.append("\t\t@Override\n");
+		src.append("\t\tpublic byte execute() throws IllegalAddressException {\n");
+		for (String line : body) {
+			src.append("\t\t\t").append(line).append('\n');
+		}
+		src.append("\t\t\treturn ").append(spec.cycles).append(";\n");
+		src.append("\t\t}\n");
+		src.append("\t}\n");
+	}
+
+	/**
+	 * Expresión con la dirección de memoria de un operando entre paréntesis. Los operandos indexados leen el
+	 * desplazamiento
+	 * 
+	 * @param body sentencias previas del manejador
+	 * @param operand operando
+	 * @return expresión
+	 */
+	private static String address(List<String> body, String operand) {
+		if (isIndexed(operand)) {
+			body.add("cpu.loadIR();");
+			return "z80.get" + indexRegister(operand) + "() + z80.getIR()";
+		}
+		if (operand.equals("(nn)")) {
+			return "z80.getNN()";
+		}
+		return "z80.get" + operand.substring(1, operand.length() - 1) + "()";
+	}
+
+	/**
+	 * @param operand operando
+	 * @return registro índice de un operando (IX+d) o (IY+d)
+	 */
+	private static String indexRegister(String operand) {
+		return operand.substring(1, 3);
+	}
+
+	/**
+	 * @param operand operando
+	 * @return si es un acceso a memoria con registro índice y desplazamiento
+	 */
+	private static boolean isIndexed(String operand) {
+		return operand.startsWith("(I");
+	}
+
+	/**
+	 * @param operand operando
+	 * @return si es un registro de 8 bits
+	 */
+	private static boolean isRegister(String operand) {
+		return operand.length() == 1 && REGISTERS.contains(operand);
+	}
+
+	/**
+	 * @param operand operando
+	 * @return nombre de la constante del modo de direccionamiento en Z80
+	 */
+	private static String mode(String operand) {
+		String mode = MODES.get(operand);
+		if (mode == null) {
+			throw new IllegalArgumentException("Unknown operand " + operand);
+		}
+		return mode;
+	}
+
+	/**
+	 * Lee la especificación. Cada línea tiene la tabla (- para la principal), el código, los ciclos y la instrucción,
+	 * las líneas en blanco y las que empiezan por # se ignoran
+	 * 
+	 * @param file fichero de la especificación
+	 * @return instrucciones
+	 * @throws IOException
+	 */
+	private static List<Spec> parse(Path file) throws IOException {
+		List<Spec> specs = new ArrayList<Spec>();
+		int number = 0;
+
+		for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+			number++;
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#"))
+				continue;
+
+			String[] fields = line.split("\\s+");
+			if (fields.length < 4 || fields.length > 5) {
+				throw new IllegalArgumentException(file + ":" + number + ": malformed line");
+			}
+
+			Spec spec = new Spec();
+			spec.table = fields[0].equals("-") ? "MAIN" : fields[0];
+			spec.opCode = fields[1].toUpperCase();
+			spec.cycles = Integer.parseInt(fields[2]);
+			spec.mnemonic = fields[3];
+			spec.operands = fields.length == 5 ? fields[4].split(",") : new String[0];
+			for (String operand : spec.operands) {
+				mode(operand);
+			}
+			specs.add(spec);
+		}
+
+		return specs;
+	}
+
+	/**
+	 * Expresión con el valor de un operando de origen
+	 * 
+	 * @param body sentencias previas del manejador
+	 * @param operand operando
+	 * @return expresión
+	 */
+	private static String read(List<String> body, String operand) {
+		if (isRegister(operand)) {
+			return "z80.get" + operand + "()";
+		}
+		if (operand.equals("n")) {
+			body.add("cpu.loadIR();");
+			return "z80.getIR()";
+		}
+		return "z80.read8(" + address(body, operand) + ")";
+	}
+
+	/**
+	 * Añade la escritura de un valor en un operando de destino
+	 * 
+	 * @param body sentencias del manejador
+	 * @param operand operando
+	 * @param value expresión con el valor
+	 */
+	private static void write(List<String> body, String operand, String value) {
+		if (isRegister(operand)) {
+			body.add("z80.set" + operand + "(" + value + ");");
+		} else if (isIndexed(operand)) {
+			/* El desplazamiento se lee después del origen */
+			body.add("byte data = " + value + ";");
+			body.add("z80.write8(" + address(body, operand) + ", data);");
+		} else {
+			body.add("z80.write8(" + address(body, operand) + ", " + value + ");");
+		}
+	}
+}
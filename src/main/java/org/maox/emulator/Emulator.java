@@ -1,12 +1,16 @@
 package org.maox.emulator;
 
 import java.awt.EventQueue;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 
+import org.maox.emulator.core.CPU;
 import org.maox.emulator.core.Computer;
+import org.maox.emulator.debug.InstructionTracer;
 import org.maox.emulator.exceptions.IllegalAddressException;
 import org.maox.emulator.exceptions.InstructionException;
 import org.maox.emulator.gui.AppFrame;
+import org.maox.emulator.gui.FrameExchange;
 import org.maox.emulator.virtual.Spectrum;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,8 +32,10 @@ public class Emulator {
 	private AppFrame app;
 	/* Maquina Virtual Activa */
 	private Computer computer;
-	/* Ciclos entre cada refresco */
-	private int refreshCycles;
+	/* Frames terminados que se pasan al EDT para pintarlos */
+	private FrameExchange exchange;
+	/* Ciclos de reloj de cada frame y ciclos ya ejecutados del frame en curso */
+	private int frameCycles;
 	private int actualCycles;
 
 	private int fps = 0;
@@ -51,9 +57,24 @@ public class Emulator {
 		/* Inicialización de la maquina virtual */
 		// TODO En un futuro lo haría la pantalla a elegir
 		computer = new Spectrum();
-		// Se obtien los ciclos entre cada refresco de pantalla
-		refreshCycles = computer.getHerz() / computer.getFramesPerSecond();
-		OPTIMAL_TIME = 1000 / computer.getFramesPerSecond();
+		/* La traza de instrucciones sólo se activa si el log de DEBUG de la CPU lo está */
+		if (LoggerFactory.getLogger(CPU.class).isDebugEnabled()) {
+			computer.setTraceListener(new InstructionTracer());
+		}
+		// Se obtienen los ciclos de cada frame y su duración real a la velocidad de la CPU
+		frameCycles = computer.getCyclesPerFrame();
+		OPTIMAL_TIME = Math.round(1000.0 * frameCycles / computer.getHerz());
+
+		/* La pantalla se refresca en el EDT con los frames que publica la emulación */
+		BufferedImage frame = computer.getFrame();
+		exchange = new FrameExchange(frame.getWidth(), frame.getHeight());
+		final int fps = computer.getFramesPerSecond();
+		EventQueue.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				app.setFrameExchange(exchange, fps);
+			}
+		});
 	}
 
 	/**
@@ -97,26 +118,33 @@ public class Emulator {
 	}
 
 	/**
-	 * Dibuja el contenido de pantalla
+	 * Publica el frame terminado para que el EDT lo pinte y actualiza el contador de FPS
+	 */
+	private void paintFrame() {
+		exchange.publish(computer.getFrame());
+
+		int delta = (int) (getTimeMilis() - lastLoop);
+		lastLoop = getTimeMilis();
+		// Contador de los FPS
+		lastFpsTime += delta;
+		fps++;
+
+		// Actualizar el FPS si ha transcurrido un segundo
+		if (lastFpsTime >= 1000) {
+			app.updateFPS(fps);
+			logger.debug("Frames: {}", exchange.getStatistics());
+			lastFpsTime = 0;
+			fps = 0;
+		}
+	}
+
+	/**
+	 * Dibuja el contenido de pantalla si se ha completado un frame
 	 */
 	private void repaintScreen() {
-		if (actualCycles >= refreshCycles) {
-			actualCycles -= refreshCycles;
-			// Pintado del Frame
-			app.refreshScreen(computer.getFrame());
-
-			int delta = (int) (getTimeMilis() - lastLoop);
-			lastLoop = getTimeMilis();
-			// Contador de los FPS
-			lastFpsTime += delta;
-			fps++;
-
-			// Actualizar el FPS si ha transcurrido un segundo
-			if (lastFpsTime >= 1000) {
-				app.updateFPS(fps);
-				lastFpsTime = 0;
-				fps = 0;
-			}
+		if (actualCycles >= frameCycles) {
+			actualCycles -= frameCycles;
+			paintFrame();
 		}
 	}
 
@@ -128,9 +156,9 @@ public class Emulator {
 	 */
 	public void run() throws InstructionException, IllegalAddressException {
 		while (true) {
-			actualCycles += computer.execute();
-			// Pintado de pantalla (en caso necesario)
-			repaintScreen();
+			// Un frame completo en cada llamada, los ciclos de más se descuentan del siguiente
+			actualCycles = computer.run(frameCycles - actualCycles);
+			paintFrame();
 			// Se duerme en caso necesario
 			sleep();
 		}
@@ -144,9 +172,8 @@ public class Emulator {
 	 */
 	public void runFast() throws InstructionException, IllegalAddressException {
 		while (true) {
-			actualCycles += computer.execute();
-			// Pintado de pantalla (en caso necesario)
-			repaintScreen();
+			actualCycles = computer.run(frameCycles - actualCycles);
+			paintFrame();
 		}
 	}
 
@@ -0,0 +1,38 @@
+package org.maox.emulator.core;
+
+import org.maox.emulator.exceptions.IllegalAddressException;
+
+/**
+ * Dispositivo de E/S capaz de transferir un bloque de bytes en una sola llamada
+ * <p>
+ * En INIR y OTIR el byte alto del puerto es el contador B, que cambia en cada transferencia. Un dispositivo que
+ * implementa esta interfaz sólo decodifica el byte bajo, por lo que la secuencia equivale a un bloque de
+ * transferencias al mismo puerto.
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public interface BlockIO {
+
+	/**
+	 * Lee varios bytes seguidos de un puerto
+	 * 
+	 * @param address puerto, sólo se considera el byte bajo
+	 * @param buffer destino de los bytes leídos
+	 * @param offset posición del primer byte en el destino
+	 * @param length número de lecturas
+	 * @throws IllegalAddressException
+	 */
+	public void readIO(int address, byte[] buffer, int offset, int length) throws IllegalAddressException;
+
+	/**
+	 * Escribe varios bytes seguidos en un puerto
+	 * 
+	 * @param address puerto, sólo se considera el byte bajo
+	 * @param buffer bytes a escribir
+	 * @param offset posición del primer byte
+	 * @param length número de escrituras
+	 * @throws IllegalAddressException
+	 */
+	public void writeIO(int address, byte[] buffer, int offset, int length) throws IllegalAddressException;
+}
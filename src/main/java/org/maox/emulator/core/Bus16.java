@@ -1,12 +1,24 @@
 package org.maox.emulator.core;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 import org.maox.emulator.debug.Hex;
 import org.maox.emulator.exceptions.IllegalAddressException;
 
 /**
  * Bus de 16 Bits de direccionamiento (esto permite hasta 64 KB de capacidad), 8 bits de datos
  * <p>
- * Permite la inclusión de hasta 16 componetes de un mínimo de 1 KB
+ * La memoria se divide en páginas de 256 bytes. Cada página apunta al componente que la gestiona y, si es una memoria
+ * de acceso directo ({@link DirectMemory}) que la ocupa completa, a su array de bytes, de forma que la lectura o
+ * escritura en RAM es un acceso al array. Las páginas completas de una memoria fuera del heap ({@link OffHeapRAM}) se
+ * acceden igualmente sobre su buffer. El resto (escrituras en ROM, componentes como la ULA o páginas incompletas) se
+ * envían al componente.
+ * <p>
+ * Las páginas contenidas ({@link #setContention(int, int, Contention)}) tampoco tienen array: sus accesos se envían al
+ * componente tras retrasar la CPU, de forma que el resto de páginas mantienen el acceso directo sin coste añadido.
  * 
  * @author Alex Orgaz
  * 
@@ -14,35 +26,74 @@ import org.maox.emulator.exceptions.IllegalAddressException;
 public class Bus16 implements Bus, BusComponent {
 
 	// Constantes
-	final private static int MAX_COMPONENTS = 16;
+	/* Páginas de 256 bytes */
+	final public static int PAGE_SHIFT = 8;
+	final public static int PAGE_SIZE = 1 << PAGE_SHIFT;
+	final public static int PAGES = 256;
+
+	/* Vista de 64 bits de los arrays y buffers de memoria para las búsquedas de 8 en 8 bytes */
+	final private static VarHandle WORD = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+	final private static VarHandle BUFFER_WORD = MethodHandles.byteBufferViewVarHandle(long[].class,
+			ByteOrder.LITTLE_ENDIAN);
+	final private static long LOW_7_BITS = 0x7F7F7F7F7F7F7F7FL;
+	final private static long EVERY_BYTE = 0x0101010101010101L;
 
-	/* Componentes enganchados al Bus */
+	/* Componente de cada página */
 	private BusComponent components[];
+	/* Array de lectura y de escritura directa de cada página, null si el acceso se envía al componente */
+	private byte readPages[][];
+	private byte writePages[][];
+	/* Buffer de lectura y escritura directa de cada página fuera del heap, null si no lo tiene */
+	private ByteBuffer bufferPages[];
+	/* Dirección que corresponde a la posición 0 del array o buffer de cada página */
+	private int pageBases[];
+	/* Contención de cada página, null si no está contenida */
+	private Contention contentions[];
+	/* Contención diferida: los accesos a páginas contenidas no retrasan a la CPU, sólo se cuentan */
+	private boolean contentionDeferred = false;
+	private int deferredContentions = 0;
+	/* Accesos a páginas contenidas que han retrasado a la CPU */
+	private long contendedAccesses = 0;
 	/* Atributos suma de los componentes */
 	private int size;
 	private int startAddress;
+	/*
+	 * Generación de escritura de cada página, se incrementa en cada escritura. Permite a las cachés de código
+	 * decodificado o compilado saber si la memoria de la que proceden ha podido cambiar.
+	 */
+	private int writeGenerations[];
 
 	/**
-	 * Constructor, inicializa el array de componentes
+	 * Constructor, inicializa la tabla de páginas
 	 */
 	public Bus16() {
 		super();
-		components = new BusComponent[MAX_COMPONENTS];
+		components = new BusComponent[PAGES];
+		readPages = new byte[PAGES][];
+		writePages = new byte[PAGES][];
+		bufferPages = new ByteBuffer[PAGES];
+		pageBases = new int[PAGES];
+		contentions = new Contention[PAGES];
 		size = 0;
 		startAddress = 0xFFFF;
+		writeGenerations = new int[PAGES];
 	}
 
 	@Override
 	public void addComponent(BusComponent component) throws IllegalAddressException {
-		// La asignación se realizará insertando el componente en el array de componentes
+		// La asignación se realizará insertando el componente en las páginas que ocupa
 		// a partir de la dirección de memoria incial y tamaño del componente
-		int begin = component.getStartAddress() >> 12 & 0x000F;
-		int end = (component.getStartAddress() + component.getSize() - 1) >> 12 & 0x000F;
+		int begin = component.getStartAddress() >> PAGE_SHIFT & PAGES - 1;
+		int end = component.getStartAddress() + component.getSize() - 1 >> PAGE_SHIFT & PAGES - 1;
+
+		for (int page = begin; page <= end; page++) {
+			if (components[page] != null)
+				throw new IllegalAddressException("Memory page  " + Hex.byteToHex((byte) page) + " is already asigned.");
+		}
 
-		for (int idx = begin; idx <= end; idx++) {
-			if (components[idx] != null)
-				throw new IllegalAddressException("Memory block  " + Hex.byteToHex((byte) idx) + " is already asigned.");
-			components[idx] = component;
+		for (int page = begin; page <= end; page++) {
+			components[page] = component;
+			mapPage(page);
 		}
 
 		size += component.getSize();
@@ -51,6 +102,102 @@ public class Bus16 implements Bus, BusComponent {
 		}
 	}
 
+	/**
+	 * Aplica la contención de la página de una dirección, si la tiene, como si se accediese a ella. Permite cargar a la
+	 * ejecución los accesos que se hicieron con la contención diferida
+	 * 
+	 * @param address dirección accedida
+	 */
+	public void contend(int address) {
+		Contention contention = contentions[address >> PAGE_SHIFT & PAGES - 1];
+		if (contention != null) {
+			contendedAccesses++;
+			contention.contend(address);
+		}
+	}
+
+	/**
+	 * Copia un bloque de bytes entre páginas de acceso directo en el orden de LDIR (step 1) o LDDR (step -1). Si los
+	 * bloques se solapan se copia byte a byte, repitiendo lo ya copiado como lo haría la instrucción. Los bloques no
+	 * pueden salirse del espacio de direcciones
+	 * 
+	 * @param source dirección del primer byte leído
+	 * @param destination dirección del primer byte escrito
+	 * @param length número de bytes
+	 * @param step 1 para direcciones crecientes, -1 para decrecientes
+	 * @return false, sin copiar nada, si alguna página del origen no es de lectura directa o alguna del destino no es
+	 *         de escritura directa
+	 */
+	public boolean copy(int source, int destination, int length, int step) {
+		int sourceLow = step > 0 ? source : source - length + 1;
+		int destinationLow = step > 0 ? destination : destination - length + 1;
+		int sourceHigh = sourceLow + length - 1;
+		int destinationHigh = destinationLow + length - 1;
+
+		/* Todas las páginas deben tener array, si todas comparten el mismo el bloque es contiguo en él */
+		byte sourceMemory[] = readPages[sourceLow >> PAGE_SHIFT];
+		byte destinationMemory[] = writePages[destinationLow >> PAGE_SHIFT];
+		int sourceBase = pageBases[sourceLow >> PAGE_SHIFT];
+		int destinationBase = pageBases[destinationLow >> PAGE_SHIFT];
+		boolean contiguous = true;
+		for (int page = sourceLow >> PAGE_SHIFT; page <= sourceHigh >> PAGE_SHIFT; page++) {
+			if (readPages[page] == null)
+				return false;
+			contiguous &= readPages[page] == sourceMemory && pageBases[page] == sourceBase;
+		}
+		for (int page = destinationLow >> PAGE_SHIFT; page <= destinationHigh >> PAGE_SHIFT; page++) {
+			if (writePages[page] == null)
+				return false;
+			contiguous &= writePages[page] == destinationMemory && pageBases[page] == destinationBase;
+		}
+
+		int sourceOffset = sourceLow - sourceBase;
+		int destinationOffset = destinationLow - destinationBase;
+		if (contiguous && (sourceMemory != destinationMemory || sourceOffset + length <= destinationOffset
+				|| destinationOffset + length <= sourceOffset)) {
+			System.arraycopy(sourceMemory, sourceOffset, destinationMemory, destinationOffset, length);
+		} else {
+			for (int count = 0; count < length; count++, source += step, destination += step) {
+				int page = destination >> PAGE_SHIFT;
+				writePages[page][destination - pageBases[page]] = readPages[source >> PAGE_SHIFT][source
+						- pageBases[source >> PAGE_SHIFT]];
+			}
+		}
+
+		/* Una generación por byte escrito, como en las escrituras sueltas */
+		for (int page = destinationLow >> PAGE_SHIFT; page <= destinationHigh >> PAGE_SHIFT; page++) {
+			int first = Math.max(destinationLow, page << PAGE_SHIFT);
+			int last = Math.min(destinationHigh, (page + 1 << PAGE_SHIFT) - 1);
+			writeGenerations[page] += last - first + 1;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Componente que gestiona una dirección
+	 * 
+	 * @param address
+	 * @return
+	 * @throws IllegalAddressException
+	 */
+	private BusComponent getComponent(int address) throws IllegalAddressException {
+		BusComponent component = components[address >> PAGE_SHIFT & PAGES - 1];
+		if (component == null)
+			throw new IllegalAddressException("No memory at " + Hex.addressToString(address) + "h");
+		return component;
+	}
+
+	/**
+	 * Devuelve el número de accesos a páginas contenidas que han retrasado a la CPU. Permite saber si un fragmento de
+	 * código ha accedido a ellas, ya que su duración depende entonces del T-state en el que se ejecute
+	 * 
+	 * @return accesos contenidos desde la creación del bus
+	 */
+	public long getContendedAccesses() {
+		return contendedAccesses;
+	}
+
 	@Override
 	public int getSize() {
 		return size;
@@ -61,39 +208,255 @@ public class Bus16 implements Bus, BusComponent {
 		return startAddress;
 	}
 
+	/**
+	 * Devuelve las generaciones de escritura de las páginas de 256 bytes, indexadas por address >> PAGE_SHIFT.
+	 * <p>
+	 * El array es el propio del bus para consultarlo sin llamadas, no debe modificarse
+	 * 
+	 * @return generaciones de escritura
+	 */
+	public int[] getWriteGenerations() {
+		return writeGenerations;
+	}
+
+	/**
+	 * @param address
+	 * @return true si la página de la dirección está contenida
+	 */
+	public boolean isContended(int address) {
+		return contentions[address >> PAGE_SHIFT & PAGES - 1] != null;
+	}
+
+	/**
+	 * Determina si una dirección pertenece a un componente de sólo lectura (ROM), cuyo contenido no cambia
+	 * 
+	 * @param address
+	 * @return
+	 */
+	public boolean isReadOnly(int address) {
+		BusComponent component = components[address >> PAGE_SHIFT & PAGES - 1];
+		return component instanceof DirectMemory && ((DirectMemory) component).isReadOnly();
+	}
+
+	/**
+	 * Asigna el acceso directo de una página: sólo a las páginas completas de una memoria de acceso directo o fuera del
+	 * heap y sin contención
+	 * 
+	 * @param page
+	 */
+	private void mapPage(int page) {
+		BusComponent component = components[page];
+		readPages[page] = null;
+		writePages[page] = null;
+		bufferPages[page] = null;
+		if (component == null || contentions[page] != null || page << PAGE_SHIFT < component.getStartAddress()
+				|| page + 1 << PAGE_SHIFT > component.getStartAddress() + component.getSize())
+			return;
+
+		if (component instanceof DirectMemory) {
+			DirectMemory memory = (DirectMemory) component;
+			readPages[page] = memory.getMemory();
+			writePages[page] = memory.isReadOnly() ? null : memory.getMemory();
+		} else if (component instanceof OffHeapRAM) {
+			bufferPages[page] = ((OffHeapRAM) component).getMemory();
+		}
+		pageBases[page] = component.getStartAddress();
+	}
+
+	/**
+	 * Lectura sin contención, para examinar la memoria sin alterar la temporización de la CPU
+	 * 
+	 * @param address
+	 * @return byte leído
+	 * @throws IllegalAddressException
+	 */
+	public byte peek(int address) throws IllegalAddressException {
+		int page = address >> PAGE_SHIFT;
+		if (page >= 0 && page < PAGES) {
+			byte memory[] = readPages[page];
+			if (memory != null)
+				return memory[address - pageBases[page]];
+			ByteBuffer buffer = bufferPages[page];
+			if (buffer != null)
+				return buffer.get(address - pageBases[page]);
+		}
+		return getComponent(address).read(address);
+	}
+
 	@Override
 	public byte read(int address) throws IllegalAddressException {
-		int idx = address >> 12 & 0x000F;
-		return components[idx].read(address);
+		int page = address >> PAGE_SHIFT;
+		if (page >= 0 && page < PAGES) {
+			byte memory[] = readPages[page];
+			if (memory != null)
+				return memory[address - pageBases[page]];
+			ByteBuffer buffer = bufferPages[page];
+			if (buffer != null)
+				return buffer.get(address - pageBases[page]);
+		}
+		Contention contention = contentions[address >> PAGE_SHIFT & PAGES - 1];
+		if (contention != null) {
+			if (contentionDeferred) {
+				deferredContentions++;
+			} else {
+				contendedAccesses++;
+				contention.contend(address);
+			}
+		}
+		return getComponent(address).read(address);
 	}
 
 	@Override
 	public void removeComponent(BusComponent component) {
-		int begin = component.getStartAddress() >> 12 & 0x000F;
-		int end = (component.getStartAddress() + component.getSize() - 1) >> 12 & 0x000F;
-
-		for (int idx = begin; idx <= end; idx++) {
-			components[idx] = null;
+		for (int page = 0; page < PAGES; page++) {
+			if (components[page] == component) {
+				components[page] = null;
+				readPages[page] = null;
+				writePages[page] = null;
+				bufferPages[page] = null;
+			}
 		}
 
 		size -= component.getSize();
 
-		int idx = 0;
-		do {
-			idx++;
-		} while (components[idx] != null || idx == MAX_COMPONENTS);
+		/* La dirección de inicio es la del componente de la primera página ocupada */
+		startAddress = 0xFFFF;
+		for (int page = 0; page < PAGES; page++) {
+			if (components[page] != null) {
+				startAddress = components[page].getStartAddress();
+				break;
+			}
+		}
+	}
 
-		if (idx == MAX_COMPONENTS) {
-			startAddress = 0xFFFF;
+	/**
+	 * Busca un byte en un bloque de memoria de acceso directo o fuera del heap en el orden de CPIR (step 1) o CPDR (step
+	 * -1), comparando 8 bytes en cada paso. El bloque no puede salirse del espacio de direcciones
+	 * 
+	 * @param address dirección del primer byte comparado
+	 * @param length número de bytes
+	 * @param value byte buscado
+	 * @param step 1 para direcciones crecientes, -1 para decrecientes
+	 * @return posición del primer byte igual en el orden de búsqueda (0 a length - 1), length si no está o -1 si el
+	 *         bloque no está completo en el array o el buffer de una memoria
+	 */
+	public int search(int address, int length, byte value, int step) {
+		int low = step > 0 ? address : address - length + 1;
+		int high = low + length - 1;
+
+		byte memory[] = readPages[low >> PAGE_SHIFT];
+		ByteBuffer buffer = bufferPages[low >> PAGE_SHIFT];
+		int base = pageBases[low >> PAGE_SHIFT];
+		for (int page = low >> PAGE_SHIFT; page <= high >> PAGE_SHIFT; page++) {
+			if (memory == null && buffer == null || readPages[page] != memory || bufferPages[page] != buffer
+					|| pageBases[page] != base)
+				return -1;
+		}
+
+		/* Tras el XOR con el byte repetido los iguales quedan a 0 y se marcan con su bit 7, sin acarreos entre bytes */
+		long pattern = (value & 0xFFL) * EVERY_BYTE;
+		int start = address - base;
+		if (step > 0) {
+			int end = start + length;
+			int idx = start;
+			for (; idx + 8 <= end; idx += 8) {
+				long word = word(memory, buffer, idx) ^ pattern;
+				long equal = ~((word & LOW_7_BITS) + LOW_7_BITS | word | LOW_7_BITS);
+				if (equal != 0)
+					return idx - start + (Long.numberOfTrailingZeros(equal) >> 3);
+			}
+			for (; idx < end; idx++) {
+				if ((memory != null ? memory[idx] : buffer.get(idx)) == value)
+					return idx - start;
+			}
 		} else {
-			startAddress = components[idx].getStartAddress();
+			int end = start - length;
+			int idx = start;
+			for (; idx - 8 >= end; idx -= 8) {
+				long word = word(memory, buffer, idx - 7) ^ pattern;
+				long equal = ~((word & LOW_7_BITS) + LOW_7_BITS | word | LOW_7_BITS);
+				if (equal != 0)
+					return start - idx + (Long.numberOfLeadingZeros(equal) >> 3);
+			}
+			for (; idx > end; idx--) {
+				if ((memory != null ? memory[idx] : buffer.get(idx)) == value)
+					return start - idx;
+			}
 		}
+
+		return length;
+	}
+
+	/**
+	 * Marca las páginas de un bloque como contenidas, sus accesos dejan de ser directos y llaman antes a la contención.
+	 * Con null se desmarcan y recuperan el acceso directo
+	 * 
+	 * @param address dirección inicial del bloque
+	 * @param length tamaño del bloque, se marcan las páginas completas o parciales que ocupa
+	 * @param contention contención que retrasa los accesos, null para quitarla
+	 */
+	public void setContention(int address, int length, Contention contention) {
+		int begin = address >> PAGE_SHIFT & PAGES - 1;
+		int end = address + length - 1 >> PAGE_SHIFT & PAGES - 1;
+		for (int page = begin; page <= end; page++) {
+			contentions[page] = contention;
+			mapPage(page);
+			/* El código decodificado o compilado de la página deja de ser válido */
+			writeGenerations[page]++;
+		}
+	}
+
+	/**
+	 * Activa o desactiva la contención diferida. Mientras está activa las lecturas de páginas contenidas no retrasan a
+	 * la CPU y sólo se cuentan, por ejemplo al decodificar instrucciones que se ejecutarán más tarde
+	 * 
+	 * @param deferred
+	 */
+	public void setContentionDeferred(boolean deferred) {
+		contentionDeferred = deferred;
+		deferredContentions = 0;
+	}
+
+	/**
+	 * Devuelve las lecturas de páginas contenidas desde la última llamada con la contención diferida y vuelve a contar
+	 * desde 0
+	 * 
+	 * @return lecturas contadas
+	 */
+	public int takeDeferredContentions() {
+		int count = deferredContentions;
+		deferredContentions = 0;
+		return count;
+	}
+
+	/**
+	 * Lee 8 bytes de un array o, si es null, de un buffer, el primero en el byte bajo
+	 * 
+	 * @param memory array de la memoria
+	 * @param buffer buffer de la memoria si no tiene array
+	 * @param idx posición del primer byte
+	 * @return bytes leídos
+	 */
+	private static long word(byte memory[], ByteBuffer buffer, int idx) {
+		return memory != null ? (long) WORD.get(memory, idx) : (long) BUFFER_WORD.get(buffer, idx);
 	}
 
 	@Override
 	public void write(int address, byte data) throws IllegalAddressException {
-		int idx = address >> 12 & 0x000F;
-		components[idx].write(address, data);
+		int page = address >> PAGE_SHIFT;
+		if (page >= 0 && page < PAGES && writePages[page] != null) {
+			writePages[page][address - pageBases[page]] = data;
+		} else if (page >= 0 && page < PAGES && bufferPages[page] != null) {
+			bufferPages[page].put(address - pageBases[page], data);
+		} else {
+			Contention contention = contentions[page & PAGES - 1];
+			if (contention != null) {
+				contendedAccesses++;
+				contention.contend(address);
+			}
+			getComponent(address).write(address, data);
+		}
+		writeGenerations[page & PAGES - 1]++;
 	}
 
 }
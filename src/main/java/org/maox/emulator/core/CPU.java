@@ -2,6 +2,7 @@ package org.maox.emulator.core;
 
 import org.maox.emulator.debug.DebugCPU;
 import org.maox.emulator.debug.Hex;
+import org.maox.emulator.debug.TraceListener;
 import org.maox.emulator.exceptions.IllegalAddressException;
 import org.maox.emulator.exceptions.InstructionException;
 import org.maox.emulator.exceptions.UnknowInstructionException;
@@ -19,12 +20,56 @@ public abstract class CPU implements DebugCPU {
 
 	final private static Logger logger = LoggerFactory.getLogger(CPU.class);
 
+	/* T-states de un ciclo de lectura de código (M1) y de un ciclo de lectura o escritura de memoria */
+	final public static int OPCODE_CYCLES = 4;
+	final public static int MEMORY_CYCLES = 3;
+
 	/* Memoria RAM asociada a la CPU para realizar las operaciones */
 	private BusComponent dataBus;
 	/* Ciclos por segundo de velocidad del procesador */
 	private int herz;
 	/* Mapeo de códigos de instrucción OPC a sus clases correcpondientes */
 	private InstructionMap mapOPC;
+	/* Oyente de traza de ejecución (null en el modo de ejecución sin traza) */
+	private TraceListener traceListener;
+
+	/*
+	 * Ciclos disponibles hasta el siguiente evento (interrupción o fin de frame). Las instrucciones de repetición
+	 * ejecutan de una vez tantas iteraciones como quepan, con 0 se ejecuta una iteración en cada fetch.
+	 */
+	private int cycleBudget = 0;
+	/* Ciclos de la última instrucción que no caben en el byte devuelto por su ejecución */
+	private int extraCycles = 0;
+	/* Reloj en ciclos (T-states) ejecutados con run y eventos programados sobre él */
+	private long clock = 0;
+	/*
+	 * T-states de la instrucción en curso hasta el siguiente acceso a memoria, según los ciclos de lectura y
+	 * escritura ya hechos. Los ciclos internos de la instrucción no se cuentan
+	 */
+	private int accessCycles = 0;
+	final private Scheduler scheduler = new Scheduler();
+	/* Línea de petición de interrupción activa: sólo entonces se intenta aceptar en cada límite de instrucción */
+	private boolean interruptRequest = false;
+	/* Detección opcional de bucles de espera, que se adelantan hasta el siguiente evento */
+	private boolean idleDetection = false;
+
+	/*
+	 * Caché de bloques de instrucciones decodificadas por dirección de inicio. Sólo con un Bus16, cuyas generaciones
+	 * de escritura por página invalidan los bloques de RAM. Los bloques en ROM son permanentes. Sin uso con traza, ya
+	 * que un bloque puede incluir superinstrucciones que ejecutan varias instrucciones de una vez. La contención de la
+	 * lectura de los códigos se aplica al ejecutar cada instrucción, no al decodificarla.
+	 */
+	private boolean decodeCache = true;
+	private DecodedBlock[] decodedBlocks;
+	private Bus16 decodedBus;
+	private int[] writeGenerations;
+	/* Bloque en ejecución y posición de la siguiente instrucción dentro de él */
+	private DecodedBlock block;
+	private int blockCursor;
+	/* Estadísticas de la caché */
+	private long cachedExecutions = 0;
+	private long decodedInstructions = 0;
+	private long invalidatedBlocks = 0;
 
 	/*
 	 * Registros Especiales
@@ -35,6 +80,25 @@ public abstract class CPU implements DebugCPU {
 	private int PC; /* Contador de programa */
 	private byte IR; /* Registro de Instrucción */
 
+	/**
+	 * Añade ciclos a la instrucción en ejecución, los que exceden el byte que devuelve su ejecución
+	 * 
+	 * @param cycles
+	 */
+	protected void addExtraCycles(int cycles) {
+		extraCycles += cycles;
+	}
+
+	/**
+	 * Intenta aceptar la interrupción pedida en el límite de instrucción actual. Sin interrupciones por defecto
+	 * 
+	 * @return ciclos consumidos en la aceptación, 0 si no se acepta en este límite
+	 * @throws IllegalAddressException
+	 */
+	protected int acceptInterrupt() throws IllegalAddressException {
+		return 0;
+	}
+
 	@Override
 	public byte debugInstruction(int address) throws InstructionException, IllegalAddressException {
 		Instruction inst = getInstructionMap().getInstructionComplete(address);
@@ -53,6 +117,16 @@ public abstract class CPU implements DebugCPU {
 		return inst.getCycles();
 	}
 
+	/**
+	 * Retrasa la instrucción en ejecución avanzando el reloj, por ejemplo por la contención de memoria. Sólo tiene
+	 * efecto en la temporización de run, no en los ciclos devueltos por fetch
+	 * 
+	 * @param cycles ciclos de espera
+	 */
+	public void delay(int cycles) {
+		clock += cycles;
+	}
+
 	/**
 	 * Vuelca el contenido de los registro de la CPU para el DEBUG
 	 * 
@@ -62,17 +136,153 @@ public abstract class CPU implements DebugCPU {
 
 	/**
 	 * Se realiza un fech con ejecucións de la instrucción que este en la memoria almacenada en el registro PC
+	 * <p>
+	 * Desde la caché de instrucciones decodificadas puede ejecutarse una superinstrucción, que equivale a varias
+	 * instrucciones consecutivas
 	 * 
 	 * @return número de ciclos consumidos en la ejecución
 	 * @throws UnknowInstructionException
 	 */
-	public byte fetch() throws InstructionException, IllegalAddressException {
-		/* Sólo para debug, realiza una precarga de la instrucción para ver todos sus parametros */
-		debugInstruction(getPC());
+	public int fetch() throws InstructionException, IllegalAddressException {
+		/* Sólo con traza, el oyente puede precargar la instrucción para ver todos sus parametros */
+		if (traceListener != null) {
+			traceListener.instructionFetched(this, PC);
+		}
+		accessCycles = 0;
+		/* Siguiente instrucción del bloque en curso o inicio de un bloque de la caché */
+		if (decodedBlocks != null && traceListener == null && (PC & 0xFFFF0000) == 0) {
+			DecodedBlock current = block;
+			int idx = blockCursor;
+			if (current == null || idx == current.size || current.starts[idx] != PC
+					|| !current.isCurrent(writeGenerations)) {
+				current = findBlock(PC);
+				idx = 0;
+			}
+
+			if (current != null) {
+				block = current;
+				blockCursor = idx + 1;
+				cachedExecutions++;
+				/* Estado del mapa de instrucciones tras la decodificación */
+				PC = current.decodedPCs[idx];
+				IR = current.opcodes[idx];
+				/* Las lecturas de códigos contenidas se toman como las primeras, cada una en su ciclo M1 */
+				for (int count = current.fetchContentions[idx]; count > 0; count--) {
+					decodedBus.contend(current.fetchAddresses[idx]);
+					accessCycles += OPCODE_CYCLES;
+				}
+				accessCycles = current.fetchCycles[idx];
+				int cycles = current.instructions[idx].execute();
+				if (extraCycles != 0) {
+					cycles += takeExtraCycles();
+				}
+				return cycles;
+			}
+		}
+		block = null;
+
 		/* Se lee la posición de memoria del contador de programa y se almacena en el IR */
-		loadIR();
+		loadOpcode();
 		/* Se decodifica y ejecuta la instrucción */
-		return getInstructionMap().getInstruction(IR).execute();
+		int cycles = mapOPC.getInstruction(IR).execute();
+		if (extraCycles != 0) {
+			cycles += takeExtraCycles();
+		}
+		return cycles;
+	}
+
+	/**
+	 * Busca en la caché el bloque que empieza en una dirección, decodificándolo si no está o ya no es válido
+	 * 
+	 * @param address dirección de inicio
+	 * @return bloque o null si la primera instrucción no se puede decodificar
+	 */
+	private DecodedBlock findBlock(int address) {
+		DecodedBlock found = decodedBlocks[address];
+		if (found != null) {
+			if (found.isCurrent(writeGenerations))
+				return found;
+			invalidatedBlocks++;
+		}
+
+		/*
+		 * Se decodifica con el mapa de instrucciones, conservando el estado de la CPU y con la contención diferida para
+		 * contar las lecturas de los códigos de cada instrucción
+		 */
+		found = new DecodedBlock();
+		int savedPC = PC;
+		byte savedIR = IR;
+		int position = address;
+		decodedBus.setContentionDeferred(true);
+		try {
+			while (found.size < DecodedBlock.MAX_INSTRUCTIONS && position <= 0xFFFF - 4) {
+				/*
+				 * Las secuencias conocidas se ejecutan como una superinstrucción, salvo en páginas contenidas: no leen
+				 * los códigos de sus instrucciones tras la primera
+				 */
+				Instruction fused = decodedBus.isContended(position) ? null : mapOPC.getFusedInstruction(position);
+				if (fused != null && !decodedBus.isContended(position + fused.getNumOpcodes() - 1)) {
+					found.add(position, fused, decodedBus.peek(position), position + 1, 0, position, OPCODE_CYCLES);
+					position += fused.getNumOpcodes();
+					continue;
+				}
+
+				PC = position;
+				accessCycles = 0;
+				decodedBus.takeDeferredContentions();
+				loadOpcode();
+				Instruction inst = mapOPC.getInstruction(IR);
+				int decodedPC = PC;
+				byte opcode = IR;
+				int contentions = decodedBus.takeDeferredContentions();
+				int cycles = accessCycles;
+				int length = mapOPC.getInstructionComplete(position).getNumOpcodes();
+				/* Los códigos ocupan como mucho 2 páginas */
+				int contended = decodedBus.isContended(position) ? position : decodedPC - 1;
+				found.add(position, inst, opcode, decodedPC, contentions, contended, cycles);
+				position += length;
+			}
+		} catch (InstructionException | IllegalAddressException e) {
+			// Fin del código decodificable, se deja para la ejecución sin caché
+		} finally {
+			PC = savedPC;
+			IR = savedIR;
+			accessCycles = 0;
+			decodedBus.setContentionDeferred(false);
+		}
+
+		if (found.size == 0) {
+			found = null;
+		} else {
+			/* Sólo es permanente el código en ROM sin contención, que no puede cambiar */
+			boolean permanent = decodedBus.isReadOnly(address) && decodedBus.isReadOnly(position - 1)
+					&& !decodedBus.isContended(address) && !decodedBus.isContended(position - 1);
+			found.seal(position, writeGenerations, permanent);
+			decodedInstructions += found.size;
+		}
+		decodedBlocks[address] = found;
+		return found;
+	}
+
+	/**
+	 * @return T-states de la instrucción en curso hasta el siguiente acceso a memoria
+	 */
+	public int getAccessCycles() {
+		return accessCycles;
+	}
+
+	/**
+	 * @return ciclos de reloj (T-states) ejecutados con {@link #run(int)}
+	 */
+	public long getClock() {
+		return clock;
+	}
+
+	/**
+	 * @return ciclos disponibles hasta el siguiente evento, 0 si no se ejecutan iteraciones en bloque
+	 */
+	public int getCycleBudget() {
+		return cycleBudget;
 	}
 
 	/**
@@ -84,6 +294,32 @@ public abstract class CPU implements DebugCPU {
 		return dataBus;
 	}
 
+	/**
+	 * Proporción de ejecuciones desde la caché de instrucciones decodificadas que no han necesitado decodificar
+	 * 
+	 * @return tasa de aciertos entre 0 y 1
+	 */
+	public double getDecodeHitRate() {
+		return cachedExecutions == 0 ? 0 : 1 - (double) decodedInstructions / cachedExecutions;
+	}
+
+	/**
+	 * @return número de bloques de instrucciones decodificadas invalidados por escrituras en memoria
+	 */
+	public long getDecodeInvalidations() {
+		return invalidatedBlocks;
+	}
+
+	/**
+	 * Resumen de las estadísticas de la caché de instrucciones decodificadas
+	 * 
+	 * @return
+	 */
+	public String getDecodeStatistics() {
+		return "Cached executions: " + cachedExecutions + ", decoded: " + decodedInstructions + ", invalidated blocks: "
+				+ invalidatedBlocks + ", hit rate: " + getDecodeHitRate();
+	}
+
 	/**
 	 * Obtiene los Hz del procesador
 	 * 
@@ -102,6 +338,11 @@ public abstract class CPU implements DebugCPU {
 		return mapOPC;
 	}
 
+	@Override
+	public TraceListener getTraceListener() {
+		return traceListener;
+	}
+
 	/**
 	 * @return Registro IR, Registro de Instrucción
 	 */
@@ -116,6 +357,13 @@ public abstract class CPU implements DebugCPU {
 		return PC;
 	}
 
+	/**
+	 * @return planificador de los eventos temporizados sobre el reloj de la CPU
+	 */
+	public Scheduler getScheduler() {
+		return scheduler;
+	}
+
 	/**
 	 * @return Registro SP, StackPointer
 	 */
@@ -123,6 +371,36 @@ public abstract class CPU implements DebugCPU {
 		return SP;
 	}
 
+	/**
+	 * Crea la caché de instrucciones decodificadas vacía para el bus actual
+	 */
+	private void initDecodeCache() {
+		block = null;
+		if (decodeCache && dataBus instanceof Bus16) {
+			decodedBus = (Bus16) dataBus;
+			writeGenerations = decodedBus.getWriteGenerations();
+			decodedBlocks = new DecodedBlock[0x10000];
+		} else {
+			decodedBus = null;
+			writeGenerations = null;
+			decodedBlocks = null;
+		}
+	}
+
+	/**
+	 * @return detección de bucles de espera activa
+	 */
+	public boolean isIdleDetection() {
+		return idleDetection;
+	}
+
+	/**
+	 * @return línea de petición de interrupción activa
+	 */
+	public boolean isInterruptRequest() {
+		return interruptRequest;
+	}
+
 	/**
 	 * Se carga la instrucción del (PC) en el IR y se avanza el PC
 	 * 
@@ -136,6 +414,16 @@ public abstract class CPU implements DebugCPU {
 		PC++;
 	}
 
+	/**
+	 * Se carga en el IR el código de instrucción del (PC) con un ciclo de lectura de código (M1) y se avanza el PC
+	 * 
+	 * @throws IllegalAddressException
+	 */
+	public void loadOpcode() throws IllegalAddressException {
+		IR = readOpcode(getPC());
+		PC++;
+	}
+
 	/**
 	 * Lee de la memoria 2 bytes desde una posición determinada
 	 * 
@@ -145,7 +433,9 @@ public abstract class CPU implements DebugCPU {
 	 */
 	public int read16(int address) throws IllegalAddressException {
 		int low = dataBus.read(address) & 0x000000FF;
+		accessCycles += MEMORY_CYCLES;
 		int high = dataBus.read(address + 1) << 8 & 0x0000FF00;
+		accessCycles += MEMORY_CYCLES;
 
 		return high | low;
 	}
@@ -158,7 +448,92 @@ public abstract class CPU implements DebugCPU {
 	 * @throws IllegalAddressException
 	 */
 	public byte read8(int address) throws IllegalAddressException {
-		return dataBus.read(address);
+		byte data = dataBus.read(address);
+		accessCycles += MEMORY_CYCLES;
+		return data;
+	}
+
+	/**
+	 * Lee de la memoria un código de instrucción con un ciclo de lectura de código (M1)
+	 * 
+	 * @param address
+	 * @return código leído
+	 * @throws IllegalAddressException
+	 */
+	public byte readOpcode(int address) throws IllegalAddressException {
+		byte opcode = dataBus.read(address);
+		accessCycles += OPCODE_CYCLES;
+		return opcode;
+	}
+
+	/**
+	 * Ejecuta instrucciones hasta consumir un número de ciclos de reloj (T-states)
+	 * <p>
+	 * Entre instrucciones sólo se compara el reloj con el siguiente evento del planificador o el final de la ejecución,
+	 * y los ciclos hasta él son los disponibles para que las instrucciones de repetición ejecuten en bloque las
+	 * iteraciones que quepan. Al alcanzarlo se atienden los eventos vencidos. Mientras la línea de interrupción está
+	 * activa se intenta aceptar en cada límite de instrucción. La última instrucción puede pasarse de los ciclos pedidos,
+	 * ese exceso se devuelve para descontarlo de la siguiente ejecución.
+	 * 
+	 * @param cycles ciclos a ejecutar, sin efecto si no es positivo
+	 * @return ciclos ejecutados de más (0 o positivo), o los que faltan cambiados de signo si cycles no es positivo
+	 * @throws InstructionException
+	 * @throws IllegalAddressException
+	 */
+	public int run(int cycles) throws InstructionException, IllegalAddressException {
+		long end = clock + cycles;
+		try {
+			while (clock < end) {
+				long deadline = Math.min(end, scheduler.getNextTime());
+				while (clock < deadline) {
+					if (interruptRequest) {
+						int accepted = acceptInterrupt();
+						if (accepted != 0) {
+							clock += accepted;
+							continue;
+						}
+						/* Una iteración cada vez, la interrupción puede aceptarse en el siguiente límite */
+						cycleBudget = 0;
+					} else {
+						cycleBudget = (int) (deadline - clock);
+						if (idleDetection) {
+							int skipped = skipIdleLoop(clock, deadline);
+							if (skipped != 0) {
+								clock += skipped;
+								continue;
+							}
+						}
+					}
+					/* La instrucción puede retrasar el reloj con delay, se suma tras ejecutarla */
+					int executed = fetch();
+					clock += executed;
+				}
+				scheduler.dispatch(clock);
+			}
+		} finally {
+			cycleBudget = 0;
+		}
+		return (int) (clock - end);
+	}
+
+	/**
+	 * Establece los T-states de la instrucción en curso hasta el siguiente acceso a memoria, para el código que no
+	 * accede a ella con ciclos de lectura y escritura uno tras otro
+	 * 
+	 * @param cycles T-states desde el inicio de la instrucción
+	 */
+	public void setAccessCycles(int cycles) {
+		accessCycles = cycles;
+	}
+
+	/**
+	 * Establece los ciclos disponibles hasta el siguiente evento (interrupción o fin de frame). Las instrucciones de
+	 * repetición no los sobrepasan al ejecutar varias iteraciones de una vez
+	 * 
+	 * @param cycles ciclos disponibles, 0 para ejecutar una iteración en cada fetch
+	 */
+	public void setCycleBudget(int cycles) {
+		cycleBudget = cycles;
 	}
 
 	/**
@@ -168,6 +543,17 @@ public abstract class CPU implements DebugCPU {
 	 */
 	public void setDataBus(BusComponent bus) {
 		this.dataBus = bus;
+		initDecodeCache();
+	}
+
+	/**
+	 * Activa o desactiva la caché de instrucciones decodificadas (activa por defecto, sólo funciona con un Bus16)
+	 * 
+	 * @param enabled
+	 */
+	public void setDecodeCache(boolean enabled) {
+		decodeCache = enabled;
+		initDecodeCache();
 	}
 
 	/**
@@ -180,6 +566,16 @@ public abstract class CPU implements DebugCPU {
 		this.herz = herz;
 	}
 
+	/**
+	 * Activa o desactiva la detección de bucles de espera (desactivada por defecto). Sólo la usan las CPU que
+	 * implementan {@link #skipIdleLoop(long, long)}
+	 * 
+	 * @param enabled
+	 */
+	public void setIdleDetection(boolean enabled) {
+		idleDetection = enabled;
+	}
+
 	/**
 	 * Establece el mapa de instrucciones del procesador
 	 * 
@@ -189,6 +585,20 @@ public abstract class CPU implements DebugCPU {
 		this.mapOPC = mapOPC;
 	}
 
+	/**
+	 * Activa o desactiva la línea de petición de interrupción
+	 * 
+	 * @param active
+	 */
+	public void setInterruptRequest(boolean active) {
+		interruptRequest = active;
+	}
+
+	@Override
+	public void setTraceListener(TraceListener listener) {
+		this.traceListener = listener;
+	}
+
 	/**
 	 * @param programCounter the PC to set
 	 */
@@ -203,6 +613,30 @@ public abstract class CPU implements DebugCPU {
 		SP = stackPointer;
 	}
 
+	/**
+	 * Con la detección de bucles de espera activa, se consulta en cada límite de instrucción sin interrupción pedida.
+	 * Si la CPU está en un bucle que repite exactamente el mismo estado sin efectos, avanza las iteraciones completas
+	 * que caben hasta el siguiente evento. Sin detección por defecto
+	 * 
+	 * @param clock reloj actual
+	 * @param deadline ciclo del siguiente evento o final de la ejecución
+	 * @return ciclos avanzados, 0 si no se ha adelantado nada
+	 */
+	protected int skipIdleLoop(long clock, long deadline) {
+		return 0;
+	}
+
+	/**
+	 * Recoge los ciclos añadidos a la última instrucción y los pone a 0
+	 * 
+	 * @return ciclos añadidos
+	 */
+	protected int takeExtraCycles() {
+		int cycles = extraCycles;
+		extraCycles = 0;
+		return cycles;
+	}
+
 	/**
 	 * Escribe un dato 16 bits en la posición de memoria apuntada por las 2 posiciones de memoria consecutivas
 	 * (nn + 1) ← High, (nn) ← Low
@@ -213,7 +647,9 @@ public abstract class CPU implements DebugCPU {
 	 */
 	public void write16(int address, int data) throws IllegalAddressException {
 		dataBus.write(address, (byte) (data & 0x000000FF));
+		accessCycles += MEMORY_CYCLES;
 		dataBus.write(address + 1, (byte) (data >> 8 & 0x000000FF));
+		accessCycles += MEMORY_CYCLES;
 	}
 
 	/**
@@ -225,6 +661,7 @@ public abstract class CPU implements DebugCPU {
 	 */
 	public void write8(int address, byte data) throws IllegalAddressException {
 		dataBus.write(address, data);
+		accessCycles += MEMORY_CYCLES;
 	}
 
 }
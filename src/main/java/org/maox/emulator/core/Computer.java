@@ -2,6 +2,7 @@ package org.maox.emulator.core;
 
 import java.awt.image.BufferedImage;
 
+import org.maox.emulator.debug.TraceListener;
 import org.maox.emulator.exceptions.IllegalAddressException;
 import org.maox.emulator.exceptions.InstructionException;
 
@@ -29,6 +30,13 @@ public abstract class Computer {
 	 */
 	abstract public int execute() throws InstructionException, IllegalAddressException;
 
+	/**
+	 * Número de ciclos de reloj (T-states) de cada frame de la maquina
+	 * 
+	 * @return
+	 */
+	abstract public int getCyclesPerFrame();
+
 	/**
 	 * Devuelve un frame generado por la unidad gráfica
 	 * 
@@ -49,4 +57,21 @@ public abstract class Computer {
 	 * @return
 	 */
 	abstract public int getHerz();
+
+	/**
+	 * Ejecuta instrucciones en la maquina virtual hasta consumir un número de ciclos de reloj
+	 * 
+	 * @param cycles ciclos a ejecutar
+	 * @return ciclos ejecutados de más por la última instrucción, a descontar de la siguiente ejecución
+	 * @throws InstructionException
+	 * @throws IllegalAddressException
+	 */
+	abstract public int run(int cycles) throws InstructionException, IllegalAddressException;
+
+	/**
+	 * Asocia un oyente de traza a la CPU de la maquina. Con null se ejecuta sin traza.
+	 * 
+	 * @param listener oyente de traza
+	 */
+	abstract public void setTraceListener(TraceListener listener);
 }
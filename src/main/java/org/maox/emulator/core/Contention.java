@@ -0,0 +1,22 @@
+package org.maox.emulator.core;
+
+/**
+ * Contención de memoria: retraso de la CPU al acceder a páginas que comparte con otro dispositivo, como la RAM de
+ * pantalla que lee la ULA del Spectrum
+ * <p>
+ * El {@link Bus16} sólo la aplica en las páginas marcadas como contenidas, el resto mantiene su acceso sin coste
+ * añadido.
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public interface Contention {
+
+	/**
+	 * Se invoca antes de cada lectura o escritura en una página contenida para retrasar la instrucción en curso
+	 * 
+	 * @param address dirección accedida
+	 */
+	public void contend(int address);
+
+}
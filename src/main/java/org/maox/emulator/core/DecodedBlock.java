@@ -0,0 +1,90 @@
+package org.maox.emulator.core;
+
+/**
+ * Secuencia de instrucciones consecutivas ya decodificadas a partir de una dirección
+ * <p>
+ * Por cada instrucción se guarda la implementación, el último código de instrucción leído (IR) y el PC tras recorrer sus
+ * prefijos, que es el estado con el que la deja el mapa de instrucciones antes de ejecutarla. Los operandos los sigue
+ * leyendo la propia instrucción.
+ * <p>
+ * Los códigos se leen al decodificar sin contención, de cada instrucción se guardan las lecturas de códigos en páginas
+ * contenidas para aplicarlas al ejecutarla, y sus T-states para situar en el reloj los accesos a memoria que le siguen.
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+class DecodedBlock {
+
+	/* Número máximo de instrucciones de un bloque */
+	final static int MAX_INSTRUCTIONS = 32;
+
+	/* Dirección de inicio de cada instrucción */
+	final int[] starts = new int[MAX_INSTRUCTIONS];
+	/* Implementación de cada instrucción */
+	final Instruction[] instructions = new Instruction[MAX_INSTRUCTIONS];
+	/* Registro IR y PC tras la decodificación de cada instrucción */
+	final byte[] opcodes = new byte[MAX_INSTRUCTIONS];
+	final int[] decodedPCs = new int[MAX_INSTRUCTIONS];
+	/* Lecturas de códigos contenidas y dirección en la que se aplican */
+	final byte[] fetchContentions = new byte[MAX_INSTRUCTIONS];
+	final int[] fetchAddresses = new int[MAX_INSTRUCTIONS];
+	/* T-states de las lecturas de códigos, hasta el primer acceso a memoria de la instrucción */
+	final byte[] fetchCycles = new byte[MAX_INSTRUCTIONS];
+	/* Número de instrucciones del bloque */
+	int size = 0;
+
+	/* Páginas del bus que ocupa el bloque y su generación de escritura al decodificarlo */
+	private int firstPage;
+	private int lastPage;
+	private int firstGeneration;
+	private int lastGeneration;
+	/* El bloque está en ROM y no puede cambiar */
+	private boolean permanent;
+
+	/**
+	 * Añade una instrucción decodificada al bloque
+	 * 
+	 * @param start dirección de inicio
+	 * @param instruction implementación
+	 * @param opcode registro IR tras la decodificación
+	 * @param decodedPC PC tras la decodificación
+	 * @param contentions lecturas de códigos en páginas contenidas
+	 * @param address dirección contenida de los códigos
+	 * @param cycles T-states de las lecturas de códigos
+	 */
+	void add(int start, Instruction instruction, byte opcode, int decodedPC, int contentions, int address, int cycles) {
+		starts[size] = start;
+		instructions[size] = instruction;
+		opcodes[size] = opcode;
+		decodedPCs[size] = decodedPC;
+		fetchContentions[size] = (byte) contentions;
+		fetchAddresses[size] = address;
+		fetchCycles[size] = (byte) cycles;
+		size++;
+	}
+
+	/**
+	 * Determina si no ha habido escrituras en las páginas del bloque desde su decodificación
+	 * 
+	 * @param generations generaciones de escritura del bus
+	 * @return
+	 */
+	boolean isCurrent(int[] generations) {
+		return permanent || generations[firstPage] == firstGeneration && generations[lastPage] == lastGeneration;
+	}
+
+	/**
+	 * Fija las páginas que ocupa el bloque una vez completo
+	 * 
+	 * @param end dirección siguiente a la última instrucción
+	 * @param generations generaciones de escritura del bus
+	 * @param permanent el bloque completo está en ROM
+	 */
+	void seal(int end, int[] generations, boolean permanent) {
+		this.permanent = permanent;
+		firstPage = starts[0] >> Bus16.PAGE_SHIFT & Bus16.PAGES - 1;
+		lastPage = end - 1 >> Bus16.PAGE_SHIFT & Bus16.PAGES - 1;
+		firstGeneration = generations[firstPage];
+		lastGeneration = generations[lastPage];
+	}
+}
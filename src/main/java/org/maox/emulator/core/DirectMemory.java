@@ -0,0 +1,25 @@
+package org.maox.emulator.core;
+
+/**
+ * Componente del bus cuyo contenido es un array de bytes, al que el bus puede acceder directamente sin pasar por sus
+ * operaciones de lectura y escritura
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public interface DirectMemory extends BusComponent {
+
+	/**
+	 * Devuelve el array con el contenido del componente, la dirección de inicio es la posición 0
+	 * 
+	 * @return array de la memoria
+	 */
+	public byte[] getMemory();
+
+	/**
+	 * Determina si el contenido sólo se puede leer directamente, las escrituras se envían al componente
+	 * 
+	 * @return true si es de sólo lectura
+	 */
+	public boolean isReadOnly();
+}
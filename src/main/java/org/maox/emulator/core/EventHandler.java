@@ -0,0 +1,23 @@
+package org.maox.emulator.core;
+
+import org.maox.emulator.exceptions.IllegalAddressException;
+
+/**
+ * Receptor de los eventos temporizados de un tipo en el {@link Scheduler}
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public interface EventHandler {
+
+	/**
+	 * Se invoca en el primer límite de instrucción en el que el reloj de la CPU alcanza el evento. Un evento periódico
+	 * vuelve a programarse a partir de time para no acumular el retraso
+	 * 
+	 * @param type tipo de evento
+	 * @param time ciclo de reloj (T-state) para el que estaba programado
+	 * @throws IllegalAddressException
+	 */
+	public void handleEvent(int type, long time) throws IllegalAddressException;
+
+}
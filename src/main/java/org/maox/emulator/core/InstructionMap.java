@@ -11,6 +11,20 @@ import org.maox.emulator.exceptions.IllegalAddressException;
  */
 public abstract class InstructionMap {
 
+	/**
+	 * Devuelve la superinstrucción que ejecuta de una vez la secuencia de instrucciones que empieza en una dirección.
+	 * La superinstrucción se ejecuta con el PC y el IR en el estado en el que queda tras leer el primer código.
+	 * <p>
+	 * Por defecto no hay superinstrucciones
+	 * 
+	 * @param address dirección de la primera instrucción
+	 * @return superinstrucción o null si la secuencia no es conocida
+	 * @throws IllegalAddressException
+	 */
+	public Instruction getFusedInstruction(int address) throws IllegalAddressException {
+		return null;
+	}
+
 	/**
 	 * Devuelve la instrucción asociada a un código máquina OPC
 	 * 
@@ -0,0 +1,165 @@
+package org.maox.emulator.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.maox.emulator.debug.Hex;
+import org.maox.emulator.exceptions.IllegalAddressException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Memoria RAM fuera del heap, sobre un {@link ByteBuffer} directo o proyectada sobre un fichero
+ * <p>
+ * Su contenido se ofrece como una vista de sólo lectura ({@link #getBuffer()}) para que el renderizado de pantalla, las
+ * instantáneas o las búsquedas lean la memoria completa sin copiarla ni leerla byte a byte. El {@link Bus16} accede a
+ * sus páginas directamente sobre el buffer, sin pasar por sus operaciones de lectura y escritura. Proyectada sobre un
+ * fichero el contenido persiste entre ejecuciones.
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public class OffHeapRAM implements BusComponent {
+
+	/* Log */
+	final private static Logger logger = LoggerFactory.getLogger(OffHeapRAM.class);
+
+	/* Contenido de la memoria */
+	final private ByteBuffer memory;
+
+	/* Tamaño de la memoria */
+	final private int size;
+	final private int startAddress;
+
+	/**
+	 * Constructor de una memoria fuera del heap con un tamaño definido
+	 * 
+	 * @param size tamaño
+	 * @param type KB, MB
+	 * @param startAddress dirección de memoria inicial
+	 */
+	public OffHeapRAM(int size, int type, int startAddress) {
+		this(ByteBuffer.allocateDirect(size * type), startAddress);
+		logger.info("Created Off-Heap Memory {} KBytes", getSize() / RAM.KB);
+	}
+
+	/**
+	 * Constructor de una memoria proyectada sobre un fichero, que se crea o amplía si no tiene el tamaño necesario
+	 * 
+	 * @param file fichero con el contenido de la memoria
+	 * @param size tamaño
+	 * @param type KB, MB
+	 * @param startAddress dirección de memoria inicial
+	 * @throws IOException
+	 */
+	public OffHeapRAM(File file, int size, int type, int startAddress) throws IOException {
+		this(file, 0, size, type, startAddress);
+	}
+
+	/**
+	 * Constructor de una memoria proyectada sobre una parte de un fichero, que se crea o amplía si no llega al final de
+	 * esa parte. Varias memorias pueden repartirse el mismo fichero
+	 * 
+	 * @param file fichero con el contenido de la memoria
+	 * @param position posición en el fichero del primer byte
+	 * @param size tamaño
+	 * @param type KB, MB
+	 * @param startAddress dirección de memoria inicial
+	 * @throws IOException
+	 */
+	public OffHeapRAM(File file, int position, int size, int type, int startAddress) throws IOException {
+		this(map(file, position, size * type), startAddress);
+		logger.info("Mapped Memory {} KBytes on {} at {}", getSize() / RAM.KB, file, position);
+	}
+
+	/**
+	 * Constructor sobre un buffer
+	 * 
+	 * @param memory buffer con el contenido
+	 * @param startAddress dirección de memoria inicial
+	 */
+	private OffHeapRAM(ByteBuffer memory, int startAddress) {
+		this.memory = memory;
+		this.size = memory.capacity();
+		this.startAddress = startAddress;
+	}
+
+	/**
+	 * Escribe en el fichero los cambios de una memoria proyectada, sin efecto en otro caso
+	 */
+	public void force() {
+		if (memory instanceof MappedByteBuffer) {
+			((MappedByteBuffer) memory).force();
+		}
+	}
+
+	/**
+	 * Vista de sólo lectura del contenido, la posición 0 es la dirección de inicio. No copia la memoria: refleja las
+	 * escrituras posteriores
+	 * 
+	 * @return contenido de la memoria
+	 */
+	public ByteBuffer getBuffer() {
+		return memory.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Buffer con el contenido para el acceso directo del bus, admite escrituras
+	 * 
+	 * @return contenido de la memoria
+	 */
+	ByteBuffer getMemory() {
+		return memory;
+	}
+
+	@Override
+	public int getSize() {
+		return size;
+	}
+
+	@Override
+	public int getStartAddress() {
+		return startAddress;
+	}
+
+	/**
+	 * Proyecta una parte de un fichero en memoria
+	 * 
+	 * @param file fichero
+	 * @param position posición del primer byte
+	 * @param size tamaño en bytes
+	 * @return buffer proyectado
+	 * @throws IOException
+	 */
+	private static MappedByteBuffer map(File file, int position, int size) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			/* La proyección se mantiene válida al cerrar el canal */
+			return channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+		}
+	}
+
+	@Override
+	public byte read(int address) throws IllegalAddressException {
+		/* Comprobación si la dirección de memoria es valida */
+		if (address - startAddress >= size || address < startAddress)
+			throw new IllegalAddressException("Error reading at " + Hex.addressToString(address) + "h. Max memory: "
+					+ Hex.addressToString(size - 1) + "h");
+
+		return memory.get(address - startAddress);
+	}
+
+	@Override
+	public void write(int address, byte data) throws IllegalAddressException {
+		/* Comprobación si la dirección de memoria es valida */
+		if (address - startAddress >= size || address < startAddress)
+			throw new IllegalAddressException("Error writing at " + Hex.addressToString(address) + "h. Max memory: "
+					+ Hex.addressToString(size - 1) + "h");
+
+		memory.put(address - startAddress, data);
+	}
+}
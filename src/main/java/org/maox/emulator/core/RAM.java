@@ -11,7 +11,7 @@ import org.slf4j.LoggerFactory;
  * @author Alex Orgaz
  * 
  */
-public class RAM implements BusComponent {
+public class RAM implements DirectMemory {
 
 	/* Log */
 	final private static Logger logger = LoggerFactory.getLogger(RAM.class);
@@ -104,6 +104,11 @@ public class RAM implements BusComponent {
 		return dump.toString();
 	}
 
+	@Override
+	public byte[] getMemory() {
+		return memory;
+	}
+
 	/* Tamaño de la memoria en bytes */
 	/**
 	 * Obtiene el tamaño máximo de la memoria
@@ -129,6 +134,11 @@ public class RAM implements BusComponent {
 		return startAddress;
 	}
 
+	@Override
+	public boolean isReadOnly() {
+		return false;
+	}
+
 	/**
 	 * Lectura de un byte de una dirección determinada
 	 * 
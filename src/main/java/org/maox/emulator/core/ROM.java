@@ -47,6 +47,11 @@ public class ROM extends RAM {
 		logger.info("ROM Memory");
 	}
 
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
+
 	/**
 	 * Carga en memoria el contenido de un fichero de entrada
 	 * 
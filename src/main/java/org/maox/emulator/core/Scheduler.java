@@ -0,0 +1,156 @@
+package org.maox.emulator.core;
+
+import org.maox.emulator.exceptions.IllegalAddressException;
+
+/**
+ * Planificador de eventos por ciclo de reloj (T-state) de la CPU
+ * <p>
+ * Los eventos pendientes se guardan en un montículo binario de long, con el ciclo en los bits altos y el tipo en los 8
+ * bajos, por lo que no se crean objetos al programarlos y el orden es el de los long. Con el mismo ciclo se atiende
+ * antes el tipo menor. La CPU sólo consulta el ciclo del siguiente evento ({@link #getNextTime()}) entre bloques de
+ * instrucciones, nunca el estado de los dispositivos.
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public class Scheduler {
+
+	/* Tipos de evento */
+	final public static int EVENT_FRAME = 0; /* Inicio de frame, interrupción en el T-state 0 */
+	final public static int EVENT_INT = 1; /* Activación de la línea de interrupción */
+	final public static int EVENT_INT_END = 2; /* Fin de la ventana de la línea de interrupción */
+	final public static int EVENT_TYPES = 256;
+
+	/* Bits del tipo en cada entrada del montículo */
+	final private static int TYPE_BITS = 8;
+	final private static int TYPE_MASK = EVENT_TYPES - 1;
+
+	/* Montículo de eventos pendientes */
+	private long heap[] = new long[16];
+	private int size = 0;
+
+	/* Receptor de cada tipo de evento */
+	final private EventHandler handlers[] = new EventHandler[EVENT_TYPES];
+
+	/**
+	 * Elimina todos los eventos pendientes de un tipo
+	 * 
+	 * @param type tipo de evento
+	 */
+	public void cancel(int type) {
+		int kept = 0;
+		for (int idx = 0; idx < size; idx++) {
+			if ((heap[idx] & TYPE_MASK) != type) {
+				heap[kept++] = heap[idx];
+			}
+		}
+		size = kept;
+		for (int idx = size / 2 - 1; idx >= 0; idx--) {
+			siftDown(idx);
+		}
+	}
+
+	/**
+	 * Elimina todos los eventos pendientes
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Atiende, en orden, los eventos programados hasta un ciclo de reloj. Los que programen los receptores para ese
+	 * ciclo o antes también se atienden
+	 * 
+	 * @param now ciclo de reloj actual
+	 * @throws IllegalAddressException
+	 */
+	public void dispatch(long now) throws IllegalAddressException {
+		while (size > 0 && heap[0] >> TYPE_BITS <= now) {
+			long entry = poll();
+			int type = (int) (entry & TYPE_MASK);
+			if (handlers[type] != null) {
+				handlers[type].handleEvent(type, entry >> TYPE_BITS);
+			}
+		}
+	}
+
+	/**
+	 * @return ciclo de reloj del siguiente evento, Long.MAX_VALUE si no hay ninguno
+	 */
+	public long getNextTime() {
+		return size == 0 ? Long.MAX_VALUE : heap[0] >> TYPE_BITS;
+	}
+
+	/**
+	 * @return número de eventos pendientes
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Saca el evento más próximo del montículo
+	 * 
+	 * @return entrada con ciclo y tipo
+	 */
+	private long poll() {
+		long first = heap[0];
+		heap[0] = heap[--size];
+		siftDown(0);
+		return first;
+	}
+
+	/**
+	 * Programa un evento
+	 * 
+	 * @param time ciclo de reloj (T-state) del evento, no negativo
+	 * @param type tipo de evento
+	 */
+	public void schedule(long time, int type) {
+		if (size == heap.length) {
+			long grown[] = new long[size * 2];
+			System.arraycopy(heap, 0, grown, 0, size);
+			heap = grown;
+		}
+
+		/* Se sube el evento mientras sea anterior a su padre */
+		long entry = time << TYPE_BITS | type & TYPE_MASK;
+		int idx = size++;
+		while (idx > 0 && heap[(idx - 1) >> 1] > entry) {
+			heap[idx] = heap[(idx - 1) >> 1];
+			idx = (idx - 1) >> 1;
+		}
+		heap[idx] = entry;
+	}
+
+	/**
+	 * Asocia el receptor de un tipo de evento. Los eventos sin receptor se descartan al atenderlos
+	 * 
+	 * @param type tipo de evento
+	 * @param handler receptor, null para ninguno
+	 */
+	public void setHandler(int type, EventHandler handler) {
+		handlers[type] = handler;
+	}
+
+	/**
+	 * Baja una entrada del montículo mientras sea posterior a alguno de sus hijos
+	 * 
+	 * @param start posición de la entrada
+	 */
+	private void siftDown(int start) {
+		long entry = heap[start];
+		int idx = start;
+		int child;
+		while ((child = 2 * idx + 1) < size) {
+			if (child + 1 < size && heap[child + 1] < heap[child]) {
+				child++;
+			}
+			if (heap[child] >= entry)
+				break;
+			heap[idx] = heap[child];
+			idx = child;
+		}
+		heap[idx] = entry;
+	}
+}
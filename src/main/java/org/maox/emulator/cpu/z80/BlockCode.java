@@ -0,0 +1,27 @@
+package org.maox.emulator.cpu.z80;
+
+import org.maox.emulator.exceptions.IllegalAddressException;
+import org.maox.emulator.exceptions.InstructionException;
+
+/**
+ * Código de un bloque básico del Z80 traducido a bytecode
+ * <p>
+ * Las implementaciones son clases ocultas generadas por el {@link BlockCompiler}
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public interface BlockCode {
+
+	/**
+	 * Ejecuta el bloque y deja el PC en la siguiente instrucción a ejecutar. Si una instrucción lanza una excepción el PC
+	 * queda en esa instrucción, con las anteriores ya ejecutadas
+	 * 
+	 * @param cpu CPU sobre la que se ejecuta
+	 * @return número de ciclos consumidos por todas las instrucciones ejecutadas
+	 * @throws InstructionException
+	 * @throws IllegalAddressException
+	 */
+	public int execute(Z80 cpu) throws InstructionException, IllegalAddressException;
+
+}
@@ -0,0 +1,767 @@
+package org.maox.emulator.cpu.z80;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.maox.emulator.core.Bus16;
+import org.maox.emulator.core.CPU;
+import org.maox.emulator.exceptions.IllegalAddressException;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compilador de bloques básicos del Z80 a bytecode
+ * <p>
+ * Un bloque empieza en una dirección y termina en la primera instrucción de salto (incluida) o antes de la primera
+ * instrucción que no sabe traducir. Cada instrucción se traduce a las mismas operaciones que hace el {@link Z80FastCore}
+ * sobre los registros y la memoria del {@link Z80}, con el PC y los ciclos resueltos en la compilación. El resultado se
+ * carga como una clase oculta que puede descargarse cuando el bloque se invalida.
+ * <p>
+ * Tras cada escritura en memoria se comprueba si se ha escrito sobre el propio bloque (código automodificable), en cuyo
+ * caso se sale del bloque tras esa instrucción.
+ * <p>
+ * Un bloque se ejecuta completo, sin límites de instrucción intermedios en los que atender eventos o interrupciones.
+ * Por eso se anotan sus ciclos máximos, por la salida más larga, para que sólo se ejecute si caben antes del siguiente
+ * evento.
+ * <p>
+ * El código se lee sin contención y los bloques no entran en páginas contenidas del bus: la lectura de sus códigos
+ * retrasaría a la CPU según el momento de cada instrucción, que el bloque no conoce.
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+class BlockCompiler implements Opcodes {
+
+	final private static Logger logger = LoggerFactory.getLogger(BlockCompiler.class);
+
+	/* Tamaño máximo de un bloque, en instrucciones y en bytes (ocupa como mucho 2 páginas del bus) */
+	final static int MAX_INSTRUCTIONS = 64;
+	final static int MAX_LENGTH = 192;
+
+	/* Nombres de las clases en el bytecode */
+	final private static String Z80_NAME = Type.getInternalName(Z80.class);
+	final private static String CODE_NAME = Type.getInternalName(BlockCode.class);
+	final private static String BLOCK_NAME = Z80_NAME.substring(0, Z80_NAME.lastIndexOf('/') + 1) + "Block";
+	final private static String EXECUTE_DESC = "(L" + Z80_NAME + ";)I";
+
+	/* Variables locales del método generado */
+	final private static int VAR_CPU = 1;
+	final private static int VAR_ADDRESS = 2;
+	final private static int VAR_VALUE = 3;
+	final private static int VAR_PC = 4;
+	final private static int VAR_EXCEPTION = 5;
+
+	/* Registros según el campo r de los opcodes, el 6 es (HL) */
+	final private static String[] REGS = { "B", "C", "D", "E", "H", "L", null, "A" };
+	/* Pares de registros según el campo rr de los opcodes */
+	final private static String[] PAIRS = { "BC", "DE", "HL", "SP" };
+	/* Operaciones aritmético lógicas según el campo de operación de los opcodes 0x80 - 0xBF */
+	final private static String[] ALU = { "addWithCarry", "addWithCarry", "subWithCarry", "subWithCarry", "and8", "xor8",
+			"or8", "cp8" };
+	/* Máscara del flag de cada condición y si se cumple con el flag a 1 */
+	final private static int[] COND_MASK = { 0x40, 0x40, 0x01, 0x01, 0x04, 0x04, 0x80, 0x80 };
+
+	/* Longitud de las instrucciones de la tabla principal que se saben traducir (0 si no) */
+	final private static byte[] LENGTHS = new byte[Z80.MAP_SIZE];
+
+	static {
+		for (int op = 0x40; op < 0xC0; op++) {
+			LENGTHS[op] = 1; /* LD r, r' y operaciones aritmético lógicas */
+		}
+		LENGTHS[0x76] = 0;
+
+		for (int idx = 0; idx < 8; idx++) {
+			LENGTHS[0x04 + idx * 8] = 1; /* INC r */
+			LENGTHS[0x05 + idx * 8] = 1; /* DEC r */
+			LENGTHS[0x06 + idx * 8] = 2; /* LD r, n */
+			LENGTHS[0xC6 + idx * 8] = 2; /* ALU n */
+			LENGTHS[0xC2 + idx * 8] = 3; /* JP cc, nn */
+		}
+		for (int idx = 0; idx < 4; idx++) {
+			LENGTHS[0x01 + idx * 16] = 3; /* LD rr, nn */
+			LENGTHS[0x03 + idx * 16] = 1; /* INC rr */
+			LENGTHS[0x09 + idx * 16] = 1; /* ADD HL, rr */
+			LENGTHS[0x0B + idx * 16] = 1; /* DEC rr */
+			LENGTHS[0x20 + idx * 8] = 2; /* JR cc, e */
+		}
+
+		LENGTHS[0x00] = 1; /* NOP */
+		LENGTHS[0x02] = 1; /* LD (BC), A */
+		LENGTHS[0x08] = 1; /* EX AF, AF' */
+		LENGTHS[0x0A] = 1; /* LD A, (BC) */
+		LENGTHS[0x10] = 2; /* DJNZ e */
+		LENGTHS[0x12] = 1; /* LD (DE), A */
+		LENGTHS[0x18] = 2; /* JR e */
+		LENGTHS[0x1A] = 1; /* LD A, (DE) */
+		LENGTHS[0x22] = 3; /* LD (nn), HL */
+		LENGTHS[0x2A] = 3; /* LD HL, (nn) */
+		LENGTHS[0x32] = 3; /* LD (nn), A */
+		LENGTHS[0x3A] = 3; /* LD A, (nn) */
+		LENGTHS[0xC3] = 3; /* JP nn */
+		LENGTHS[0xCB] = 2; /* SET b, r (sólo 0xC0 - 0xFF) */
+		LENGTHS[0xD9] = 1; /* EXX */
+		LENGTHS[0xE9] = 1; /* JP (HL) */
+		LENGTHS[0xEB] = 1; /* EX DE, HL */
+		LENGTHS[0xED] = 2; /* ADC HL, rr y SBC HL, rr */
+		LENGTHS[0xF3] = 1; /* DI */
+		LENGTHS[0xF9] = 1; /* LD SP, HL */
+		/* EI no se traduce: el intérprete marca el retraso de una instrucción en la aceptación de interrupciones */
+	}
+
+	/* CPU de la que se lee el código */
+	private final Z80 cpu;
+
+	/* Estado de la compilación en curso */
+	private Bus16 bus;
+	private MethodVisitor mv;
+	private int blockStart;
+	private int blockLength;
+	private int cycles;
+	private int maxCycles;
+	/* T-states del bloque hasta el primer acceso a memoria de la instrucción en curso, -1 si ya se ha fijado */
+	private int accessCycles;
+	private List<int[]> exits = new ArrayList<int[]>();
+	private List<Label> exitLabels = new ArrayList<Label>();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param cpu CPU de la que se lee el código
+	 */
+	BlockCompiler(Z80 cpu) {
+		this.cpu = cpu;
+	}
+
+	/**
+	 * Compila el bloque que empieza en una dirección
+	 * 
+	 * @param start dirección de inicio del bloque
+	 * @param bus bus del que se lee el código, con sus generaciones de escritura en el momento de la compilación
+	 * @return bloque compilado o null si la primera instrucción no se sabe traducir o está en una página contenida
+	 * @throws IllegalAddressException
+	 */
+	CompiledBlock compile(int start, Bus16 bus) throws IllegalAddressException {
+		this.bus = bus;
+
+		/* Primera pasada: extensión del bloque */
+		int address = start;
+		int instructions = 0;
+		boolean branch = false;
+		while (!branch && instructions < MAX_INSTRUCTIONS && address - start < MAX_LENGTH && address + 3 <= 0xFFFF) {
+			if (bus.isContended(address) || bus.isContended(address + 3))
+				break;
+			int length = length(address);
+			if (length == 0)
+				break;
+			branch = isBranch(read(address));
+			address += length;
+			instructions++;
+		}
+
+		if (instructions == 0)
+			return null;
+
+		byte[] source = new byte[address - start];
+		for (int idx = 0; idx < source.length; idx++) {
+			source[idx] = bus.peek(start + idx);
+		}
+
+		/* Segunda pasada: generación del código */
+		BlockCode code = generate(start, source.length, instructions);
+		if (code == null)
+			return null;
+
+		return new CompiledBlock(start, source, instructions, maxCycles, code, bus.getWriteGenerations());
+	}
+
+	/**
+	 * Fija en la CPU los T-states del bloque hasta el primer acceso a memoria de la instrucción, para que la
+	 * contención lo sitúe en el reloj. Los siguientes accesos de la instrucción los avanzan las propias lecturas y
+	 * escrituras
+	 */
+	private void emitAccessCycles() {
+		if (accessCycles < 0)
+			return;
+		mv.visitVarInsn(ALOAD, VAR_CPU);
+		push(accessCycles);
+		invoke("setAccessCycles", "(I)V");
+		accessCycles = -1;
+	}
+
+	/**
+	 * Salto condicional según los flags, deja en la pila la comprobación y salta a la etiqueta si no se cumple
+	 * 
+	 * @param cond condición (COND_NZ ... COND_M)
+	 * @param notTaken etiqueta si no se cumple
+	 */
+	private void emitCondition(int cond, Label notTaken) {
+		mv.visitVarInsn(ALOAD, VAR_CPU);
+		invoke("getF", "()B");
+		push(COND_MASK[cond]);
+		mv.visitInsn(IAND);
+		/* Las condiciones pares se cumplen con el flag a 0 */
+		mv.visitJumpInsn((cond & 1) == 0 ? IFNE : IFEQ, notTaken);
+	}
+
+	/**
+	 * Deja en la pila el valor de 16 bits de un par de registros
+	 * 
+	 * @param pair Par de registros BC, DE, HL o SP
+	 */
+	private void emitGetPair(String pair) {
+		mv.visitVarInsn(ALOAD, VAR_CPU);
+		invoke("get" + pair, "()I");
+	}
+
+	/**
+	 * Deja en la pila el operando de 8 bits r, (HL) es el 6
+	 * 
+	 * @param r campo de registro del opcode
+	 */
+	private void emitGetReg(int r) {
+		mv.visitVarInsn(ALOAD, VAR_CPU);
+		if (r == 6) {
+			emitAccessCycles();
+			mv.visitVarInsn(ALOAD, VAR_CPU);
+			invoke("getHL", "()I");
+			invoke("read8", "(I)B");
+		} else {
+			invoke("get" + REGS[r], "()B");
+		}
+	}
+
+	/**
+	 * Genera la traducción de una instrucción
+	 * 
+	 * @param pc dirección de la instrucción
+	 * @param length longitud de la instrucción
+	 * @return true si la instrucción termina el bloque
+	 * @throws IllegalAddressException
+	 */
+	private boolean emitInstruction(int pc, int length) throws IllegalAddressException {
+		int op = read(pc);
+		int next = pc + length;
+		int n = length > 1 ? bus.peek(pc + 1) : 0; /* Byte con signo */
+		int nn = length > 2 ? read(pc + 1) | read(pc + 2) << 8 : 0;
+		/* Lecturas de códigos (M1) y operandos de la instrucción antes de su primer acceso a memoria */
+		int opcodes = op == 0xCB || op == 0xED ? 2 : 1;
+		accessCycles = cycles + opcodes * CPU.OPCODE_CYCLES + (length - opcodes) * CPU.MEMORY_CYCLES;
+
+		/* LD r, r' y LD r, (HL) y LD (HL), r */
+		if (op >= 0x40 && op < 0x80) {
+			int d = op >> 3 & 0x07;
+			int s = op & 0x07;
+			if (d == 6) {
+				cycles += 7;
+				emitWrite8HL();
+				emitGetReg(s);
+				emitWrite8End(next);
+			} else {
+				cycles += s == 6 ? 7 : 4;
+				if (d != s) {
+					mv.visitVarInsn(ALOAD, VAR_CPU);
+					emitGetReg(s);
+					invoke("set" + REGS[d], "(B)V");
+				}
+			}
+			return false;
+		}
+
+		/* Operaciones aritmético lógicas con registro, (HL) o inmediato */
+		if (op >= 0x80 && op < 0xC0 || (op & 0xC7) == 0xC6) {
+			int alu = op >> 3 & 0x07;
+			cycles += op >= 0xC0 || (op & 0x07) == 6 ? 7 : 4;
+			mv.visitVarInsn(ALOAD, VAR_CPU);
+			if (op >= 0xC0) {
+				push(n);
+			} else {
+				emitGetReg(op & 0x07);
+			}
+			if (alu < 4) {
+				/* ADD, ADC, SUB, SBC */
+				if ((alu & 1) == 0) {
+					push(0);
+				} else {
+					mv.visitVarInsn(ALOAD, VAR_CPU);
+					invoke("getCarry", "()B");
+				}
+				invoke(ALU[alu], "(BB)B");
+				mv.visitInsn(POP);
+			} else {
+				invoke(ALU[alu], "(B)V");
+			}
+			return false;
+		}
+
+		/* INC r, DEC r, LD r, n */
+		if (op < 0x40 && (op & 0x07) >= 4 && (op & 0x07) <= 6) {
+			int r = op >> 3 & 0x07;
+			boolean load = (op & 0x07) == 6;
+			String method = (op & 0x07) == 4 ? "inc8" : "dec8";
+			if (r == 6) {
+				cycles += load ? 10 : 11;
+				emitWrite8HL();
+				if (load) {
+					push(n);
+				} else {
+					mv.visitVarInsn(ALOAD, VAR_CPU);
+					mv.visitVarInsn(ALOAD, VAR_CPU);
+					mv.visitVarInsn(ILOAD, VAR_ADDRESS);
+					invoke("read8", "(I)B");
+					invoke(method, "(B)B");
+				}
+				emitWrite8End(next);
+			} else {
+				cycles += load ? 7 : 4;
+				mv.visitVarInsn(ALOAD, VAR_CPU);
+				if (load) {
+					push(n);
+				} else {
+					mv.visitVarInsn(ALOAD, VAR_CPU);
+					mv.visitVarInsn(ALOAD, VAR_CPU);
+					invoke("get" + REGS[r], "()B");
+					invoke(method, "(B)B");
+				}
+				invoke("set" + REGS[r], "(B)V");
+			}
+			return false;
+		}
+
+		/* Operaciones de 16 bits: LD rr, nn / INC rr / ADD HL, rr / DEC rr */
+		if (op < 0x40 && ((op & 0x0F) == 0x01 || (op & 0x0F) == 0x03 || (op & 0x0F) == 0x09 || (op & 0x0F) == 0x0B)) {
+			String pair = PAIRS[op >> 4];
+			switch (op & 0x0F) {
+			case 0x01:
+				cycles += 10;
+				push(nn);
+				break;
+			case 0x03:
+			case 0x0B:
+				cycles += 6;
+				emitGetPair(pair);
+				push(1);
+				mv.visitInsn((op & 0x0F) == 0x03 ? IADD : ISUB);
+				mv.visitInsn(I2S);
+				break;
+			default:
+				cycles += 11;
+				mv.visitVarInsn(ALOAD, VAR_CPU);
+				emitGetPair("HL");
+				emitGetPair(pair);
+				push(0);
+				invoke("addWithCarry16", "(IIB)I");
+				pair = "HL";
+			}
+			mv.visitVarInsn(ISTORE, VAR_VALUE);
+			emitSetPair(pair);
+			return false;
+		}
+
+		switch (op) {
+		case 0x00: /* NOP */
+			cycles += 4;
+			return false;
+		case 0x02: /* LD (BC), A */
+		case 0x12: /* LD (DE), A */
+			cycles += 7;
+			emitGetPair(op == 0x02 ? "BC" : "DE");
+			mv.visitVarInsn(ISTORE, VAR_ADDRESS);
+			emitWrite8Register("A", next);
+			return false;
+		case 0x32: /* LD (nn), A */
+			cycles += 13;
+			push(nn);
+			mv.visitVarInsn(ISTORE, VAR_ADDRESS);
+			emitWrite8Register("A", next);
+			return false;
+		case 0x0A: /* LD A, (BC) */
+		case 0x1A: /* LD A, (DE) */
+		case 0x3A: /* LD A, (nn) */
+			cycles += op == 0x3A ? 13 : 7;
+			emitAccessCycles();
+			mv.visitVarInsn(ALOAD, VAR_CPU);
+			mv.visitVarInsn(ALOAD, VAR_CPU);
+			if (op == 0x3A) {
+				push(nn);
+			} else {
+				emitGetPair(op == 0x0A ? "BC" : "DE");
+			}
+			invoke("read8", "(I)B");
+			invoke("setA", "(B)V");
+			return false;
+		case 0x2A: /* LD HL, (nn) */
+			cycles += 16;
+			emitAccessCycles();
+			mv.visitVarInsn(ALOAD, VAR_CPU);
+			push(nn);
+			invoke("read16", "(I)I");
+			mv.visitVarInsn(ISTORE, VAR_VALUE);
+			emitSetPair("HL");
+			return false;
+		case 0x22: /* LD (nn), HL */
+			cycles += 16;
+			push(nn);
+			mv.visitVarInsn(ISTORE, VAR_ADDRESS);
+			emitAccessCycles();
+			mv.visitVarInsn(ALOAD, VAR_CPU);
+			mv.visitVarInsn(ILOAD, VAR_ADDRESS);
+			emitGetPair("HL");
+			invoke("write16", "(II)V");
+			emitSelfModifyCheck(next, 2);
+			return false;
+		case 0xF9: /* LD SP, HL */
+			cycles += 6;
+			mv.visitVarInsn(ALOAD, VAR_CPU);
+			emitGetPair("HL");
+			invoke("setSP", "(I)V");
+			return false;
+		case 0x08: /* EX AF, AF' */
+			cycles += 4;
+			mv.visitVarInsn(ALOAD, VAR_CPU);
+			invoke("exchangeAF", "()V");
+			return false;
+		case 0xD9: /* EXX */
+			cycles += 4;
+			mv.visitVarInsn(ALOAD, VAR_CPU);
+			invoke("exchangeX", "()V");
+			return false;
+		case 0xEB: /* EX DE, HL */
+			cycles += 4;
+			mv.visitVarInsn(ALOAD, VAR_CPU);
+			invoke("exchangeDEHL", "()V");
+			return false;
+		case 0xF3: /* DI */
+			cycles += 4;
+			mv.visitVarInsn(ALOAD, VAR_CPU);
+			push(0);
+			invoke("setIFF1", "(Z)V");
+			mv.visitVarInsn(ALOAD, VAR_CPU);
+			push(0);
+			invoke("setIFF2", "(Z)V");
+			return false;
+		case 0xCB: /* SET b, r */
+			int bit = n >> 3 & 0x07;
+			int r = n & 0x07;
+			if (r == 6) {
+				cycles += 15;
+				emitWrite8HL();
+				mv.visitVarInsn(ALOAD, VAR_CPU);
+				mv.visitVarInsn(ILOAD, VAR_ADDRESS);
+				invoke("read8", "(I)B");
+				push(1 << bit);
+				mv.visitInsn(IOR);
+				mv.visitInsn(I2B);
+				emitWrite8End(next);
+			} else {
+				cycles += 8;
+				mv.visitVarInsn(ALOAD, VAR_CPU);
+				mv.visitVarInsn(ALOAD, VAR_CPU);
+				invoke("get" + REGS[r], "()B");
+				push(1 << bit);
+				mv.visitInsn(IOR);
+				mv.visitInsn(I2B);
+				invoke("set" + REGS[r], "(B)V");
+			}
+			return false;
+
+		case 0xED: /* ADC HL, rr y SBC HL, rr */
+			cycles += 15;
+			mv.visitVarInsn(ALOAD, VAR_CPU);
+			emitGetPair("HL");
+			emitGetPair(PAIRS[n >> 4 & 0x03]);
+			mv.visitVarInsn(ALOAD, VAR_CPU);
+			invoke("getCarry", "()B");
+			invoke((n & 0x08) == 0 ? "subWithCarry16" : "addWithCarry16", "(IIB)I");
+			mv.visitVarInsn(ISTORE, VAR_VALUE);
+			emitSetPair("HL");
+			return false;
+
+		/* Saltos, terminan el bloque */
+		case 0xC3: /* JP nn */
+			emitReturn(nn, cycles + 10);
+			return true;
+		case 0xE9: /* JP (HL) */
+			mv.visitVarInsn(ALOAD, VAR_CPU);
+			emitGetPair("HL");
+			invoke("setPC", "(I)V");
+			push(cycles + 4);
+			mv.visitInsn(IRETURN);
+			maxCycles = Math.max(maxCycles, cycles + 4);
+			return true;
+		case 0x18: /* JR e */
+			emitReturn(next + n, cycles + 12);
+			return true;
+		case 0x10: /* DJNZ e */
+			Label djnzNotTaken = new Label();
+			mv.visitVarInsn(ALOAD, VAR_CPU);
+			invoke("getB", "()B");
+			mv.visitJumpInsn(IFEQ, djnzNotTaken);
+			emitReturn(next + n, cycles + 13);
+			mv.visitLabel(djnzNotTaken);
+			emitReturn(next, cycles + 8);
+			return true;
+		}
+
+		if ((op & 0xE7) == 0x20) {
+			/* JR cc, e */
+			Label notTaken = new Label();
+			emitCondition(op >> 3 & 0x03, notTaken);
+			emitReturn(next + n, cycles + 12);
+			mv.visitLabel(notTaken);
+			emitReturn(next, cycles + 7);
+			return true;
+		}
+
+		if ((op & 0xC7) == 0xC2) {
+			/* JP cc, nn */
+			Label notTaken = new Label();
+			emitCondition(op >> 3 & 0x07, notTaken);
+			emitReturn(nn, cycles + 10);
+			mv.visitLabel(notTaken);
+			emitReturn(next, cycles + 10);
+			return true;
+		}
+
+		throw new IllegalStateException("Opcode not translatable: " + op);
+	}
+
+	/**
+	 * Fija el PC y devuelve los ciclos
+	 * 
+	 * @param pc dirección de la siguiente instrucción
+	 * @param total ciclos consumidos
+	 */
+	private void emitReturn(int pc, int total) {
+		mv.visitVarInsn(ALOAD, VAR_CPU);
+		push(pc);
+		invoke("setPC", "(I)V");
+		push(total);
+		mv.visitInsn(IRETURN);
+		maxCycles = Math.max(maxCycles, total);
+	}
+
+	/**
+	 * Genera el salto de salida al final del método, tras una escritura sobre el propio bloque
+	 * 
+	 * @param pc dirección de la siguiente instrucción
+	 * @param span bytes que ocupa la escritura (1 o 2)
+	 */
+	private void emitSelfModifyCheck(int pc, int span) {
+		/* (address - (start - span + 1)) sin signo < length + span - 1 */
+		Label exit = new Label();
+		mv.visitVarInsn(ILOAD, VAR_ADDRESS);
+		push(blockStart - span + 1);
+		mv.visitInsn(ISUB);
+		push(Integer.MIN_VALUE);
+		mv.visitInsn(IXOR);
+		push(blockLength + span - 1 ^ Integer.MIN_VALUE);
+		mv.visitJumpInsn(IF_ICMPLT, exit);
+		exits.add(new int[] { pc, cycles });
+		exitLabels.add(exit);
+	}
+
+	/**
+	 * Escribe el par de registros con el valor de la variable VAR_VALUE
+	 * 
+	 * @param pair Par de registros BC, DE, HL o SP
+	 */
+	private void emitSetPair(String pair) {
+		mv.visitVarInsn(ALOAD, VAR_CPU);
+		mv.visitVarInsn(ILOAD, VAR_VALUE);
+		invoke("set" + pair, "(I)V");
+	}
+
+	/**
+	 * Fin de una escritura de 8 bits, con la CPU, la dirección y el dato en la pila
+	 * 
+	 * @param next dirección de la siguiente instrucción
+	 */
+	private void emitWrite8End(int next) {
+		invoke("write8", "(IB)V");
+		emitSelfModifyCheck(next, 1);
+	}
+
+	/**
+	 * Inicio de una escritura en (HL): guarda la dirección y deja en la pila la CPU y la dirección. Se completa con el
+	 * dato y {@link #emitWrite8End(int)}
+	 */
+	private void emitWrite8HL() {
+		emitAccessCycles();
+		emitGetPair("HL");
+		mv.visitVarInsn(ISTORE, VAR_ADDRESS);
+		mv.visitVarInsn(ALOAD, VAR_CPU);
+		mv.visitVarInsn(ILOAD, VAR_ADDRESS);
+	}
+
+	/**
+	 * Escritura de un registro en la dirección de VAR_ADDRESS
+	 * 
+	 * @param reg registro
+	 * @param next dirección de la siguiente instrucción
+	 */
+	private void emitWrite8Register(String reg, int next) {
+		emitAccessCycles();
+		mv.visitVarInsn(ALOAD, VAR_CPU);
+		mv.visitVarInsn(ILOAD, VAR_ADDRESS);
+		mv.visitVarInsn(ALOAD, VAR_CPU);
+		invoke("get" + reg, "()B");
+		emitWrite8End(next);
+	}
+
+	/**
+	 * Genera y carga la clase del bloque
+	 * 
+	 * @param start dirección de inicio
+	 * @param length longitud en bytes
+	 * @param instructions número de instrucciones
+	 * @return código del bloque o null si no se ha podido cargar
+	 * @throws IllegalAddressException
+	 */
+	private BlockCode generate(int start, int length, int instructions) throws IllegalAddressException {
+		blockStart = start;
+		blockLength = length;
+		cycles = 0;
+		maxCycles = 0;
+		exits.clear();
+		exitLabels.clear();
+
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+		cw.visit(V17, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, BLOCK_NAME, null, "java/lang/Object",
+				new String[] { CODE_NAME });
+
+		mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		mv = cw.visitMethod(ACC_PUBLIC, "execute", EXECUTE_DESC, null,
+				new String[] { Type.getInternalName(IllegalAddressException.class) });
+		mv.visitCode();
+
+		/* Una excepción de memoria deja el PC en la instrucción que la produce */
+		Label tryStart = new Label();
+		Label tryEnd = new Label();
+		Label handler = new Label();
+		mv.visitTryCatchBlock(tryStart, tryEnd, handler, Type.getInternalName(IllegalAddressException.class));
+		push(start);
+		mv.visitVarInsn(ISTORE, VAR_PC);
+		mv.visitLabel(tryStart);
+
+		int pc = start;
+		boolean branch = false;
+		for (int idx = 0; idx < instructions; idx++) {
+			int size = length(pc);
+			if (idx > 0) {
+				push(pc);
+				mv.visitVarInsn(ISTORE, VAR_PC);
+			}
+			branch = emitInstruction(pc, size);
+			pc += size;
+		}
+		if (!branch) {
+			emitReturn(pc, cycles);
+		}
+		mv.visitLabel(tryEnd);
+
+		mv.visitLabel(handler);
+		mv.visitVarInsn(ASTORE, VAR_EXCEPTION);
+		mv.visitVarInsn(ALOAD, VAR_CPU);
+		mv.visitVarInsn(ILOAD, VAR_PC);
+		invoke("setPC", "(I)V");
+		mv.visitVarInsn(ALOAD, VAR_EXCEPTION);
+		mv.visitInsn(ATHROW);
+
+		/* Salidas por escritura sobre el propio bloque */
+		for (int idx = 0; idx < exits.size(); idx++) {
+			mv.visitLabel(exitLabels.get(idx));
+			emitReturn(exits.get(idx)[0], exits.get(idx)[1]);
+		}
+
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+		cw.visitEnd();
+
+		try {
+			MethodHandles.Lookup block = MethodHandles.lookup().defineHiddenClass(cw.toByteArray(), true);
+			return (BlockCode) block.findConstructor(block.lookupClass(), MethodType.methodType(void.class)).invoke();
+		} catch (Throwable e) {
+			/* El dynarec no vuelve a intentar compilar la dirección */
+			logger.error("Block at {} not compiled, left to the interpreter", start, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Invoca un método de la CPU
+	 * 
+	 * @param name nombre
+	 * @param desc descriptor
+	 */
+	private void invoke(String name, String desc) {
+		mv.visitMethodInsn(INVOKEVIRTUAL, Z80_NAME, name, desc, false);
+	}
+
+	/**
+	 * Determina si el opcode es una instrucción de salto
+	 * 
+	 * @param op opcode de la tabla principal
+	 * @return
+	 */
+	private boolean isBranch(int op) {
+		return op == 0xC3 || op == 0xE9 || op == 0x18 || op == 0x10 || (op & 0xE7) == 0x20 || (op & 0xC7) == 0xC2;
+	}
+
+	/**
+	 * Longitud de la instrucción en una dirección si se sabe traducir
+	 * 
+	 * @param address dirección de la instrucción
+	 * @return longitud o 0 si no se sabe traducir
+	 * @throws IllegalAddressException
+	 */
+	private int length(int address) throws IllegalAddressException {
+		int op = read(address);
+		if (op == 0xCB && read(address + 1) < 0xC0)
+			return 0;
+		if (op == 0xED && (read(address + 1) & 0xC7) != 0x42)
+			return 0;
+		return LENGTHS[op];
+	}
+
+	/**
+	 * Carga una constante entera en la pila
+	 * 
+	 * @param value
+	 */
+	private void push(int value) {
+		if (value >= -1 && value <= 5) {
+			mv.visitInsn(ICONST_0 + value);
+		} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+			mv.visitIntInsn(BIPUSH, value);
+		} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+			mv.visitIntInsn(SIPUSH, value);
+		} else {
+			mv.visitLdcInsn(value);
+		}
+	}
+
+	/**
+	 * Lee un byte sin signo de la memoria, sin contención
+	 * 
+	 * @param address
+	 * @return
+	 * @throws IllegalAddressException
+	 */
+	private int read(int address) throws IllegalAddressException {
+		return bus.peek(address) & 0x000000FF;
+	}
+}
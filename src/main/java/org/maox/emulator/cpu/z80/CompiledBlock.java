@@ -0,0 +1,84 @@
+package org.maox.emulator.cpu.z80;
+
+import org.maox.emulator.core.Bus16;
+import org.maox.emulator.exceptions.IllegalAddressException;
+
+/**
+ * Bloque básico compilado junto con la información necesaria para saber si su código fuente sigue vigente
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+class CompiledBlock {
+
+	/* Dirección de inicio y bytes de los que se compiló */
+	final int start;
+	final byte[] source;
+	/* Número de instrucciones del bloque y ciclos de la ejecución más larga */
+	final int instructions;
+	final int cycles;
+	/* Código generado */
+	final BlockCode code;
+
+	/* Páginas que ocupa el bloque y su generación de escritura cuando se comprobó por última vez */
+	private final int firstPage;
+	private final int lastPage;
+	private int firstGeneration;
+	private int lastGeneration;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param start dirección de inicio
+	 * @param source bytes del bloque
+	 * @param instructions número de instrucciones
+	 * @param cycles ciclos máximos de una ejecución
+	 * @param code código generado
+	 * @param generations generaciones de escritura en el momento de la compilación
+	 */
+	CompiledBlock(int start, byte[] source, int instructions, int cycles, BlockCode code, int[] generations) {
+		this.start = start;
+		this.source = source;
+		this.instructions = instructions;
+		this.cycles = cycles;
+		this.code = code;
+
+		firstPage = start >> Bus16.PAGE_SHIFT & Bus16.PAGES - 1;
+		lastPage = start + source.length - 1 >> Bus16.PAGE_SHIFT & Bus16.PAGES - 1;
+		firstGeneration = generations[firstPage];
+		lastGeneration = generations[lastPage];
+	}
+
+	/**
+	 * Determina si no ha habido escrituras en las páginas del bloque desde la última comprobación
+	 * 
+	 * @param generations generaciones de escritura del bus
+	 * @return
+	 */
+	boolean isCurrent(int[] generations) {
+		return generations[firstPage] == firstGeneration && generations[lastPage] == lastGeneration;
+	}
+
+	/**
+	 * Comprueba byte a byte, sin contención, si el bloque sigue coincidiendo con la memoria tras escrituras en sus
+	 * páginas. Si coincide se toman las generaciones actuales. Deja de ser vigente si alguna de sus páginas ha pasado a
+	 * estar contenida.
+	 * 
+	 * @param bus bus del que se compiló
+	 * @param generations generaciones de escritura del bus
+	 * @return true si el bloque sigue vigente
+	 * @throws IllegalAddressException
+	 */
+	boolean revalidate(Bus16 bus, int[] generations) throws IllegalAddressException {
+		if (bus.isContended(start) || bus.isContended(start + source.length - 1))
+			return false;
+		for (int idx = 0; idx < source.length; idx++) {
+			if (bus.peek(start + idx) != source[idx])
+				return false;
+		}
+
+		firstGeneration = generations[firstPage];
+		lastGeneration = generations[lastPage];
+		return true;
+	}
+}
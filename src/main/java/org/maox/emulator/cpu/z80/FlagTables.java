@@ -0,0 +1,67 @@
+package org.maox.emulator.cpu.z80;
+
+/**
+ * Tablas precalculadas del registro de flags F del Z80
+ * <p>
+ * Para los resultados de 8 bits se guardan los flags S, Z, 5, 3 y P de cada valor posible. El semiacarreo y el
+ * desbordamiento de sumas y restas dependen sólo del bit 3 (y del bit 7) de los 2 operandos y del resultado, de forma
+ * que se obtienen de tablas de 8 entradas indexadas por {@link #index(int, int, int)}. Así una operación aritmético
+ * lógica compone F completo con una o dos búsquedas en vez de activar cada flag por separado.
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public final class FlagTables {
+
+	/* Máscaras de los flags en el registro F */
+	final public static int S = 1 << Z80.FLAG_S;
+	final public static int Z = 1 << Z80.FLAG_Z;
+	final public static int F5 = 1 << Z80.FLAG_5;
+	final public static int H = 1 << Z80.FLAG_H;
+	final public static int F3 = 1 << Z80.FLAG_3;
+	final public static int PV = 1 << Z80.FLAG_PV;
+	final public static int N = 1 << Z80.FLAG_N;
+	final public static int C = 1 << Z80.FLAG_C;
+
+	/* Flags S, Z, 5 y 3 de cada resultado */
+	final public static byte[] SZ53 = new byte[256];
+	/* Flags S, Z, 5, 3 y paridad (P/V a 1 con un número par de bits a 1) de cada resultado */
+	final public static byte[] SZ53P = new byte[256];
+
+	/* Semiacarreo y desbordamiento de suma y resta según el bit 3 y el bit 7 de operandos y resultado */
+	final public static byte[] HALF_ADD = { 0, (byte) H, (byte) H, (byte) H, 0, 0, 0, (byte) H };
+	final public static byte[] HALF_SUB = { 0, 0, (byte) H, 0, (byte) H, 0, (byte) H, (byte) H };
+	final public static byte[] OVERFLOW_ADD = { 0, 0, 0, (byte) PV, (byte) PV, 0, 0, 0 };
+	final public static byte[] OVERFLOW_SUB = { 0, (byte) PV, 0, 0, 0, 0, (byte) PV, 0 };
+
+	static {
+		for (int value = 0; value < 256; value++) {
+			int flags = value & (S | F5 | F3);
+			if (value == 0) {
+				flags |= Z;
+			}
+			SZ53[value] = (byte) flags;
+			if ((Integer.bitCount(value) & 1) == 0) {
+				flags |= PV;
+			}
+			SZ53P[value] = (byte) flags;
+		}
+	}
+
+	private FlagTables() {
+	}
+
+	/**
+	 * Índice de las tablas de semiacarreo y desbordamiento. Los bits 0 a 2 son el bit 3 del acumulador, del operando y
+	 * del resultado, y los bits 4 a 6 su bit 7: las tablas de semiacarreo se indexan con los 3 bits bajos y las de
+	 * desbordamiento con el índice desplazado 4 bits
+	 * 
+	 * @param a acumulador antes de la operación
+	 * @param value operando
+	 * @param result resultado de la operación
+	 * @return índice combinado
+	 */
+	public static int index(int a, int value, int result) {
+		return (a & 0x88) >> 3 | (value & 0x88) >> 2 | (result & 0x88) >> 1;
+	}
+}
@@ -0,0 +1,168 @@
+package org.maox.emulator.cpu.z80;
+
+import java.util.Arrays;
+
+import org.maox.emulator.core.Bus16;
+
+/**
+ * Detector de bucles de espera del Z80
+ * <p>
+ * Guarda el estado de la CPU al pasar por una dirección, la cabeza del bucle. Si el PC vuelve a ella en pocas
+ * instrucciones con los mismos registros y sin escrituras en memoria ni accesos de I/O, cada nueva iteración repetirá
+ * exactamente lo mismo mientras ningún evento cambie la memoria o pida una interrupción. Las iteraciones completas que
+ * caben hasta el siguiente evento se adelantan de una vez: el reloj queda como al ejecutarlas y el resto del estado
+ * no cambia.
+ * <p>
+ * Sólo se adelantan los bucles sin accesos a memoria contenida: su retraso depende del T-state del frame, así que las
+ * iteraciones no duran lo mismo.
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+final class IdleLoopDetector {
+
+	/* Instrucciones máximas de un bucle de espera */
+	final private static int MAX_INSTRUCTIONS = 64;
+
+	/* CPU observada */
+	final private Z80 cpu;
+
+	/* Cabeza del bucle y estado de la CPU al pasar por ella */
+	private int head = -1;
+	private int instructions;
+	private long headClock;
+	final private int[] headGenerations = new int[Bus16.PAGES];
+	private long headIO;
+	private long headContended;
+	final private byte[] headRegs;
+	final private int[] headState = new int[7];
+	final private int[] state = new int[7];
+
+	/* Estadísticas */
+	private long skips = 0;
+	private long skippedIterations = 0;
+	private long skippedCycles = 0;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param cpu CPU observada
+	 */
+	IdleLoopDetector(Z80 cpu) {
+		this.cpu = cpu;
+		headRegs = new byte[cpu.regs.length];
+	}
+
+	/**
+	 * Guarda el estado en la cabeza de un posible bucle
+	 * 
+	 * @param pc cabeza
+	 * @param clock reloj actual
+	 * @param bus bus de memoria
+	 */
+	private void capture(int pc, long clock, Bus16 bus) {
+		head = pc;
+		instructions = 0;
+		headClock = clock;
+		System.arraycopy(bus.getWriteGenerations(), 0, headGenerations, 0, headGenerations.length);
+		headIO = cpu.getIOOperations();
+		headContended = bus.getContendedAccesses();
+		readState(headState);
+		System.arraycopy(cpu.regs, 0, headRegs, 0, headRegs.length);
+	}
+
+	/**
+	 * @return número de veces que se han adelantado iteraciones de un bucle de espera
+	 */
+	long getSkips() {
+		return skips;
+	}
+
+	/**
+	 * @return ciclos de reloj adelantados
+	 */
+	long getSkippedCycles() {
+		return skippedCycles;
+	}
+
+	/**
+	 * @return iteraciones de bucles de espera adelantadas
+	 */
+	long getSkippedIterations() {
+		return skippedIterations;
+	}
+
+	/**
+	 * Determina si el estado actual de la CPU es el guardado en la cabeza
+	 * 
+	 * @return
+	 */
+	private boolean isSameState() {
+		readState(state);
+		for (int idx = 0; idx < state.length; idx++) {
+			if (state[idx] != headState[idx])
+				return false;
+		}
+		for (int idx = 0; idx < headRegs.length; idx++) {
+			if (cpu.regs[idx] != headRegs[idx])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Lee los registros y el estado de control que no están en el banco de registros. Materializa el registro F si los
+	 * flags están pendientes de calcular
+	 * 
+	 * @param target destino
+	 */
+	private void readState(int[] target) {
+		cpu.getF();
+		target[0] = cpu.af;
+		target[1] = cpu.bank;
+		target[2] = cpu.getIX();
+		target[3] = cpu.getIY();
+		target[4] = cpu.getSP();
+		target[5] = cpu.getI();
+		target[6] = cpu.getInterruptMode() | (cpu.isIFF1() ? 0x10 : 0) | (cpu.isIFF2() ? 0x20 : 0)
+				| (cpu.isHalted() ? 0x40 : 0);
+	}
+
+	/**
+	 * Se consulta en cada límite de instrucción. Si la CPU vuelve a la cabeza del bucle en el mismo estado, adelanta
+	 * las iteraciones completas que caben hasta el siguiente evento
+	 * 
+	 * @param clock reloj actual
+	 * @param deadline ciclo del siguiente evento o final de la ejecución
+	 * @return ciclos adelantados, 0 si no se ha adelantado nada
+	 */
+	int skip(long clock, long deadline) {
+		if (!(cpu.getDataBus() instanceof Bus16))
+			return 0;
+		Bus16 bus = (Bus16) cpu.getDataBus();
+
+		int pc = cpu.getPC();
+		if (pc != head) {
+			/* Sin volver a la cabeza en pocas instrucciones se prueba con la dirección actual */
+			if (head < 0 || ++instructions > MAX_INSTRUCTIONS) {
+				capture(pc, clock, bus);
+			}
+			return 0;
+		}
+
+		long period = clock - headClock;
+		long iterations = period == 0 ? 0 : (deadline - clock) / period;
+		/* Sin escrituras, las generaciones de todas las páginas siguen igual */
+		if (iterations > 0 && cpu.getIOOperations() == headIO && bus.getContendedAccesses() == headContended
+				&& isSameState() && Arrays.equals(bus.getWriteGenerations(), headGenerations)) {
+			skips++;
+			skippedIterations += iterations;
+			skippedCycles += iterations * period;
+			capture(pc, clock + iterations * period, bus);
+			return (int) (iterations * period);
+		}
+
+		capture(pc, clock, bus);
+		return 0;
+	}
+}
@@ -1,7 +1,15 @@
 package org.maox.emulator.cpu.z80;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+import org.maox.emulator.core.BlockIO;
+import org.maox.emulator.core.Bus16;
 import org.maox.emulator.core.BusComponent;
 import org.maox.emulator.core.CPU;
+import org.maox.emulator.core.EventHandler;
+import org.maox.emulator.core.Scheduler;
 import org.maox.emulator.debug.Hex;
 import org.maox.emulator.exceptions.IllegalAddressException;
 import org.maox.emulator.exceptions.InstructionException;
@@ -14,7 +22,7 @@ import org.maox.emulator.peripheral.z80.ULA;
  * @author Alex Orgaz
  * 
  */
-public class Z80 extends CPU {
+public class Z80 extends CPU implements EventHandler {
 
 	/* Tamaño de las tablas de mapeo de instrucciones 2^8 */
 	final public static int MAP_SIZE = 256;
@@ -78,45 +86,101 @@ public class Z80 extends CPU {
 	/* Nombres de las condiciones */
 	final public static String COND_NAMES[] = { "NZ", "Z", "NC", "C", "PO", "PE", "P", "M" };
 
+	/* Posición de cada registro en el banco, los pares empiezan en posición par */
+	final protected static int IDX_A = 0;
+	final protected static int IDX_F = 1;
+	final protected static int IDX_B = 2;
+	final protected static int IDX_C = 3;
+	final protected static int IDX_D = 4;
+	final protected static int IDX_E = 5;
+	final protected static int IDX_H = 6;
+	final protected static int IDX_L = 7;
+	final protected static int BANK_SIZE = 8;
+
+	/* Vista de 16 bits (big-endian) del banco de registros para los pares */
+	final private static VarHandle PAIR = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+
+	/* Ciclos de una iteración de LDIR y LDDR que se repite y de la última */
+	final private static int REPEAT_CYCLES = 21;
+	final private static int LAST_CYCLES = 16;
+
+	/* Operación cuyos flags están pendientes de calcular en modo de flags perezosos */
+	final private static int FLAGS_READY = 0;
+	final private static int FLAGS_ADD = 1;
+	final private static int FLAGS_SUB = 2;
+	final private static int FLAGS_CP = 3;
+	final private static int FLAGS_INC = 4;
+	final private static int FLAGS_DEC = 5;
+	final private static int FLAGS_AND = 6;
+	final private static int FLAGS_LOGIC = 7;
+
 	/* Modos de Interrupción */
 	final public static int INTERRUPT_MODE_0 = 0;
 	final public static int INTERRUPT_MODE_1 = 1;
 	final public static int INTERRUPT_MODE_2 = 2;
 
-	/* Registros Principales */
-	private byte A; /* Acumulador */
-	private byte F; /* Flags */
-	private byte B; /* Par BC auxiliar */
-	private byte C;
-	private byte D; /* Par DE auxiliar */
-	private byte E;
-	private byte H; /* Par HL dirección memoria */
-	private byte L;
+	/* Duración de la línea INT, ciclos de la aceptación en IM 0/1 y en IM 2, y de EI */
+	final private static int INT_CYCLES = 32;
+	final private static int IM1_CYCLES = 13;
+	final private static int IM2_CYCLES = 19;
+	final private static int EI_CYCLES = 4;
+	/* Ciclos de cada NOP que repite la CPU detenida por HALT */
+	final private static int HALT_CYCLES = 4;
+	/* Valor del bus de datos durante la aceptación: en el Spectrum nadie lo conduce (RST 38h en IM 0) */
+	final private static int INT_DATA_BUS = 0xFF;
+
+	/*
+	 * Registros Principales y Alternativos: banco con A, F, B, C, D, E, H, L del juego principal seguido del alternativo.
+	 * Cada par ocupa 2 posiciones consecutivas con el byte alto primero, de forma que se lee o escribe con un único
+	 * acceso de 16 bits
+	 */
+	protected final byte[] regs = new byte[2 * BANK_SIZE];
+	/* Desplazamiento en el banco del juego activo de AF y del de BC, DE, HL: 0 principal o BANK_SIZE alternativo */
+	protected int af = 0;
+	protected int bank = 0;
+
+	/*
+	 * Flags perezosos: las operaciones aritmético lógicas sólo guardan su tipo, operandos y resultado, y F se calcula
+	 * cuando se lee. En el INC y DEC el primer operando es el acarreo anterior, que no cambia
+	 */
+	private boolean lazyFlags = false;
+	private int flagsOp = FLAGS_READY;
+	private int flagsA;
+	private int flagsValue;
+	private int flagsResult;
 
 	/* Registros Especiales */
-	private byte I; /* Interrupt Page Address */
-	private byte R; /* RAM Refresh */
-
-	/* Registros Alternativos */
-	private byte A_alt; /* Acumulador */
-	private byte F_alt; /* Flags */
-	private byte B_alt; /* Par BC auxiliar */
-	private byte C_alt;
-	private byte D_alt; /* Par DE auxiliar */
-	private byte E_alt;
-	private byte H_alt; /* Par HL dirección memoria */
-	private byte L_alt;
+	protected byte I; /* Interrupt Page Address */
+	protected byte R; /* RAM Refresh */
 
 	/* Registros Indices */
-	private int IX;
-	private int IY;
+	protected int IX;
+	protected int IY;
 
 	/* Flipflop de control de interrupciones */
 	private boolean IFF1 = false;
 	private boolean IFF2 = false;
+	private int interruptMode = INTERRUPT_MODE_0;
+	/* CPU detenida por HALT, con el PC en la propia instrucción */
+	private boolean halted = false;
+	/* Reloj al ejecutar el último EI, tras él no se acepta una interrupción hasta la siguiente instrucción */
+	private long eiClock = Long.MIN_VALUE;
+	/* Activación de la petición de interrupción en curso */
+	private long interruptTime;
+	/* Métricas de las interrupciones */
+	private long acceptedInterrupts = 0;
+	private long missedInterrupts = 0;
+	private long totalLatency = 0;
+	private long maxLatency = 0;
 
 	/* Uncommitted Logic Array (ULA) encargada del I/O */
 	private ULA ULA;
+	/* Bytes de las transferencias de I/O en bloque */
+	final private byte[] ioBuffer = new byte[256];
+	/* Accesos de I/O realizados */
+	private long ioOperations = 0;
+	/* Detector de bucles de espera, sólo se consulta con la detección activa */
+	final private IdleLoopDetector idleLoops = new IdleLoopDetector(this);
 
 	/**
 	 * Constructor base
@@ -129,6 +193,40 @@ public class Z80 extends CPU {
 		init();
 	}
 
+	/**
+	 * Acepta la interrupción si IFF1 está activo y la instrucción anterior no es EI: guarda el PC en la pila y salta a
+	 * 38h (IM 0 con RST 38h en el bus de datos e IM 1) o a la dirección del vector (I, bus de datos) en IM 2
+	 */
+	@Override
+	protected int acceptInterrupt() throws IllegalAddressException {
+		if (!IFF1 || getClock() == eiClock + EI_CYCLES)
+			return 0;
+
+		setInterruptRequest(false);
+		IFF1 = false;
+		IFF2 = false;
+		/* Se sale de HALT, el retorno es a la instrucción siguiente */
+		if (halted) {
+			halted = false;
+			setPC(getPC() + 1 & 0xFFFF);
+		}
+		long latency = getClock() - interruptTime;
+		acceptedInterrupts++;
+		totalLatency += latency;
+		maxLatency = Math.max(maxLatency, latency);
+
+		/* El reconocimiento es un M1 con 2 ciclos de espera, la pila se escribe en los 6 últimos T-states */
+		setAccessCycles(IM1_CYCLES - 2 * MEMORY_CYCLES);
+		setSP(getSP() - 2 & 0xFFFF);
+		write16(getSP(), getPC());
+		if (interruptMode == INTERRUPT_MODE_2) {
+			setPC(read16((I & 0xFF) << 8 | INT_DATA_BUS));
+			return IM2_CYCLES;
+		}
+		setPC(0x0038);
+		return IM1_CYCLES;
+	}
+
 	/**
 	 * Suma un byte al acumulador teniendo en cuenta el flag de acarreo
 	 * 
@@ -137,43 +235,17 @@ public class Z80 extends CPU {
 	 * @return resultado (registro A)
 	 */
 	public byte addWithCarry(byte b, byte c) {
-		// Se suma el byte b al acumulador y se almacena en un short para saber después
-		// si ha habido acarreo o overflow
-		byte res = (byte) (A + b + c);
-
-		// HalfCarry
-		boolean bHalfCarry = (((A & 0x0F) + (b & 0x0F) + (c & 0x0F)) & 0x10) == 0x10;
-		// Overflow (Si son signos iguales)
-		boolean bOverFlow = false;
-		if ((((A ^ b) ^ 0x80) & 0x80) == 0x80) {
-			// Overflow si el signo del resultado es distinto de los operandos
-			bOverFlow = ((res ^ A) & 0x80) != 0;
-		}
-		// Carry
-		byte carry = 0;
+		int a = regs[af + IDX_A] & 0xFF;
+		int res = a + (b & 0xFF) + c;
 
-		if (c != 0) {
-			carry = (byte) ((A & 0xFF) >= (0xFF - b & 0xFF) ? 1 : 0);
+		regs[af + IDX_A] = (byte) res;
+		if (lazyFlags) {
+			deferFlags(FLAGS_ADD, a, b, res);
 		} else {
-			carry = (byte) ((A & 0xFF) > (0xFF - b & 0xFF) ? 1 : 0);
+			regs[af + IDX_F] = flagsAdd(a, b, res);
 		}
 
-		A = res;
-
-		// Se establecen los flag
-		setFlagSigned(res);
-		setFlagZero(res);
-		setFlag(Z80.FLAG_H, bHalfCarry);
-		setFlag(Z80.FLAG_PV, bOverFlow);
-		setFlag(Z80.FLAG_N, false);
-
-		F &= ~(1 << FLAG_C); // Set a bit to 0
-		F |= (carry << FLAG_C); // Set a bit to carry
-
-		// Flags sin documentar
-		setFlag35(res);
-
-		return A;
+		return regs[af + IDX_A];
 	}
 
 	/**
@@ -216,8 +288,8 @@ public class Z80 extends CPU {
 		setFlag(Z80.FLAG_PV, bOverFlow);
 		setFlag(Z80.FLAG_N, false);
 		// setFlag(Z80.FLAG_C, bCarry);
-		F &= ~(1 << FLAG_C); // Set a bit to 0
-		F |= (carry << FLAG_C); // Set a bit to carry
+		regs[af + IDX_F] &= ~(1 << FLAG_C); // Set a bit to 0
+		regs[af + IDX_F] |= (carry << FLAG_C); // Set a bit to carry
 
 		// Flags sin documentar
 		setFlag35((byte) (res >> 8 & 0x00FF));
@@ -225,6 +297,125 @@ public class Z80 extends CPU {
 		return res;
 	}
 
+	/**
+	 * Operación lógica AND del acumulador con un byte, el resultado queda en el acumulador
+	 * 
+	 * @param value Byte operando
+	 */
+	public void and8(byte value) {
+		byte res = (byte) (regs[af + IDX_A] & value);
+		regs[af + IDX_A] = res;
+
+		/* Establecimiento de flags */
+		if (lazyFlags) {
+			deferFlags(FLAGS_AND, 0, 0, res);
+		} else {
+			regs[af + IDX_F] = (byte) (FlagTables.H | FlagTables.SZ53P[res & 0xFF]);
+		}
+	}
+
+	/**
+	 * Compara un byte con el acumulador. Es una resta sin guardar el resultado
+	 * 
+	 * @param value Byte operando
+	 */
+	public void cp8(byte value) {
+		int a = regs[af + IDX_A] & 0xFF;
+		int res = a - (value & 0xFF);
+
+		// Es una resta sin guardar el resultado
+		if (lazyFlags) {
+			deferFlags(FLAGS_CP, a, value, res);
+		} else {
+			regs[af + IDX_F] = flagsCompare(a, value, res);
+		}
+	}
+
+	/**
+	 * Iteración de CPI/CPIR (step 1) o CPD/CPDR (step -1), con el PC tras la instrucción
+	 * <p>
+	 * En CPIR y CPDR, con ciclos disponibles hasta el siguiente evento ({@link #setCycleBudget(int)}), sin traza y con
+	 * el bloque en una memoria de acceso directo de un {@link Bus16}, busca A de 8 en 8 bytes y ejecuta de una vez
+	 * todas las iteraciones hasta encontrarlo. Registros, flags, PC y ciclos quedan como tras ejecutar las iteraciones
+	 * por separado: los flags sólo dependen de la última comparación.
+	 * 
+	 * @param step 1 para CPI y CPIR, -1 para CPD y CPDR
+	 * @param repeat repetición mientras BC != 0 y no se encuentre A
+	 * @return ciclos de la última iteración, los de las anteriores se añaden a la instrucción
+	 * @throws IllegalAddressException
+	 */
+	public byte compareBlock(int step, boolean repeat) throws IllegalAddressException {
+		int hl = getHL();
+		int bc = getBC();
+		int iterations = repeat ? getRepeatIterations(bc == 0 ? 0x10000 : bc) : 1;
+
+		if (iterations > 1 && getDataBus() instanceof Bus16) {
+			/* Sin dar la vuelta al espacio de direcciones */
+			iterations = Math.min(iterations, step > 0 ? 0x10000 - hl : hl + 1);
+			int found = iterations < 2 ? -1 : ((Bus16) getDataBus()).search(hl, iterations, getA(), step);
+			if (found < 0) {
+				iterations = 1;
+			} else if (found < iterations) {
+				iterations = found + 1;
+			}
+		} else {
+			iterations = 1;
+		}
+
+		boolean carry = isFlagCarry();
+		byte value = read8(hl + (iterations - 1) * step & 0xFFFF);
+		cp8(value);
+		setHL(hl + iterations * step);
+		setBC(bc - iterations);
+		setFlag(FLAG_PV, getBC() != 0);
+		setFlag(FLAG_C, carry);
+		/* Flags sin documentar: F5 es el bit 1 y F3 el bit 3 de A - (HL) - H */
+		int n = getA() - value - (getF() >> FLAG_H & 0x01);
+		setFlag(FLAG_5, (n & 0x02) != 0);
+		setFlag(FLAG_3, (n & 0x08) != 0);
+
+		addExtraCycles((iterations - 1) * REPEAT_CYCLES);
+		if (repeat && getBC() != 0 && !isFlagZero()) {
+			setPC(getPC() - 2);
+			return REPEAT_CYCLES;
+		}
+		return LAST_CYCLES;
+	}
+
+	/**
+	 * Decrementa un byte estableciendo los flags
+	 * 
+	 * @param value Byte a decrementar
+	 * @return resultado
+	 */
+	public byte dec8(byte value) {
+		byte res = (byte) (value + (byte) 0xFF);
+
+		/* Establecimiento de flags, el acarreo no cambia */
+		if (lazyFlags) {
+			deferFlags(FLAGS_DEC, getCarry(), value, res);
+		} else {
+			regs[af + IDX_F] = flagsDec(regs[af + IDX_F] & FlagTables.C, value, res);
+		}
+
+		return res;
+	}
+
+	/**
+	 * Guarda una operación aritmético lógica cuyos flags se calcularán cuando se lean
+	 * 
+	 * @param op tipo de operación (FLAGS_ADD ... FLAGS_LOGIC)
+	 * @param a acumulador antes de la operación o acarreo anterior
+	 * @param value operando
+	 * @param result resultado sin truncar
+	 */
+	private void deferFlags(int op, int a, int value, int result) {
+		flagsOp = op;
+		flagsA = a;
+		flagsValue = value;
+		flagsResult = result;
+	}
+
 	@Override
 	public String dump() {
 		StringBuilder registers = new StringBuilder();
@@ -261,30 +452,63 @@ public class Z80 extends CPU {
 		return registers.toString();
 	}
 
+	/**
+	 * Habilita las interrupciones (EI). La siguiente instrucción se ejecuta antes de poder aceptar una
+	 */
+	public void enableInterrupts() {
+		IFF1 = true;
+		IFF2 = true;
+		eiClock = getClock();
+	}
+
+	/**
+	 * Calcula el registro F de la operación pendiente en modo de flags perezosos
+	 */
+	private void evaluateFlags() {
+		byte flags;
+		switch (flagsOp) {
+		case FLAGS_ADD:
+			flags = flagsAdd(flagsA, flagsValue, flagsResult);
+			break;
+		case FLAGS_SUB:
+			flags = flagsSub(flagsA, flagsValue, flagsResult);
+			break;
+		case FLAGS_CP:
+			flags = flagsCompare(flagsA, flagsValue, flagsResult);
+			break;
+		case FLAGS_INC:
+			flags = flagsInc(flagsA, flagsValue, flagsResult);
+			break;
+		case FLAGS_DEC:
+			flags = flagsDec(flagsA, flagsValue, flagsResult);
+			break;
+		case FLAGS_AND:
+			flags = (byte) (FlagTables.H | FlagTables.SZ53P[flagsResult & 0xFF]);
+			break;
+		default:
+			flags = FlagTables.SZ53P[flagsResult & 0xFF];
+		}
+		regs[af + IDX_F] = flags;
+		flagsOp = FLAGS_READY;
+	}
+
 	/**
 	 * Intercambia el contenido de los registro A y F con sus alternativos
 	 */
 	public void exchangeAF() {
-		byte temp = A;
-		A = A_alt;
-		A_alt = temp;
-
-		temp = F;
-		F = F_alt;
-		F_alt = temp;
+		if (flagsOp != FLAGS_READY) {
+			evaluateFlags();
+		}
+		af ^= BANK_SIZE;
 	}
 
 	/**
 	 * Intercambia el contenido de los registro DE con HL
 	 */
 	public void exchangeDEHL() {
-		byte temp = D;
-		D = H;
-		H = temp;
-
-		temp = E;
-		E = L;
-		L = temp;
+		short de = (short) PAIR.get(regs, bank + IDX_D);
+		PAIR.set(regs, bank + IDX_D, (short) PAIR.get(regs, bank + IDX_H));
+		PAIR.set(regs, bank + IDX_H, de);
 	}
 
 	/**
@@ -299,61 +523,105 @@ public class Z80 extends CPU {
 	 * Intercambia el contenido de todos los registros, menos el A y F, con sus alternativos
 	 */
 	public void exchangeX() {
-		byte temp = B;
-		B = B_alt;
-		B_alt = temp;
+		bank ^= BANK_SIZE;
+	}
 
-		temp = C;
-		C = C_alt;
-		C_alt = temp;
+	/**
+	 * Flags de una suma de 8 bits: acarreo del bit 8 del resultado, semiacarreo y desbordamiento por tabla y el resto de
+	 * flags del resultado
+	 * 
+	 * @param a acumulador antes de la suma
+	 * @param value operando
+	 * @param res resultado sin truncar
+	 * @return registro F
+	 */
+	private static byte flagsAdd(int a, int value, int res) {
+		int lookup = FlagTables.index(a, value, res);
+		return (byte) (res >> 8 & FlagTables.C | FlagTables.HALF_ADD[lookup & 0x07]
+				| FlagTables.OVERFLOW_ADD[lookup >> 4] | FlagTables.SZ53[res & 0xFF]);
+	}
 
-		temp = D;
-		D = D_alt;
-		D_alt = temp;
+	/**
+	 * Flags de una comparación: los de la resta salvo los flags 3 y 5, que se copian del operando no del resultado
+	 * 
+	 * @param a acumulador
+	 * @param value operando
+	 * @param res resultado de la resta sin truncar
+	 * @return registro F
+	 */
+	private static byte flagsCompare(int a, int value, int res) {
+		int lookup = FlagTables.index(a, value, res);
+		return (byte) (res >> 8 & FlagTables.C | FlagTables.N | FlagTables.HALF_SUB[lookup & 0x07]
+				| FlagTables.OVERFLOW_SUB[lookup >> 4] | FlagTables.SZ53[res & 0xFF] & (FlagTables.S | FlagTables.Z)
+				| value & (FlagTables.F5 | FlagTables.F3));
+	}
 
-		temp = E;
-		E = E_alt;
-		E_alt = temp;
+	/**
+	 * Flags de un decremento de 8 bits
+	 * 
+	 * @param carry acarreo anterior, que no cambia
+	 * @param value valor decrementado
+	 * @param res resultado
+	 * @return registro F
+	 */
+	private static byte flagsDec(int carry, int value, int res) {
+		return (byte) (carry | FlagTables.N | ((value & 0x0F) == 0 ? FlagTables.H : 0)
+				| ((byte) value == (byte) 0x80 ? FlagTables.PV : 0) | FlagTables.SZ53[res & 0xFF]);
+	}
 
-		temp = H;
-		H = H_alt;
-		H_alt = temp;
+	/**
+	 * Flags de un incremento de 8 bits
+	 * 
+	 * @param carry acarreo anterior, que no cambia
+	 * @param value valor incrementado
+	 * @param res resultado
+	 * @return registro F
+	 */
+	private static byte flagsInc(int carry, int value, int res) {
+		return (byte) (carry | ((res & 0x0F) == 0 ? FlagTables.H : 0)
+				| ((byte) value == (byte) 0x7F ? FlagTables.PV : 0) | FlagTables.SZ53[res & 0xFF]);
+	}
 
-		temp = L;
-		L = L_alt;
-		L_alt = temp;
+	/**
+	 * Flags de una resta de 8 bits: el préstamo queda en el bit 8 del resultado, semiacarreo y desbordamiento por tabla
+	 * 
+	 * @param a acumulador antes de la resta
+	 * @param value operando
+	 * @param res resultado sin truncar
+	 * @return registro F
+	 */
+	private static byte flagsSub(int a, int value, int res) {
+		int lookup = FlagTables.index(a, value, res);
+		return (byte) (res >> 8 & FlagTables.C | FlagTables.N | FlagTables.HALF_SUB[lookup & 0x07]
+				| FlagTables.OVERFLOW_SUB[lookup >> 4] | FlagTables.SZ53[res & 0xFF]);
 	}
 
 	/**
 	 * @return Registro A
 	 */
 	public byte getA() {
-		return A;
+		return regs[af + IDX_A];
 	}
 
 	/**
 	 * @return Registro B
 	 */
 	public byte getB() {
-		return B;
+		return regs[bank + IDX_B];
 	}
 
 	/**
 	 * @return Devuelve el contenido de los registros B y C en 16 bits (Registro BC)
 	 */
 	public int getBC() {
-		int B = getB() << 8 & 0x0000FF00;
-		int C = getC() & 0x000000FF;
-		int BC = B | C;
-
-		return BC;// & 0x0000FFFF;
+		return (short) PAIR.get(regs, bank + IDX_B) & 0x0000FFFF;
 	}
 
 	/**
 	 * @return Registro C
 	 */
 	public byte getC() {
-		return C;
+		return regs[bank + IDX_C];
 	}
 
 	/**
@@ -362,14 +630,27 @@ public class Z80 extends CPU {
 	 * @return Acarreo 1 o 0
 	 */
 	public byte getCarry() {
-		return (byte) ((F & 1 << FLAG_C) >> FLAG_C);
+		switch (flagsOp) {
+		case FLAGS_READY:
+			return (byte) ((regs[af + IDX_F] & 1 << FLAG_C) >> FLAG_C);
+		case FLAGS_ADD:
+		case FLAGS_SUB:
+		case FLAGS_CP:
+			/* Acarreo o préstamo en el bit 8 del resultado */
+			return (byte) (flagsResult >> 8 & 0x01);
+		case FLAGS_INC:
+		case FLAGS_DEC:
+			return (byte) flagsA;
+		default:
+			return 0;
+		}
 	}
 
 	/**
 	 * @return Registro D
 	 */
 	public byte getD() {
-		return D;
+		return regs[bank + IDX_D];
 	}
 
 	/**
@@ -491,25 +772,24 @@ public class Z80 extends CPU {
 	 * @return Devuelve el contenido de los registros D y E en 16 bits (Registro DE)
 	 */
 	public int getDE() {
-		int D = getD() << 8 & 0x0000FF00;
-		int E = getE() & 0x000000FF;
-		int DE = D | E;
-
-		return DE;// & 0x0000FFFF;
+		return (short) PAIR.get(regs, bank + IDX_D) & 0x0000FFFF;
 	}
 
 	/**
 	 * @return Registro E
 	 */
 	public byte getE() {
-		return E;
+		return regs[bank + IDX_E];
 	}
 
 	/**
 	 * @return Registro F
 	 */
 	public byte getF() {
-		return F;
+		if (flagsOp != FLAGS_READY) {
+			evaluateFlags();
+		}
+		return regs[af + IDX_F];
 	}
 
 	/**
@@ -519,25 +799,21 @@ public class Z80 extends CPU {
 	 * @return
 	 */
 	public boolean getFlag(int bitFlag) {
-		return ((F & 1 << bitFlag) >> bitFlag) != 0;
+		return ((getF() & 1 << bitFlag) >> bitFlag) != 0;
 	}
 
 	/**
 	 * @return Registro H
 	 */
 	public byte getH() {
-		return H;
+		return regs[bank + IDX_H];
 	}
 
 	/**
 	 * @return Devuelve el contenido de los registros H y L en 16 bits (Registro HL)
 	 */
 	public int getHL() {
-		int H = getH() << 8 & 0x0000FF00;
-		int L = getL() & 0x000000FF;
-		int HL = H | L;
-
-		return HL;// & 0x0000FFFF;
+		return (short) PAIR.get(regs, bank + IDX_H) & 0x0000FFFF;
 	}
 
 	/**
@@ -547,6 +823,68 @@ public class Z80 extends CPU {
 		return I;
 	}
 
+	/**
+	 * @return ciclos de reloj adelantados por la detección de bucles de espera
+	 */
+	public long getIdleCyclesSkipped() {
+		return idleLoops.getSkippedCycles();
+	}
+
+	/**
+	 * Resumen de las estadísticas de la detección de bucles de espera
+	 * 
+	 * @return
+	 */
+	public String getIdleStatistics() {
+		return "Idle loop skips: " + idleLoops.getSkips() + ", iterations: " + idleLoops.getSkippedIterations()
+				+ ", cycles: " + idleLoops.getSkippedCycles();
+	}
+
+	/**
+	 * @return latencia media en ciclos desde la activación de la línea INT hasta la aceptación
+	 */
+	public double getInterruptLatency() {
+		return acceptedInterrupts == 0 ? 0 : (double) totalLatency / acceptedInterrupts;
+	}
+
+	/**
+	 * @return número de accesos de I/O realizados
+	 */
+	public long getIOOperations() {
+		return ioOperations;
+	}
+
+	/**
+	 * @return modo de interrupción (IM 0, 1 o 2)
+	 */
+	public int getInterruptMode() {
+		return interruptMode;
+	}
+
+	/**
+	 * @return número de interrupciones aceptadas
+	 */
+	public long getInterruptsAccepted() {
+		return acceptedInterrupts;
+	}
+
+	/**
+	 * @return número de peticiones de interrupción que terminaron sin aceptarse
+	 */
+	public long getInterruptsMissed() {
+		return missedInterrupts;
+	}
+
+	/**
+	 * Resumen de las métricas de interrupciones
+	 * 
+	 * @return
+	 */
+	public String getInterruptStatistics() {
+		return "Accepted interrupts: " + acceptedInterrupts + ", missed: " + missedInterrupts + ", mean latency: "
+				+ getInterruptLatency() + ", max latency: " + maxLatency;
+	}
+
 	/**
 	 * @return Registro IX
 	 */
@@ -565,7 +903,14 @@ public class Z80 extends CPU {
 	 * @return Registro L
 	 */
 	public byte getL() {
-		return L;
+		return regs[bank + IDX_L];
+	}
+
+	/**
+	 * @return latencia máxima en ciclos desde la activación de la línea INT hasta la aceptación
+	 */
+	public long getMaxInterruptLatency() {
+		return maxLatency;
 	}
 
 	/**
@@ -584,6 +929,19 @@ public class Z80 extends CPU {
 		return (H | L);
 	}
 
+	/**
+	 * Iteraciones pendientes de una instrucción de repetición que se pueden ejecutar de una vez: las que caben en los
+	 * ciclos disponibles hasta el siguiente evento y sin traza
+	 * 
+	 * @param count iteraciones pendientes
+	 * @return iteraciones, al menos 1
+	 */
+	private int getRepeatIterations(int count) {
+		if (getTraceListener() != null)
+			return 1;
+		return Math.max(1, Math.min(count, getCycleBudget() / REPEAT_CYCLES));
+	}
+
 	/**
 	 * @return RAM Refresh Register
 	 */
@@ -598,6 +956,76 @@ public class Z80 extends CPU {
 		return ULA;
 	}
 
+	/**
+	 * HALT, con el PC tras la instrucción. La CPU queda detenida repitiendo NOP sin avanzar el PC hasta aceptar una
+	 * interrupción
+	 * <p>
+	 * Con ciclos disponibles hasta el siguiente evento ({@link #setCycleBudget(int)}) y sin traza, ejecuta de una vez
+	 * todos los NOP que quepan en esos ciclos con sus incrementos del registro R, por lo que el reloj avanza hasta el
+	 * siguiente evento en una sola instrucción.
+	 * <p>
+	 * El registro R sólo cuenta los ciclos M1 de estos NOP, el resto de instrucciones no lo incrementan.
+	 * 
+	 * @return ciclos del último NOP, los de los anteriores se añaden a la instrucción
+	 */
+	public byte halt() {
+		halted = true;
+		setPC(getPC() - 1);
+
+		int iterations = getTraceListener() != null ? 1 : Math.max(1, getCycleBudget() / HALT_CYCLES);
+		incrementR(iterations);
+		addExtraCycles((iterations - 1) * HALT_CYCLES);
+		return HALT_CYCLES;
+	}
+
+	/**
+	 * La línea INT se activa con el evento de interrupción y se desactiva a los 32 ciclos si no se ha aceptado
+	 */
+	@Override
+	public void handleEvent(int type, long time) {
+		switch (type) {
+		case Scheduler.EVENT_INT:
+			interruptTime = time;
+			setInterruptRequest(true);
+			getScheduler().schedule(time + INT_CYCLES, Scheduler.EVENT_INT_END);
+			break;
+		case Scheduler.EVENT_INT_END:
+			if (isInterruptRequest()) {
+				missedInterrupts++;
+				setInterruptRequest(false);
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Incrementa un byte estableciendo los flags
+	 * 
+	 * @param value Byte a incrementar
+	 * @return resultado
+	 */
+	public byte inc8(byte value) {
+		byte res = (byte) (value + (byte) 0x01);
+
+		/* Establecimiento de flags, el acarreo no cambia */
+		if (lazyFlags) {
+			deferFlags(FLAGS_INC, getCarry(), value, res);
+		} else {
+			regs[af + IDX_F] = flagsInc(regs[af + IDX_F] & FlagTables.C, value, res);
+		}
+
+		return res;
+	}
+
+	/**
+	 * Incrementa los 7 bits bajos del registro R, uno por cada ciclo M1. El bit 7 no cambia
+	 * 
+	 * @param count ciclos M1
+	 */
+	void incrementR(int count) {
+		R = (byte) (R & 0x80 | R + count & 0x7F);
+	}
+
 	/**
 	 * Inicialización de los parametros básicos del Z80
 	 * 
@@ -608,6 +1036,55 @@ public class Z80 extends CPU {
 		setHerz(3580000);
 		/* Se carga la tabla de instrucciones */
 		setInstructionMap(new Z80Map(this));
+		/* La línea INT la activan los eventos de interrupción del planificador */
+		getScheduler().setHandler(Scheduler.EVENT_INT, this);
+		getScheduler().setHandler(Scheduler.EVENT_INT_END, this);
+	}
+
+	/**
+	 * Iteración de INI/INIR, con el PC tras la instrucción. Lee del puerto BC en (HL) antes de decrementar B
+	 * <p>
+	 * En INIR, con ciclos disponibles hasta el siguiente evento ({@link #setCycleBudget(int)}) y sin traza, recibe de
+	 * la ULA todos los bytes que quepan en esos ciclos en una sola transferencia ({@link BlockIO}).
+	 * 
+	 * @param repeat repetición mientras B != 0
+	 * @return ciclos de la última iteración, los de las anteriores se añaden a la instrucción
+	 * @throws IllegalAddressException
+	 */
+	public byte inputBlock(boolean repeat) throws IllegalAddressException {
+		int hl = getHL();
+		int b = getB() & 0xFF;
+		int iterations = repeat ? getRepeatIterations(b == 0 ? 0x100 : b) : 1;
+
+		/* Sin dar la vuelta al espacio de direcciones ni sobrescribir la propia instrucción */
+		int instruction = getPC() - 2;
+		iterations = Math.min(iterations, 0x10000 - hl);
+		if (hl <= instruction + 1 && hl + iterations > instruction) {
+			iterations = instruction - hl;
+		}
+		iterations = Math.max(1, iterations);
+
+		if (iterations == 1) {
+			ioBuffer[0] = readIO(getBC());
+		} else {
+			ULA.readIO(getBC(), ioBuffer, 0, iterations);
+			ioOperations += iterations;
+		}
+		for (int idx = 0; idx < iterations; idx++) {
+			write8(hl + idx, ioBuffer[idx]);
+		}
+
+		setB((byte) (b - iterations));
+		setHL(hl + iterations);
+		/* Flags de la última iteración, con el byte recibido y C + 1 */
+		setBlockIOFlags(ioBuffer[iterations - 1], (ioBuffer[iterations - 1] & 0xFF) + (getC() + 1 & 0xFF));
+
+		addExtraCycles((iterations - 1) * REPEAT_CYCLES);
+		if (repeat && getB() != 0) {
+			setPC(getPC() - 2);
+			return REPEAT_CYCLES;
+		}
+		return LAST_CYCLES;
 	}
 
 	/**
@@ -616,10 +1093,7 @@ public class Z80 extends CPU {
 	 * @return
 	 */
 	public boolean isFlagCarry() {
-		if ((F & 0b00000001) == 0)
-			return false;
-		else
-			return true;
+		return getCarry() != 0;
 	}
 
 	/**
@@ -628,7 +1102,7 @@ public class Z80 extends CPU {
 	 * @return
 	 */
 	public boolean isFlagEven() {
-		if ((F & 0b00000100) == 0)
+		if ((getF() & 0b00000100) == 0)
 			return false;
 		else
 			return true;
@@ -640,7 +1114,7 @@ public class Z80 extends CPU {
 	 * @return
 	 */
 	public boolean isFlagNegative() {
-		if ((F & 0b10000000) == 0)
+		if ((getF() & 0b10000000) == 0)
 			return false;
 		else
 			return true;
@@ -652,7 +1126,7 @@ public class Z80 extends CPU {
 	 * @return
 	 */
 	public boolean isFlagOdd() {
-		if ((F & 0b00000100) == 0)
+		if ((getF() & 0b00000100) == 0)
 			return true;
 		else
 			return false;
@@ -664,7 +1138,7 @@ public class Z80 extends CPU {
 	 * @return
 	 */
 	public boolean isFlagPositive() {
-		if ((F & 0b10000000) == 0)
+		if ((getF() & 0b10000000) == 0)
 			return true;
 		else
 			return false;
@@ -676,12 +1150,19 @@ public class Z80 extends CPU {
 	 * @return
 	 */
 	public boolean isFlagZero() {
-		if ((F & 0b01000000) == 0)
+		if ((getF() & 0b01000000) == 0)
 			return false;
 		else
 			return true;
 	}
 
+	/**
+	 * @return CPU detenida por HALT
+	 */
+	public boolean isHalted() {
+		return halted;
+	}
+
 	/**
 	 * @return Flipflop IFF1
 	 */
@@ -696,6 +1177,84 @@ public class Z80 extends CPU {
 		return IFF2;
 	}
 
+	/**
+	 * @return true si los flags se calculan sólo cuando se leen
+	 */
+	public boolean isLazyFlags() {
+		return lazyFlags;
+	}
+
+	/**
+	 * Operación lógica OR del acumulador con un byte, el resultado queda en el acumulador
+	 * 
+	 * @param value Byte operando
+	 */
+	public void or8(byte value) {
+		byte res = (byte) (regs[af + IDX_A] | value);
+		regs[af + IDX_A] = res;
+
+		/* Establecimiento de flags */
+		if (lazyFlags) {
+			deferFlags(FLAGS_LOGIC, 0, 0, res);
+		} else {
+			regs[af + IDX_F] = FlagTables.SZ53P[res & 0xFF];
+		}
+	}
+
+	/**
+	 * Iteración de OUTI/OTIR, con el PC tras la instrucción. Decrementa B antes de escribir (HL) en el puerto BC
+	 * <p>
+	 * En OTIR, con ciclos disponibles hasta el siguiente evento ({@link #setCycleBudget(int)}) y sin traza, envía a la
+	 * ULA todos los bytes que quepan en esos ciclos en una sola transferencia ({@link BlockIO}).
+	 * 
+	 * @param repeat repetición mientras B != 0
+	 * @return ciclos de la última iteración, los de las anteriores se añaden a la instrucción
+	 * @throws IllegalAddressException
+	 */
+	public byte outputBlock(boolean repeat) throws IllegalAddressException {
+		int hl = getHL();
+		int b = getB() & 0xFF;
+		int iterations = repeat ? getRepeatIterations(b == 0 ? 0x100 : b) : 1;
+
+		/* Sin dar la vuelta al espacio de direcciones */
+		iterations = Math.max(1, Math.min(iterations, 0x10000 - hl));
+		for (int idx = 0; idx < iterations; idx++) {
+			ioBuffer[idx] = read8(hl + idx);
+		}
+
+		setB((byte) (b - 1));
+		if (iterations == 1) {
+			writeIO(getBC(), ioBuffer[0]);
+		} else {
+			ULA.writeIO(getBC(), ioBuffer, 0, iterations);
+			ioOperations += iterations;
+		}
+
+		setB((byte) (b - iterations));
+		setHL(hl + iterations);
+		/* Flags de la última iteración, con el byte enviado y L tras incrementar HL */
+		setBlockIOFlags(ioBuffer[iterations - 1], (ioBuffer[iterations - 1] & 0xFF) + (getL() & 0xFF));
+
+		addExtraCycles((iterations - 1) * REPEAT_CYCLES);
+		if (repeat && getB() != 0) {
+			setPC(getPC() - 2);
+			return REPEAT_CYCLES;
+		}
+		return LAST_CYCLES;
+	}
+
+	/**
+	 * Lee del Bus de IO que atiende la ULA
+	 * 
+	 * @param address
+	 * @return dato leído
+	 * @throws IllegalAddressException
+	 */
+	public byte readIO(int address) throws IllegalAddressException {
+		ioOperations++;
+		return ULA.readIO(address);
+	}
+
 	/**
 	 * Lee el contenido de la memoria apuntado en el registro IX con un desplazamiento d
 	 * 
@@ -718,32 +1277,121 @@ public class Z80 extends CPU {
 		return read8(getIY() + offset);
 	}
 
+	/**
+	 * Iteración de LDIR (step 1) o LDDR (step -1), con el PC tras la instrucción
+	 * <p>
+	 * Con ciclos disponibles hasta el siguiente evento ({@link #setCycleBudget(int)}), sin traza y con los bloques en
+	 * páginas de acceso directo de un {@link Bus16}, ejecuta de una vez todas las iteraciones que quepan en esos ciclos
+	 * con una sola copia. Registros, flags, PC y ciclos quedan como tras ejecutar las iteraciones por separado.
+	 * 
+	 * @param step 1 para LDIR, -1 para LDDR
+	 * @return ciclos de la última iteración, los de las anteriores se añaden a la instrucción
+	 * @throws IllegalAddressException
+	 */
+	public byte repeatTransfer(int step) throws IllegalAddressException {
+		int hl = getHL();
+		int de = getDE();
+		int bc = getBC();
+		int iterations = getRepeatIterations(bc == 0 ? 0x10000 : bc);
+
+		if (iterations > 1 && getDataBus() instanceof Bus16) {
+			/* Sin dar la vuelta al espacio de direcciones ni sobrescribir la propia instrucción */
+			int instruction = getPC() - 2;
+			if (step > 0) {
+				iterations = Math.min(iterations, 0x10000 - Math.max(hl, de));
+				if (de <= instruction + 1 && de + iterations > instruction) {
+					iterations = instruction - de;
+				}
+			} else {
+				iterations = Math.min(iterations, Math.min(hl, de) + 1);
+				if (de >= instruction && de - iterations < instruction + 1) {
+					iterations = de - instruction - 1;
+				}
+			}
+
+			if (iterations < 2 || !((Bus16) getDataBus()).copy(hl, de, iterations, step)) {
+				iterations = 1;
+			}
+		} else {
+			iterations = 1;
+		}
+
+		/* El último byte transferido queda en el destino, en una página de acceso directo si la copia ha sido en bloque */
+		byte data;
+		if (iterations == 1) {
+			data = read8(hl);
+			write8(de, data);
+		} else {
+			data = read8(de + (iterations - 1) * step);
+		}
+
+		setDE(de + iterations * step);
+		setHL(hl + iterations * step);
+		setBC(bc - iterations);
+		setTransferFlags(data);
+
+		addExtraCycles((iterations - 1) * REPEAT_CYCLES);
+		if (getBC() != 0) {
+			setPC(getPC() - 2);
+			return REPEAT_CYCLES;
+		}
+		return LAST_CYCLES;
+	}
+
 	/**
 	 * @param Registro A
 	 */
 	public void setA(byte a) {
-		A = a;
+		regs[af + IDX_A] = a;
 	}
 
 	/**
 	 * @param Registro B
 	 */
 	public void setB(byte b) {
-		B = b;
+		regs[bank + IDX_B] = b;
+	}
+
+	/**
+	 * @param bc Valor de 16 bits de los registros B y C (Registro BC)
+	 */
+	public void setBC(int bc) {
+		PAIR.set(regs, bank + IDX_B, (short) bc);
+	}
+
+	/**
+	 * Flags de INI y OUTI tras decrementar B: S, Z, F5 y F3 según B, N es el bit 7 del byte transferido, H y C el
+	 * acarreo de la suma k del byte con C + 1 (INI) o con L (OUTI) y P/V la paridad de (k & 7) xor B
+	 * 
+	 * @param data byte transferido
+	 * @param sum suma k
+	 */
+	private void setBlockIOFlags(byte data, int sum) {
+		int b = getB() & 0xFF;
+		int flags = FlagTables.SZ53[b] | (data < 0 ? FlagTables.N : 0) | (sum > 0xFF ? FlagTables.H | FlagTables.C : 0)
+				| FlagTables.SZ53P[sum & 0x07 ^ b] & FlagTables.PV;
+		setF((byte) flags);
 	}
 
 	/**
 	 * @param Registro C
 	 */
 	public void setC(byte c) {
-		C = c;
+		regs[bank + IDX_C] = c;
 	}
 
 	/**
 	 * @param Registro D
 	 */
 	public void setD(byte d) {
-		D = d;
+		regs[bank + IDX_D] = d;
+	}
+
+	/**
+	 * @param de Valor de 16 bits de los registros D y E (Registro DE)
+	 */
+	public void setDE(int de) {
+		PAIR.set(regs, bank + IDX_D, (short) de);
 	}
 
 	/**
@@ -758,16 +1406,13 @@ public class Z80 extends CPU {
 		/* Dependiendo del destino */
 		switch (mode) {
 		case REG_BC:
-			setB((byte) (data >> 8 & 0x000000FF));
-			setC((byte) (data & 0x000000FF));
+			setBC(data);
 			break;
 		case REG_DE:
-			setD((byte) (data >> 8 & 0x000000FF));
-			setE((byte) (data & 0x000000FF));
+			setDE(data);
 			break;
 		case REG_HL:
-			setH((byte) (data >> 8 & 0x000000FF));
-			setL((byte) (data & 0x000000FF));
+			setHL(data);
 			break;
 		case REG_SP:
 			setSP(data);
@@ -851,14 +1496,15 @@ public class Z80 extends CPU {
 	 * @param Registro E
 	 */
 	public void setE(byte e) {
-		E = e;
+		regs[bank + IDX_E] = e;
 	}
 
 	/**
 	 * @param Registro F
 	 */
 	public void setF(byte f) {
-		F = f;
+		flagsOp = FLAGS_READY;
+		regs[af + IDX_F] = f;
 	}
 
 	/**
@@ -868,8 +1514,11 @@ public class Z80 extends CPU {
 	 * @param value valor a asignar
 	 */
 	public void setFlag(int bitFlag, boolean value) {
-		F &= ~(1 << bitFlag); // Set bit a 0
-		F |= ((value ? 1 : 0) << bitFlag); // Set bit a 1 si es necesario
+		if (flagsOp != FLAGS_READY) {
+			evaluateFlags();
+		}
+		regs[af + IDX_F] &= ~(1 << bitFlag); // Set bit a 0
+		regs[af + IDX_F] |= ((value ? 1 : 0) << bitFlag); // Set bit a 1 si es necesario
 	}
 
 	/**
@@ -890,35 +1539,7 @@ public class Z80 extends CPU {
 	 * @param reg
 	 */
 	public void setFlagParity(byte reg) {
-
-		boolean res = true;
-
-		if ((reg & 0b10000000) != 0) {
-			res = res ^ true;
-		}
-		if ((reg & 0b01000000) != 0) {
-			res = res ^ true;
-		}
-		if ((reg & 0b00100000) != 0) {
-			res = res ^ true;
-		}
-		if ((reg & 0b00010000) != 0) {
-			res = res ^ true;
-		}
-		if ((reg & 0b00001000) != 0) {
-			res = res ^ true;
-		}
-		if ((reg & 0b00000100) != 0) {
-			res = res ^ true;
-		}
-		if ((reg & 0b00000010) != 0) {
-			res = res ^ true;
-		}
-		if ((reg & 0b10000001) != 0) {
-			res = res ^ true;
-		}
-
-		setFlag(Z80.FLAG_PV, res);
+		setFlag(Z80.FLAG_PV, (FlagTables.SZ53P[reg & 0xFF] & FlagTables.PV) != 0);
 	}
 
 	/**
@@ -946,7 +1567,14 @@ public class Z80 extends CPU {
 	 * @param Registro H
 	 */
 	public void setH(byte h) {
-		H = h;
+		regs[bank + IDX_H] = h;
+	}
+
+	/**
+	 * @param hl Valor de 16 bits de los registros H y L (Registro HL)
+	 */
+	public void setHL(int hl) {
+		PAIR.set(regs, bank + IDX_H, (short) hl);
 	}
 
 	/**
@@ -970,10 +1598,11 @@ public class Z80 extends CPU {
 		IFF2 = iFF2;
 	}
 
-	// Establece el modo de interrupción
+	/**
+	 * @param mode modo de interrupción (IM 0, 1 o 2)
+	 */
 	public void setInterruptMode(int mode) {
-		// TODO Auto-generated method stub
-
+		interruptMode = mode;
 	}
 
 	/**
@@ -994,7 +1623,20 @@ public class Z80 extends CPU {
 	 * @param Registro L
 	 */
 	public void setL(byte l) {
-		L = l;
+		regs[bank + IDX_L] = l;
+	}
+
+	/**
+	 * Activa o desactiva el cálculo perezoso de flags: las operaciones aritmético lógicas de 8 bits sólo guardan sus
+	 * operandos y el registro F se calcula cuando se lee
+	 * 
+	 * @param lazyFlags
+	 */
+	public void setLazyFlags(boolean lazyFlags) {
+		if (flagsOp != FLAGS_READY) {
+			evaluateFlags();
+		}
+		this.lazyFlags = lazyFlags;
 	}
 
 	/**
@@ -1004,6 +1646,21 @@ public class Z80 extends CPU {
 		R = r;
 	}
 
+	/**
+	 * Flags de LDI, LDD y sus repeticiones tras decrementar BC: H y N a 0 y P/V indica BC != 0. Sin documentar, F5 es el
+	 * bit 1 y F3 el bit 3 de la suma del byte transferido y A
+	 * 
+	 * @param data byte transferido
+	 */
+	public void setTransferFlags(byte data) {
+		int n = data + getA();
+		setFlag(FLAG_H, false);
+		setFlag(FLAG_N, false);
+		setFlag(FLAG_PV, getBC() != 0);
+		setFlag(FLAG_5, (n & 0x02) != 0);
+		setFlag(FLAG_3, (n & 0x08) != 0);
+	}
+
 	/**
 	 * @param Establece la ULA asociada al procesador
 	 */
@@ -1011,28 +1668,30 @@ public class Z80 extends CPU {
 		this.ULA = ula;
 	}
 
+	@Override
+	protected int skipIdleLoop(long clock, long deadline) {
+		return idleLoops.skip(clock, deadline);
+	}
+
 	/**
 	 * Resta un byte al acumulador teniendo en cuenta el flag de acarreo
-	 * Realmente hace una operaciones addWithCarry y cambia el falg de acarreo al final
-	 * a - b - c = a + ~b + 1 - c = a + ~b + !c
 	 * 
 	 * @param b Byte a restar al registro A
 	 * @param c Byte de acarreo
 	 * @return resultado (registro A)
 	 */
 	public byte subWithCarry(byte b, byte c) {
-		// Flag de Half Borrow
-		boolean bHalf = (A & 0x0F) < (b & 0x0F + c & 0x0F);
+		int a = regs[af + IDX_A] & 0xFF;
+		int res = a - (b & 0xFF) - c;
 
-		addWithCarry((byte) ~b, (byte) (1 - c));
-		F ^= (1 << FLAG_C); // Flip del flag de acarreo
-
-		setFlag(Z80.FLAG_H, bHalf);
-
-		// Flag de sustracción
-		setFlag(Z80.FLAG_N, true);
+		regs[af + IDX_A] = (byte) res;
+		if (lazyFlags) {
+			deferFlags(FLAGS_SUB, a, b, res);
+		} else {
+			regs[af + IDX_F] = flagsSub(a, b, res);
+		}
 
-		return A;
+		return regs[af + IDX_A];
 	}
 
 	/**
@@ -1048,8 +1707,8 @@ public class Z80 extends CPU {
 	public int subWithCarry16(int a, int b, byte c) {
 		int res = addWithCarry16(a, ~b & 0xFFFF, (byte) (1 - c));
 
-		F ^= (1 << FLAG_C); // Flip del flag de acarreo
-		F ^= (1 << FLAG_H); // Flip del flag de half carry
+		regs[af + IDX_F] ^= (1 << FLAG_C); // Flip del flag de acarreo
+		regs[af + IDX_F] ^= (1 << FLAG_H); // Flip del flag de half carry
 
 		// Flag de sustracción
 		setFlag(Z80.FLAG_N, true);
@@ -1068,6 +1727,7 @@ public class Z80 extends CPU {
 	 * @throws IllegalAddressException
 	 */
 	public void writeIO(int address, byte data) throws IllegalAddressException {
+		ioOperations++;
 		ULA.writeIO(address, data);
 	}
 
@@ -1093,4 +1753,21 @@ public class Z80 extends CPU {
 		write8(getIY() + getIR(), data);
 	}
 
+	/**
+	 * Operación lógica XOR del acumulador con un byte, el resultado queda en el acumulador
+	 * 
+	 * @param value Byte operando
+	 */
+	public void xor8(byte value) {
+		byte res = (byte) (regs[af + IDX_A] ^ value);
+		regs[af + IDX_A] = res;
+
+		/* Establecimiento de flags */
+		if (lazyFlags) {
+			deferFlags(FLAGS_LOGIC, 0, 0, res);
+		} else {
+			regs[af + IDX_F] = FlagTables.SZ53P[res & 0xFF];
+		}
+	}
+
 }
@@ -0,0 +1,182 @@
+package org.maox.emulator.cpu.z80;
+
+import org.maox.emulator.core.Bus16;
+import org.maox.emulator.core.BusComponent;
+import org.maox.emulator.exceptions.IllegalAddressException;
+import org.maox.emulator.exceptions.InstructionException;
+import org.maox.emulator.exceptions.UnknowInstructionException;
+
+/**
+ * Núcleo del Z80 con recompilación dinámica
+ * <p>
+ * Cuenta las veces que se entra en cada dirección y, al superar un umbral, compila el bloque básico que empieza en ella
+ * a bytecode ({@link BlockCompiler}). Las siguientes entradas ejecutan el bloque completo de una vez. Lo que no está
+ * compilado, la traza y los bloques invalidados se ejecutan con el {@link Z80FastCore}.
+ * <p>
+ * Los bloques se invalidan con las generaciones de escritura del {@link Bus16}: si una página del bloque se ha escrito
+ * se compara el bloque byte a byte con la memoria y, si ha cambiado, se descarta. Una dirección que se invalida
+ * demasiadas veces (código automodificable) deja de compilarse. El código en páginas contenidas no se compila, su
+ * contención la aplica el {@link Z80FastCore} en cada lectura.
+ * <p>
+ * Un bloque sólo se ejecuta si sus ciclos máximos caben en los disponibles hasta el siguiente evento y no hay una
+ * interrupción pedida; si no, se ejecuta instrucción a instrucción, de forma que los eventos y la aceptación de
+ * interrupciones ocurren en los mismos límites de instrucción que en el resto de núcleos.
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public class Z80Dynarec extends Z80FastCore {
+
+	/* Entradas en una dirección para compilar su bloque */
+	final public static int HOT_THRESHOLD = 32;
+	/* Invalidaciones de una dirección tras las que no se vuelve a compilar */
+	final public static int MAX_INVALIDATIONS = 4;
+	/* Marca de dirección que no se compila */
+	final private static int NOT_COMPILABLE = -1;
+
+	/* Compilador de bloques */
+	private BlockCompiler compiler;
+	/* Bus y sus generaciones de escritura, null si el bus no las proporciona */
+	private Bus16 bus;
+	private int[] generations;
+	/* Bloques compilados y contador de entradas de cada dirección */
+	private CompiledBlock[] blocks;
+	private int[] counters;
+	/* Invalidaciones de cada dirección */
+	private byte[] invalidations;
+
+	/* Estadísticas */
+	private long compiledBlocks = 0;
+	private long failedBlocks = 0;
+	private long blockExecutions = 0;
+	private long blockInstructions = 0;
+	private long invalidatedBlocks = 0;
+
+	/**
+	 * Constructor base
+	 * 
+	 * @throws UnknowInstructionException
+	 */
+	public Z80Dynarec() throws UnknowInstructionException {
+		super();
+		compiler = new BlockCompiler(this);
+		blocks = new CompiledBlock[0x10000];
+		counters = new int[0x10000];
+		invalidations = new byte[0x10000];
+	}
+
+	/**
+	 * Compila el bloque de una dirección caliente. Si no se puede compilar, porque la primera instrucción no se sabe
+	 * traducir o porque no se ha podido cargar la clase generada, la dirección no se vuelve a intentar compilar y se
+	 * ejecuta siempre con el {@link Z80FastCore}
+	 * 
+	 * @param pc dirección
+	 * @return bloque compilado o null si no se ha podido compilar
+	 * @throws IllegalAddressException
+	 */
+	private CompiledBlock compile(int pc) throws IllegalAddressException {
+		CompiledBlock block = compiler.compile(pc, bus);
+		if (block == null) {
+			counters[pc] = NOT_COMPILABLE;
+			failedBlocks++;
+		} else {
+			blocks[pc] = block;
+			compiledBlocks++;
+		}
+		return block;
+	}
+
+	@Override
+	public int fetch() throws InstructionException, IllegalAddressException {
+		int pc = getPC();
+		if (generations == null || getTraceListener() != null || (pc & 0xFFFF0000) != 0)
+			return super.fetch();
+
+		CompiledBlock block = blocks[pc];
+		if (block == null) {
+			if (counters[pc] == NOT_COMPILABLE || ++counters[pc] < HOT_THRESHOLD)
+				return super.fetch();
+			block = compile(pc);
+			if (block == null)
+				return super.fetch();
+		} else if (!block.isCurrent(generations) && !block.revalidate(bus, generations)) {
+			invalidate(pc);
+			return super.fetch();
+		}
+
+		/* Sin ejecución en bloque si puede pasar del siguiente evento o retrasar la aceptación de una interrupción */
+		int budget = getCycleBudget();
+		if (isInterruptRequest() || budget != 0 && block.cycles > budget)
+			return super.fetch();
+
+		blockExecutions++;
+		blockInstructions += block.instructions;
+		return block.code.execute(this);
+	}
+
+	/**
+	 * @return número de ejecuciones de bloques compilados
+	 */
+	public long getBlockExecutions() {
+		return blockExecutions;
+	}
+
+	/**
+	 * @return número de bloques compilados
+	 */
+	public long getCompiledBlocks() {
+		return compiledBlocks;
+	}
+
+	/**
+	 * @return número de direcciones calientes que no se han podido compilar
+	 */
+	public long getFailedBlocks() {
+		return failedBlocks;
+	}
+
+	/**
+	 * @return número de bloques invalidados por escrituras sobre su código
+	 */
+	public long getInvalidatedBlocks() {
+		return invalidatedBlocks;
+	}
+
+	/**
+	 * Resumen de las estadísticas de compilación
+	 * 
+	 * @return
+	 */
+	public String getStatistics() {
+		return "Compiled blocks: " + compiledBlocks + ", failed: " + failedBlocks + ", invalidated: " + invalidatedBlocks
+				+ ", executions: " + blockExecutions + ", instructions per block: "
+				+ (blockExecutions == 0 ? 0 : (float) blockInstructions / blockExecutions);
+	}
+
+	/**
+	 * Descarta el bloque de una dirección, que se volverá a compilar cuando vuelva a estar caliente salvo que se haya
+	 * invalidado demasiadas veces
+	 * 
+	 * @param pc dirección
+	 */
+	private void invalidate(int pc) {
+		blocks[pc] = null;
+		invalidatedBlocks++;
+		counters[pc] = ++invalidations[pc] < MAX_INVALIDATIONS ? 0 : NOT_COMPILABLE;
+	}
+
+	/**
+	 * Establece la memoria que se usará. Sólo se compila con un {@link Bus16}, que proporciona las generaciones de
+	 * escritura para invalidar los bloques
+	 */
+	@Override
+	public void setDataBus(BusComponent bus) {
+		super.setDataBus(bus);
+		this.bus = bus instanceof Bus16 ? (Bus16) bus : null;
+		generations = this.bus != null ? this.bus.getWriteGenerations() : null;
+		blocks = new CompiledBlock[0x10000];
+		counters = new int[0x10000];
+		invalidations = new byte[0x10000];
+	}
+
+}
@@ -0,0 +1,1972 @@
+package org.maox.emulator.cpu.z80;
+
+import org.maox.emulator.debug.Hex;
+import org.maox.emulator.debug.TraceListener;
+import org.maox.emulator.exceptions.IllegalAddressException;
+import org.maox.emulator.exceptions.InstructionException;
+import org.maox.emulator.exceptions.UnknowInstructionException;
+
+/**
+ * Núcleo rápido del procesador Zilog Z80
+ * <p>
+ * Interpreta cada tabla de códigos con un único switch que trabaja directamente sobre los registros, sin objetos
+ * instrucción ni llamadas virtuales por instrucción. Reproduce instrucción a instrucción el comportamiento del núcleo de
+ * referencia {@link Z80}, cuyo mapa de instrucciones se conserva para la traza y el desensamblado.
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public class Z80FastCore extends Z80 {
+
+	/**
+	 * Constructor base
+	 * 
+	 * @throws UnknowInstructionException
+	 */
+	public Z80FastCore() throws UnknowInstructionException {
+		super();
+	}
+
+	/**
+	 * Instrucciones con prefijo CB
+	 * 
+	 * @param pc dirección siguiente al código de instrucción
+	 * @return número de ciclos consumidos en la ejecución
+	 * @throws InstructionException
+	 * @throws IllegalAddressException
+	 */
+	private byte executeCB(int pc) throws InstructionException, IllegalAddressException {
+		int opcode = readOpcode(pc++) & 0x000000FF;
+		byte cycles;
+		int address;
+
+		switch (opcode) {
+		case 0xC0: /* SET 0, B */
+			regs[bank + IDX_B] |= 1 << 0;
+			cycles = 8;
+			break;
+		case 0xC1: /* SET 0, C */
+			regs[bank + IDX_C] |= 1 << 0;
+			cycles = 8;
+			break;
+		case 0xC2: /* SET 0, D */
+			regs[bank + IDX_D] |= 1 << 0;
+			cycles = 8;
+			break;
+		case 0xC3: /* SET 0, E */
+			regs[bank + IDX_E] |= 1 << 0;
+			cycles = 8;
+			break;
+		case 0xC4: /* SET 0, H */
+			regs[bank + IDX_H] |= 1 << 0;
+			cycles = 8;
+			break;
+		case 0xC5: /* SET 0, L */
+			regs[bank + IDX_L] |= 1 << 0;
+			cycles = 8;
+			break;
+		case 0xC6: /* SET 0, (HL) */
+			address = getHL();
+			write8(address, (byte) (read8(address) | 1 << 0));
+			cycles = 15;
+			break;
+		case 0xC7: /* SET 0, A */
+			regs[af + IDX_A] |= 1 << 0;
+			cycles = 8;
+			break;
+		case 0xC8: /* SET 1, B */
+			regs[bank + IDX_B] |= 1 << 1;
+			cycles = 8;
+			break;
+		case 0xC9: /* SET 1, C */
+			regs[bank + IDX_C] |= 1 << 1;
+			cycles = 8;
+			break;
+		case 0xCA: /* SET 1, D */
+			regs[bank + IDX_D] |= 1 << 1;
+			cycles = 8;
+			break;
+		case 0xCB: /* SET 1, E */
+			regs[bank + IDX_E] |= 1 << 1;
+			cycles = 8;
+			break;
+		case 0xCC: /* SET 1, H */
+			regs[bank + IDX_H] |= 1 << 1;
+			cycles = 8;
+			break;
+		case 0xCD: /* SET 1, L */
+			regs[bank + IDX_L] |= 1 << 1;
+			cycles = 8;
+			break;
+		case 0xCE: /* SET 1, (HL) */
+			address = getHL();
+			write8(address, (byte) (read8(address) | 1 << 1));
+			cycles = 15;
+			break;
+		case 0xCF: /* SET 1, A */
+			regs[af + IDX_A] |= 1 << 1;
+			cycles = 8;
+			break;
+		case 0xD0: /* SET 2, B */
+			regs[bank + IDX_B] |= 1 << 2;
+			cycles = 8;
+			break;
+		case 0xD1: /* SET 2, C */
+			regs[bank + IDX_C] |= 1 << 2;
+			cycles = 8;
+			break;
+		case 0xD2: /* SET 2, D */
+			regs[bank + IDX_D] |= 1 << 2;
+			cycles = 8;
+			break;
+		case 0xD3: /* SET 2, E */
+			regs[bank + IDX_E] |= 1 << 2;
+			cycles = 8;
+			break;
+		case 0xD4: /* SET 2, H */
+			regs[bank + IDX_H] |= 1 << 2;
+			cycles = 8;
+			break;
+		case 0xD5: /* SET 2, L */
+			regs[bank + IDX_L] |= 1 << 2;
+			cycles = 8;
+			break;
+		case 0xD6: /* SET 2, (HL) */
+			address = getHL();
+			write8(address, (byte) (read8(address) | 1 << 2));
+			cycles = 15;
+			break;
+		case 0xD7: /* SET 2, A */
+			regs[af + IDX_A] |= 1 << 2;
+			cycles = 8;
+			break;
+		case 0xD8: /* SET 3, B */
+			regs[bank + IDX_B] |= 1 << 3;
+			cycles = 8;
+			break;
+		case 0xD9: /* SET 3, C */
+			regs[bank + IDX_C] |= 1 << 3;
+			cycles = 8;
+			break;
+		case 0xDA: /* SET 3, D */
+			regs[bank + IDX_D] |= 1 << 3;
+			cycles = 8;
+			break;
+		case 0xDB: /* SET 3, E */
+			regs[bank + IDX_E] |= 1 << 3;
+			cycles = 8;
+			break;
+		case 0xDC: /* SET 3, H */
+			regs[bank + IDX_H] |= 1 << 3;
+			cycles = 8;
+			break;
+		case 0xDD: /* SET 3, L */
+			regs[bank + IDX_L] |= 1 << 3;
+			cycles = 8;
+			break;
+		case 0xDE: /* SET 3, (HL) */
+			address = getHL();
+			write8(address, (byte) (read8(address) | 1 << 3));
+			cycles = 15;
+			break;
+		case 0xDF: /* SET 3, A */
+			regs[af + IDX_A] |= 1 << 3;
+			cycles = 8;
+			break;
+		case 0xE0: /* SET 4, B */
+			regs[bank + IDX_B] |= 1 << 4;
+			cycles = 8;
+			break;
+		case 0xE1: /* SET 4, C */
+			regs[bank + IDX_C] |= 1 << 4;
+			cycles = 8;
+			break;
+		case 0xE2: /* SET 4, D */
+			regs[bank + IDX_D] |= 1 << 4;
+			cycles = 8;
+			break;
+		case 0xE3: /* SET 4, E */
+			regs[bank + IDX_E] |= 1 << 4;
+			cycles = 8;
+			break;
+		case 0xE4: /* SET 4, H */
+			regs[bank + IDX_H] |= 1 << 4;
+			cycles = 8;
+			break;
+		case 0xE5: /* SET 4, L */
+			regs[bank + IDX_L] |= 1 << 4;
+			cycles = 8;
+			break;
+		case 0xE6: /* SET 4, (HL) */
+			address = getHL();
+			write8(address, (byte) (read8(address) | 1 << 4));
+			cycles = 15;
+			break;
+		case 0xE7: /* SET 4, A */
+			regs[af + IDX_A] |= 1 << 4;
+			cycles = 8;
+			break;
+		case 0xE8: /* SET 5, B */
+			regs[bank + IDX_B] |= 1 << 5;
+			cycles = 8;
+			break;
+		case 0xE9: /* SET 5, C */
+			regs[bank + IDX_C] |= 1 << 5;
+			cycles = 8;
+			break;
+		case 0xEA: /* SET 5, D */
+			regs[bank + IDX_D] |= 1 << 5;
+			cycles = 8;
+			break;
+		case 0xEB: /* SET 5, E */
+			regs[bank + IDX_E] |= 1 << 5;
+			cycles = 8;
+			break;
+		case 0xEC: /* SET 5, H */
+			regs[bank + IDX_H] |= 1 << 5;
+			cycles = 8;
+			break;
+		case 0xED: /* SET 5, L */
+			regs[bank + IDX_L] |= 1 << 5;
+			cycles = 8;
+			break;
+		case 0xEE: /* SET 5, (HL) */
+			address = getHL();
+			write8(address, (byte) (read8(address) | 1 << 5));
+			cycles = 15;
+			break;
+		case 0xEF: /* SET 5, A */
+			regs[af + IDX_A] |= 1 << 5;
+			cycles = 8;
+			break;
+		case 0xF0: /* SET 6, B */
+			regs[bank + IDX_B] |= 1 << 6;
+			cycles = 8;
+			break;
+		case 0xF1: /* SET 6, C */
+			regs[bank + IDX_C] |= 1 << 6;
+			cycles = 8;
+			break;
+		case 0xF2: /* SET 6, D */
+			regs[bank + IDX_D] |= 1 << 6;
+			cycles = 8;
+			break;
+		case 0xF3: /* SET 6, E */
+			regs[bank + IDX_E] |= 1 << 6;
+			cycles = 8;
+			break;
+		case 0xF4: /* SET 6, H */
+			regs[bank + IDX_H] |= 1 << 6;
+			cycles = 8;
+			break;
+		case 0xF5: /* SET 6, L */
+			regs[bank + IDX_L] |= 1 << 6;
+			cycles = 8;
+			break;
+		case 0xF6: /* SET 6, (HL) */
+			address = getHL();
+			write8(address, (byte) (read8(address) | 1 << 6));
+			cycles = 15;
+			break;
+		case 0xF7: /* SET 6, A */
+			regs[af + IDX_A] |= 1 << 6;
+			cycles = 8;
+			break;
+		case 0xF8: /* SET 7, B */
+			regs[bank + IDX_B] |= 1 << 7;
+			cycles = 8;
+			break;
+		case 0xF9: /* SET 7, C */
+			regs[bank + IDX_C] |= 1 << 7;
+			cycles = 8;
+			break;
+		case 0xFA: /* SET 7, D */
+			regs[bank + IDX_D] |= 1 << 7;
+			cycles = 8;
+			break;
+		case 0xFB: /* SET 7, E */
+			regs[bank + IDX_E] |= 1 << 7;
+			cycles = 8;
+			break;
+		case 0xFC: /* SET 7, H */
+			regs[bank + IDX_H] |= 1 << 7;
+			cycles = 8;
+			break;
+		case 0xFD: /* SET 7, L */
+			regs[bank + IDX_L] |= 1 << 7;
+			cycles = 8;
+			break;
+		case 0xFE: /* SET 7, (HL) */
+			address = getHL();
+			write8(address, (byte) (read8(address) | 1 << 7));
+			cycles = 15;
+			break;
+		case 0xFF: /* SET 7, A */
+			regs[af + IDX_A] |= 1 << 7;
+			cycles = 8;
+			break;
+		default:
+			setPC(pc);
+			throw new UnknowInstructionException("opCode: " + Hex.byteToHex((byte) 0xCB));
+		}
+
+		setPC(pc);
+		return cycles;
+	}
+
+	/**
+	 * Instrucciones con prefijo ED
+	 * 
+	 * @param pc dirección siguiente al código de instrucción
+	 * @return número de ciclos consumidos en la ejecución
+	 * @throws InstructionException
+	 * @throws IllegalAddressException
+	 */
+	private byte executeED(int pc) throws InstructionException, IllegalAddressException {
+		int opcode = readOpcode(pc++) & 0x000000FF;
+		byte cycles;
+		int address;
+		byte data;
+
+		switch (opcode) {
+		case 0x41: /* OUT (C), B */
+			writeIO(getBC(), regs[bank + IDX_B]);
+			cycles = 12;
+			break;
+		case 0x42: /* SBC HL, BC */
+			setHL(subWithCarry16(getHL(), getBC(), getCarry()));
+			cycles = 15;
+			break;
+		case 0x43: /* LD (nn), BC */
+			address = read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00;
+			pc += 2;
+			write16(address, getBC());
+			cycles = 20;
+			break;
+		case 0x46: /* IM 0 */
+			setInterruptMode(INTERRUPT_MODE_0);
+			cycles = 8;
+			break;
+		case 0x47: /* LD I, A */
+			I = regs[af + IDX_A];
+			cycles = 9;
+			break;
+		case 0x49: /* OUT (C), C */
+			writeIO(getBC(), regs[bank + IDX_C]);
+			cycles = 12;
+			break;
+		case 0x4A: /* ADC HL, BC */
+			setHL(addWithCarry16(getHL(), getBC(), getCarry()));
+			cycles = 15;
+			break;
+		case 0x4B: /* LD BC, (nn) */
+			address = read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00;
+			pc += 2;
+			setBC(read16(address));
+			cycles = 10;
+			break;
+		case 0x4F: /* LD R, A */
+			R = regs[af + IDX_A];
+			cycles = 9;
+			break;
+		case 0x51: /* OUT (C), D */
+			writeIO(getBC(), regs[bank + IDX_D]);
+			cycles = 12;
+			break;
+		case 0x52: /* SBC HL, DE */
+			setHL(subWithCarry16(getHL(), getDE(), getCarry()));
+			cycles = 15;
+			break;
+		case 0x53: /* LD (nn), DE */
+			address = read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00;
+			pc += 2;
+			write16(address, getDE());
+			cycles = 20;
+			break;
+		case 0x56: /* IM 1 */
+			setInterruptMode(INTERRUPT_MODE_1);
+			cycles = 8;
+			break;
+		case 0x57: /* LD A, I */
+			regs[af + IDX_A] = I;
+			setFlagSigned(regs[af + IDX_A]);
+			setFlagZero(regs[af + IDX_A]);
+			setFlag(FLAG_H, false);
+			setFlag(FLAG_PV, isIFF2());
+			setFlag(FLAG_N, false);
+			setFlag35(regs[af + IDX_A]);
+			cycles = 13;
+			break;
+		case 0x59: /* OUT (C), E */
+			writeIO(getBC(), regs[bank + IDX_E]);
+			cycles = 12;
+			break;
+		case 0x5A: /* ADC HL, DE */
+			setHL(addWithCarry16(getHL(), getDE(), getCarry()));
+			cycles = 15;
+			break;
+		case 0x5B: /* LD DE, (nn) */
+			address = read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00;
+			pc += 2;
+			setDE(read16(address));
+			cycles = 10;
+			break;
+		case 0x5E: /* IM 2 */
+			setInterruptMode(INTERRUPT_MODE_2);
+			cycles = 8;
+			break;
+		case 0x5F: /* LD A, R */
+			regs[af + IDX_A] = R;
+			setFlagSigned(regs[af + IDX_A]);
+			setFlagZero(regs[af + IDX_A]);
+			setFlag(FLAG_H, false);
+			setFlag(FLAG_PV, isIFF2());
+			setFlag(FLAG_N, false);
+			setFlag35(regs[af + IDX_A]);
+			cycles = 13;
+			break;
+		case 0x61: /* OUT (C), H */
+			writeIO(getBC(), regs[bank + IDX_H]);
+			cycles = 12;
+			break;
+		case 0x62: /* SBC HL, HL */
+			setHL(subWithCarry16(getHL(), getHL(), getCarry()));
+			cycles = 15;
+			break;
+		case 0x63: /* LD (nn), HL */
+			address = read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00;
+			pc += 2;
+			write16(address, getHL());
+			cycles = 20;
+			break;
+		case 0x69: /* OUT (C), L */
+			writeIO(getBC(), regs[bank + IDX_L]);
+			cycles = 12;
+			break;
+		case 0x6A: /* ADC HL, HL */
+			setHL(addWithCarry16(getHL(), getHL(), getCarry()));
+			cycles = 15;
+			break;
+		case 0x6B: /* LD HL, (nn) */
+			address = read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00;
+			pc += 2;
+			setHL(read16(address));
+			cycles = 10;
+			break;
+		case 0x71: /* OUT (C), F */
+			setPC(pc);
+			throw new InstructionException("Read Mode not valid");
+		case 0x72: /* SBC HL, SP */
+			setHL(subWithCarry16(getHL(), getSP(), getCarry()));
+			cycles = 15;
+			break;
+		case 0x73: /* LD (nn), SP */
+			address = read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00;
+			pc += 2;
+			write16(address, getSP());
+			cycles = 20;
+			break;
+		case 0x79: /* OUT (C), A */
+			writeIO(getBC(), regs[af + IDX_A]);
+			cycles = 12;
+			break;
+		case 0x7A: /* ADC HL, SP */
+			setHL(addWithCarry16(getHL(), getSP(), getCarry()));
+			cycles = 15;
+			break;
+		case 0x7B: /* LD SP, (nn) */
+			address = read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00;
+			pc += 2;
+			setSP(read16(address));
+			cycles = 10;
+			break;
+		case 0xA0: /* LDI */
+			data = read8(getHL());
+			write8(getDE(), data);
+			setDE(getDE() + 1);
+			setHL(getHL() + 1);
+			setBC(getBC() - 1);
+			setTransferFlags(data);
+			cycles = 16;
+			break;
+		case 0xA1: /* CPI */
+			setPC(pc);
+			cycles = compareBlock(1, false);
+			pc = getPC();
+			break;
+		case 0xA2: /* INI */
+			setPC(pc);
+			cycles = inputBlock(false);
+			pc = getPC();
+			break;
+		case 0xA3: /* OUTI */
+			setPC(pc);
+			cycles = outputBlock(false);
+			pc = getPC();
+			break;
+		case 0xA8: /* LDD */
+			data = read8(getHL());
+			write8(getDE(), data);
+			setDE(getDE() - 1);
+			setHL(getHL() - 1);
+			setBC(getBC() - 1);
+			setTransferFlags(data);
+			cycles = 16;
+			break;
+		case 0xA9: /* CPD */
+			setPC(pc);
+			cycles = compareBlock(-1, false);
+			pc = getPC();
+			break;
+		case 0xB0: /* LDIR */
+			setPC(pc);
+			cycles = repeatTransfer(1);
+			pc = getPC();
+			break;
+		case 0xB1: /* CPIR */
+			setPC(pc);
+			cycles = compareBlock(1, true);
+			pc = getPC();
+			break;
+		case 0xB2: /* INIR */
+			setPC(pc);
+			cycles = inputBlock(true);
+			pc = getPC();
+			break;
+		case 0xB3: /* OTIR */
+			setPC(pc);
+			cycles = outputBlock(true);
+			pc = getPC();
+			break;
+		case 0xB8: /* LDDR */
+			setPC(pc);
+			cycles = repeatTransfer(-1);
+			pc = getPC();
+			break;
+		case 0xB9: /* CPDR */
+			setPC(pc);
+			cycles = compareBlock(-1, true);
+			pc = getPC();
+			break;
+		default:
+			setPC(pc);
+			throw new UnknowInstructionException("opCode: " + Hex.byteToHex((byte) 0xED));
+		}
+
+		setPC(pc);
+		return cycles;
+	}
+
+	/**
+	 * Instrucciones con prefijo DD (registro IX)
+	 * 
+	 * @param pc dirección siguiente al código de instrucción
+	 * @return número de ciclos consumidos en la ejecución
+	 * @throws InstructionException
+	 * @throws IllegalAddressException
+	 */
+	private byte executeDD(int pc) throws InstructionException, IllegalAddressException {
+		int opcode = readOpcode(pc++) & 0x000000FF;
+		byte cycles;
+		int address;
+		byte displacement;
+
+		switch (opcode) {
+		case 0x09: /* ADD IX, BC */
+			setIX(addWithCarry16(getIX(), getBC(), (byte) 0));
+			cycles = 15;
+			break;
+		case 0x19: /* ADD IX, DE */
+			setIX(addWithCarry16(getIX(), getDE(), (byte) 0));
+			cycles = 15;
+			break;
+		case 0x21: /* LD IX, nn */
+			setIX(read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00);
+			pc += 2;
+			cycles = 14;
+			break;
+		case 0x22: /* LD (nn), IX */
+			address = read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00;
+			pc += 2;
+			write16(address, getIX());
+			cycles = 20;
+			break;
+		case 0x23: /* INC IX */
+			setIX((short) (getIX() + 1));
+			cycles = 10;
+			break;
+		case 0x29: /* ADD IX, IX */
+			setIX(addWithCarry16(getIX(), getIX(), (byte) 0));
+			cycles = 15;
+			break;
+		case 0x2A: /* LD IX, (nn) */
+			address = read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00;
+			pc += 2;
+			setIX(read16(address));
+			cycles = 0;
+			break;
+		case 0x2B: /* DEC IX */
+			setIX((short) (getIX() - 1));
+			cycles = 10;
+			break;
+		case 0x34: /* INC (IX + d) */
+			address = getIX() + read8(pc++);
+			write8(address, inc8(read8(address)));
+			cycles = 23;
+			break;
+		case 0x35: /* DEC (IX + d) */
+			address = getIX() + read8(pc++);
+			write8(address, dec8(read8(address)));
+			cycles = 23;
+			break;
+		case 0x36: /* LD (IX + d), n */
+			displacement = read8(pc++);
+			write8(getIX() + displacement, read8(pc++));
+			cycles = 19;
+			break;
+		case 0x39: /* ADD IX, SP */
+			setIX(addWithCarry16(getIX(), getSP(), (byte) 0));
+			cycles = 15;
+			break;
+		case 0x46: /* LD B, (IX + d) */
+			regs[bank + IDX_B] = read8(getIX() + read8(pc++));
+			cycles = 19;
+			break;
+		case 0x4E: /* LD C, (IX + d) */
+			regs[bank + IDX_C] = read8(getIX() + read8(pc++));
+			cycles = 19;
+			break;
+		case 0x56: /* LD D, (IX + d) */
+			regs[bank + IDX_D] = read8(getIX() + read8(pc++));
+			cycles = 19;
+			break;
+		case 0x5E: /* LD E, (IX + d) */
+			regs[bank + IDX_E] = read8(getIX() + read8(pc++));
+			cycles = 19;
+			break;
+		case 0x66: /* LD H, (IX + d) */
+			regs[bank + IDX_H] = read8(getIX() + read8(pc++));
+			cycles = 19;
+			break;
+		case 0x6E: /* LD L, (IX + d) */
+			regs[bank + IDX_L] = read8(getIX() + read8(pc++));
+			cycles = 19;
+			break;
+		case 0x70: /* LD (IX + d), B */
+			write8(getIX() + read8(pc++), regs[bank + IDX_B]);
+			cycles = 19;
+			break;
+		case 0x71: /* LD (IX + d), C */
+			write8(getIX() + read8(pc++), regs[bank + IDX_C]);
+			cycles = 19;
+			break;
+		case 0x72: /* LD (IX + d), D */
+			write8(getIX() + read8(pc++), regs[bank + IDX_D]);
+			cycles = 19;
+			break;
+		case 0x73: /* LD (IX + d), E */
+			write8(getIX() + read8(pc++), regs[bank + IDX_E]);
+			cycles = 19;
+			break;
+		case 0x74: /* LD (IX + d), H */
+			write8(getIX() + read8(pc++), regs[bank + IDX_H]);
+			cycles = 19;
+			break;
+		case 0x75: /* LD (IX + d), L */
+			write8(getIX() + read8(pc++), regs[bank + IDX_L]);
+			cycles = 19;
+			break;
+		case 0x77: /* LD (IX + d), A */
+			write8(getIX() + read8(pc++), regs[af + IDX_A]);
+			cycles = 19;
+			break;
+		case 0x7E: /* LD A, (IX + d) */
+			regs[af + IDX_A] = read8(getIX() + read8(pc++));
+			cycles = 19;
+			break;
+		case 0x86: /* ADD (IX + d) */
+			addWithCarry(read8(getIX() + read8(pc++)), (byte) 0);
+			cycles = 19;
+			break;
+		case 0x8E: /* ADC (IX + d) */
+			addWithCarry(read8(getIX() + read8(pc++)), getCarry());
+			cycles = 19;
+			break;
+		case 0x96: /* SUB (IX + d) */
+			subWithCarry(read8(getIX() + read8(pc++)), (byte) 0);
+			cycles = 19;
+			break;
+		case 0x9E: /* SBC (IX + d) */
+			subWithCarry(read8(getIX() + read8(pc++)), getCarry());
+			cycles = 19;
+			break;
+		case 0xA6: /* AND (IX + d) */
+			and8(read8(getIX() + read8(pc++)));
+			cycles = 19;
+			break;
+		case 0xAE: /* XOR (IX + d) */
+			xor8(read8(getIX() + read8(pc++)));
+			cycles = 19;
+			break;
+		case 0xB6: /* OR (IX + d) */
+			or8(read8(getIX() + read8(pc++)));
+			cycles = 19;
+			break;
+		case 0xBE: /* CP (IX + d) */
+			cp8(read8(getIX() + read8(pc++)));
+			cycles = 19;
+			break;
+		case 0xE3: /* EX (SP), IX */
+			exchangeSP(REG_IX);
+			cycles = 23;
+			break;
+		case 0xE9: /* JP (IX) */
+			pc = getIX();
+			cycles = 8;
+			break;
+		case 0xF9: /* LD SP, IX */
+			setSP(getIX());
+			cycles = 10;
+			break;
+		case 0xCB:
+			return executeDDCB(pc);
+		default:
+			setPC(pc);
+			throw new UnknowInstructionException("opCode: " + Hex.byteToHex((byte) 0xDD));
+		}
+
+		setPC(pc);
+		return cycles;
+	}
+
+	/**
+	 * Instrucciones con prefijos DD CB, el desplazamiento va antes del código de instrucción
+	 * 
+	 * @param pc dirección del desplazamiento
+	 * @return número de ciclos consumidos en la ejecución
+	 * @throws InstructionException
+	 * @throws IllegalAddressException
+	 */
+	private byte executeDDCB(int pc) throws InstructionException, IllegalAddressException {
+		int address = getIX() + read8(pc++);
+		int opcode = read8(pc++) & 0x000000FF;
+		byte cycles;
+
+		switch (opcode) {
+		case 0xC6: /* SET 0, (IX + d) */
+			write8(address, (byte) (read8(address) | 1 << 0));
+			cycles = 23;
+			break;
+		case 0xCE: /* SET 1, (IX + d) */
+			write8(address, (byte) (read8(address) | 1 << 1));
+			cycles = 23;
+			break;
+		case 0xD6: /* SET 2, (IX + d) */
+			write8(address, (byte) (read8(address) | 1 << 2));
+			cycles = 23;
+			break;
+		case 0xDE: /* SET 3, (IX + d) */
+			write8(address, (byte) (read8(address) | 1 << 3));
+			cycles = 23;
+			break;
+		case 0xE6: /* SET 4, (IX + d) */
+			write8(address, (byte) (read8(address) | 1 << 4));
+			cycles = 23;
+			break;
+		case 0xEE: /* SET 5, (IX + d) */
+			write8(address, (byte) (read8(address) | 1 << 5));
+			cycles = 23;
+			break;
+		case 0xF6: /* SET 6, (IX + d) */
+			write8(address, (byte) (read8(address) | 1 << 6));
+			cycles = 23;
+			break;
+		case 0xFE: /* SET 7, (IX + d) */
+			write8(address, (byte) (read8(address) | 1 << 7));
+			cycles = 23;
+			break;
+		default:
+			setPC(pc);
+			throw new UnknowInstructionException("opCode: " + Hex.byteToHex((byte) 0xDD));
+		}
+
+		setPC(pc);
+		return cycles;
+	}
+
+	/**
+	 * Instrucciones con prefijo FD (registro IY)
+	 * 
+	 * @param pc dirección siguiente al código de instrucción
+	 * @return número de ciclos consumidos en la ejecución
+	 * @throws InstructionException
+	 * @throws IllegalAddressException
+	 */
+	private byte executeFD(int pc) throws InstructionException, IllegalAddressException {
+		int opcode = readOpcode(pc++) & 0x000000FF;
+		byte cycles;
+		int address;
+		byte displacement;
+
+		switch (opcode) {
+		case 0x09: /* ADD IY, BC */
+			setIY(addWithCarry16(getIY(), getBC(), (byte) 0));
+			cycles = 15;
+			break;
+		case 0x19: /* ADD IY, DE */
+			setIY(addWithCarry16(getIY(), getDE(), (byte) 0));
+			cycles = 15;
+			break;
+		case 0x21: /* LD IY, nn */
+			setIY(read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00);
+			pc += 2;
+			cycles = 14;
+			break;
+		case 0x22: /* LD (nn), IY */
+			address = read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00;
+			pc += 2;
+			write16(address, getIY());
+			cycles = 20;
+			break;
+		case 0x23: /* INC IY */
+			setIY((short) (getIY() + 1));
+			cycles = 10;
+			break;
+		case 0x29: /* ADD IY, IY */
+			setIY(addWithCarry16(getIY(), getIY(), (byte) 0));
+			cycles = 15;
+			break;
+		case 0x2A: /* LD IY, (nn) */
+			address = read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00;
+			pc += 2;
+			setIY(read16(address));
+			cycles = 0;
+			break;
+		case 0x2B: /* DEC IY */
+			setIY((short) (getIY() - 1));
+			cycles = 10;
+			break;
+		case 0x34: /* INC (IY + d) */
+			address = getIY() + read8(pc++);
+			write8(address, inc8(read8(address)));
+			cycles = 23;
+			break;
+		case 0x35: /* DEC (IY + d) */
+			address = getIY() + read8(pc++);
+			write8(address, dec8(read8(address)));
+			cycles = 23;
+			break;
+		case 0x36: /* LD (IY + d), n */
+			displacement = read8(pc++);
+			write8(getIY() + displacement, read8(pc++));
+			cycles = 19;
+			break;
+		case 0x39: /* ADD IY, SP */
+			setIY(addWithCarry16(getIY(), getSP(), (byte) 0));
+			cycles = 15;
+			break;
+		case 0x46: /* LD B, (IY + d) */
+			regs[bank + IDX_B] = read8(getIY() + read8(pc++));
+			cycles = 19;
+			break;
+		case 0x4E: /* LD C, (IY + d) */
+			regs[bank + IDX_C] = read8(getIY() + read8(pc++));
+			cycles = 19;
+			break;
+		case 0x56: /* LD D, (IY + d) */
+			regs[bank + IDX_D] = read8(getIY() + read8(pc++));
+			cycles = 19;
+			break;
+		case 0x5E: /* LD E, (IY + d) */
+			regs[bank + IDX_E] = read8(getIY() + read8(pc++));
+			cycles = 19;
+			break;
+		case 0x66: /* LD H, (IY + d) */
+			regs[bank + IDX_H] = read8(getIY() + read8(pc++));
+			cycles = 19;
+			break;
+		case 0x6E: /* LD L, (IY + d) */
+			regs[bank + IDX_L] = read8(getIY() + read8(pc++));
+			cycles = 19;
+			break;
+		case 0x70: /* LD (IY + d), B */
+			write8(getIY() + read8(pc++), regs[bank + IDX_B]);
+			cycles = 19;
+			break;
+		case 0x71: /* LD (IY + d), C */
+			write8(getIY() + read8(pc++), regs[bank + IDX_C]);
+			cycles = 19;
+			break;
+		case 0x72: /* LD (IY + d), D */
+			write8(getIY() + read8(pc++), regs[bank + IDX_D]);
+			cycles = 19;
+			break;
+		case 0x73: /* LD (IY + d), E */
+			write8(getIY() + read8(pc++), regs[bank + IDX_E]);
+			cycles = 19;
+			break;
+		case 0x74: /* LD (IY + d), H */
+			write8(getIY() + read8(pc++), regs[bank + IDX_H]);
+			cycles = 19;
+			break;
+		case 0x75: /* LD (IY + d), L */
+			write8(getIY() + read8(pc++), regs[bank + IDX_L]);
+			cycles = 19;
+			break;
+		case 0x77: /* LD (IY + d), A */
+			write8(getIY() + read8(pc++), regs[af + IDX_A]);
+			cycles = 19;
+			break;
+		case 0x7E: /* LD A, (IY + d) */
+			regs[af + IDX_A] = read8(getIY() + read8(pc++));
+			cycles = 19;
+			break;
+		case 0x86: /* ADD (IY + d) */
+			addWithCarry(read8(getIY() + read8(pc++)), (byte) 0);
+			cycles = 19;
+			break;
+		case 0x8E: /* ADC (IY + d) */
+			addWithCarry(read8(getIY() + read8(pc++)), getCarry());
+			cycles = 19;
+			break;
+		case 0x96: /* SUB (IY + d) */
+			subWithCarry(read8(getIY() + read8(pc++)), (byte) 0);
+			cycles = 19;
+			break;
+		case 0x9E: /* SBC (IY + d) */
+			subWithCarry(read8(getIY() + read8(pc++)), getCarry());
+			cycles = 19;
+			break;
+		case 0xA6: /* AND (IY + d) */
+			and8(read8(getIY() + read8(pc++)));
+			cycles = 19;
+			break;
+		case 0xAE: /* XOR (IY + d) */
+			xor8(read8(getIY() + read8(pc++)));
+			cycles = 19;
+			break;
+		case 0xB6: /* OR (IY + d) */
+			or8(read8(getIY() + read8(pc++)));
+			cycles = 19;
+			break;
+		case 0xBE: /* CP (IY + d) */
+			cp8(read8(getIY() + read8(pc++)));
+			cycles = 19;
+			break;
+		case 0xE3: /* EX (SP), IY */
+			exchangeSP(REG_IY);
+			cycles = 23;
+			break;
+		case 0xE9: /* JP (IY) */
+			pc = getIY();
+			cycles = 8;
+			break;
+		case 0xF9: /* LD SP, IY */
+			setSP(getIY());
+			cycles = 10;
+			break;
+		case 0xCB:
+			return executeFDCB(pc);
+		default:
+			setPC(pc);
+			throw new UnknowInstructionException("opCode: " + Hex.byteToHex((byte) 0xFD));
+		}
+
+		setPC(pc);
+		return cycles;
+	}
+
+	/**
+	 * Instrucciones con prefijos FD CB, el desplazamiento va antes del código de instrucción
+	 * 
+	 * @param pc dirección del desplazamiento
+	 * @return número de ciclos consumidos en la ejecución
+	 * @throws InstructionException
+	 * @throws IllegalAddressException
+	 */
+	private byte executeFDCB(int pc) throws InstructionException, IllegalAddressException {
+		int address = getIY() + read8(pc++);
+		int opcode = read8(pc++) & 0x000000FF;
+		byte cycles;
+
+		switch (opcode) {
+		case 0xC6: /* SET 0, (IY + d) */
+			write8(address, (byte) (read8(address) | 1 << 0));
+			cycles = 23;
+			break;
+		case 0xCE: /* SET 1, (IY + d) */
+			write8(address, (byte) (read8(address) | 1 << 1));
+			cycles = 23;
+			break;
+		case 0xD6: /* SET 2, (IY + d) */
+			write8(address, (byte) (read8(address) | 1 << 2));
+			cycles = 23;
+			break;
+		case 0xDE: /* SET 3, (IY + d) */
+			write8(address, (byte) (read8(address) | 1 << 3));
+			cycles = 23;
+			break;
+		case 0xE6: /* SET 4, (IY + d) */
+			write8(address, (byte) (read8(address) | 1 << 4));
+			cycles = 23;
+			break;
+		case 0xEE: /* SET 5, (IY + d) */
+			write8(address, (byte) (read8(address) | 1 << 5));
+			cycles = 23;
+			break;
+		case 0xF6: /* SET 6, (IY + d) */
+			write8(address, (byte) (read8(address) | 1 << 6));
+			cycles = 23;
+			break;
+		case 0xFE: /* SET 7, (IY + d) */
+			write8(address, (byte) (read8(address) | 1 << 7));
+			cycles = 23;
+			break;
+		default:
+			setPC(pc);
+			throw new UnknowInstructionException("opCode: " + Hex.byteToHex((byte) 0xFD));
+		}
+
+		setPC(pc);
+		return cycles;
+	}
+
+	@Override
+	public int fetch() throws InstructionException, IllegalAddressException {
+		/* Sólo con traza, el oyente puede precargar la instrucción para ver todos sus parametros */
+		TraceListener listener = getTraceListener();
+		if (listener != null) {
+			listener.instructionFetched(this, getPC());
+		}
+
+		setAccessCycles(0);
+		/* El PC se mantiene en una variable local durante la ejecución de la instrucción */
+		int pc = getPC();
+		int opcode = readOpcode(pc++) & 0x000000FF;
+		byte cycles;
+		int address;
+		byte displacement;
+		byte data;
+
+		switch (opcode) {
+		case 0x00: /* NOP */
+			cycles = 4;
+			break;
+		case 0x01: /* LD BC, nn */
+			setBC(read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00);
+			pc += 2;
+			cycles = 10;
+			break;
+		case 0x02: /* LD (BC), A */
+			write8(getBC(), regs[af + IDX_A]);
+			cycles = 7;
+			break;
+		case 0x03: /* INC BC */
+			setBC((short) (getBC() + 1));
+			cycles = 6;
+			break;
+		case 0x04: /* INC B */
+			regs[bank + IDX_B] = inc8(regs[bank + IDX_B]);
+			cycles = 4;
+			break;
+		case 0x05: /* DEC B */
+			regs[bank + IDX_B] = dec8(regs[bank + IDX_B]);
+			cycles = 4;
+			break;
+		case 0x06: /* LD B, n */
+			regs[bank + IDX_B] = read8(pc++);
+			cycles = 7;
+			break;
+		case 0x08: /* EX AF, AF' */
+			exchangeAF();
+			cycles = 4;
+			break;
+		case 0x09: /* ADD HL, BC */
+			setHL(addWithCarry16(getHL(), getBC(), (byte) 0));
+			cycles = 11;
+			break;
+		case 0x0A: /* LD A, (BC) */
+			regs[af + IDX_A] = read8(getBC());
+			cycles = 7;
+			break;
+		case 0x0B: /* DEC BC */
+			setBC((short) (getBC() - 1));
+			cycles = 6;
+			break;
+		case 0x0C: /* INC C */
+			regs[bank + IDX_C] = inc8(regs[bank + IDX_C]);
+			cycles = 4;
+			break;
+		case 0x0D: /* DEC C */
+			regs[bank + IDX_C] = dec8(regs[bank + IDX_C]);
+			cycles = 4;
+			break;
+		case 0x0E: /* LD C, n */
+			regs[bank + IDX_C] = read8(pc++);
+			cycles = 7;
+			break;
+		case 0x10: /* DJNZ e */
+			displacement = read8(pc++);
+			if (regs[bank + IDX_B] != 0) {
+				pc += displacement;
+				cycles = 13;
+			} else {
+				cycles = 8;
+			}
+			break;
+		case 0x11: /* LD DE, nn */
+			setDE(read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00);
+			pc += 2;
+			cycles = 10;
+			break;
+		case 0x12: /* LD (DE), A */
+			write8(getDE(), regs[af + IDX_A]);
+			cycles = 7;
+			break;
+		case 0x13: /* INC DE */
+			setDE((short) (getDE() + 1));
+			cycles = 6;
+			break;
+		case 0x14: /* INC D */
+			regs[bank + IDX_D] = inc8(regs[bank + IDX_D]);
+			cycles = 4;
+			break;
+		case 0x15: /* DEC D */
+			regs[bank + IDX_D] = dec8(regs[bank + IDX_D]);
+			cycles = 4;
+			break;
+		case 0x16: /* LD D, n */
+			regs[bank + IDX_D] = read8(pc++);
+			cycles = 7;
+			break;
+		case 0x18: /* JR e */
+			displacement = read8(pc++);
+			pc += displacement;
+			cycles = 12;
+			break;
+		case 0x19: /* ADD HL, DE */
+			setHL(addWithCarry16(getHL(), getDE(), (byte) 0));
+			cycles = 11;
+			break;
+		case 0x1A: /* LD A, (DE) */
+			regs[af + IDX_A] = read8(getDE());
+			cycles = 7;
+			break;
+		case 0x1B: /* DEC DE */
+			setDE((short) (getDE() - 1));
+			cycles = 6;
+			break;
+		case 0x1C: /* INC E */
+			regs[bank + IDX_E] = inc8(regs[bank + IDX_E]);
+			cycles = 4;
+			break;
+		case 0x1D: /* DEC E */
+			regs[bank + IDX_E] = dec8(regs[bank + IDX_E]);
+			cycles = 4;
+			break;
+		case 0x1E: /* LD E, n */
+			regs[bank + IDX_E] = read8(pc++);
+			cycles = 7;
+			break;
+		case 0x20: /* JR NZ, e */
+			displacement = read8(pc++);
+			if ((getF() & 0x40) == 0) {
+				pc += displacement;
+				cycles = 12;
+			} else {
+				cycles = 7;
+			}
+			break;
+		case 0x21: /* LD HL, nn */
+			setHL(read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00);
+			pc += 2;
+			cycles = 10;
+			break;
+		case 0x22: /* LD (nn), HL */
+			address = read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00;
+			pc += 2;
+			write16(address, getHL());
+			cycles = 16;
+			break;
+		case 0x23: /* INC HL */
+			setHL((short) (getHL() + 1));
+			cycles = 6;
+			break;
+		case 0x24: /* INC H */
+			regs[bank + IDX_H] = inc8(regs[bank + IDX_H]);
+			cycles = 4;
+			break;
+		case 0x25: /* DEC H */
+			regs[bank + IDX_H] = dec8(regs[bank + IDX_H]);
+			cycles = 4;
+			break;
+		case 0x26: /* LD H, n */
+			regs[bank + IDX_H] = read8(pc++);
+			cycles = 7;
+			break;
+		case 0x28: /* JR Z, e */
+			displacement = read8(pc++);
+			if ((getF() & 0x40) != 0) {
+				pc += displacement;
+				cycles = 12;
+			} else {
+				cycles = 7;
+			}
+			break;
+		case 0x29: /* ADD HL, HL */
+			setHL(addWithCarry16(getHL(), getHL(), (byte) 0));
+			cycles = 11;
+			break;
+		case 0x2A: /* LD HL, (nn) */
+			address = read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00;
+			pc += 2;
+			setHL(read16(address));
+			cycles = 16;
+			break;
+		case 0x2B: /* DEC HL */
+			setHL((short) (getHL() - 1));
+			cycles = 6;
+			break;
+		case 0x2C: /* INC L */
+			regs[bank + IDX_L] = inc8(regs[bank + IDX_L]);
+			cycles = 4;
+			break;
+		case 0x2D: /* DEC L */
+			regs[bank + IDX_L] = dec8(regs[bank + IDX_L]);
+			cycles = 4;
+			break;
+		case 0x2E: /* LD L, n */
+			regs[bank + IDX_L] = read8(pc++);
+			cycles = 7;
+			break;
+		case 0x30: /* JR NC, e */
+			displacement = read8(pc++);
+			if ((getF() & 0x01) == 0) {
+				pc += displacement;
+				cycles = 12;
+			} else {
+				cycles = 7;
+			}
+			break;
+		case 0x31: /* LD SP, nn */
+			setSP(read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00);
+			pc += 2;
+			cycles = 10;
+			break;
+		case 0x32: /* LD (nn), A */
+			address = read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00;
+			pc += 2;
+			write8(address, regs[af + IDX_A]);
+			cycles = 13;
+			break;
+		case 0x33: /* INC SP */
+			setSP((short) (getSP() + 1));
+			cycles = 6;
+			break;
+		case 0x34: /* INC (HL) */
+			address = getHL();
+			write8(address, inc8(read8(address)));
+			cycles = 11;
+			break;
+		case 0x35: /* DEC (HL) */
+			address = getHL();
+			write8(address, dec8(read8(address)));
+			cycles = 11;
+			break;
+		case 0x36: /* LD (HL), n */
+			write8(getHL(), read8(pc++));
+			cycles = 10;
+			break;
+		case 0x38: /* JR C, e */
+			displacement = read8(pc++);
+			if ((getF() & 0x01) != 0) {
+				pc += displacement;
+				cycles = 12;
+			} else {
+				cycles = 7;
+			}
+			break;
+		case 0x39: /* ADD HL, SP */
+			setHL(addWithCarry16(getHL(), getSP(), (byte) 0));
+			cycles = 11;
+			break;
+		case 0x3A: /* LD A, (nn) */
+			address = read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00;
+			pc += 2;
+			regs[af + IDX_A] = read8(address);
+			cycles = 13;
+			break;
+		case 0x3B: /* DEC SP */
+			setSP((short) (getSP() - 1));
+			cycles = 6;
+			break;
+		case 0x3C: /* INC A */
+			regs[af + IDX_A] = inc8(regs[af + IDX_A]);
+			cycles = 4;
+			break;
+		case 0x3D: /* DEC A */
+			regs[af + IDX_A] = dec8(regs[af + IDX_A]);
+			cycles = 4;
+			break;
+		case 0x3E: /* LD A, n */
+			regs[af + IDX_A] = read8(pc++);
+			cycles = 7;
+			break;
+		case 0x40: /* LD B, B */
+			cycles = 4;
+			break;
+		case 0x41: /* LD B, C */
+			regs[bank + IDX_B] = regs[bank + IDX_C];
+			cycles = 4;
+			break;
+		case 0x42: /* LD B, D */
+			regs[bank + IDX_B] = regs[bank + IDX_D];
+			cycles = 4;
+			break;
+		case 0x43: /* LD B, E */
+			regs[bank + IDX_B] = regs[bank + IDX_E];
+			cycles = 4;
+			break;
+		case 0x44: /* LD B, H */
+			regs[bank + IDX_B] = regs[bank + IDX_H];
+			cycles = 4;
+			break;
+		case 0x45: /* LD B, L */
+			regs[bank + IDX_B] = regs[bank + IDX_L];
+			cycles = 4;
+			break;
+		case 0x46: /* LD B, (HL) */
+			regs[bank + IDX_B] = read8(getHL());
+			cycles = 7;
+			break;
+		case 0x47: /* LD B, A */
+			regs[bank + IDX_B] = regs[af + IDX_A];
+			cycles = 4;
+			break;
+		case 0x48: /* LD C, B */
+			regs[bank + IDX_C] = regs[bank + IDX_B];
+			cycles = 4;
+			break;
+		case 0x49: /* LD C, C */
+			cycles = 4;
+			break;
+		case 0x4A: /* LD C, D */
+			regs[bank + IDX_C] = regs[bank + IDX_D];
+			cycles = 4;
+			break;
+		case 0x4B: /* LD C, E */
+			regs[bank + IDX_C] = regs[bank + IDX_E];
+			cycles = 4;
+			break;
+		case 0x4C: /* LD C, H */
+			regs[bank + IDX_C] = regs[bank + IDX_H];
+			cycles = 4;
+			break;
+		case 0x4D: /* LD C, L */
+			regs[bank + IDX_C] = regs[bank + IDX_L];
+			cycles = 4;
+			break;
+		case 0x4E: /* LD C, (HL) */
+			regs[bank + IDX_C] = read8(getHL());
+			cycles = 7;
+			break;
+		case 0x4F: /* LD C, A */
+			regs[bank + IDX_C] = regs[af + IDX_A];
+			cycles = 4;
+			break;
+		case 0x50: /* LD D, B */
+			regs[bank + IDX_D] = regs[bank + IDX_B];
+			cycles = 4;
+			break;
+		case 0x51: /* LD D, C */
+			regs[bank + IDX_D] = regs[bank + IDX_C];
+			cycles = 4;
+			break;
+		case 0x52: /* LD D, D */
+			cycles = 4;
+			break;
+		case 0x53: /* LD D, E */
+			regs[bank + IDX_D] = regs[bank + IDX_E];
+			cycles = 4;
+			break;
+		case 0x54: /* LD D, H */
+			regs[bank + IDX_D] = regs[bank + IDX_H];
+			cycles = 4;
+			break;
+		case 0x55: /* LD D, L */
+			regs[bank + IDX_D] = regs[bank + IDX_L];
+			cycles = 4;
+			break;
+		case 0x56: /* LD D, (HL) */
+			regs[bank + IDX_D] = read8(getHL());
+			cycles = 7;
+			break;
+		case 0x57: /* LD D, A */
+			regs[bank + IDX_D] = regs[af + IDX_A];
+			cycles = 4;
+			break;
+		case 0x58: /* LD E, B */
+			regs[bank + IDX_E] = regs[bank + IDX_B];
+			cycles = 4;
+			break;
+		case 0x59: /* LD E, C */
+			regs[bank + IDX_E] = regs[bank + IDX_C];
+			cycles = 4;
+			break;
+		case 0x5A: /* LD E, D */
+			regs[bank + IDX_E] = regs[bank + IDX_D];
+			cycles = 4;
+			break;
+		case 0x5B: /* LD E, E */
+			cycles = 4;
+			break;
+		case 0x5C: /* LD E, H */
+			regs[bank + IDX_E] = regs[bank + IDX_H];
+			cycles = 4;
+			break;
+		case 0x5D: /* LD E, L */
+			regs[bank + IDX_E] = regs[bank + IDX_L];
+			cycles = 4;
+			break;
+		case 0x5E: /* LD E, (HL) */
+			regs[bank + IDX_E] = read8(getHL());
+			cycles = 7;
+			break;
+		case 0x5F: /* LD E, A */
+			regs[bank + IDX_E] = regs[af + IDX_A];
+			cycles = 4;
+			break;
+		case 0x60: /* LD H, B */
+			regs[bank + IDX_H] = regs[bank + IDX_B];
+			cycles = 4;
+			break;
+		case 0x61: /* LD H, C */
+			regs[bank + IDX_H] = regs[bank + IDX_C];
+			cycles = 4;
+			break;
+		case 0x62: /* LD H, D */
+			regs[bank + IDX_H] = regs[bank + IDX_D];
+			cycles = 4;
+			break;
+		case 0x63: /* LD H, E */
+			regs[bank + IDX_H] = regs[bank + IDX_E];
+			cycles = 4;
+			break;
+		case 0x64: /* LD H, H */
+			cycles = 4;
+			break;
+		case 0x65: /* LD H, L */
+			regs[bank + IDX_H] = regs[bank + IDX_L];
+			cycles = 4;
+			break;
+		case 0x66: /* LD H, (HL) */
+			regs[bank + IDX_H] = read8(getHL());
+			cycles = 7;
+			break;
+		case 0x67: /* LD H, A */
+			regs[bank + IDX_H] = regs[af + IDX_A];
+			cycles = 4;
+			break;
+		case 0x68: /* LD L, B */
+			regs[bank + IDX_L] = regs[bank + IDX_B];
+			cycles = 4;
+			break;
+		case 0x69: /* LD L, C */
+			regs[bank + IDX_L] = regs[bank + IDX_C];
+			cycles = 4;
+			break;
+		case 0x6A: /* LD L, D */
+			regs[bank + IDX_L] = regs[bank + IDX_D];
+			cycles = 4;
+			break;
+		case 0x6B: /* LD L, E */
+			regs[bank + IDX_L] = regs[bank + IDX_E];
+			cycles = 4;
+			break;
+		case 0x6C: /* LD L, H */
+			regs[bank + IDX_L] = regs[bank + IDX_H];
+			cycles = 4;
+			break;
+		case 0x6D: /* LD L, L */
+			cycles = 4;
+			break;
+		case 0x6E: /* LD L, (HL) */
+			regs[bank + IDX_L] = read8(getHL());
+			cycles = 7;
+			break;
+		case 0x6F: /* LD L, A */
+			regs[bank + IDX_L] = regs[af + IDX_A];
+			cycles = 4;
+			break;
+		case 0x70: /* LD (HL), B */
+			write8(getHL(), regs[bank + IDX_B]);
+			cycles = 7;
+			break;
+		case 0x71: /* LD (HL), C */
+			write8(getHL(), regs[bank + IDX_C]);
+			cycles = 7;
+			break;
+		case 0x72: /* LD (HL), D */
+			write8(getHL(), regs[bank + IDX_D]);
+			cycles = 7;
+			break;
+		case 0x73: /* LD (HL), E */
+			write8(getHL(), regs[bank + IDX_E]);
+			cycles = 7;
+			break;
+		case 0x74: /* LD (HL), H */
+			write8(getHL(), regs[bank + IDX_H]);
+			cycles = 7;
+			break;
+		case 0x75: /* LD (HL), L */
+			write8(getHL(), regs[bank + IDX_L]);
+			cycles = 7;
+			break;
+		case 0x76: /* HALT */
+			setPC(pc);
+			/* Puede avanzar de una vez hasta el siguiente evento */
+			return halt() + takeExtraCycles();
+		case 0x77: /* LD (HL), A */
+			write8(getHL(), regs[af + IDX_A]);
+			cycles = 7;
+			break;
+		case 0x78: /* LD A, B */
+			regs[af + IDX_A] = regs[bank + IDX_B];
+			cycles = 4;
+			break;
+		case 0x79: /* LD A, C */
+			regs[af + IDX_A] = regs[bank + IDX_C];
+			cycles = 4;
+			break;
+		case 0x7A: /* LD A, D */
+			regs[af + IDX_A] = regs[bank + IDX_D];
+			cycles = 4;
+			break;
+		case 0x7B: /* LD A, E */
+			regs[af + IDX_A] = regs[bank + IDX_E];
+			cycles = 4;
+			break;
+		case 0x7C: /* LD A, H */
+			regs[af + IDX_A] = regs[bank + IDX_H];
+			cycles = 4;
+			break;
+		case 0x7D: /* LD A, L */
+			regs[af + IDX_A] = regs[bank + IDX_L];
+			cycles = 4;
+			break;
+		case 0x7E: /* LD A, (HL) */
+			regs[af + IDX_A] = read8(getHL());
+			cycles = 7;
+			break;
+		case 0x7F: /* LD A, A */
+			cycles = 4;
+			break;
+		case 0x80: /* ADD B */
+			addWithCarry(regs[bank + IDX_B], (byte) 0);
+			cycles = 4;
+			break;
+		case 0x81: /* ADD C */
+			addWithCarry(regs[bank + IDX_C], (byte) 0);
+			cycles = 4;
+			break;
+		case 0x82: /* ADD D */
+			addWithCarry(regs[bank + IDX_D], (byte) 0);
+			cycles = 4;
+			break;
+		case 0x83: /* ADD E */
+			addWithCarry(regs[bank + IDX_E], (byte) 0);
+			cycles = 4;
+			break;
+		case 0x84: /* ADD H */
+			addWithCarry(regs[bank + IDX_H], (byte) 0);
+			cycles = 4;
+			break;
+		case 0x85: /* ADD L */
+			addWithCarry(regs[bank + IDX_L], (byte) 0);
+			cycles = 4;
+			break;
+		case 0x86: /* ADD (HL) */
+			addWithCarry(read8(getHL()), (byte) 0);
+			cycles = 7;
+			break;
+		case 0x87: /* ADD A */
+			addWithCarry(regs[af + IDX_A], (byte) 0);
+			cycles = 4;
+			break;
+		case 0x88: /* ADC B */
+			addWithCarry(regs[bank + IDX_B], getCarry());
+			cycles = 4;
+			break;
+		case 0x89: /* ADC C */
+			addWithCarry(regs[bank + IDX_C], getCarry());
+			cycles = 4;
+			break;
+		case 0x8A: /* ADC D */
+			addWithCarry(regs[bank + IDX_D], getCarry());
+			cycles = 4;
+			break;
+		case 0x8B: /* ADC E */
+			addWithCarry(regs[bank + IDX_E], getCarry());
+			cycles = 4;
+			break;
+		case 0x8C: /* ADC H */
+			addWithCarry(regs[bank + IDX_H], getCarry());
+			cycles = 4;
+			break;
+		case 0x8D: /* ADC L */
+			addWithCarry(regs[bank + IDX_L], getCarry());
+			cycles = 4;
+			break;
+		case 0x8E: /* ADC (HL) */
+			addWithCarry(read8(getHL()), getCarry());
+			cycles = 7;
+			break;
+		case 0x8F: /* ADC A */
+			addWithCarry(regs[af + IDX_A], getCarry());
+			cycles = 4;
+			break;
+		case 0x90: /* SUB B */
+			subWithCarry(regs[bank + IDX_B], (byte) 0);
+			cycles = 4;
+			break;
+		case 0x91: /* SUB C */
+			subWithCarry(regs[bank + IDX_C], (byte) 0);
+			cycles = 4;
+			break;
+		case 0x92: /* SUB D */
+			subWithCarry(regs[bank + IDX_D], (byte) 0);
+			cycles = 4;
+			break;
+		case 0x93: /* SUB E */
+			subWithCarry(regs[bank + IDX_E], (byte) 0);
+			cycles = 4;
+			break;
+		case 0x94: /* SUB H */
+			subWithCarry(regs[bank + IDX_H], (byte) 0);
+			cycles = 4;
+			break;
+		case 0x95: /* SUB L */
+			subWithCarry(regs[bank + IDX_L], (byte) 0);
+			cycles = 4;
+			break;
+		case 0x96: /* SUB (HL) */
+			subWithCarry(read8(getHL()), (byte) 0);
+			cycles = 7;
+			break;
+		case 0x97: /* SUB A */
+			subWithCarry(regs[af + IDX_A], (byte) 0);
+			cycles = 4;
+			break;
+		case 0x98: /* SBC B */
+			subWithCarry(regs[bank + IDX_B], getCarry());
+			cycles = 4;
+			break;
+		case 0x99: /* SBC C */
+			subWithCarry(regs[bank + IDX_C], getCarry());
+			cycles = 4;
+			break;
+		case 0x9A: /* SBC D */
+			subWithCarry(regs[bank + IDX_D], getCarry());
+			cycles = 4;
+			break;
+		case 0x9B: /* SBC E */
+			subWithCarry(regs[bank + IDX_E], getCarry());
+			cycles = 4;
+			break;
+		case 0x9C: /* SBC H */
+			subWithCarry(regs[bank + IDX_H], getCarry());
+			cycles = 4;
+			break;
+		case 0x9D: /* SBC L */
+			subWithCarry(regs[bank + IDX_L], getCarry());
+			cycles = 4;
+			break;
+		case 0x9E: /* SBC (HL) */
+			subWithCarry(read8(getHL()), getCarry());
+			cycles = 7;
+			break;
+		case 0x9F: /* SBC A */
+			subWithCarry(regs[af + IDX_A], getCarry());
+			cycles = 4;
+			break;
+		case 0xA0: /* AND B */
+			and8(regs[bank + IDX_B]);
+			cycles = 4;
+			break;
+		case 0xA1: /* AND C */
+			and8(regs[bank + IDX_C]);
+			cycles = 4;
+			break;
+		case 0xA2: /* AND D */
+			and8(regs[bank + IDX_D]);
+			cycles = 4;
+			break;
+		case 0xA3: /* AND E */
+			and8(regs[bank + IDX_E]);
+			cycles = 4;
+			break;
+		case 0xA4: /* AND H */
+			and8(regs[bank + IDX_H]);
+			cycles = 4;
+			break;
+		case 0xA5: /* AND L */
+			and8(regs[bank + IDX_L]);
+			cycles = 4;
+			break;
+		case 0xA6: /* AND (HL) */
+			and8(read8(getHL()));
+			cycles = 7;
+			break;
+		case 0xA7: /* AND A */
+			and8(regs[af + IDX_A]);
+			cycles = 4;
+			break;
+		case 0xA8: /* XOR B */
+			xor8(regs[bank + IDX_B]);
+			cycles = 4;
+			break;
+		case 0xA9: /* XOR C */
+			xor8(regs[bank + IDX_C]);
+			cycles = 4;
+			break;
+		case 0xAA: /* XOR D */
+			xor8(regs[bank + IDX_D]);
+			cycles = 4;
+			break;
+		case 0xAB: /* XOR E */
+			xor8(regs[bank + IDX_E]);
+			cycles = 4;
+			break;
+		case 0xAC: /* XOR H */
+			xor8(regs[bank + IDX_H]);
+			cycles = 4;
+			break;
+		case 0xAD: /* XOR L */
+			xor8(regs[bank + IDX_L]);
+			cycles = 4;
+			break;
+		case 0xAE: /* XOR (HL) */
+			xor8(read8(getHL()));
+			cycles = 7;
+			break;
+		case 0xAF: /* XOR A */
+			xor8(regs[af + IDX_A]);
+			cycles = 4;
+			break;
+		case 0xB0: /* OR B */
+			or8(regs[bank + IDX_B]);
+			cycles = 4;
+			break;
+		case 0xB1: /* OR C */
+			or8(regs[bank + IDX_C]);
+			cycles = 4;
+			break;
+		case 0xB2: /* OR D */
+			or8(regs[bank + IDX_D]);
+			cycles = 4;
+			break;
+		case 0xB3: /* OR E */
+			or8(regs[bank + IDX_E]);
+			cycles = 4;
+			break;
+		case 0xB4: /* OR H */
+			or8(regs[bank + IDX_H]);
+			cycles = 4;
+			break;
+		case 0xB5: /* OR L */
+			or8(regs[bank + IDX_L]);
+			cycles = 4;
+			break;
+		case 0xB6: /* OR (HL) */
+			or8(read8(getHL()));
+			cycles = 7;
+			break;
+		case 0xB7: /* OR A */
+			or8(regs[af + IDX_A]);
+			cycles = 4;
+			break;
+		case 0xB8: /* CP B */
+			cp8(regs[bank + IDX_B]);
+			cycles = 4;
+			break;
+		case 0xB9: /* CP C */
+			cp8(regs[bank + IDX_C]);
+			cycles = 4;
+			break;
+		case 0xBA: /* CP D */
+			cp8(regs[bank + IDX_D]);
+			cycles = 4;
+			break;
+		case 0xBB: /* CP E */
+			cp8(regs[bank + IDX_E]);
+			cycles = 4;
+			break;
+		case 0xBC: /* CP H */
+			cp8(regs[bank + IDX_H]);
+			cycles = 4;
+			break;
+		case 0xBD: /* CP L */
+			cp8(regs[bank + IDX_L]);
+			cycles = 4;
+			break;
+		case 0xBE: /* CP (HL) */
+			cp8(read8(getHL()));
+			cycles = 7;
+			break;
+		case 0xBF: /* CP A */
+			cp8(regs[af + IDX_A]);
+			cycles = 4;
+			break;
+		case 0xC2: /* JP NZ, nn */
+			address = read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00;
+			pc += 2;
+			if ((getF() & 0x40) == 0) {
+				pc = address;
+			}
+			cycles = 10;
+			break;
+		case 0xC3: /* JP nn */
+			pc = read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00;
+			cycles = 10;
+			break;
+		case 0xC6: /* ADD n */
+			addWithCarry(read8(pc++), (byte) 0);
+			cycles = 7;
+			break;
+		case 0xCA: /* JP Z, nn */
+			address = read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00;
+			pc += 2;
+			if ((getF() & 0x40) != 0) {
+				pc = address;
+			}
+			cycles = 10;
+			break;
+		case 0xCE: /* ADC n */
+			addWithCarry(read8(pc++), getCarry());
+			cycles = 7;
+			break;
+		case 0xD2: /* JP NC, nn */
+			address = read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00;
+			pc += 2;
+			if ((getF() & 0x01) == 0) {
+				pc = address;
+			}
+			cycles = 10;
+			break;
+		case 0xD3: /* OUT (n), A */
+			data = read8(pc++);
+			writeIO(regs[af + IDX_A] << 8 | data, regs[af + IDX_A]);
+			cycles = 11;
+			break;
+		case 0xD6: /* SUB n */
+			subWithCarry(read8(pc++), (byte) 0);
+			cycles = 7;
+			break;
+		case 0xD9: /* EXX */
+			exchangeX();
+			cycles = 4;
+			break;
+		case 0xDA: /* JP C, nn */
+			address = read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00;
+			pc += 2;
+			if ((getF() & 0x01) != 0) {
+				pc = address;
+			}
+			cycles = 10;
+			break;
+		case 0xDE: /* SBC n */
+			subWithCarry(read8(pc++), getCarry());
+			cycles = 7;
+			break;
+		case 0xE2: /* JP PO, nn */
+			address = read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00;
+			pc += 2;
+			if ((getF() & 0x04) == 0) {
+				pc = address;
+			}
+			cycles = 10;
+			break;
+		case 0xE3: /* EX (SP), HL */
+			exchangeSP(REG_HL);
+			cycles = 23;
+			break;
+		case 0xE6: /* AND n */
+			and8(read8(pc++));
+			cycles = 7;
+			break;
+		case 0xE9: /* JP (HL) */
+			pc = getHL();
+			cycles = 4;
+			break;
+		case 0xEA: /* JP PE, nn */
+			address = read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00;
+			pc += 2;
+			if ((getF() & 0x04) != 0) {
+				pc = address;
+			}
+			cycles = 10;
+			break;
+		case 0xEB: /* EX DE, HL */
+			exchangeDEHL();
+			cycles = 4;
+			break;
+		case 0xEE: /* XOR n */
+			xor8(read8(pc++));
+			cycles = 7;
+			break;
+		case 0xF2: /* JP P, nn */
+			address = read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00;
+			pc += 2;
+			if ((getF() & 0x80) == 0) {
+				pc = address;
+			}
+			cycles = 10;
+			break;
+		case 0xF3: /* DI */
+			setIFF1(false);
+			setIFF2(false);
+			cycles = 4;
+			break;
+		case 0xF6: /* OR n */
+			or8(read8(pc++));
+			cycles = 7;
+			break;
+		case 0xF9: /* LD SP, HL */
+			setSP(getHL());
+			cycles = 6;
+			break;
+		case 0xFA: /* JP M, nn */
+			address = read8(pc) & 0x000000FF | read8(pc + 1) << 8 & 0x0000FF00;
+			pc += 2;
+			if ((getF() & 0x80) != 0) {
+				pc = address;
+			}
+			cycles = 10;
+			break;
+		case 0xFB: /* EI */
+			enableInterrupts();
+			cycles = 4;
+			break;
+		case 0xFE: /* CP n */
+			cp8(read8(pc++));
+			cycles = 7;
+			break;
+		case 0xCB:
+			return executeCB(pc);
+		case 0xDD:
+			return executeDD(pc);
+		case 0xED:
+			/* Las instrucciones de repetición pueden ejecutar varias iteraciones de una vez */
+			return executeED(pc) + takeExtraCycles();
+		case 0xFD:
+			return executeFD(pc);
+		default:
+			setPC(pc);
+			throw new UnknowInstructionException("opCode: " + Hex.byteToHex((byte) opcode));
+		}
+
+		setPC(pc);
+		return cycles;
+	}
+
+}
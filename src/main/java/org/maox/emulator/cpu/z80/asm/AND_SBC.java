@@ -0,0 +1,37 @@
+package org.maox.emulator.cpu.z80.asm;
+
+import org.maox.emulator.cpu.z80.Z80;
+import org.maox.emulator.exceptions.IllegalAddressException;
+import org.maox.emulator.exceptions.InstructionException;
+
+/**
+ * AND A ; SBC HL, rr
+ * <p>
+ * Superinstrucción de comparación de 16 bits: AND A deja el acarreo a 0 antes de la resta
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public class AND_SBC extends Superinstruction {
+
+	/**
+	 * Constructor
+	 * 
+	 * @param source Registro de 16 bits que se resta de HL
+	 */
+	public AND_SBC(int source) {
+		super();
+		readMode = source;
+
+		/* AND 4 ciclos, SBC_16 15 ciclos */
+		cycles = 4 + 15;
+	}
+
+	@Override
+	protected byte executeSequence() throws InstructionException, IllegalAddressException {
+		z80.and8(z80.getA());
+		z80.setData16(Z80.REG_HL, z80.subWithCarry16(z80.getHL(), z80.getData16(readMode), z80.getCarry()));
+		z80.setPC(z80.getPC() + 2);
+		return cycles;
+	}
+}
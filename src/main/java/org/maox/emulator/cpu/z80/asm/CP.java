@@ -47,20 +47,8 @@ public class CP extends Instruction {
 	@Override
 	public byte execute() throws InstructionException, IllegalAddressException {
 
-		// Se guarda el valor del registro A
-		byte regA = z80.getA();
-
-		// Sería haceer cómo el SUB tirando el resultado
-		byte oper = z80.getData8(readMode);
-		z80.subWithCarry(oper, (byte) 0);
-
-		// Se restaura el valor del registro A
-		z80.setA(regA);
-
-		// Los flags 3 y 5 se copian del operando no del resultado
-		// Flags sin documentar
-		z80.setFlag35(oper);
-
+		/* Operación CP */
+		z80.cp8(z80.getData8(readMode));
 		return cycles;
 	}
 
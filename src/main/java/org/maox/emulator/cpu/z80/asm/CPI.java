@@ -0,0 +1,46 @@
+package org.maox.emulator.cpu.z80.asm;
+
+import org.maox.emulator.core.CPU;
+import org.maox.emulator.core.Instruction;
+import org.maox.emulator.cpu.z80.Z80;
+import org.maox.emulator.exceptions.IllegalAddressException;
+import org.maox.emulator.exceptions.InstructionException;
+
+/**
+ * CPI / CPD
+ * <p>
+ * Compare and increment o decrement: compara (HL) con A sin modificarlo.
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public class CPI extends Instruction {
+
+	/* CPU espeficica de ejecución */
+	Z80 z80;
+	private int step;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param step 1 para incrementar HL, -1 para decrementarlo
+	 */
+	public CPI(int step) {
+		super();
+		this.step = step;
+		assembly = step > 0 ? "CPI" : "CPD";
+		cycles = 16;
+	}
+
+	@Override
+	public byte execute() throws IllegalAddressException, InstructionException {
+		/* Comparación de (HL) con A y avance de HL */
+		return z80.compareBlock(step, false);
+	}
+
+	@Override
+	public void setCPU(CPU cpu) {
+		this.cpu = cpu;
+		z80 = (Z80) cpu;
+	}
+}
@@ -0,0 +1,46 @@
+package org.maox.emulator.cpu.z80.asm;
+
+import org.maox.emulator.core.CPU;
+import org.maox.emulator.core.Instruction;
+import org.maox.emulator.cpu.z80.Z80;
+import org.maox.emulator.exceptions.IllegalAddressException;
+import org.maox.emulator.exceptions.InstructionException;
+
+/**
+ * CPIR / CPDR
+ * <p>
+ * Compare and increment o decrement con Repetición hasta encontrar A o BC = 0.
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public class CPIR extends Instruction {
+
+	/* CPU espeficica de ejecución */
+	Z80 z80;
+	private int step;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param step 1 para incrementar HL, -1 para decrementarlo
+	 */
+	public CPIR(int step) {
+		super();
+		this.step = step;
+		assembly = step > 0 ? "CPIR" : "CPDR";
+		cycles = 16;
+	}
+
+	@Override
+	public byte execute() throws IllegalAddressException, InstructionException {
+		/* Comparación de (HL) con A, avance de HL y repetición mientras BC != 0 y no sea igual */
+		return z80.compareBlock(step, true);
+	}
+
+	@Override
+	public void setCPU(CPU cpu) {
+		this.cpu = cpu;
+		z80 = (Z80) cpu;
+	}
+}
@@ -49,8 +49,8 @@ public class DEC extends Instruction {
 		/* Se optiene el registro origen de la información */
 		byte reg = z80.getData8(readMode);
 
-		/* Operación DEC. Decrementar el byte */
-		byte res = (byte) (reg + (byte) 0xFF);
+		/* Operación DEC. Se establecen los flags */
+		byte res = z80.dec8(reg);
 
 		switch (readMode) {
 		case Z80.REG_A:
@@ -71,14 +71,6 @@ public class DEC extends Instruction {
 			break;
 		}
 
-		/* Establecimiento de flags */
-		z80.setFlagSigned(res);
-		z80.setFlagZero(res);
-		z80.setFlag(Z80.FLAG_H, (reg & 0x0F) < 1);
-		z80.setFlag(Z80.FLAG_PV, reg == (byte) 0x80);
-		z80.setFlag(Z80.FLAG_N, true);
-		z80.setFlag35(res);
-
 		return cycles;
 	}
 
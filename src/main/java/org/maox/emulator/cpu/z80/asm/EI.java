@@ -31,8 +31,7 @@ public class EI extends Instruction {
 	@Override
 	public byte execute() {
 
-		z80.setIFF1(true);
-		z80.setIFF2(true);
+		z80.enableInterrupts();
 		return cycles;
 	}
 
@@ -0,0 +1,31 @@
+package org.maox.emulator.cpu.z80.asm;
+
+import org.maox.emulator.exceptions.IllegalAddressException;
+import org.maox.emulator.exceptions.InstructionException;
+
+/**
+ * EX ; EX
+ * <p>
+ * Superinstrucción de 2 intercambios iguales consecutivos (EX DE, HL ; EX DE, HL), que se anulan entre sí
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public class EX_EX extends Superinstruction {
+
+	/**
+	 * Constructor
+	 */
+	public EX_EX() {
+		super();
+
+		/* 2 intercambios de 4 ciclos */
+		cycles = 4 + 4;
+	}
+
+	@Override
+	protected byte executeSequence() throws InstructionException, IllegalAddressException {
+		z80.setPC(z80.getPC() + 1);
+		return cycles;
+	}
+}
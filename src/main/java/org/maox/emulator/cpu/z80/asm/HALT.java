@@ -0,0 +1,42 @@
+package org.maox.emulator.cpu.z80.asm;
+
+import org.maox.emulator.core.CPU;
+import org.maox.emulator.core.Instruction;
+import org.maox.emulator.cpu.z80.Z80;
+
+/**
+ * HALT
+ * <p>
+ * Detiene la CPU hasta la aceptación de una interrupción
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public class HALT extends Instruction {
+
+	/* CPU espeficica de ejecución */
+	Z80 z80;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param cpu
+	 */
+	public HALT() {
+		super();
+		assembly = "HALT";
+		cycles = 4;
+	}
+
+	@Override
+	public byte execute() {
+		/* NOP repetidos hasta la siguiente interrupción */
+		return z80.halt();
+	}
+
+	@Override
+	public void setCPU(CPU cpu) {
+		this.cpu = cpu;
+		z80 = (Z80) cpu;
+	}
+}
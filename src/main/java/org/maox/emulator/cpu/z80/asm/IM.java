@@ -25,6 +25,7 @@ public class IM extends Instruction {
 	 */
 	public IM(int mode) {
 		super();
+		this.mode = mode;
 		assembly = "IM " + mode;
 		cycles = 8;
 	}
@@ -49,8 +49,8 @@ public class INC extends Instruction {
 		/* Se optiene el registro origen de la información */
 		byte reg = z80.getData8(readMode);
 
-		/* Operación INC. incrementar el byte */
-		byte res = (byte) (reg + (byte) 0x01);
+		/* Operación INC. Se establecen los flags */
+		byte res = z80.inc8(reg);
 
 		switch (readMode) {
 		case Z80.REG_A:
@@ -71,14 +71,6 @@ public class INC extends Instruction {
 			break;
 		}
 
-		/* Establecimiento de flags */
-		z80.setFlagSigned(res);
-		z80.setFlagZero(res);
-		z80.setFlag(Z80.FLAG_H, (reg & 0x0F) + 1 == 0x10);
-		z80.setFlag(Z80.FLAG_PV, reg == (byte) 0x7F);
-		z80.setFlag(Z80.FLAG_N, false);
-		z80.setFlag35(res);
-
 		return cycles;
 	}
 
@@ -0,0 +1,43 @@
+package org.maox.emulator.cpu.z80.asm;
+
+import org.maox.emulator.core.CPU;
+import org.maox.emulator.core.Instruction;
+import org.maox.emulator.cpu.z80.Z80;
+import org.maox.emulator.exceptions.IllegalAddressException;
+import org.maox.emulator.exceptions.InstructionException;
+
+/**
+ * INI
+ * <p>
+ * Input and increment: lee del puerto (C) en (HL).
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public class INI extends Instruction {
+
+	/* CPU espeficica de ejecución */
+	Z80 z80;
+
+	/**
+	 * Constructor
+	 * 
+	 */
+	public INI() {
+		super();
+		assembly = "INI";
+		cycles = 16;
+	}
+
+	@Override
+	public byte execute() throws IllegalAddressException, InstructionException {
+		/* Lectura del puerto en (HL), avance de HL y decremento de B */
+		return z80.inputBlock(false);
+	}
+
+	@Override
+	public void setCPU(CPU cpu) {
+		this.cpu = cpu;
+		z80 = (Z80) cpu;
+	}
+}
@@ -0,0 +1,43 @@
+package org.maox.emulator.cpu.z80.asm;
+
+import org.maox.emulator.core.CPU;
+import org.maox.emulator.core.Instruction;
+import org.maox.emulator.cpu.z80.Z80;
+import org.maox.emulator.exceptions.IllegalAddressException;
+import org.maox.emulator.exceptions.InstructionException;
+
+/**
+ * INIR
+ * <p>
+ * Input and increment con Repetición hasta B = 0.
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public class INIR extends Instruction {
+
+	/* CPU espeficica de ejecución */
+	Z80 z80;
+
+	/**
+	 * Constructor
+	 * 
+	 */
+	public INIR() {
+		super();
+		assembly = "INIR";
+		cycles = 16;
+	}
+
+	@Override
+	public byte execute() throws IllegalAddressException, InstructionException {
+		/* Lectura del puerto en (HL), avance de HL y repetición mientras B != 0 */
+		return z80.inputBlock(true);
+	}
+
+	@Override
+	public void setCPU(CPU cpu) {
+		this.cpu = cpu;
+		z80 = (Z80) cpu;
+	}
+}
@@ -34,7 +34,8 @@ public class LDD extends Instruction {
 	public byte execute() throws IllegalAddressException, InstructionException {
 
 		// Primero se transfiere un byte desde una posición de memoria (HL) a otra (DE)
-		z80.setData8(Z80.ADDR_DE, z80.getData8(Z80.ADDR_HL));
+		byte data = z80.getData8(Z80.ADDR_HL);
+		z80.setData8(Z80.ADDR_DE, data);
 
 		// Se decrementan los punteros
 		z80.setData16(Z80.REG_DE, z80.getData16(Z80.REG_DE) - 1);
@@ -43,15 +44,8 @@ public class LDD extends Instruction {
 		// Se decrementa el Byte Counter
 		z80.setData16(Z80.REG_BC, z80.getData16(Z80.REG_BC) - 1);
 
-		// Se establecen los flags
-		z80.setFlag(Z80.FLAG_H, false);
-		z80.setFlag(Z80.FLAG_N, false);
-		z80.setFlag(Z80.FLAG_PV, z80.getData16(Z80.REG_BC) != 0);
-
-		// Flag no documentados
-		// TODO
-		// F5 is bit 1 of (transferred byte + A)
-		// F3 is bit 3 of (transferred byte + A)
+		// Se establecen los flags, incluidos los no documentados
+		z80.setTransferFlags(data);
 
 		return cycles;
 	}
@@ -32,34 +32,8 @@ public class LDDR extends Instruction {
 
 	@Override
 	public byte execute() throws IllegalAddressException, InstructionException {
-
-		// Primero se transfiere un byte desde una posición de memoria (HL) a otra (DE)
-		z80.setData8(Z80.ADDR_DE, z80.getData8(Z80.ADDR_HL));
-
-		// Se decrementan los punteros
-		z80.setData16(Z80.REG_DE, z80.getData16(Z80.REG_DE) - 1);
-		z80.setData16(Z80.REG_HL, z80.getData16(Z80.REG_HL) - 1);
-
-		// Se decrementa el Byte Counter
-		z80.setData16(Z80.REG_BC, z80.getData16(Z80.REG_BC) - 1);
-
-		// Se establecen los flags
-		z80.setFlag(Z80.FLAG_H, false);
-		z80.setFlag(Z80.FLAG_N, false);
-		z80.setFlag(Z80.FLAG_PV, false);
-
-		// Flag no documentados
-		// TODO
-		// F5 is bit 1 of (transferred byte + A)
-		// F3 is bit 3 of (transferred byte + A)
-
-		// Se aplica la repetición, si BC != 0 se retrocede el PC 2 posiciones
-		if (z80.getData16(Z80.REG_BC) != 0) {
-			z80.setPC(z80.getPC() - 2);
-			return 21;
-		}
-
-		return cycles;
+		/* Transferencia de (HL) a (DE), avance de los punteros y repetición mientras BC != 0 */
+		return z80.repeatTransfer(-1);
 	}
 
 	@Override
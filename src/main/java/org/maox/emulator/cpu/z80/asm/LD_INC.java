@@ -0,0 +1,71 @@
+package org.maox.emulator.cpu.z80.asm;
+
+import org.maox.emulator.cpu.z80.Z80;
+import org.maox.emulator.exceptions.IllegalAddressException;
+import org.maox.emulator.exceptions.InstructionException;
+
+/**
+ * LD ; INC_16
+ * <p>
+ * Superinstrucción de carga de 8 bits a través de un puntero seguida del incremento del puntero, como LD A, (HL) ; INC
+ * HL o LD (DE), A ; INC DE
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public class LD_INC extends Superinstruction {
+
+	/* Ciclos de la carga con direccionamiento indirecto */
+	final protected static byte LOAD_CYCLES = 7;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param dest Destino de la carga
+	 * @param source Origen de la carga
+	 * @param pointer Registro de 16 bits que se incrementa
+	 */
+	public LD_INC(int dest, int source, int pointer) {
+		super();
+		writeMode = dest;
+		readMode = source;
+		readMode2 = pointer;
+
+		/* LD 7 ciclos, INC_16 6 ciclos */
+		cycles = LOAD_CYCLES + 6;
+	}
+
+	@Override
+	protected byte executeSequence() throws InstructionException, IllegalAddressException {
+		if (!load())
+			return LOAD_CYCLES;
+
+		increment();
+		z80.setPC(z80.getPC() + 1);
+		return cycles;
+	}
+
+	/**
+	 * Incremento del puntero
+	 * 
+	 * @throws InstructionException
+	 * @throws IllegalAddressException
+	 */
+	protected void increment() throws InstructionException, IllegalAddressException {
+		z80.setData16(readMode2, (short) (z80.getData16(readMode2) + (short) 0x0001));
+	}
+
+	/**
+	 * Carga. Si se escribe sobre el resto de la secuencia se abandona la superinstrucción tras la carga, con el PC en la
+	 * siguiente instrucción, para que se ejecute el código modificado
+	 * 
+	 * @return true si se continúa con la secuencia
+	 * @throws InstructionException
+	 * @throws IllegalAddressException
+	 */
+	protected boolean load() throws InstructionException, IllegalAddressException {
+		int offset = z80.getData16(readMode2) - z80.getPC();
+		z80.setData8(writeMode, z80.getData8(readMode));
+		return readMode != Z80.REG_A || offset < 0 || offset >= getNumOpcodes() - 1;
+	}
+}
@@ -0,0 +1,44 @@
+package org.maox.emulator.cpu.z80.asm;
+
+import org.maox.emulator.exceptions.IllegalAddressException;
+import org.maox.emulator.exceptions.InstructionException;
+
+/**
+ * LD ; INC_16 ; DJNZ
+ * <p>
+ * Superinstrucción del bucle de copia LD (DE), A ; INC DE ; DJNZ e
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public class LD_INC_DJNZ extends LD_INC {
+
+	/**
+	 * Constructor
+	 * 
+	 * @param dest Destino de la carga
+	 * @param source Origen de la carga
+	 * @param pointer Registro de 16 bits que se incrementa
+	 */
+	public LD_INC_DJNZ(int dest, int source, int pointer) {
+		super(dest, source, pointer);
+	}
+
+	@Override
+	protected byte executeSequence() throws InstructionException, IllegalAddressException {
+		if (!load())
+			return LOAD_CYCLES;
+
+		increment();
+
+		/* DJNZ: el desplazamiento está tras el código de INC y el suyo */
+		int pc = z80.getPC() + 2;
+		byte displacement = z80.read8(pc++);
+		if (z80.getB() != 0) {
+			z80.setPC(pc + displacement);
+			return (byte) (cycles + 13);
+		}
+		z80.setPC(pc);
+		return (byte) (cycles + 8);
+	}
+}
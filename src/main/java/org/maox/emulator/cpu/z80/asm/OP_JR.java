@@ -0,0 +1,69 @@
+package org.maox.emulator.cpu.z80.asm;
+
+import org.maox.emulator.cpu.z80.Z80;
+import org.maox.emulator.exceptions.IllegalAddressException;
+import org.maox.emulator.exceptions.InstructionException;
+
+/**
+ * DEC / CP ; JR cc
+ * <p>
+ * Superinstrucción de fin de bucle: decremento o comparación de 8 bits seguida de un salto relativo condicional, como
+ * DEC B ; JR NZ, e o CP H ; JR NZ, e
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public class OP_JR extends Superinstruction {
+
+	/* Operaciones */
+	final public static int OP_DEC = 0;
+	final public static int OP_CP = 1;
+
+	/* Operación */
+	private int operation;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param operation OP_DEC u OP_CP
+	 * @param source Registro o dirección de la operación
+	 * @param condition Condición del salto
+	 */
+	public OP_JR(int operation, int source, int condition) {
+		super();
+		this.operation = operation;
+		readMode = source;
+		condMode = condition;
+
+		/* Ciclos de la operación, el salto suma 12 si se cumple la condición o 7 si no */
+		if (readMode == Z80.ADDR_HL) {
+			cycles = (byte) (operation == OP_DEC ? 11 : 7);
+		} else {
+			cycles = 4;
+		}
+	}
+
+	@Override
+	protected byte executeSequence() throws InstructionException, IllegalAddressException {
+		if (operation == OP_DEC) {
+			z80.setData8(readMode, z80.dec8(z80.getData8(readMode)));
+
+			/* Si se ha escrito sobre el salto se abandona la secuencia para ejecutar el código modificado */
+			int offset = z80.getHL() - z80.getPC();
+			if (readMode == Z80.ADDR_HL && offset >= 0 && offset < getNumOpcodes() - 1)
+				return cycles;
+		} else {
+			z80.cp8(z80.getData8(readMode));
+		}
+
+		/* JR cc: el desplazamiento está tras su código */
+		int pc = z80.getPC() + 1;
+		byte displacement = z80.read8(pc++);
+		if (condition(condMode)) {
+			z80.setPC(pc + displacement);
+			return (byte) (cycles + 12);
+		}
+		z80.setPC(pc);
+		return (byte) (cycles + 7);
+	}
+}
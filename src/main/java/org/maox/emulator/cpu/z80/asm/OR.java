@@ -49,22 +49,8 @@ public class OR extends Instruction {
 	@Override
 	public byte execute() throws InstructionException, IllegalAddressException {
 
-		/* Se optiene el registro origen de la información */
-		byte reg = z80.getData8(readMode);
-
 		/* Operación OR */
-		byte res = (byte) (z80.getA() | reg);
-		z80.setA(res);
-
-		/* Establecimiento de flags */
-		z80.setFlagSigned(res);
-		z80.setFlagZero(res);
-		z80.setFlag(Z80.FLAG_H, false);
-		z80.setFlagParity(res);
-		z80.setFlag(Z80.FLAG_N, false);
-		z80.setFlag(Z80.FLAG_C, false);
-		z80.setFlag35(res);
-
+		z80.or8(z80.getData8(readMode));
 		return cycles;
 	}
 
@@ -0,0 +1,43 @@
+package org.maox.emulator.cpu.z80.asm;
+
+import org.maox.emulator.core.CPU;
+import org.maox.emulator.core.Instruction;
+import org.maox.emulator.cpu.z80.Z80;
+import org.maox.emulator.exceptions.IllegalAddressException;
+import org.maox.emulator.exceptions.InstructionException;
+
+/**
+ * OTIR
+ * <p>
+ * Output and increment con Repetición hasta B = 0.
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public class OTIR extends Instruction {
+
+	/* CPU espeficica de ejecución */
+	Z80 z80;
+
+	/**
+	 * Constructor
+	 * 
+	 */
+	public OTIR() {
+		super();
+		assembly = "OTIR";
+		cycles = 16;
+	}
+
+	@Override
+	public byte execute() throws IllegalAddressException, InstructionException {
+		/* Decremento de B, escritura de (HL) en el puerto, avance de HL y repetición mientras B != 0 */
+		return z80.outputBlock(true);
+	}
+
+	@Override
+	public void setCPU(CPU cpu) {
+		this.cpu = cpu;
+		z80 = (Z80) cpu;
+	}
+}
@@ -0,0 +1,43 @@
+package org.maox.emulator.cpu.z80.asm;
+
+import org.maox.emulator.core.CPU;
+import org.maox.emulator.core.Instruction;
+import org.maox.emulator.cpu.z80.Z80;
+import org.maox.emulator.exceptions.IllegalAddressException;
+import org.maox.emulator.exceptions.InstructionException;
+
+/**
+ * OUTI
+ * <p>
+ * Output and increment: escribe (HL) en el puerto (C).
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public class OUTI extends Instruction {
+
+	/* CPU espeficica de ejecución */
+	Z80 z80;
+
+	/**
+	 * Constructor
+	 * 
+	 */
+	public OUTI() {
+		super();
+		assembly = "OUTI";
+		cycles = 16;
+	}
+
+	@Override
+	public byte execute() throws IllegalAddressException, InstructionException {
+		/* Decremento de B, escritura de (HL) en el puerto y avance de HL */
+		return z80.outputBlock(false);
+	}
+
+	@Override
+	public void setCPU(CPU cpu) {
+		this.cpu = cpu;
+		z80 = (Z80) cpu;
+	}
+}
@@ -0,0 +1,130 @@
+package org.maox.emulator.cpu.z80.asm;
+
+import org.maox.emulator.core.CPU;
+import org.maox.emulator.core.Instruction;
+import org.maox.emulator.cpu.z80.Z80;
+import org.maox.emulator.exceptions.IllegalAddressException;
+import org.maox.emulator.exceptions.InstructionException;
+
+/**
+ * Superinstrucción: secuencia de instrucciones adyacentes frecuentes ejecutada como una sola
+ * <p>
+ * Se ejecuta con el PC en el byte siguiente al primer código de instrucción, como cualquier instrucción de la tabla
+ * principal, y deja el PC tras la última instrucción de la secuencia o en el destino de su salto. Los ciclos y los flags
+ * son los mismos que los de las instrucciones ejecutadas por separado.
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public abstract class Superinstruction extends Instruction {
+
+	/* CPU espeficica de ejecución */
+	protected Z80 z80;
+
+	/* Códigos de la secuencia, -1 en los bytes de operandos */
+	private int[] pattern;
+
+	/* Perfilado: número de ejecuciones */
+	private boolean profiling = false;
+	private long executions = 0;
+
+	/**
+	 * Comprobación de una condición de salto relativo
+	 * 
+	 * @param condition Z80.COND_NZ, COND_Z, COND_NC o COND_C
+	 * @return true si se cumple
+	 */
+	protected boolean condition(int condition) {
+		switch (condition) {
+		case Z80.COND_NZ:
+			return !z80.isFlagZero();
+		case Z80.COND_Z:
+			return z80.isFlagZero();
+		case Z80.COND_NC:
+			return !z80.isFlagCarry();
+		default:
+			return z80.isFlagCarry();
+		}
+	}
+
+	@Override
+	public final byte execute() throws InstructionException, IllegalAddressException {
+		if (profiling) {
+			executions++;
+		}
+		return executeSequence();
+	}
+
+	/**
+	 * Ejecución de la secuencia completa
+	 * 
+	 * @return número de ciclos de reloj consumidos por todas las instrucciones
+	 * @throws InstructionException
+	 * @throws IllegalAddressException
+	 */
+	protected abstract byte executeSequence() throws InstructionException, IllegalAddressException;
+
+	/**
+	 * @return número de ejecuciones desde que se activó el perfilado
+	 */
+	public long getExecutions() {
+		return executions;
+	}
+
+	/**
+	 * Número de bytes de la secuencia completa
+	 */
+	@Override
+	public int getNumOpcodes() {
+		return pattern.length;
+	}
+
+	/**
+	 * @return códigos de la secuencia, -1 en los bytes de operandos
+	 */
+	public int[] getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * Comprueba si la secuencia coincide con la memoria
+	 * 
+	 * @param address dirección del primer código
+	 * @return
+	 * @throws IllegalAddressException
+	 */
+	public boolean matches(int address) throws IllegalAddressException {
+		for (int idx = 1; idx < pattern.length; idx++) {
+			if (pattern[idx] >= 0 && (cpu.read8(address + idx) & 0x000000FF) != pattern[idx])
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public void setCPU(CPU cpu) {
+		this.cpu = cpu;
+		z80 = (Z80) cpu;
+	}
+
+	/**
+	 * Establece la secuencia de códigos y su ensamblador
+	 * 
+	 * @param pattern códigos, -1 en los bytes de operandos
+	 * @param assembly instrucciones de la secuencia
+	 */
+	public void setPattern(int[] pattern, String assembly) {
+		this.pattern = pattern;
+		this.assembly = assembly;
+	}
+
+	/**
+	 * Activa o desactiva el conteo de ejecuciones, al activarlo se pone a 0
+	 * 
+	 * @param profiling
+	 */
+	public void setProfiling(boolean profiling) {
+		this.profiling = profiling;
+		executions = 0;
+	}
+}
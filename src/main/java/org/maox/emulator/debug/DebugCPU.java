@@ -24,4 +24,20 @@ public interface DebugCPU {
 	 */
 	public byte debugInstruction(int address) throws InstructionException, IllegalAddressException;
 
+	/**
+	 * Devuelve el oyente de traza asociado a la CPU
+	 * 
+	 * @return oyente de traza o null si se ejecuta sin traza
+	 */
+	public TraceListener getTraceListener();
+
+	/**
+	 * Asocia un oyente que será notificado antes de ejecutar cada instrucción.
+	 * <p>
+	 * Con null la CPU vuelve al modo de ejecución sin traza
+	 * 
+	 * @param listener oyente de traza
+	 */
+	public void setTraceListener(TraceListener listener);
+
 }
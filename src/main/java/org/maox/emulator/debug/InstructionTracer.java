@@ -0,0 +1,32 @@
+package org.maox.emulator.debug;
+
+import org.maox.emulator.exceptions.IllegalAddressException;
+import org.maox.emulator.exceptions.InstructionException;
+
+/**
+ * Traza de instrucciones al log de DEBUG
+ * <p>
+ * Decodifica cada instrucción antes de ejecutarla y vuelca su ensamblador junto con el estado de los registros
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public class InstructionTracer implements TraceListener {
+
+	/* Número de instrucciones trazadas */
+	private long count = 0;
+
+	/**
+	 * @return número de instrucciones trazadas
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	@Override
+	public void instructionFetched(DebugCPU cpu, int address) throws InstructionException, IllegalAddressException {
+		count++;
+		cpu.debugInstruction(address);
+	}
+
+}
@@ -0,0 +1,27 @@
+package org.maox.emulator.debug;
+
+import org.maox.emulator.exceptions.IllegalAddressException;
+import org.maox.emulator.exceptions.InstructionException;
+
+/**
+ * Oyente opcional de la traza de ejecución de una CPU
+ * <p>
+ * Se notifica antes de ejecutar cada instrucción, sólo cuando hay un oyente asociado a la CPU. Sin oyente la CPU no
+ * realiza ningún trabajo de traza.
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public interface TraceListener {
+
+	/**
+	 * Se invoca antes de ejecutar la instrucción que se encuentra en una dirección de memoria
+	 * 
+	 * @param cpu CPU que va a ejecutar la instrucción
+	 * @param address dirección donde está la instrucción
+	 * @throws InstructionException
+	 * @throws IllegalAddressException
+	 */
+	public void instructionFetched(DebugCPU cpu, int address) throws InstructionException, IllegalAddressException;
+
+}
@@ -8,6 +8,7 @@ import java.awt.event.KeyEvent;
 import java.awt.image.BufferedImage;
 
 import javax.swing.JFrame;
+import javax.swing.Timer;
 
 import org.maox.arq.gui.component.GUIStatusBar;
 import org.maox.arq.gui.menu.GUIMenuBar;
@@ -37,6 +38,9 @@ public class AppFrame extends GUIFrame {
 	private GUIImagePane imagePanel;
 	/* Logica del emulador (Funcionaría como controlador) */
 	private Emulator emulator = null;
+	/* Frames publicados por el hilo de emulación y temporizador que pinta el último en el EDT */
+	private FrameExchange frames;
+	private Timer refreshTimer;
 
 	/**
 	 * Inialización del Marco Visual
@@ -54,6 +58,10 @@ public class AppFrame extends GUIFrame {
 
 	@Override
 	public void actionPerformed(ActionEvent e) {
+		if (e.getSource() == refreshTimer) {
+			refreshScreen();
+			return;
+		}
 		// Tratamiento de los eventos de menu
 		if (e.getSource() instanceof GUIMenuItem) {
 			if (e.getActionCommand().equals("Open")) {
@@ -108,15 +116,28 @@ public class AppFrame extends GUIFrame {
 	}
 
 	/**
-	 * Refresca el contenido de la pantalla
-	 * 
-	 * @param screen Imagen de pantalla
+	 * Refresca el contenido de la pantalla con el último frame completo publicado por el hilo de emulación. Se invoca
+	 * en el EDT
 	 */
-	public void refreshScreen(BufferedImage screen) {
+	public void refreshScreen() {
+		BufferedImage screen = frames.acquire();
 		imagePanel.setImage(screen);
 		repaint();
 	}
 
+	/**
+	 * Asocia el intercambio de frames con el hilo de emulación y arranca el refresco de pantalla en el EDT a la
+	 * frecuencia de la máquina emulada. Se invoca en el EDT
+	 * 
+	 * @param exchange frames publicados por el hilo de emulación
+	 * @param fps frames por segundo
+	 */
+	public void setFrameExchange(FrameExchange exchange, int fps) {
+		frames = exchange;
+		refreshTimer = new Timer(1000 / fps, this);
+		refreshTimer.start();
+	}
+
 	/**
 	 * Muestra los FPS en la barra de estado
 	 * 
@@ -0,0 +1,131 @@
+package org.maox.emulator.gui;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Intercambio de frames entre el hilo de emulación y el EDT con 3 buffers y sin bloqueos
+ * <p>
+ * El hilo de emulación copia cada frame terminado en su buffer y lo intercambia por el compartido con un único
+ * getAndSet, que también marca el compartido como nuevo. El EDT, al pintar, intercambia su buffer por el compartido
+ * sólo si hay uno nuevo. Así ningún hilo espera al otro ni crea objetos, el EDT siempre pinta un frame completo (el
+ * último publicado) y nunca uno que se está escribiendo. Si se publica un frame antes de que el EDT haya recogido el
+ * anterior, éste se pierde; si el EDT pinta sin frame nuevo, repite el anterior. Ambos casos se cuentan.
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public class FrameExchange {
+
+	/* Estado compartido: índice del buffer intermedio y marca de frame nuevo sin recoger */
+	final private static int INDEX = 0x03;
+	final private static int FRESH = 0x04;
+
+	/* Buffers y sus arrays de pixels */
+	final private BufferedImage buffers[] = new BufferedImage[3];
+	final private int pixels[][] = new int[3][];
+	final private int width;
+	final private int height;
+
+	final private AtomicInteger shared = new AtomicInteger(1);
+	/* Buffer que escribe el hilo de emulación y buffer que pinta el EDT, cada uno sólo lo usa su hilo */
+	private int back = 0;
+	private int front = 2;
+
+	/* Contadores, cada uno sólo lo incrementa uno de los hilos */
+	private volatile long published = 0;
+	private volatile long dropped = 0;
+	private volatile long presented = 0;
+	private volatile long duplicated = 0;
+
+	/**
+	 * Constructor, crea los 3 buffers
+	 * 
+	 * @param width ancho de los frames
+	 * @param height alto de los frames
+	 */
+	public FrameExchange(int width, int height) {
+		this.width = width;
+		this.height = height;
+		for (int idx = 0; idx < buffers.length; idx++) {
+			buffers[idx] = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			pixels[idx] = ((DataBufferInt) buffers[idx].getRaster().getDataBuffer()).getData();
+		}
+	}
+
+	/**
+	 * Recoge el último frame publicado para pintarlo, desde el EDT. El buffer devuelto no cambia hasta la siguiente
+	 * llamada
+	 * 
+	 * @return último frame completo, el mismo que en la llamada anterior si no se ha publicado otro
+	 */
+	public BufferedImage acquire() {
+		if ((shared.get() & FRESH) == 0) {
+			duplicated++;
+		} else {
+			front = shared.getAndSet(front) & INDEX;
+			presented++;
+		}
+		return buffers[front];
+	}
+
+	/**
+	 * @return frames publicados que se han sustituido por otro antes de que el EDT los recogiera
+	 */
+	public long getDroppedFrames() {
+		return dropped;
+	}
+
+	/**
+	 * @return veces que el EDT ha pintado sin un frame nuevo
+	 */
+	public long getDuplicatedFrames() {
+		return duplicated;
+	}
+
+	/**
+	 * @return frames recogidos por el EDT
+	 */
+	public long getPresentedFrames() {
+		return presented;
+	}
+
+	/**
+	 * @return frames publicados por el hilo de emulación
+	 */
+	public long getPublishedFrames() {
+		return published;
+	}
+
+	/**
+	 * @return resumen de los contadores
+	 */
+	public String getStatistics() {
+		return String.format("%d published, %d presented, %d dropped, %d duplicated", published, presented, dropped,
+				duplicated);
+	}
+
+	/**
+	 * Publica un frame terminado, desde el hilo de emulación. Se copia, por lo que el frame puede seguir modificándose
+	 * tras la llamada
+	 * 
+	 * @param frame imagen del frame, del tamaño de los buffers
+	 */
+	public void publish(BufferedImage frame) {
+		if (frame.getRaster().getDataBuffer() instanceof DataBufferInt && frame.getWidth() == width
+				&& frame.getHeight() == height) {
+			int source[] = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+			System.arraycopy(source, 0, pixels[back], 0, pixels[back].length);
+		} else {
+			frame.getRGB(0, 0, width, height, pixels[back], 0, width);
+		}
+
+		int previous = shared.getAndSet(back | FRESH);
+		back = previous & INDEX;
+		if ((previous & FRESH) != 0) {
+			dropped++;
+		}
+		published++;
+	}
+}
@@ -0,0 +1,90 @@
+package org.maox.emulator.peripheral.z80;
+
+/**
+ * Tablas precalculadas de los pixels de la pantalla del Spectrum
+ * <p>
+ * Cada byte del bitmap son 8 pixels con el color de tinta (bit a 1) o papel (bit a 0) de su atributo. Las tablas
+ * guardan los 8 pixels de cada byte para las 64 combinaciones de tinta y papel (512 KB cada una), de forma que un byte
+ * se convierte con una búsqueda y una copia, sin recorrer los bits. Hay tablas separadas para el brillo y para la fase
+ * de FLASH, en la que tinta y papel se intercambian; {@link #getTables(boolean)} las ordena por los bits FLASH y
+ * BRIGHT del atributo para elegirlas sin comparaciones. Con tablas por nibble, más pequeñas, las 2 copias de 4 pixels
+ * de cada byte duplican el coste.
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public final class PixelTables {
+
+	/* Colores RGB: índice 0-7 (bit 0 azul, bit 1 rojo, bit 2 verde) normales y 8-15 con brillo */
+	final public static int PALETTE[] = { 0x000000, 0x0000D7, 0xD70000, 0xD700D7, 0x00D700, 0x00D7D7, 0xD7D700,
+			0xD7D7D7, 0x000000, 0x0000FF, 0xFF0000, 0xFF00FF, 0x00FF00, 0x00FFFF, 0xFFFF00, 0xFFFFFF };
+
+	/* Pixels de un byte en cada entrada */
+	final public static int PIXELS = 8;
+
+	/* 8 pixels de cada byte según tinta y papel, posición index(atributo, byte) */
+	final public static int PLAIN[] = new int[64 * 256 * PIXELS];
+	final public static int BRIGHT[] = new int[64 * 256 * PIXELS];
+	/* Los mismos con tinta y papel intercambiados, para la fase de FLASH */
+	final public static int PLAIN_INVERTED[] = new int[64 * 256 * PIXELS];
+	final public static int BRIGHT_INVERTED[] = new int[64 * 256 * PIXELS];
+
+	/* Tabla de cada valor de los bits FLASH y BRIGHT del atributo, fuera y dentro de la fase de FLASH */
+	final private static int STEADY[][] = { PLAIN, BRIGHT, PLAIN, BRIGHT };
+	final private static int FLASHING[][] = { PLAIN, BRIGHT, PLAIN_INVERTED, BRIGHT_INVERTED };
+
+	static {
+		for (int attribute = 0; attribute < 64; attribute++) {
+			for (int bitmap = 0; bitmap < 256; bitmap++) {
+				int position = index(attribute, bitmap);
+				for (int pixel = 0; pixel < PIXELS; pixel++) {
+					boolean ink = (bitmap & 0x80 >> pixel) != 0;
+					int color = ink ? attribute & 0x07 : attribute >> 3 & 0x07;
+					int inverted = ink ? attribute >> 3 & 0x07 : attribute & 0x07;
+					PLAIN[position + pixel] = PALETTE[color];
+					BRIGHT[position + pixel] = PALETTE[color | 0x08];
+					PLAIN_INVERTED[position + pixel] = PALETTE[inverted];
+					BRIGHT_INVERTED[position + pixel] = PALETTE[inverted | 0x08];
+				}
+			}
+		}
+	}
+
+	private PixelTables() {
+	}
+
+	/**
+	 * Convierte un byte del bitmap en 8 pixels
+	 * 
+	 * @param bitmap byte del bitmap
+	 * @param attribute atributo de su celda
+	 * @param flash fase de FLASH
+	 * @param pixels destino
+	 * @param offset posición del primer pixel
+	 */
+	public static void expand(int bitmap, int attribute, boolean flash, int pixels[], int offset) {
+		int table[] = getTables(flash)[attribute >> 6 & 0x03];
+		System.arraycopy(table, index(attribute, bitmap), pixels, offset, PIXELS);
+	}
+
+	/**
+	 * Tablas indexadas por los bits FLASH y BRIGHT del atributo (attribute >> 6 & 3)
+	 * 
+	 * @param flash fase de FLASH, en la que los atributos con FLASH intercambian tinta y papel
+	 * @return tablas de cada combinación
+	 */
+	public static int[][] getTables(boolean flash) {
+		return flash ? FLASHING : STEADY;
+	}
+
+	/**
+	 * Posición en las tablas de los 8 pixels de un byte
+	 * 
+	 * @param attribute atributo, sólo se consideran tinta y papel (bits 0-5)
+	 * @param bitmap byte del bitmap, el bit 7 es el pixel de la izquierda
+	 * @return posición del primer pixel
+	 */
+	public static int index(int attribute, int bitmap) {
+		return (attribute & 0x3F) << 11 | (bitmap & 0xFF) << 3;
+	}
+}
@@ -0,0 +1,274 @@
+package org.maox.emulator.peripheral.z80;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Generación de la imagen de pantalla del Spectrum a partir de la memoria de vídeo
+ * <p>
+ * La imagen de 320 x 240 tiene en el centro el bitmap de 256 x 192 pixels y alrededor el borde. Se crea una sola vez y
+ * se pinta directamente sobre el array de su {@link DataBufferInt}, sin crear objetos en cada frame.
+ * <p>
+ * El bitmap (0x4000 a 0x57FF) define cada pixel con un bit, en bytes de 8 pixels horizontales. Las líneas están
+ * entrelazadas: la dirección de la línea y es 010y7y6 y2y1y0 y5y4y3 x4x3x2x1x0. Los atributos (0x5800 a 0x5AFF) dan a
+ * cada bloque de 8 x 8 pixels la tinta (bits 0-2), el papel (bits 3-5), el brillo (bit 6) y el parpadeo (bit 7), que
+ * intercambia tinta y papel en la fase de FLASH.
+ * <p>
+ * La imagen se pinta al paso del haz: cada fila visible ocupa 160 T-states de su línea (2 pixels por T-state) y el
+ * frame queda pintado hasta un T-state ({@link #update(ByteBuffer, int)}). Antes de cada cambio visible (escritura en la
+ * memoria de vídeo o color del borde) se avanza hasta el T-state actual, de forma que los cambios a mitad de frame se
+ * ven en las líneas siguientes. Al pasar el haz sólo se pintan los bytes del bitmap marcados como modificados
+ * ({@link #markDirty(int)}) y el borde de las filas que no tienen ya su color: el coste depende del número de cambios
+ * y de filas recorridas, no de los T-states, y una pantalla estática apenas tiene coste.
+ * <p>
+ * La memoria de vídeo se lee a través de un {@link ByteBuffer}: el array de una memoria del heap envuelto o la vista
+ * de una memoria fuera del heap, sin copiarla.
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+class ScreenRenderer {
+
+	/* Tamaño de la imagen y del borde */
+	final public static int WIDTH = 320;
+	final public static int HEIGHT = 240;
+	final public static int BORDER_LEFT = 32;
+	final public static int BORDER_TOP = 24;
+	/* Bitmap: 32 columnas de 8 pixels y 24 filas de 8 líneas */
+	final public static int COLUMNS = 32;
+	final public static int ROWS = 24;
+	final public static int SCREEN_WIDTH = COLUMNS * 8;
+	final public static int SCREEN_HEIGHT = ROWS * 8;
+	/* Tamaño del bitmap y de la memoria de vídeo con los atributos */
+	final public static int BITMAP_SIZE = 0x1800;
+	final public static int SCREEN_SIZE = BITMAP_SIZE + COLUMNS * ROWS;
+
+	/* T-state del primer pixel del bitmap y del primer pixel de la imagen, 24 líneas y 16 T-states antes */
+	final public static int SCREEN_CYCLE = ULA.CONTENTION_START + 1;
+	final public static int FIRST_CYCLE = SCREEN_CYCLE - BORDER_TOP * ULA.CYCLES_PER_LINE - BORDER_LEFT / 2;
+	/* T-states de cada fila de la imagen y T-state en el que termina la última */
+	final public static int ROW_CYCLES = WIDTH / 2;
+	final public static int LAST_CYCLE = FIRST_CYCLE + (HEIGHT - 1) * ULA.CYCLES_PER_LINE + ROW_CYCLES;
+
+	/* Color del borde de una fila pintada con varios colores */
+	final private static int MIXED = -1;
+
+	/* Imagen de pantalla y su array de pixels */
+	final private BufferedImage image;
+	final private int pixels[];
+
+	/* Bytes del bitmap modificados, un bit por columna de cada línea */
+	final private int dirtyLines[] = new int[SCREEN_HEIGHT];
+	/* Color del borde pintado en cada fila, MIXED si tiene varios */
+	final private int rowBorders[] = new int[HEIGHT];
+	/* T-state del frame hasta el que se ha pintado, color del borde y fase de FLASH actuales */
+	private int position = 0;
+	private int border = 0;
+	private boolean flash = false;
+	/* Bytes pintados en el frame en curso, en el último completo y en total */
+	private int bytes = 0;
+	private int renderedBytes = 0;
+	private long totalBytes = 0;
+	private long frames = 0;
+
+	/**
+	 * Constructor, crea la imagen
+	 */
+	ScreenRenderer() {
+		image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+		pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		invalidate();
+	}
+
+	/**
+	 * @return media de bytes del bitmap pintados por frame completo
+	 */
+	double getAverageBytes() {
+		return frames == 0 ? 0 : (double) totalBytes / frames;
+	}
+
+	/**
+	 * @return imagen de pantalla, siempre la misma
+	 */
+	BufferedImage getImage() {
+		return image;
+	}
+
+	/**
+	 * Dirección relativa al inicio de la memoria de vídeo del primer byte de una línea del bitmap
+	 * 
+	 * @param y línea, 0 a SCREEN_HEIGHT - 1
+	 * @return posición del byte de la columna 0
+	 */
+	static int getLineAddress(int y) {
+		return (y & 0xC0) << 5 | (y & 0x07) << 8 | (y & 0x38) << 2;
+	}
+
+	/**
+	 * @return bytes del bitmap (8 pixels) pintados en el último frame completo, de 0 (pantalla estática) a 6144
+	 */
+	int getRenderedBytes() {
+		return renderedBytes;
+	}
+
+	/**
+	 * Marca todo el bitmap y el borde para pintarlos, cuando la memoria ha cambiado sin pasar por
+	 * {@link #markDirty(int)}
+	 */
+	void invalidate() {
+		Arrays.fill(dirtyLines, -1);
+		Arrays.fill(rowBorders, MIXED);
+	}
+
+	/**
+	 * Marca las 8 líneas de una celda
+	 * 
+	 * @param row fila
+	 * @param column columna
+	 */
+	private void markCell(int row, int column) {
+		for (int y = row << 3; y < row + 1 << 3; y++) {
+			dirtyLines[y] |= 1 << column;
+		}
+	}
+
+	/**
+	 * Marca como modificada una posición de la memoria de vídeo: un byte del bitmap o las 8 líneas de la celda de un
+	 * atributo
+	 * 
+	 * @param address posición relativa a 0x4000, 0 a SCREEN_SIZE - 1
+	 */
+	void markDirty(int address) {
+		if (address < BITMAP_SIZE) {
+			/* Tercio en los bits 11-12, línea de la fila en los bits 8-10 y fila en los bits 5-7 */
+			int y = (address & 0x1800) >> 5 | (address & 0x00E0) >> 2 | (address & 0x0700) >> 8;
+			dirtyLines[y] |= 1 << (address & COLUMNS - 1);
+		} else {
+			int cell = address - BITMAP_SIZE;
+			markCell(cell >> 5, cell & COLUMNS - 1);
+		}
+	}
+
+	/**
+	 * Pinta el borde de una fila entre 2 pixels, si no lo tiene ya todo del color actual
+	 * 
+	 * @param row fila de la imagen
+	 * @param from primer pixel
+	 * @param to pixel siguiente al último
+	 */
+	private void renderBorder(int row, int from, int to) {
+		if (rowBorders[row] == border)
+			return;
+
+		int color = PixelTables.PALETTE[border];
+		int base = row * WIDTH;
+		if (row < BORDER_TOP || row >= BORDER_TOP + SCREEN_HEIGHT) {
+			Arrays.fill(pixels, base + from, base + to, color);
+		} else {
+			/* Laterales del bitmap */
+			if (from < BORDER_LEFT)
+				Arrays.fill(pixels, base + from, base + Math.min(to, BORDER_LEFT), color);
+			if (to > BORDER_LEFT + SCREEN_WIDTH)
+				Arrays.fill(pixels, base + Math.max(from, BORDER_LEFT + SCREEN_WIDTH), base + to, color);
+		}
+		rowBorders[row] = from == 0 && to == WIDTH ? border : MIXED;
+	}
+
+	/**
+	 * Pinta los bytes modificados de una línea del bitmap cuyo primer pixel está entre 2 pixels de la fila, cada uno
+	 * copiando sus 8 pixels de las tablas de su atributo
+	 * 
+	 * @param memory memoria de vídeo, la posición 0 es la dirección 0x4000
+	 * @param y línea del bitmap
+	 * @param from primer pixel de la fila
+	 * @param to pixel siguiente al último
+	 */
+	private void renderLine(ByteBuffer memory, int y, int from, int to) {
+		int first = Math.max(0, from - BORDER_LEFT + 7 >> 3);
+		int last = Math.min(COLUMNS, to - BORDER_LEFT + 7 >> 3);
+		if (first >= last)
+			return;
+
+		int span = (last - first == COLUMNS ? -1 : (1 << last - first) - 1) << first;
+		int dirty = dirtyLines[y] & span;
+		if (dirty == 0)
+			return;
+		dirtyLines[y] &= ~dirty;
+
+		int tables[][] = PixelTables.getTables(flash);
+		int address = getLineAddress(y);
+		int attributes = BITMAP_SIZE + (y >> 3) * COLUMNS;
+		int base = (BORDER_TOP + y) * WIDTH + BORDER_LEFT;
+		while (dirty != 0) {
+			int column = Integer.numberOfTrailingZeros(dirty);
+			int attribute = memory.get(attributes + column);
+			System.arraycopy(tables[attribute >> 6 & 0x03], PixelTables.index(attribute, memory.get(address + column)),
+					pixels, base + (column << 3), PixelTables.PIXELS);
+			dirty &= dirty - 1;
+			bytes++;
+		}
+	}
+
+	/**
+	 * Cambia el color del borde, tras pintar hasta el T-state del cambio
+	 * 
+	 * @param border color, 0 a 7
+	 */
+	void setBorder(int border) {
+		this.border = border;
+	}
+
+	/**
+	 * Inicia un frame: el haz vuelve al T-state 0 y, si cambia la fase de FLASH, se marcan las celdas que parpadean
+	 * 
+	 * @param memory memoria de vídeo, la posición 0 es la dirección 0x4000
+	 * @param flash fase de FLASH del frame
+	 */
+	void startFrame(ByteBuffer memory, boolean flash) {
+		if (flash != this.flash) {
+			for (int cell = 0; cell < COLUMNS * ROWS; cell++) {
+				if ((memory.get(BITMAP_SIZE + cell) & 0x80) != 0)
+					markCell(cell >> 5, cell & COLUMNS - 1);
+			}
+			this.flash = flash;
+		}
+		position = 0;
+	}
+
+	/**
+	 * Pinta desde el T-state alcanzado hasta otro del mismo frame, con el contenido actual de la memoria y el color del
+	 * borde. Recorre las filas por las que ha pasado el haz, no los T-states
+	 * 
+	 * @param memory memoria de vídeo, la posición 0 es la dirección 0x4000
+	 * @param tState T-state del frame hasta el que pintar
+	 */
+	void update(ByteBuffer memory, int tState) {
+		int end = Math.min(tState, LAST_CYCLE);
+		if (end <= position)
+			return;
+
+		for (int row = Math.max(0, (position - FIRST_CYCLE) / ULA.CYCLES_PER_LINE); row < HEIGHT; row++) {
+			int start = FIRST_CYCLE + row * ULA.CYCLES_PER_LINE;
+			if (start >= end)
+				break;
+			int from = Math.max(0, position - start) << 1;
+			int to = Math.min(ROW_CYCLES, end - start) << 1;
+			if (from < to) {
+				renderBorder(row, from, to);
+				if (row >= BORDER_TOP && row < BORDER_TOP + SCREEN_HEIGHT)
+					renderLine(memory, row - BORDER_TOP, from, to);
+			}
+		}
+		position = end;
+
+		/* Frame completo */
+		if (position == LAST_CYCLE) {
+			renderedBytes = bytes;
+			totalBytes += bytes;
+			frames++;
+			bytes = 0;
+		}
+	}
+}
@@ -1,39 +1,73 @@
 package org.maox.emulator.peripheral.z80;
 
 import java.awt.image.BufferedImage;
-import java.io.IOException;
-
-import javax.imageio.ImageIO;
+import java.nio.ByteBuffer;
 
+import org.maox.emulator.core.BlockIO;
 import org.maox.emulator.core.Bus;
 import org.maox.emulator.core.BusComponent;
+import org.maox.emulator.core.CPU;
+import org.maox.emulator.core.Contention;
+import org.maox.emulator.core.DirectMemory;
+import org.maox.emulator.core.EventHandler;
 import org.maox.emulator.core.GraphicsAdapter;
+import org.maox.emulator.core.OffHeapRAM;
 import org.maox.emulator.core.RAM;
+import org.maox.emulator.core.Scheduler;
 import org.maox.emulator.exceptions.IllegalAddressException;
 
 /**
  * Unidad auxiliar del Spectrum encargada de la I/O, sonido y gráficos
  * <p>
  * Se le asginará un bloque de memoria de 16 KB para que lo gestione y pueda generar la señal de vídeo desde el.
+ * <p>
+ * Mientras la ULA lee la pantalla la CPU espera para acceder a ese bloque. El retraso depende del T-state del frame y
+ * se toma de una tabla calculada una sola vez.
  * 
  * @author Alex Orgaz
  * 
  */
-public class ULA implements Bus, BusComponent, GraphicsAdapter {
+public class ULA implements BlockIO, Bus, BusComponent, Contention, EventHandler, GraphicsAdapter {
+
+	/* T-states de cada frame del Spectrum 48K: 312 líneas de 224 T-states */
+	final public static int CYCLES_PER_LINE = 224;
+	final public static int LINES = 312;
+	final public static int CYCLES_PER_FRAME = CYCLES_PER_LINE * LINES;
+	/* Contención: primer T-state con retraso, 192 líneas de pantalla con 128 T-states contenidos en cada una */
+	final public static int CONTENTION_START = 14335;
+	final public static int CONTENTION_LINES = 192;
+	final public static int CONTENTION_CYCLES = 128;
+	/* Retraso según el T-state dentro de cada grupo de 8 en la zona contenida */
+	final private static byte CONTENTION_PATTERN[] = { 6, 5, 4, 3, 2, 1, 0, 0 };
+	/* Retraso de cada T-state del frame */
+	final private static byte CONTENTION[] = createContentionTable();
 
-	// Imagen de pantalla
-	private BufferedImage screen;
+	/* Frames de cada fase de FLASH */
+	final public static int FLASH_FRAMES = 16;
+
+	// Generación de la imagen de pantalla
+	final private ScreenRenderer renderer = new ScreenRenderer();
+	// Memoria de vídeo: el array o el buffer fuera del heap del bloque de memoria, o una copia si no tiene ninguno
+	private ByteBuffer video;
+	final private byte screen[] = new byte[ScreenRenderer.SCREEN_SIZE];
+	private boolean shadow = false;
+	// Color del borde
+	private int border = 0;
 	// Memoria 16KB asignada a la ULA
 	private BusComponent ram;
+	// Planificador que marca los frames de la señal de vídeo
+	private Scheduler scheduler;
+	// Frames completados
+	private long frames = 0;
+	// CPU retrasada por la contención e inicio del frame en curso en su reloj
+	private CPU cpu;
+	private long frameStart = 0;
 
 	/**
 	 * Constructor
 	 */
-	public ULA() throws IOException {
+	public ULA() {
 		super();
-
-		// Eliminar la excpeción
-		screen = ImageIO.read(this.getClass().getClassLoader().getResourceAsStream("img/test.png"));
 	}
 
 	@Override
@@ -45,6 +79,82 @@ public class ULA implements Bus, BusComponent, GraphicsAdapter {
 			throw new IllegalAddressException("ULA Memory block  is already asigned.");
 
 		ram = component;
+		shadow = false;
+		if (ram instanceof DirectMemory) {
+			video = ByteBuffer.wrap(((DirectMemory) ram).getMemory());
+		} else if (ram instanceof OffHeapRAM) {
+			video = ((OffHeapRAM) ram).getBuffer();
+		} else {
+			video = ByteBuffer.wrap(screen);
+			shadow = true;
+		}
+		invalidateFrame();
+	}
+
+	/**
+	 * Pinta la imagen hasta el T-state actual del frame, antes de un cambio visible. Sin CPU ni planificador no hay
+	 * temporización y la imagen se pinta completa en cada {@link #getFrame()}
+	 */
+	private void catchUp() {
+		if (video != null && cpu != null && scheduler != null) {
+			renderer.update(video, (int) Math.min(cpu.getClock() - frameStart, CYCLES_PER_FRAME));
+		}
+	}
+
+	@Override
+	public void contend(int address) {
+		/* T-state del acceso: el reloj al inicio de la instrucción más los ciclos ya transcurridos en ella */
+		cpu.delay(CONTENTION[(int) ((cpu.getClock() + cpu.getAccessCycles() - frameStart) % CYCLES_PER_FRAME)]);
+	}
+
+	/**
+	 * Calcula el retraso de cada T-state del frame: en cada línea de pantalla los T-states en los que la ULA lee el
+	 * bitmap y los atributos, en grupos de 8 con el patrón 6, 5, 4, 3, 2, 1, 0, 0
+	 * 
+	 * @return tabla de CYCLES_PER_FRAME retrasos
+	 */
+	private static byte[] createContentionTable() {
+		byte table[] = new byte[CYCLES_PER_FRAME];
+		for (int line = 0; line < CONTENTION_LINES; line++) {
+			int start = CONTENTION_START + line * CYCLES_PER_LINE;
+			for (int cycle = 0; cycle < CONTENTION_CYCLES; cycle++) {
+				table[start + cycle] = CONTENTION_PATTERN[cycle & 7];
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * @return media de bytes del bitmap (8 pixels) pintados en cada frame
+	 */
+	public double getAverageRenderedBytes() {
+		return renderer.getAverageBytes();
+	}
+
+	/**
+	 * @return color del borde, 0 a 7
+	 */
+	public int getBorder() {
+		return border;
+	}
+
+	/**
+	 * Devuelve el retraso de un acceso a la memoria contenida
+	 * 
+	 * @param tState T-state del frame, 0 a CYCLES_PER_FRAME - 1
+	 * @return ciclos de espera
+	 */
+	public int getContention(int tState) {
+		return CONTENTION[tState];
+	}
+
+	/**
+	 * Devuelve el número de ciclos de reloj (T-states) de cada frame de la señal de vídeo
+	 * 
+	 * @return
+	 */
+	public int getCyclesPerFrame() {
+		return CYCLES_PER_FRAME;
 	}
 
 	/**
@@ -55,10 +165,33 @@ public class ULA implements Bus, BusComponent, GraphicsAdapter {
 	 * horizontales.
 	 * <p>
 	 * Una segunda sección desde la 0x5800 a 0x5AFF contiene un byte de atributo por cada bloque de 8x8 pixles.
+	 * <p>
+	 * La imagen es siempre la misma, con el borde y la fase de FLASH, que cambia cada FLASH_FRAMES frames. Sólo se
+	 * pintan los bytes escritos a través de la ULA y los que parpadean al cambiar la fase; si la memoria se modifica
+	 * directamente debe llamarse antes a {@link #invalidateFrame()}.
+	 * <p>
+	 * Con la CPU y el planificador asociados la imagen se pinta al paso del haz hasta el T-state actual, avanzando
+	 * antes de cada escritura en la memoria de vídeo o cambio de borde, y cada frame se completa al empezar el
+	 * siguiente. Sin ellos se pinta el frame completo en cada llamada.
 	 */
 	@Override
 	public BufferedImage getFrame() {
-		return screen;
+		if (video != null) {
+			if (cpu != null && scheduler != null) {
+				catchUp();
+			} else {
+				renderer.startFrame(video, isFlash());
+				renderer.update(video, CYCLES_PER_FRAME);
+			}
+		}
+		return renderer.getImage();
+	}
+
+	/**
+	 * @return número de frames iniciados desde que se asoció el planificador
+	 */
+	public long getFrameCount() {
+		return frames;
 	}
 
 	/**
@@ -70,6 +203,22 @@ public class ULA implements Bus, BusComponent, GraphicsAdapter {
 		return 50;
 	}
 
+	/**
+	 * Línea de la señal de vídeo en curso, calculada con el reloj de la CPU sin eventos por línea
+	 * 
+	 * @return línea, 0 a LINES - 1 (0 sin CPU asociada)
+	 */
+	public int getLine() {
+		return cpu == null ? 0 : (int) ((cpu.getClock() - frameStart) % CYCLES_PER_FRAME / CYCLES_PER_LINE);
+	}
+
+	/**
+	 * @return bytes del bitmap (8 pixels) pintados en el último frame, de 0 (pantalla estática) a 6144
+	 */
+	public int getRenderedBytes() {
+		return renderer.getRenderedBytes();
+	}
+
 	@Override
 	public int getSize() {
 		return ram.getSize();
@@ -80,30 +229,137 @@ public class ULA implements Bus, BusComponent, GraphicsAdapter {
 		return ram.getStartAddress();
 	}
 
+	@Override
+	public void handleEvent(int type, long time) throws IllegalAddressException {
+		switch (type) {
+		case Scheduler.EVENT_FRAME:
+			/* Se completa el frame anterior antes de empezar el siguiente */
+			if (video != null && cpu != null) {
+				renderer.update(video, CYCLES_PER_FRAME);
+			}
+			frames++;
+			frameStart = time;
+			if (video != null && cpu != null) {
+				renderer.startFrame(video, isFlash());
+			}
+			/* Interrupción al inicio del frame */
+			scheduler.schedule(time, Scheduler.EVENT_INT);
+			scheduler.schedule(time + CYCLES_PER_FRAME, Scheduler.EVENT_FRAME);
+			break;
+		}
+	}
+
+	/**
+	 * Fuerza a pintar la pantalla completa, tras modificar la memoria de vídeo sin pasar por la ULA
+	 * 
+	 * @throws IllegalAddressException
+	 */
+	public void invalidateFrame() throws IllegalAddressException {
+		if (shadow) {
+			for (int idx = 0; idx < screen.length; idx++) {
+				screen[idx] = ram.read(ram.getStartAddress() + idx);
+			}
+		}
+		renderer.invalidate();
+	}
+
+	/**
+	 * @return fase de FLASH del frame en curso
+	 */
+	private boolean isFlash() {
+		return (frames / FLASH_FRAMES & 1) != 0;
+	}
+
 	@Override
 	public byte read(int address) throws IllegalAddressException {
 		return ram.read(address);
 	}
 
+	/**
+	 * Procesa una petición de lectura de I/O. No hay teclado ni entrada de cinta conectados, así que ninguna tecla está
+	 * pulsada y la señal EAR está en reposo: todos los bits se leen a 1 en cualquier puerto
+	 * 
+	 * @param address
+	 * @return dato leído
+	 * @throws IllegalAddressException
+	 */
+	public byte readIO(int address) throws IllegalAddressException {
+		return (byte) 0xFF;
+	}
+
+	@Override
+	public void readIO(int address, byte[] buffer, int offset, int length) throws IllegalAddressException {
+		for (int idx = offset; idx < offset + length; idx++) {
+			buffer[idx] = readIO(address);
+		}
+	}
+
 	@Override
 	public void removeComponent(BusComponent component) {
 		ram = null;
+		video = null;
+	}
+
+	/**
+	 * Asocia la CPU a la que retrasa la contención, sobre su reloj
+	 * 
+	 * @param cpu
+	 */
+	public void setCPU(CPU cpu) {
+		this.cpu = cpu;
+	}
+
+	/**
+	 * Asocia el planificador de la CPU y programa el primer frame, cada frame programa el siguiente al atenderlo. Las
+	 * líneas no tienen eventos, se calculan con el reloj ({@link #getLine()})
+	 * 
+	 * @param scheduler planificador de eventos
+	 * @param time ciclo de reloj del inicio del primer frame
+	 */
+	public void setScheduler(Scheduler scheduler, long time) {
+		this.scheduler = scheduler;
+		frameStart = time;
+		scheduler.setHandler(Scheduler.EVENT_FRAME, this);
+		scheduler.schedule(time, Scheduler.EVENT_FRAME);
 	}
 
 	@Override
 	public void write(int address, byte data) throws IllegalAddressException {
-		ram.write(address, data);
+		/* Sólo las escrituras en la memoria de vídeo cambian la imagen, que se pinta antes con el contenido anterior */
+		int offset = address - ram.getStartAddress();
+		if (offset < ScreenRenderer.SCREEN_SIZE) {
+			catchUp();
+			ram.write(address, data);
+			if (shadow) {
+				screen[offset] = data;
+			}
+			renderer.markDirty(offset);
+		} else {
+			ram.write(address, data);
+		}
 	}
 
 	/**
-	 * Procesa una petición de escritura de I/O
+	 * Procesa una petición de escritura de I/O. La ULA atiende los puertos pares (0xFE), los bits 0-2 son el color del
+	 * borde
 	 * 
 	 * @param address
 	 * @param data
 	 * @throws IllegalAddressException
 	 */
 	public void writeIO(int address, byte data) throws IllegalAddressException {
-		// TODO
+		if ((address & 0x01) == 0 && (data & 0x07) != border) {
+			catchUp();
+			border = data & 0x07;
+			renderer.setBorder(border);
+		}
+	}
+
+	@Override
+	public void writeIO(int address, byte[] buffer, int offset, int length) throws IllegalAddressException {
+		for (int idx = offset; idx < offset + length; idx++) {
+			writeIO(address, buffer[idx]);
+		}
 	}
 
 }
@@ -1,14 +1,20 @@
 package org.maox.emulator.virtual;
 
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 
 import org.maox.emulator.core.Bus16;
+import org.maox.emulator.core.BusComponent;
 import org.maox.emulator.core.Computer;
+import org.maox.emulator.core.OffHeapRAM;
 import org.maox.emulator.core.RAM;
 import org.maox.emulator.core.ROM;
 import org.maox.emulator.cpu.z80.Z80;
+import org.maox.emulator.cpu.z80.Z80Dynarec;
+import org.maox.emulator.cpu.z80.Z80FastCore;
+import org.maox.emulator.debug.TraceListener;
 import org.maox.emulator.exceptions.IllegalAddressException;
 import org.maox.emulator.exceptions.InstructionException;
 import org.maox.emulator.exceptions.UnknowInstructionException;
@@ -22,14 +28,48 @@ import org.maox.emulator.peripheral.z80.ULA;
  */
 public class Spectrum extends Computer {
 
+	/* Núcleos de ejecución del Z80 */
+	final public static int CORE_REFERENCE = 0; /* Un objeto instrucción por opcode */
+	final public static int CORE_FAST = 1; /* Switch sobre los registros */
+	final public static int CORE_DYNAREC = 2; /* Bloques calientes compilados a bytecode */
+
 	/* Componentes del Ordenador */
 	Z80 cpu;
 	ULA ula;
+	Bus16 bus;
+	/* Contención de la memoria de la ULA, desactivable para ejecutar a la máxima velocidad */
+	boolean contention;
 
 	/* Crea un Sinclair Spectrum ZX Virtual */
 	public Spectrum() throws IOException, UnknowInstructionException, IllegalAddressException {
+		this(CORE_REFERENCE);
+	}
+
+	/**
+	 * Crea un Sinclair Spectrum ZX Virtual con un núcleo de ejecución determinado
+	 * 
+	 * @param core Núcleo del Z80 (CORE_REFERENCE, CORE_FAST o CORE_DYNAREC)
+	 * @throws IOException
+	 * @throws UnknowInstructionException
+	 * @throws IllegalAddressException
+	 */
+	public Spectrum(int core) throws IOException, UnknowInstructionException, IllegalAddressException {
+		this(core, null);
+	}
+
+	/**
+	 * Crea un Sinclair Spectrum ZX Virtual con la RAM proyectada sobre un fichero: su contenido persiste entre
+	 * ejecuciones y la ULA pinta la pantalla leyendo directamente la memoria proyectada
+	 * 
+	 * @param core Núcleo del Z80 (CORE_REFERENCE, CORE_FAST o CORE_DYNAREC)
+	 * @param memory fichero de los 48K de RAM, se crea si no existe. Con null la RAM se reserva en el heap
+	 * @throws IOException
+	 * @throws UnknowInstructionException
+	 * @throws IllegalAddressException
+	 */
+	public Spectrum(int core, File memory) throws IOException, UnknowInstructionException, IllegalAddressException {
 		super();
-		init();
+		init(core, memory);
 	}
 
 	@Override
@@ -43,6 +83,18 @@ public class Spectrum extends Computer {
 		return cpu.fetch();
 	}
 
+	/**
+	 * @return CPU de la maquina
+	 */
+	public Z80 getCPU() {
+		return cpu;
+	}
+
+	@Override
+	public int getCyclesPerFrame() {
+		return ula.getCyclesPerFrame();
+	}
+
 	@Override
 	public BufferedImage getFrame() {
 		return ula.getFrame();
@@ -58,17 +110,53 @@ public class Spectrum extends Computer {
 		return cpu.getHerz();
 	}
 
+	/**
+	 * @return si los accesos a la memoria de la ULA tienen contención
+	 */
+	public boolean isContention() {
+		return contention;
+	}
+
+	@Override
+	public int run(int cycles) throws InstructionException, IllegalAddressException {
+		return cpu.run(cycles);
+	}
+
+	/**
+	 * Activa o desactiva la contención de la memoria de la ULA. Sin ella sus páginas se acceden sin retraso, para
+	 * ejecuciones sin pantalla a la máxima velocidad que no necesitan la temporización exacta
+	 * 
+	 * @param enabled
+	 */
+	public void setContention(boolean enabled) {
+		contention = enabled;
+		bus.setContention(ula.getStartAddress(), ula.getSize(), enabled ? ula : null);
+	}
+
+	@Override
+	public void setTraceListener(TraceListener listener) {
+		cpu.setTraceListener(listener);
+	}
+
 	/**
 	 * Inicialización del Spectrum
 	 * 
+	 * @param core Núcleo del Z80
+	 * @param memory fichero de la RAM o null para reservarla en el heap
 	 * @throws URISyntaxException
 	 * @throws IOException
 	 * @throws UnknowInstructionException
 	 * @throws IllegalAddressException
 	 */
-	private void init() throws IOException, UnknowInstructionException, IllegalAddressException {
-		/* Se crea una CPU Z80 */
-		cpu = new Z80();
+	private void init(int core, File memory) throws IOException, UnknowInstructionException, IllegalAddressException {
+		/* Se crea una CPU Z80 con el núcleo elegido */
+		if (core == CORE_DYNAREC) {
+			cpu = new Z80Dynarec();
+		} else if (core == CORE_FAST) {
+			cpu = new Z80FastCore();
+		} else {
+			cpu = new Z80();
+		}
 		/* Se le añade la ULA */
 		ula = new ULA();
 
@@ -80,11 +168,19 @@ public class Spectrum extends Computer {
 		 */
 		ROM rom = new ROM(16, RAM.KB, 0x0000);
 		rom.load("roms/ZX48.rom");
-		RAM ram = new RAM(16, RAM.KB, 0x4000);
+		BusComponent ram;
+		BusComponent exp;
+		if (memory == null) {
+			ram = new RAM(16, RAM.KB, 0x4000);
+			exp = new RAM(32, RAM.KB, 0x8000);
+		} else {
+			/* Los 16K de la ULA al principio del fichero y los 32K superiores a continuación */
+			ram = new OffHeapRAM(memory, 0, 16, RAM.KB, 0x4000);
+			exp = new OffHeapRAM(memory, 16 * RAM.KB, 32, RAM.KB, 0x8000);
+		}
 		ula.addComponent(ram);
-		RAM exp = new RAM(32, RAM.KB, 0x8000);
 
-		Bus16 bus = new Bus16();
+		bus = new Bus16();
 		bus.addComponent(rom);
 		bus.addComponent(ula);
 		bus.addComponent(exp);
@@ -93,6 +189,11 @@ public class Spectrum extends Computer {
 		cpu.setDataBus(bus);
 
 		cpu.setULA(ula);
+		/* Frames de la ULA temporizados sobre el reloj de la CPU */
+		ula.setScheduler(cpu.getScheduler(), cpu.getClock());
+		/* Los accesos a la memoria de la ULA se retrasan según el T-state del frame */
+		ula.setCPU(cpu);
+		setContention(true);
 	}
 
 }
@@ -0,0 +1,81 @@
+package org.maox.emulator.benchmark;
+
+import org.maox.emulator.core.Computer;
+import org.maox.emulator.exceptions.IllegalAddressException;
+import org.maox.emulator.exceptions.InstructionException;
+import org.maox.emulator.exceptions.UnknowInstructionException;
+
+/**
+ * Carga de trabajo de referencia para las pruebas de rendimiento: arranque de la ROM del ZX48 desde el reset.
+ * <p>
+ * Se ejecuta hasta alcanzar un número máximo de instrucciones o la primera instrucción que no está implementada
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public class BootWorkload {
+
+	/* Resultado de la última ejecución */
+	private long instructions;
+	private long cycles;
+	private long nanos;
+
+	/**
+	 * Ejecuta el arranque sobre una maquina recien creada
+	 * 
+	 * @param computer Maquina virtual
+	 * @param maxInstructions número máximo de instrucciones a ejecutar
+	 * @throws InstructionException
+	 * @throws IllegalAddressException
+	 */
+	public void run(Computer computer, long maxInstructions) throws InstructionException, IllegalAddressException {
+		instructions = 0;
+		cycles = 0;
+
+		long begin = System.nanoTime();
+		try {
+			while (instructions < maxInstructions) {
+				cycles += computer.execute();
+				instructions++;
+			}
+		} catch (UnknowInstructionException e) {
+			// Fin del código ejecutable por el emulador
+		}
+		nanos = System.nanoTime() - begin;
+	}
+
+	/**
+	 * @return ciclos de reloj emulados en la última ejecución
+	 */
+	public long getCycles() {
+		return cycles;
+	}
+
+	/**
+	 * @return ciclos de reloj emulados por segundo en la última ejecución
+	 */
+	public double getCyclesPerSecond() {
+		return nanos == 0 ? 0 : cycles * 1e9 / nanos;
+	}
+
+	/**
+	 * @return instrucciones ejecutadas en la última ejecución
+	 */
+	public long getInstructions() {
+		return instructions;
+	}
+
+	/**
+	 * @return instrucciones por segundo de la última ejecución
+	 */
+	public double getInstructionsPerSecond() {
+		return nanos == 0 ? 0 : instructions * 1e9 / nanos;
+	}
+
+	/**
+	 * @return tiempo de la última ejecución en milisegundos
+	 */
+	public double getMillis() {
+		return nanos / 1e6;
+	}
+}
@@ -0,0 +1,46 @@
+package org.maox.emulator.benchmark;
+
+import org.maox.emulator.virtual.Spectrum;
+
+/**
+ * Prueba de rendimiento: instrucciones por segundo del núcleo de referencia, con y sin caché de instrucciones
+ * decodificadas, frente al núcleo rápido del Z80
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public class CoreBenchmark {
+
+	/* Instrucciones por ronda y rondas de cada núcleo */
+	final private static long INSTRUCTIONS = 1000000;
+	final private static int ROUNDS = 10;
+
+	/**
+	 * Lanzador de la prueba
+	 * 
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		BootWorkload workload = new BootWorkload();
+
+		for (int round = 1; round <= ROUNDS; round++) {
+			Spectrum spectrum = new Spectrum(Spectrum.CORE_REFERENCE);
+			spectrum.getCPU().setDecodeCache(false);
+			workload.run(spectrum, INSTRUCTIONS);
+			double uncached = workload.getInstructionsPerSecond();
+
+			spectrum = new Spectrum(Spectrum.CORE_REFERENCE);
+			workload.run(spectrum, INSTRUCTIONS);
+			double reference = workload.getInstructionsPerSecond();
+
+			workload.run(new Spectrum(Spectrum.CORE_FAST), INSTRUCTIONS);
+			double fast = workload.getInstructionsPerSecond();
+
+			System.out.printf(
+					"Round %d: %d instructions. Reference core: %.0f inst/s, with decode cache: %.0f inst/s (x%.1f), fast core: %.0f inst/s (x%.1f) [%s]%n",
+					round, workload.getInstructions(), uncached, reference, reference / uncached, fast, fast / uncached,
+					spectrum.getCPU().getDecodeStatistics());
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package org.maox.emulator.benchmark;
+
+import org.maox.emulator.core.Bus16;
+import org.maox.emulator.core.RAM;
+import org.maox.emulator.cpu.z80.Z80;
+import org.maox.emulator.cpu.z80.Z80Dynarec;
+import org.maox.emulator.cpu.z80.Z80FastCore;
+import org.maox.emulator.peripheral.z80.ULA;
+import org.maox.emulator.virtual.Spectrum;
+
+/**
+ * Prueba de rendimiento: ciclos de reloj emulados por segundo de los núcleos de referencia, rápido y con recompilación
+ * dinámica, en un bucle cerrado y en el arranque de la ROM
+ * <p>
+ * Un bloque compilado cuenta como una ejecución, por eso se comparan ciclos y no instrucciones
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public class DynarecBenchmark {
+
+	/* Ciclos del bucle por ronda y rondas */
+	final private static long LOOP_CYCLES = 50000000;
+	final private static int ROUNDS = 10;
+
+	/* Bucle de copia y suma de 256 bytes en 8000h */
+	final private static int[] LOOP = { 0x21, 0x00, 0x90, /* LD HL, 9000h */
+			0x11, 0x00, 0xA0, /* LD DE, A000h */
+			0x0E, 0x00, /* LD C, 0 */
+			0x7E, /* LD A, (HL) */
+			0x80, /* ADD B */
+			0x12, /* LD (DE), A */
+			0x23, /* INC HL */
+			0x13, /* INC DE */
+			0x0D, /* DEC C */
+			0x20, 0xF8, /* JR NZ, -8 */
+			0x04, /* INC B */
+			0xC3, 0x00, 0x80 }; /* JP 8000h */
+
+	/**
+	 * Ciclos por segundo del bucle en una CPU
+	 * 
+	 * @param cpu
+	 * @return
+	 * @throws Exception
+	 */
+	private static double loop(Z80 cpu) throws Exception {
+		Bus16 bus = new Bus16();
+		bus.addComponent(new RAM(64, RAM.KB, 0));
+		cpu.setDataBus(bus);
+		cpu.setULA(new ULA());
+		for (int idx = 0; idx < LOOP.length; idx++) {
+			cpu.write8(0x8000 + idx, (byte) LOOP[idx]);
+		}
+		cpu.setPC(0x8000);
+
+		long cycles = 0;
+		long begin = System.nanoTime();
+		while (cycles < LOOP_CYCLES) {
+			cycles += cpu.fetch();
+		}
+		return cycles * 1e9 / (System.nanoTime() - begin);
+	}
+
+	/**
+	 * Lanzador de la prueba
+	 * 
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		BootWorkload workload = new BootWorkload();
+
+		for (int round = 1; round <= ROUNDS; round++) {
+			double reference = loop(new Z80());
+			double fast = loop(new Z80FastCore());
+			Z80Dynarec cpu = new Z80Dynarec();
+			double dynarec = loop(cpu);
+			System.out.printf("Round %d loop: reference %.0f T/s, fast %.0f T/s, dynarec %.0f T/s (x%.1f) [%s]%n", round,
+					reference, fast, dynarec, dynarec / reference, cpu.getStatistics());
+
+			workload.run(new Spectrum(Spectrum.CORE_REFERENCE), Long.MAX_VALUE);
+			reference = workload.getCyclesPerSecond();
+			workload.run(new Spectrum(Spectrum.CORE_FAST), Long.MAX_VALUE);
+			fast = workload.getCyclesPerSecond();
+			workload.run(new Spectrum(Spectrum.CORE_DYNAREC), Long.MAX_VALUE);
+			dynarec = workload.getCyclesPerSecond();
+			System.out.printf("Round %d boot: reference %.0f T/s, fast %.0f T/s, dynarec %.0f T/s (x%.1f)%n", round,
+					reference, fast, dynarec, dynarec / reference);
+		}
+	}
+}
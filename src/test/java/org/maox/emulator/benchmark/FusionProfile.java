@@ -0,0 +1,33 @@
+package org.maox.emulator.benchmark;
+
+import org.maox.emulator.cpu.z80.Z80Map;
+import org.maox.emulator.virtual.Spectrum;
+
+/**
+ * Perfilado de las superinstrucciones: qué secuencias se ejecutan como superinstrucción y cuántas veces durante el
+ * arranque de la ROM del ZX48 con el núcleo de referencia
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public class FusionProfile {
+
+	/**
+	 * Lanzador del perfilado
+	 * 
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		Spectrum spectrum = new Spectrum(Spectrum.CORE_REFERENCE);
+		Z80Map map = (Z80Map) spectrum.getCPU().getInstructionMap();
+		map.setFusionProfiling(true);
+
+		BootWorkload workload = new BootWorkload();
+		workload.run(spectrum, Long.MAX_VALUE);
+
+		System.out.printf("%d executions, %d cycles in %.1f ms [%s]%n", workload.getInstructions(),
+				workload.getCycles(), workload.getMillis(), spectrum.getCPU().getDecodeStatistics());
+		System.out.print(map.getFusionProfile());
+	}
+}
@@ -0,0 +1,52 @@
+package org.maox.emulator.benchmark;
+
+import org.maox.emulator.virtual.Spectrum;
+
+/**
+ * Prueba de rendimiento: instrucciones por segundo con los flags calculados en cada operación frente a los flags
+ * perezosos, en el núcleo de referencia y en el núcleo rápido
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public class LazyFlagsBenchmark {
+
+	/* Instrucciones por ronda y rondas de cada modo */
+	final private static long INSTRUCTIONS = 1000000;
+	final private static int ROUNDS = 10;
+
+	/**
+	 * Lanzador de la prueba
+	 * 
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		BootWorkload workload = new BootWorkload();
+
+		for (int round = 1; round <= ROUNDS; round++) {
+			System.out.printf("Round %d: reference core %s, fast core %s%n", round,
+					compare(workload, Spectrum.CORE_REFERENCE), compare(workload, Spectrum.CORE_FAST));
+		}
+	}
+
+	/**
+	 * Ejecuta la carga de trabajo con un núcleo en los 2 modos de flags
+	 * 
+	 * @param workload carga de trabajo
+	 * @param core núcleo del Z80
+	 * @return resumen de la comparación
+	 * @throws Exception
+	 */
+	private static String compare(BootWorkload workload, int core) throws Exception {
+		workload.run(new Spectrum(core), INSTRUCTIONS);
+		double eager = workload.getInstructionsPerSecond();
+
+		Spectrum spectrum = new Spectrum(core);
+		spectrum.getCPU().setLazyFlags(true);
+		workload.run(spectrum, INSTRUCTIONS);
+		double lazy = workload.getInstructionsPerSecond();
+
+		return String.format("eager: %.0f inst/s, lazy: %.0f inst/s (x%.2f)", eager, lazy, lazy / eager);
+	}
+}
@@ -0,0 +1,77 @@
+package org.maox.emulator.benchmark;
+
+import org.maox.emulator.peripheral.z80.PixelTables;
+
+/**
+ * Prueba de rendimiento: conversión de los bytes del bitmap en pixels recorriendo sus bits frente a las tablas de
+ * pixels de la ULA
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public class PixelBenchmark {
+
+	/* Bytes del bitmap y atributos de una pantalla, pantallas por ronda y rondas */
+	final private static int BYTES = 6144;
+	final private static int SCREENS = 2000;
+	final private static int ROUNDS = 10;
+
+	/**
+	 * Lanzador de la prueba
+	 * 
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		byte bitmaps[] = new byte[BYTES];
+		byte attributes[] = new byte[BYTES];
+		for (int idx = 0; idx < BYTES; idx++) {
+			bitmaps[idx] = (byte) (idx * 37 + (idx >> 8));
+			attributes[idx] = (byte) (idx * 13 + (idx >> 5));
+		}
+		int pixels[] = new int[BYTES * 8];
+
+		for (int round = 1; round <= ROUNDS; round++) {
+			long start = System.nanoTime();
+			int check = 0;
+			for (int screen = 0; screen < SCREENS; screen++) {
+				boolean flash = (screen & 0x10) != 0;
+				for (int idx = 0; idx < BYTES; idx++) {
+					expandBits(bitmaps[idx], attributes[idx], flash, pixels, idx << 3);
+				}
+				check += pixels[screen % pixels.length];
+			}
+			double naive = SCREENS / ((System.nanoTime() - start) / 1e9);
+
+			start = System.nanoTime();
+			for (int screen = 0; screen < SCREENS; screen++) {
+				boolean flash = (screen & 0x10) != 0;
+				for (int idx = 0; idx < BYTES; idx++) {
+					PixelTables.expand(bitmaps[idx], attributes[idx], flash, pixels, idx << 3);
+				}
+				check -= pixels[screen % pixels.length];
+			}
+			double tables = SCREENS / ((System.nanoTime() - start) / 1e9);
+
+			System.out.printf("Round %d: bit loop %.0f screens/s, tables %.0f screens/s (x%.1f) [%d]%n", round, naive,
+					tables, tables / naive, check);
+		}
+	}
+
+	/**
+	 * Conversión recorriendo los bits del byte
+	 */
+	private static void expandBits(int bitmap, int attribute, boolean flash, int pixels[], int offset) {
+		int bright = (attribute & 0x40) >> 3;
+		int ink = PixelTables.PALETTE[attribute & 0x07 | bright];
+		int paper = PixelTables.PALETTE[attribute >> 3 & 0x07 | bright];
+		if (flash && (attribute & 0x80) != 0) {
+			int swap = ink;
+			ink = paper;
+			paper = swap;
+		}
+		for (int bit = 0x80; bit != 0; bit >>= 1) {
+			pixels[offset++] = (bitmap & bit) != 0 ? ink : paper;
+		}
+	}
+}
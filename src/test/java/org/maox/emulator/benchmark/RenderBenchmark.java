@@ -0,0 +1,67 @@
+package org.maox.emulator.benchmark;
+
+import org.maox.emulator.core.RAM;
+import org.maox.emulator.peripheral.z80.ULA;
+
+/**
+ * Prueba de rendimiento: frames por segundo de la imagen de pantalla de la ULA, sin interfaz gráfica, pintando la
+ * pantalla completa, sólo una fila de celdas modificada en cada frame o una pantalla estática
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public class RenderBenchmark {
+
+	/* Frames por ronda y rondas */
+	final private static int FRAMES = 2000;
+	final private static int ROUNDS = 10;
+	/* Celdas de 8 x 8 pixels de la pantalla y de una fila */
+	final private static int CELLS = 768;
+	final private static int ROW = 32;
+
+	/**
+	 * Lanzador de la prueba
+	 * 
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		System.setProperty("java.awt.headless", "true");
+
+		ULA ula = new ULA();
+		ula.addComponent(new RAM(16, RAM.KB, 0x4000));
+		/* Bitmap y atributos variados, con parpadeo y brillo */
+		for (int address = 0x4000; address < 0x5B00; address++) {
+			ula.write(address, (byte) (address * 37 + (address >> 8)));
+		}
+
+		for (int round = 1; round <= ROUNDS; round++) {
+			System.out.printf("Round %d: full %s, one row %s, static %s%n", round, measure(ula, CELLS),
+					measure(ula, ROW), measure(ula, 0));
+		}
+	}
+
+	/**
+	 * Pinta FRAMES frames modificando antes de cada uno un número de celdas
+	 * 
+	 * @return frames por segundo y celdas pintadas por frame
+	 */
+	private static String measure(ULA ula, int cells) throws Exception {
+		ula.getFrame();
+		long start = System.nanoTime();
+		long rendered = 0;
+		for (int frame = 0; frame < FRAMES; frame++) {
+			if (cells == CELLS) {
+				ula.invalidateFrame();
+			} else {
+				for (int cell = 0; cell < cells; cell++) {
+					ula.write(0x5800 + (frame * cells + cell) % CELLS, (byte) frame);
+				}
+			}
+			ula.getFrame();
+			rendered += ula.getRenderedBytes();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		return String.format("%.0f frames/s (%d bytes/frame)", FRAMES / seconds, rendered / FRAMES);
+	}
+}
@@ -0,0 +1,43 @@
+package org.maox.emulator.benchmark;
+
+import org.maox.emulator.debug.InstructionTracer;
+import org.maox.emulator.virtual.Spectrum;
+
+/**
+ * Prueba de rendimiento: instrucciones por segundo con y sin oyente de traza en la CPU
+ * <p>
+ * La traza vuelca al log de DEBUG, por lo que su coste depende de la configuración de log4j
+ * 
+ * @author Alex Orgaz
+ * 
+ */
+public class TraceBenchmark {
+
+	/* Instrucciones por ronda y rondas de cada modo */
+	final private static long INSTRUCTIONS = 1000000;
+	final private static int ROUNDS = 5;
+
+	/**
+	 * Lanzador de la prueba
+	 * 
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		BootWorkload workload = new BootWorkload();
+
+		for (int round = 1; round <= ROUNDS; round++) {
+			Spectrum spectrum = new Spectrum();
+			workload.run(spectrum, INSTRUCTIONS);
+			double off = workload.getInstructionsPerSecond();
+
+			spectrum = new Spectrum();
+			spectrum.setTraceListener(new InstructionTracer());
+			workload.run(spectrum, INSTRUCTIONS);
+			double on = workload.getInstructionsPerSecond();
+
+			System.out.printf("Round %d: %d instructions. Trace off: %.0f inst/s, trace on: %.0f inst/s (x%.1f)%n",
+					round, workload.getInstructions(), off, on, off / on);
+		}
+	}
+}
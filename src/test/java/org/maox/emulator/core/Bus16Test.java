@@ -0,0 +1,118 @@
+package org.maox.emulator.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.maox.emulator.exceptions.IllegalAddressException;
+
+/**
+ * Tabla de páginas del bus de 16 bits: acceso directo a las memorias, envío al componente del resto de accesos y
+ * montaje y desmontaje de componentes
+ */
+public class Bus16Test {
+
+	@Test
+	public void testAddRemove() throws IllegalAddressException {
+		Bus16 bus = new Bus16();
+		RAM low = new RAM(16, RAM.KB, 0x0000);
+		RAM high = new RAM(32, RAM.KB, 0x8000);
+		bus.addComponent(high);
+		bus.addComponent(low);
+		assertEquals(0x0000, bus.getStartAddress());
+		assertEquals(48 * RAM.KB, bus.getSize());
+
+		try {
+			bus.addComponent(new RAM(RAM.KB, 0x3C00));
+			fail("Overlapping component");
+		} catch (IllegalAddressException e) {
+			// Correcto, la página ya está asignada
+		}
+
+		bus.removeComponent(low);
+		assertEquals(0x8000, bus.getStartAddress());
+		assertEquals(32 * RAM.KB, bus.getSize());
+		try {
+			bus.read(0x1000);
+			fail("Removed component");
+		} catch (IllegalAddressException e) {
+			// Correcto, no hay memoria
+		}
+
+		bus.removeComponent(high);
+		assertEquals(0xFFFF, bus.getStartAddress());
+		assertEquals(0, bus.getSize());
+	}
+
+	@Test
+	public void testDirectAccess() throws IllegalAddressException {
+		Bus16 bus = new Bus16();
+		RAM ram = new RAM(32, RAM.KB, 0x8000);
+		bus.addComponent(ram);
+		int[] generations = bus.getWriteGenerations();
+
+		bus.write(0x8123, (byte) 0x5A);
+		assertEquals((byte) 0x5A, ram.read(0x8123));
+		assertEquals((byte) 0x5A, bus.read(0x8123));
+		assertEquals(1, generations[0x81]);
+
+		ram.write(0xFFFF, (byte) 0xA5);
+		assertEquals((byte) 0xA5, bus.read(0xFFFF));
+		assertFalse(bus.isReadOnly(0x8000));
+	}
+
+	@Test
+	public void testSearch() throws IllegalAddressException {
+		Bus16 bus = new Bus16();
+		bus.addComponent(new RAM(32, RAM.KB, 0x8000));
+		/* Memoria que no ocupa su última página completa */
+		bus.addComponent(new RAM(0x180, 0x4000));
+
+		/* Cualquier posición respecto a las palabras de 8 bytes, en los 2 sentidos */
+		for (int position = 0; position < 24; position++) {
+			bus.write(0x9005 + position, (byte) 0x80);
+			assertEquals(position, bus.search(0x9005, 24, (byte) 0x80, 1));
+			assertEquals(23 - position, bus.search(0x9005 + 23, 24, (byte) 0x80, -1));
+			bus.write(0x9005 + position, (byte) 0);
+		}
+		assertEquals(24, bus.search(0x9005, 24, (byte) 0x80, 1));
+		assertEquals(24, bus.search(0x9005 + 23, 24, (byte) 0x80, -1));
+		/* Un byte anterior con el bit 7 no da falsos positivos */
+		bus.write(0x9000, (byte) 0x81);
+		assertEquals(16, bus.search(0x9000, 16, (byte) 0x01, 1));
+
+		/* Sin acceso directo en todo el bloque */
+		assertEquals(-1, bus.search(0x4100, 16, (byte) 0, 1));
+		assertEquals(-1, bus.search(0x7FF8, 16, (byte) 0, 1));
+	}
+
+	@Test
+	public void testHandledPages() throws IllegalAddressException {
+		Bus16 bus = new Bus16();
+		ROM rom = new ROM(16, RAM.KB, 0x0000);
+		/* Memoria que no ocupa su última página completa */
+		RAM partial = new RAM(0x180, 0x4000);
+		bus.addComponent(rom);
+		bus.addComponent(partial);
+		assertTrue(bus.isReadOnly(0x0100));
+
+		try {
+			bus.write(0x0100, (byte) 1);
+			fail("ROM write");
+		} catch (IllegalAddressException e) {
+			// Correcto, la ROM es de sólo lectura
+		}
+		assertEquals(0, bus.getWriteGenerations()[0x01]);
+
+		bus.write(0x4170, (byte) 0x77);
+		assertEquals((byte) 0x77, bus.read(0x4170));
+		try {
+			bus.read(0x4180);
+			fail("Read beyond memory");
+		} catch (IllegalAddressException e) {
+			// Correcto, fuera del componente
+		}
+	}
+}
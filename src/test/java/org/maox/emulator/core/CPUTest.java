@@ -0,0 +1,61 @@
+package org.maox.emulator.core;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.maox.emulator.cpu.z80.Z80;
+
+/**
+ * Ejecución por ciclos de reloj: exceso de la última instrucción y ciclos disponibles para las instrucciones de
+ * repetición
+ */
+public class CPUTest {
+
+	@Test
+	public void testOvershoot() throws Exception {
+		Z80 cpu = prepare();
+
+		/* 3 NOP de 4 ciclos para 10 ciclos */
+		assertEquals(2, cpu.run(10));
+		assertEquals(3, cpu.getPC());
+		/* Descontando el exceso anterior */
+		assertEquals(0, cpu.run(10 - 2));
+		assertEquals(5, cpu.getPC());
+		/* Sin ciclos no se ejecuta nada */
+		assertEquals(4, cpu.run(-4));
+		assertEquals(5, cpu.getPC());
+		assertEquals(0, cpu.getCycleBudget());
+	}
+
+	@Test
+	public void testRepeat() throws Exception {
+		Z80 cpu = prepare();
+		/* LDIR de 0x100 bytes en 0x1000 */
+		cpu.write8(0x1000, (byte) 0xED);
+		cpu.write8(0x1001, (byte) 0xB0);
+		cpu.setPC(0x1000);
+		cpu.setHL(0x2000);
+		cpu.setDE(0x3000);
+		cpu.setBC(0x0100);
+
+		/* Las iteraciones en bloque no pasan de los ciclos pedidos salvo la última */
+		assertEquals(21 - 100 % 21, cpu.run(100));
+		assertEquals(0x0100 - 5, cpu.getBC());
+		/* Resto de la copia y 1 NOP */
+		assertEquals(2, cpu.run(0xFA * 21 + 16 + 2));
+		assertEquals(0, cpu.getBC());
+		assertEquals(0x1003, cpu.getPC());
+	}
+
+	/**
+	 * Z80 con 64K de RAM a 0 (NOP)
+	 */
+	private Z80 prepare() throws Exception {
+		Z80 cpu = new Z80();
+		Bus16 bus = new Bus16();
+		bus.addComponent(new RAM(64, RAM.KB, 0));
+		cpu.setDataBus(bus);
+		cpu.setPC(0);
+		return cpu;
+	}
+}
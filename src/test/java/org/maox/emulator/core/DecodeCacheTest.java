@@ -0,0 +1,113 @@
+package org.maox.emulator.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.maox.emulator.Emulator;
+import org.maox.emulator.cpu.z80.Z80;
+import org.maox.emulator.peripheral.z80.ULA;
+import org.maox.emulator.virtual.Spectrum;
+
+/**
+ * Caché de instrucciones decodificadas: la ejecución con caché debe ser idéntica a la ejecución sin caché, también
+ * cuando el programa se modifica a sí mismo. Con caché se ejecutan superinstrucciones, por lo que se avanza en las 2
+ * ejecuciones hasta que coinciden los ciclos y entonces se compara el estado.
+ */
+public class DecodeCacheTest {
+
+	/* El programa cambia una instrucción posterior de su bloque (NOP <-> INC A) y el operando de otro bloque */
+	final private static int[] SELF_MODIFYING = { 0x3A, 0x0A, 0x80, /* 8000 LD A, (800Ah) */
+			0xEE, 0x3C, /* 8003 XOR 3Ch */
+			0x32, 0x0A, 0x80, /* 8005 LD (800Ah), A */
+			0x00, /* 8008 NOP */
+			0x00, /* 8009 NOP */
+			0x00, /* 800A NOP / INC A */
+			0x21, 0x01, 0x81, /* 800B LD HL, 8101h */
+			0x34, /* 800E INC (HL) */
+			0xC3, 0x00, 0x81 }; /* 800F JP 8100h */
+	final private static int[] PATCHED = { 0x3E, 0x00, /* 8100 LD A, n */
+			0x80, /* 8102 ADD B */
+			0x47, /* 8103 LD B, A */
+			0xC3, 0x00, 0x80 }; /* 8104 JP 8000h */
+
+	@Test
+	public void testBoot() {
+		try {
+			/* Arranque de la ROM del ZX48 con y sin caché */
+			Spectrum plain = new Spectrum(Spectrum.CORE_REFERENCE);
+			Spectrum cached = new Spectrum(Spectrum.CORE_REFERENCE);
+			plain.getCPU().setDecodeCache(false);
+
+			long plainCycles = 0;
+			long cachedCycles = 0;
+			for (int count = 0; count < 200000; count++) {
+				do {
+					if (plainCycles <= cachedCycles) {
+						plainCycles += plain.execute();
+					} else {
+						cachedCycles += cached.execute();
+					}
+				} while (plainCycles != cachedCycles);
+				assertEquals("Instruction " + count, plain.dump(), cached.dump());
+			}
+
+			/* El arranque se ejecuta desde ROM, sus bloques no se invalidan */
+			assertTrue(cached.getCPU().getDecodeStatistics(), cached.getCPU().getDecodeHitRate() > 0.99);
+
+		} catch (Exception e) {
+			Emulator.handleException(e);
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testSelfModifying() {
+		try {
+			Z80 plain = new Z80();
+			Z80 cached = new Z80();
+			prepare(plain);
+			prepare(cached);
+			plain.setDecodeCache(false);
+
+			long plainCycles = 0;
+			long cachedCycles = 0;
+			for (int count = 0; count < 10000; count++) {
+				do {
+					if (plainCycles <= cachedCycles) {
+						plainCycles += plain.fetch();
+					} else {
+						cachedCycles += cached.fetch();
+					}
+				} while (plainCycles != cachedCycles);
+				assertEquals("Instruction " + count, plain.dump(), cached.dump());
+			}
+
+			assertTrue(cached.getDecodeInvalidations() > 0);
+
+		} catch (Exception e) {
+			Emulator.handleException(e);
+			fail(e.getMessage());
+		}
+	}
+
+	/**
+	 * Carga el programa en 64K de RAM
+	 */
+	private void prepare(Z80 cpu) throws Exception {
+		Bus16 bus = new Bus16();
+		bus.addComponent(new RAM(64, RAM.KB, 0));
+		cpu.setDataBus(bus);
+		cpu.setULA(new ULA());
+
+		for (int idx = 0; idx < SELF_MODIFYING.length; idx++) {
+			cpu.write8(0x8000 + idx, (byte) SELF_MODIFYING[idx]);
+		}
+		for (int idx = 0; idx < PATCHED.length; idx++) {
+			cpu.write8(0x8100 + idx, (byte) PATCHED[idx]);
+		}
+		cpu.setPC(0x8000);
+		cpu.setSP(0xFF00);
+	}
+}
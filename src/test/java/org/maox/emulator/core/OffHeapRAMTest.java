@@ -0,0 +1,87 @@
+package org.maox.emulator.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
+import org.junit.Test;
+import org.maox.emulator.exceptions.IllegalAddressException;
+
+/**
+ * Memoria fuera del heap: acceso desde el bus, vista de sólo lectura, búsqueda y proyección sobre fichero
+ */
+public class OffHeapRAMTest {
+
+	@Test
+	public void testBuffer() throws IllegalAddressException {
+		OffHeapRAM ram = new OffHeapRAM(16, RAM.KB, 0x4000);
+		Bus16 bus = new Bus16();
+		bus.addComponent(ram);
+		ByteBuffer view = ram.getBuffer();
+		assertTrue(view.isReadOnly());
+		assertEquals(16 * RAM.KB, view.capacity());
+
+		/* La vista refleja las escrituras sin copiar la memoria */
+		bus.write(0x4001, (byte) 0x3C);
+		assertEquals((byte) 0x3C, view.get(0x0001));
+		assertEquals((byte) 0x3C, bus.read(0x4001));
+
+		try {
+			view.put(0, (byte) 1);
+			fail("Read-only view");
+		} catch (ReadOnlyBufferException e) {
+			// Correcto
+		}
+		try {
+			ram.read(0x8000);
+			fail("Read beyond memory");
+		} catch (IllegalAddressException e) {
+			// Correcto
+		}
+	}
+
+	@Test
+	public void testMappedFile() throws IOException, IllegalAddressException {
+		File file = File.createTempFile("ram", ".bin");
+		file.deleteOnExit();
+
+		OffHeapRAM ram = new OffHeapRAM(file, 1, RAM.KB, 0x8000);
+		ram.write(0x8000, (byte) 0x12);
+		ram.write(0x83FF, (byte) 0x34);
+		ram.force();
+		assertEquals(RAM.KB, file.length());
+
+		/* El contenido persiste en el fichero */
+		OffHeapRAM reloaded = new OffHeapRAM(file, 1, RAM.KB, 0x8000);
+		assertEquals((byte) 0x12, reloaded.read(0x8000));
+		assertEquals((byte) 0x34, reloaded.read(0x83FF));
+
+		/* Una segunda memoria a continuación en el mismo fichero */
+		OffHeapRAM next = new OffHeapRAM(file, RAM.KB, 1, RAM.KB, 0x8400);
+		next.write(0x8400, (byte) 0x56);
+		next.force();
+		assertEquals(2 * RAM.KB, file.length());
+		assertEquals((byte) 0x34, reloaded.read(0x83FF));
+	}
+
+	@Test
+	public void testSearch() throws IllegalAddressException {
+		OffHeapRAM ram = new OffHeapRAM(16, RAM.KB, 0x4000);
+		Bus16 bus = new Bus16();
+		bus.addComponent(ram);
+		ram.write(0x4123, (byte) 0xAA);
+		ram.write(0x4456, (byte) 0xAA);
+
+		/* Sobre el buffer en los dos sentidos, cruzando páginas */
+		assertEquals(0x123, bus.search(0x4000, 0x1000, (byte) 0xAA, 1));
+		assertEquals(0x4FFF - 0x4456, bus.search(0x4FFF, 0x1000, (byte) 0xAA, -1));
+		assertEquals(0x100, bus.search(0x4124, 0x100, (byte) 0xAA, 1));
+		/* Fuera de la memoria */
+		assertEquals(-1, bus.search(0x3F00, 0x200, (byte) 0xAA, 1));
+	}
+}
@@ -0,0 +1,104 @@
+package org.maox.emulator.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.maox.emulator.cpu.z80.Z80;
+
+/**
+ * Planificador de eventos: orden de atención, cancelación y atención desde la ejecución de la CPU
+ */
+public class SchedulerTest {
+
+	/* Tipos de evento de prueba, consecutivos y sin receptor en la CPU */
+	final private static int EVENT_A = 16;
+	final private static int EVENT_B = 17;
+
+	@Test
+	public void testOrder() throws Exception {
+		Scheduler scheduler = new Scheduler();
+		final List<Long> handled = new ArrayList<Long>();
+		EventHandler handler = new EventHandler() {
+			@Override
+			public void handleEvent(int type, long time) {
+				handled.add(time << 8 | type);
+			}
+		};
+		scheduler.setHandler(EVENT_A, handler);
+		scheduler.setHandler(EVENT_B, handler);
+
+		Random random = new Random(16);
+		long expected[] = new long[1000];
+		for (int idx = 0; idx < expected.length; idx++) {
+			long time = random.nextInt(5000);
+			int type = EVENT_A + random.nextInt(2);
+			scheduler.schedule(time, type);
+			expected[idx] = time << 8 | type;
+		}
+		Arrays.sort(expected);
+
+		scheduler.dispatch(2499);
+		assertEquals(scheduler.getNextTime(), expected[handled.size()] >> 8);
+		assertTrue(scheduler.getNextTime() >= 2500);
+		scheduler.dispatch(Long.MAX_VALUE >> 8);
+		assertEquals(expected.length, handled.size());
+		for (int idx = 0; idx < expected.length; idx++) {
+			assertEquals(expected[idx], (long) handled.get(idx));
+		}
+		assertEquals(Long.MAX_VALUE, scheduler.getNextTime());
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		Scheduler scheduler = new Scheduler();
+		for (int time = 100; time > 0; time--) {
+			scheduler.schedule(time, time % 2 == 0 ? EVENT_A : EVENT_B);
+		}
+		scheduler.cancel(EVENT_B);
+		assertEquals(50, scheduler.getSize());
+		assertEquals(2, scheduler.getNextTime());
+		scheduler.cancel(EVENT_A);
+		assertEquals(Long.MAX_VALUE, scheduler.getNextTime());
+	}
+
+	@Test
+	public void testRun() throws Exception {
+		Z80 cpu = new Z80();
+		Bus16 bus = new Bus16();
+		bus.addComponent(new RAM(64, RAM.KB, 0));
+		cpu.setDataBus(bus);
+		/* LDIR de 0x1000 bytes en 0 */
+		cpu.write8(0x0000, (byte) 0xED);
+		cpu.write8(0x0001, (byte) 0xB0);
+		cpu.setHL(0x2000);
+		cpu.setDE(0x3000);
+		cpu.setBC(0x1000);
+
+		/* Evento periódico cada 1000 ciclos: se atiende en el primer límite de instrucción tras su ciclo */
+		final Scheduler scheduler = cpu.getScheduler();
+		final List<Long> delays = new ArrayList<Long>();
+		final Z80 clock = cpu;
+		scheduler.setHandler(EVENT_A, new EventHandler() {
+			@Override
+			public void handleEvent(int type, long time) {
+				delays.add(clock.getClock() - time);
+				scheduler.schedule(time + 1000, EVENT_A);
+			}
+		});
+		scheduler.schedule(1000, EVENT_A);
+
+		int overshoot = cpu.run(50000);
+		assertEquals(50000 + overshoot, cpu.getClock());
+		assertEquals(50, delays.size());
+		/* Las iteraciones en bloque no se pasan del evento más que una iteración */
+		for (long delay : delays) {
+			assertTrue(delay >= 0 && delay < 21);
+		}
+	}
+}
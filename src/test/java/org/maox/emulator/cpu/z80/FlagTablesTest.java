@@ -0,0 +1,147 @@
+package org.maox.emulator.cpu.z80;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.maox.emulator.exceptions.UnknowInstructionException;
+
+/**
+ * Comprobación exhaustiva de los flags obtenidos por tablas con el cálculo flag a flag que hacían las operaciones
+ * aritmético lógicas. Difiere sólo donde aquel cálculo era incorrecto: la paridad (contaba dos veces el bit 7) y el
+ * semiacarreo de SBC con acarreo, que se comprueban con su definición
+ */
+public class FlagTablesTest {
+
+	/* CPU para pruebas */
+	private static Z80 cpu;
+
+	@BeforeClass
+	public static void setUp() throws UnknowInstructionException {
+		cpu = new Z80();
+	}
+
+	@Test
+	public void testAddSub() {
+		for (int c = 0; c <= 1; c++) {
+			for (int a = 0; a < 256; a++) {
+				for (int b = 0; b < 256; b++) {
+					int res = a + b + c;
+					cpu.setA((byte) a);
+					cpu.addWithCarry((byte) b, (byte) c);
+					byte flags = cpu.getF();
+					assertEquals((byte) res, cpu.getA());
+					assertEquals("ADC " + a + ", " + b + ", " + c, expected(res, (a & 0x0F) + (b & 0x0F) + c > 0x0F,
+							overflow(a, b, res), false, res > 0xFF), flags);
+
+					res = a - b - c;
+					cpu.setA((byte) a);
+					cpu.subWithCarry((byte) b, (byte) c);
+					flags = cpu.getF();
+					assertEquals((byte) res, cpu.getA());
+					assertEquals("SBC " + a + ", " + b + ", " + c, expected(res, (a & 0x0F) < (b & 0x0F) + c,
+							overflow(a, ~b, res), true, res < 0), flags);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testCompare() {
+		for (int a = 0; a < 256; a++) {
+			for (int b = 0; b < 256; b++) {
+				int res = a - b;
+				cpu.setA((byte) a);
+				cpu.cp8((byte) b);
+				byte flags = cpu.getF();
+				assertEquals((byte) a, cpu.getA());
+				/* Los flags 3 y 5 se copian del operando */
+				int expected = expected(res, (a & 0x0F) < (b & 0x0F), overflow(a, ~b, res), true, res < 0) & 0xD7
+						| b & 0x28;
+				assertEquals("CP " + a + ", " + b, (byte) expected, flags);
+			}
+		}
+	}
+
+	@Test
+	public void testIncDec() {
+		for (int carry = 0; carry <= 1; carry++) {
+			for (int value = 0; value < 256; value++) {
+				cpu.setF((byte) carry);
+				byte res = cpu.inc8((byte) value);
+				byte flags = cpu.getF();
+				assertEquals((byte) (value + 1), res);
+				assertEquals("INC " + value,
+						expected(res, (value & 0x0F) + 1 == 0x10, value == 0x7F, false, carry != 0), flags);
+
+				cpu.setF((byte) carry);
+				res = cpu.dec8((byte) value);
+				flags = cpu.getF();
+				assertEquals((byte) (value - 1), res);
+				assertEquals("DEC " + value, expected(res, (value & 0x0F) < 1, value == 0x80, true, carry != 0),
+						flags);
+			}
+		}
+	}
+
+	@Test
+	public void testLogical() {
+		for (int a = 0; a < 256; a++) {
+			for (int b = 0; b < 256; b++) {
+				cpu.setA((byte) a);
+				cpu.and8((byte) b);
+				byte flags = cpu.getF();
+				assertEquals("AND " + a + ", " + b, expected(a & b, true, parity(a & b), false, false), flags);
+
+				cpu.setA((byte) a);
+				cpu.or8((byte) b);
+				flags = cpu.getF();
+				assertEquals("OR " + a + ", " + b, expected(a | b, false, parity(a | b), false, false), flags);
+
+				cpu.setA((byte) a);
+				cpu.xor8((byte) b);
+				flags = cpu.getF();
+				assertEquals("XOR " + a + ", " + b, expected(a ^ b, false, parity(a ^ b), false, false), flags);
+			}
+		}
+	}
+
+	@Test
+	public void testParity() {
+		for (int value = 0; value < 256; value++) {
+			cpu.setFlagParity((byte) value);
+			assertEquals("Parity " + value, parity(value), cpu.getFlag(Z80.FLAG_PV));
+		}
+	}
+
+	/**
+	 * Registro F calculado flag a flag
+	 * 
+	 * @param res resultado, sólo se tienen en cuenta sus 8 bits bajos
+	 */
+	private byte expected(int res, boolean half, boolean pv, boolean n, boolean carry) {
+		cpu.setF((byte) 0);
+		cpu.setFlagSigned((byte) res);
+		cpu.setFlagZero((byte) res);
+		cpu.setFlag(Z80.FLAG_H, half);
+		cpu.setFlag(Z80.FLAG_PV, pv);
+		cpu.setFlag(Z80.FLAG_N, n);
+		cpu.setFlag(Z80.FLAG_C, carry);
+		cpu.setFlag35((byte) res);
+		return cpu.getF();
+	}
+
+	/**
+	 * Desbordamiento: operandos del mismo signo y resultado de signo distinto
+	 */
+	private boolean overflow(int a, int b, int res) {
+		return ((a ^ b) & 0x80) == 0 && ((res ^ a) & 0x80) != 0;
+	}
+
+	/**
+	 * Paridad par del número de bits a 1
+	 */
+	private boolean parity(int value) {
+		return Integer.bitCount(value & 0xFF) % 2 == 0;
+	}
+}
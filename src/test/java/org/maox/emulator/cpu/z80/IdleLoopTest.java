@@ -0,0 +1,120 @@
+package org.maox.emulator.cpu.z80;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.maox.emulator.core.Bus16;
+import org.maox.emulator.core.RAM;
+import org.maox.emulator.peripheral.z80.ULA;
+
+/**
+ * Detección de bucles de espera: el resultado debe ser el de la ejecución de referencia sin detección
+ */
+public class IdleLoopTest {
+
+	/* Contador de frames que incrementa la rutina de interrupción, fuera y dentro de la memoria contenida */
+	final private static int FRAMES = 0x9000;
+	final private static int FRAMES_CONTENDED = 0x5C78;
+
+	@Test
+	public void testContention() throws Exception {
+		for (int core = 0; core < 3; core++) {
+			Z80 reference = run(core, false, FRAMES_CONTENDED);
+			Z80 idle = run(core, true, FRAMES_CONTENDED);
+			assertSame(reference, idle, FRAMES_CONTENDED);
+			assertEquals(reference.getInterruptLatency(), idle.getInterruptLatency(), 0);
+
+			/* Sólo se adelanta el JR $ del frame en el que el contador vale 3, la espera lee la memoria contenida */
+			assertTrue(idle.getIdleStatistics(), idle.getIdleCyclesSkipped() > 0);
+			assertTrue(idle.getIdleStatistics(), idle.getIdleCyclesSkipped() < ULA.CYCLES_PER_FRAME);
+		}
+	}
+
+	@Test
+	public void testReference() throws Exception {
+		for (int core = 0; core < 3; core++) {
+			Z80 reference = run(core, false, FRAMES);
+			Z80 idle = run(core, true, FRAMES);
+			assertSame(reference, idle, FRAMES);
+
+			/* La espera ocupa casi todo el tiempo, menos la ventana de INT y lo que no cabe antes de cada evento */
+			assertEquals(0, reference.getIdleCyclesSkipped());
+			assertTrue(idle.getIdleStatistics(), idle.getIdleCyclesSkipped() > 5 * ULA.CYCLES_PER_FRAME * 8 / 10);
+		}
+	}
+
+	@Test
+	public void testWrites() throws Exception {
+		for (int core = 0; core < 3; core++) {
+			Z80 cpu = core == 0 ? new Z80() : core == 1 ? new Z80FastCore() : new Z80Dynarec();
+			Bus16 bus = new Bus16();
+			bus.addComponent(new RAM(64, RAM.KB, 0));
+			cpu.setDataBus(bus);
+			ULA ula = new ULA();
+			ula.setScheduler(cpu.getScheduler(), 0);
+			cpu.setIdleDetection(true);
+
+			/* bucle: LD (9100h), A; JR bucle. Los registros no cambian pero cada iteración escribe en memoria */
+			write(cpu, 0x0000, 0x32, 0x00, 0x91, 0x18, 0xFB);
+			cpu.run(ULA.CYCLES_PER_FRAME);
+			assertEquals(0, cpu.getIdleCyclesSkipped());
+		}
+	}
+
+	/**
+	 * Compara la ejecución con detección con la de referencia
+	 */
+	private void assertSame(Z80 reference, Z80 idle, int frames) throws Exception {
+		assertEquals(reference.getClock(), idle.getClock());
+		assertEquals(reference.dump(), idle.dump());
+		assertEquals(reference.getR(), idle.getR());
+		assertEquals(reference.getInterruptsAccepted(), idle.getInterruptsAccepted());
+		assertEquals(reference.getMaxInterruptLatency(), idle.getMaxInterruptLatency());
+		for (int address = 0; address < 0x10000; address++) {
+			assertEquals(reference.read8(address), idle.read8(address));
+		}
+		assertEquals(5, idle.read8(frames));
+	}
+
+	/**
+	 * Espera de 3 frames sobre el contador y luego JR $, durante 5 frames. Con el contador en 4000h-7FFFh esa memoria
+	 * es la de la ULA, contenida
+	 */
+	private Z80 run(int core, boolean detection, int frames) throws Exception {
+		Z80 cpu = core == 0 ? new Z80() : core == 1 ? new Z80FastCore() : new Z80Dynarec();
+		Bus16 bus = new Bus16();
+		ULA ula = new ULA();
+		if (frames >= 0x4000 && frames < 0x8000) {
+			ula.addComponent(new RAM(16, RAM.KB, 0x4000));
+			bus.addComponent(new RAM(16, RAM.KB, 0x0000));
+			bus.addComponent(ula);
+			bus.addComponent(new RAM(32, RAM.KB, 0x8000));
+			ula.setCPU(cpu);
+			bus.setContention(0x4000, 16 * RAM.KB, ula);
+		} else {
+			bus.addComponent(new RAM(64, RAM.KB, 0));
+		}
+		cpu.setDataBus(bus);
+		cpu.setSP(0x0000);
+		ula.setScheduler(cpu.getScheduler(), 0);
+		cpu.setInterruptMode(Z80.INTERRUPT_MODE_1);
+		cpu.setIdleDetection(detection);
+
+		int low = frames & 0xFF;
+		int high = frames >> 8;
+		/* EI; bucle: LD A, (FRAMES); CP 3; JP NZ, bucle; JR $ */
+		write(cpu, 0x0000, 0xFB, 0x3A, low, high, 0xFE, 0x03, 0xC2, 0x01, 0x00, 0x18, 0xFE);
+		/* LD A, (FRAMES); INC A; LD (FRAMES), A; EI; JP bucle */
+		write(cpu, 0x0038, 0x3A, low, high, 0x3C, 0x32, low, high, 0xFB, 0xC3, 0x01, 0x00);
+
+		cpu.run(5 * ULA.CYCLES_PER_FRAME - 100);
+		return cpu;
+	}
+
+	private void write(Z80 cpu, int address, int... code) throws Exception {
+		for (int idx = 0; idx < code.length; idx++) {
+			cpu.write8(address + idx, (byte) code[idx]);
+		}
+	}
+}
@@ -0,0 +1,182 @@
+package org.maox.emulator.cpu.z80;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.maox.emulator.core.Bus16;
+import org.maox.emulator.core.RAM;
+import org.maox.emulator.core.Scheduler;
+import org.maox.emulator.debug.DebugCPU;
+import org.maox.emulator.debug.TraceListener;
+import org.maox.emulator.exceptions.IllegalAddressException;
+import org.maox.emulator.exceptions.InstructionException;
+import org.maox.emulator.peripheral.z80.ULA;
+
+/**
+ * Aceptación de interrupciones en los límites de instrucción: IM 1 e IM 2, retraso tras EI, ventana de la línea INT y
+ * temporizador de frames de la ULA
+ */
+public class InterruptTest {
+
+	/* Fetch del HALT en la ejecución con traza */
+	private int halts = 0;
+
+	@Test
+	public void testDelayAfterEI() throws Exception {
+		for (Z80 cpu : new Z80[] { new Z80(), new Z80FastCore() }) {
+			/* NOP, NOP, EI, NOP... con la línea INT activa desde el ciclo 0 */
+			prepare(cpu, 0x0000, 0x00, 0x00, 0xFB);
+			cpu.getScheduler().schedule(0, Scheduler.EVENT_INT);
+			cpu.run(100);
+
+			/* Se acepta tras la instrucción siguiente a EI, en el ciclo 16, guardando su dirección de retorno */
+			assertEquals(1, cpu.getInterruptsAccepted());
+			assertEquals(16, cpu.getMaxInterruptLatency());
+			assertEquals(0x0004, cpu.read16(cpu.getSP()));
+			assertFalse(cpu.isIFF1());
+		}
+	}
+
+	@Test
+	public void testFrameTimer() throws Exception {
+		Z80 cpu = new Z80();
+		ULA ula = new ULA();
+		ula.setScheduler(cpu.getScheduler(), 0);
+		/* EI; JR $ y rutina de interrupción en 38h que vuelve a habilitarlas */
+		prepare(cpu, 0x0000, 0xFB, 0x18, 0xFE);
+		prepare(cpu, 0x0038, 0xFB, 0x18, 0xFD);
+		cpu.setInterruptMode(Z80.INTERRUPT_MODE_1);
+
+		/* El inicio del cuarto frame coincide con el final de la ejecución y también se atiende */
+		cpu.run(3 * ULA.CYCLES_PER_FRAME);
+		assertEquals(4, ula.getFrameCount());
+		/* La primera se acepta tras EI y la instrucción siguiente, la del inicio del cuarto frame queda pendiente */
+		assertEquals(3, cpu.getInterruptsAccepted());
+		assertEquals(0, cpu.getInterruptsMissed());
+		assertTrue(cpu.isInterruptRequest());
+		assertEquals(4 + 12, cpu.getMaxInterruptLatency());
+	}
+
+	@Test
+	public void testHalt() throws Exception {
+		/* Avance hasta el siguiente evento frente a NOP de uno en uno con traza */
+		Z80 single = halt(new Z80(), true);
+		final int fetches[] = new int[1];
+		Z80 idle = new Z80FastCore();
+		idle.setIdleDetection(true);
+		Z80 counted = new Z80() {
+			@Override
+			public int fetch() throws InstructionException, IllegalAddressException {
+				fetches[0]++;
+				return super.fetch();
+			}
+		};
+		for (Z80 cpu : new Z80[] { counted, new Z80FastCore(), idle }) {
+			Z80 fast = halt(cpu, false);
+			assertEquals(single.getClock(), fast.getClock());
+			assertEquals(single.dump(), fast.dump());
+			assertEquals(single.getR(), fast.getR());
+			assertEquals(single.getMaxInterruptLatency(), fast.getMaxInterruptLatency());
+			assertEquals(single.read16(single.getSP()), fast.read16(fast.getSP()));
+		}
+		/* R cuenta los NOP del HALT, uno por fetch con traza, sin cambiar el bit 7 */
+		assertEquals((byte) (0x80 | halts & 0x7F), single.getR());
+		/* Unos pocos HALT por cada intervalo entre eventos (líneas de 224 ciclos) en lugar de uno cada 4 ciclos */
+		assertTrue(fetches[0] < 2 * 2 * ULA.LINES + 100);
+		/* Retorno al HALT de la rutina de interrupción */
+		assertEquals(0x003A, single.read16(single.getSP()));
+		assertEquals(2, single.getInterruptsAccepted());
+	}
+
+	@Test
+	public void testIM1() throws Exception {
+		for (Z80 cpu : new Z80[] { new Z80(), new Z80FastCore() }) {
+			/* EI; JR $ */
+			prepare(cpu, 0x0000, 0xFB, 0x18, 0xFE);
+			prepare(cpu, 0x0038, 0x18, 0xFE);
+			cpu.setInterruptMode(Z80.INTERRUPT_MODE_1);
+			cpu.getScheduler().schedule(1000, Scheduler.EVENT_INT);
+
+			cpu.run(2000);
+			assertEquals(1, cpu.getInterruptsAccepted());
+			assertEquals(0x0038, cpu.getPC());
+			assertEquals(0xFFFE, cpu.getSP());
+			assertEquals(0x0001, cpu.read16(0xFFFE));
+			assertTrue(cpu.getInterruptLatency() < 12);
+		}
+	}
+
+	@Test
+	public void testIM2() throws Exception {
+		for (Z80 cpu : new Z80[] { new Z80(), new Z80FastCore() }) {
+			prepare(cpu, 0x0000, 0xFB, 0x18, 0xFE);
+			/* Vector en I * 256 + FFh */
+			prepare(cpu, 0x80FF, 0x00, 0x90);
+			prepare(cpu, 0x9000, 0x18, 0xFE);
+			cpu.setI((byte) 0x80);
+			cpu.setInterruptMode(Z80.INTERRUPT_MODE_2);
+			cpu.getScheduler().schedule(100, Scheduler.EVENT_INT);
+
+			cpu.run(200);
+			assertEquals(1, cpu.getInterruptsAccepted());
+			assertEquals(0x9000, cpu.getPC());
+		}
+	}
+
+	@Test
+	public void testMissed() throws Exception {
+		for (Z80 cpu : new Z80[] { new Z80(), new Z80FastCore() }) {
+			/* Con las interrupciones deshabilitadas la línea INT se desactiva a los 32 ciclos */
+			prepare(cpu, 0x0000);
+			cpu.getScheduler().schedule(40, Scheduler.EVENT_INT);
+			cpu.run(60);
+			assertTrue(cpu.isInterruptRequest());
+			cpu.run(20);
+			assertFalse(cpu.isInterruptRequest());
+			assertEquals(0, cpu.getInterruptsAccepted());
+			assertEquals(1, cpu.getInterruptsMissed());
+		}
+	}
+
+	/**
+	 * EI; HALT con la rutina de interrupción EI; HALT en 38h durante 2 frames, con o sin traza. R empieza con el bit 7 a
+	 * 1 y con traza se cuentan los fetch del HALT
+	 */
+	private Z80 halt(Z80 cpu, boolean trace) throws Exception {
+		ULA ula = new ULA();
+		ula.setScheduler(cpu.getScheduler(), 0);
+		prepare(cpu, 0x0000, 0xFB, 0x76);
+		prepare(cpu, 0x0038, 0xFB, 0x76);
+		cpu.setInterruptMode(Z80.INTERRUPT_MODE_1);
+		cpu.setR((byte) 0x80);
+		if (trace) {
+			cpu.setTraceListener(new TraceListener() {
+				@Override
+				public void instructionFetched(DebugCPU cpu, int address) {
+					if (address == 0x0001 || address == 0x0039) {
+						halts++;
+					}
+				}
+			});
+		}
+		cpu.run(2 * ULA.CYCLES_PER_FRAME);
+		return cpu;
+	}
+
+	/**
+	 * Asigna 64K de RAM a 0 (NOP) si la CPU no tiene memoria y escribe un código a partir de una dirección
+	 */
+	private void prepare(Z80 cpu, int address, int... code) throws Exception {
+		if (cpu.getDataBus() == null) {
+			Bus16 bus = new Bus16();
+			bus.addComponent(new RAM(64, RAM.KB, 0));
+			cpu.setDataBus(bus);
+			cpu.setSP(0x0000);
+		}
+		for (int idx = 0; idx < code.length; idx++) {
+			cpu.write8(address + idx, (byte) code[idx]);
+		}
+	}
+}
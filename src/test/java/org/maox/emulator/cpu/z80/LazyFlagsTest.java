@@ -0,0 +1,139 @@
+package org.maox.emulator.cpu.z80;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.maox.emulator.Emulator;
+import org.maox.emulator.core.Bus16;
+import org.maox.emulator.core.RAM;
+import org.maox.emulator.peripheral.z80.ULA;
+import org.maox.emulator.virtual.Spectrum;
+
+/**
+ * Equivalencia de los flags perezosos con los flags calculados en cada operación. El estado completo sólo se compara
+ * cada cierto número de instrucciones, ya que leer F obliga a calcularlo, y entre medias se comparan el PC y los ciclos,
+ * que dependen de los flags en los saltos condicionales
+ */
+public class LazyFlagsTest {
+
+	/* Instrucciones entre comparaciones del estado completo */
+	final private static int STATE_INTERVAL = 61;
+
+	/* Encadena operaciones cuyos flags se leen más tarde, o que leen el acarreo de una operación pendiente */
+	final private static int[] PROGRAM = { 0x21, 0x00, 0x81, /* 8000 LD HL, 8100h */
+			0x06, 0x00, /* 8003 LD B, 0 */
+			0x7E, /* 8005 LD A, (HL) */
+			0x80, /* 8006 ADD B */
+			0x0C, /* 8007 INC C */
+			0x89, /* 8008 ADC C */
+			0x08, /* 8009 EX AF, AF' */
+			0xDE, 0x07, /* 800A SBC 7 */
+			0x08, /* 800C EX AF, AF' */
+			0xA8, /* 800D XOR B */
+			0x95, /* 800E SUB L */
+			0x05, /* 800F DEC B */
+			0xFE, 0x40, /* 8010 CP 40h */
+			0x38, 0x01, /* 8012 JR C, 8015h */
+			0x34, /* 8014 INC (HL) */
+			0x23, /* 8015 INC HL */
+			0xE6, 0x3F, /* 8016 AND 3Fh */
+			0xB2, /* 8018 OR D */
+			0x14, /* 8019 INC D */
+			0xC2, 0x05, 0x80, /* 801A JP NZ, 8005h */
+			0xC3, 0x00, 0x80 }; /* 801D JP 8000h */
+
+	@Test
+	public void testBoot() {
+		try {
+			/* Arranque de la ROM del ZX48 con los 2 modos */
+			Spectrum eager = new Spectrum(Spectrum.CORE_FAST);
+			Spectrum lazy = new Spectrum(Spectrum.CORE_FAST);
+			lazy.getCPU().setLazyFlags(true);
+			assertTrue(lazy.getCPU().isLazyFlags());
+
+			for (int count = 0; count < 100000; count++) {
+				assertEquals("Execution " + count, eager.execute(), lazy.execute());
+				assertEquals("Execution " + count, eager.getCPU().getPC(), lazy.getCPU().getPC());
+				if (count % STATE_INTERVAL == 0) {
+					assertEquals("Execution " + count, eager.dump(), lazy.dump());
+				}
+			}
+
+		} catch (Exception e) {
+			Emulator.handleException(e);
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testProgramFastCore() {
+		try {
+			compare(new Z80FastCore(), new Z80FastCore());
+		} catch (Exception e) {
+			Emulator.handleException(e);
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testProgramReference() {
+		try {
+			compare(new Z80(), new Z80());
+		} catch (Exception e) {
+			Emulator.handleException(e);
+			fail(e.getMessage());
+		}
+	}
+
+	/**
+	 * Ejecuta el programa con flags calculados en cada operación y con flags perezosos
+	 */
+	private void compare(Z80 eager, Z80 lazy) throws Exception {
+		prepare(eager);
+		prepare(lazy);
+		lazy.setLazyFlags(true);
+
+		for (int count = 0; count < 50000; count++) {
+			assertEquals("Execution " + count, eager.fetch(), lazy.fetch());
+			assertEquals("Execution " + count, eager.getPC(), lazy.getPC());
+			if (count % STATE_INTERVAL == 0) {
+				assertEquals("Execution " + count, state(eager), state(lazy));
+			}
+		}
+		for (int address = 0x8100; address < 0x8200; address++) {
+			assertEquals(eager.read8(address), lazy.read8(address));
+		}
+	}
+
+	/**
+	 * Carga el programa en 64K de RAM y sitúa el PC en su inicio
+	 */
+	private void prepare(Z80 cpu) throws Exception {
+		Bus16 bus = new Bus16();
+		bus.addComponent(new RAM(64, RAM.KB, 0));
+		cpu.setDataBus(bus);
+		cpu.setULA(new ULA());
+
+		int address = 0x8000;
+		for (int code : PROGRAM) {
+			cpu.write8(address++, (byte) code);
+		}
+		cpu.setPC(0x8000);
+		cpu.setSP(0xFF00);
+	}
+
+	/**
+	 * Estado visible de una CPU, incluidos los registros alternativos
+	 */
+	private String state(Z80 cpu) {
+		StringBuilder state = new StringBuilder(cpu.dump());
+		cpu.exchangeAF();
+		cpu.exchangeX();
+		state.append(" alt " + cpu.dump());
+		cpu.exchangeAF();
+		cpu.exchangeX();
+		return state.toString();
+	}
+}
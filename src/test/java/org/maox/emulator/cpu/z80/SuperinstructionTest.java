@@ -0,0 +1,124 @@
+package org.maox.emulator.cpu.z80;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.maox.emulator.Emulator;
+import org.maox.emulator.core.Bus16;
+import org.maox.emulator.core.RAM;
+import org.maox.emulator.cpu.z80.asm.Superinstruction;
+import org.maox.emulator.peripheral.z80.ULA;
+import org.maox.emulator.virtual.Spectrum;
+
+/**
+ * Superinstrucciones: cada secuencia ejecutada como superinstrucción debe dejar el mismo estado, memoria y ciclos que
+ * sus instrucciones ejecutadas por separado
+ */
+public class SuperinstructionTest {
+
+	/* Pruebas con estado aleatorio por superinstrucción */
+	final private static int TRIALS = 200;
+
+	@Test
+	public void testEveryFusion() {
+		try {
+			Z80 fused = new Z80();
+			Z80 separate = new Z80();
+			separate.setDecodeCache(false);
+			Z80Map map = (Z80Map) fused.getInstructionMap();
+			map.setFusionProfiling(true);
+
+			Random random = new Random(0x5F05);
+			for (Superinstruction superinstruction : map.getFusions()) {
+				int[] pattern = superinstruction.getPattern();
+
+				for (int trial = 0; trial < TRIALS; trial++) {
+					/* Mismo estado de partida, los punteros pueden apuntar a la propia secuencia */
+					byte[] memory = new byte[0x10000];
+					random.nextBytes(memory);
+					int pc = 0x0100 + random.nextInt(0xFE00);
+					for (int idx = 0; idx < pattern.length; idx++) {
+						if (pattern[idx] >= 0) {
+							memory[pc + idx] = (byte) pattern[idx];
+						}
+					}
+					int hl = random.nextBoolean() ? pc + random.nextInt(4) : random.nextInt(0x10000);
+					int de = random.nextBoolean() ? pc + random.nextInt(4) : random.nextInt(0x10000);
+					byte[] registers = new byte[8];
+					random.nextBytes(registers);
+
+					prepare(fused, memory, pc, hl, de, registers);
+					prepare(separate, memory, pc, hl, de, registers);
+
+					/* Una ejecución con superinstrucción y las necesarias por separado hasta igualar los ciclos */
+					String name = superinstruction.getAssembly();
+					int cycles = fused.fetch();
+					int sum = 0;
+					do {
+						sum += separate.fetch();
+					} while (sum < cycles);
+
+					assertEquals(name + " cycles", sum, cycles);
+					assertEquals(name, separate.dump(), fused.dump());
+					for (int address : new int[] { hl, de, pc, pc + 1, pc + 2, pc + 3 }) {
+						assertEquals(name, separate.read8(address & 0xFFFF), fused.read8(address & 0xFFFF));
+					}
+				}
+				assertEquals(superinstruction.getAssembly(), TRIALS, superinstruction.getExecutions());
+			}
+
+		} catch (Exception e) {
+			Emulator.handleException(e);
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testBootProfile() {
+		try {
+			Spectrum spectrum = new Spectrum(Spectrum.CORE_REFERENCE);
+			Z80Map map = (Z80Map) spectrum.getCPU().getInstructionMap();
+			map.setFusionProfiling(true);
+
+			for (int count = 0; count < 100000; count++) {
+				spectrum.execute();
+			}
+
+			/* Los bucles de comprobación de la RAM de la ROM usan CP H ; JR NZ */
+			assertTrue(map.getFusionProfile(), map.getFusionProfile().contains("CP H : JP NZ"));
+
+		} catch (Exception e) {
+			Emulator.handleException(e);
+			fail(e.getMessage());
+		}
+	}
+
+	/**
+	 * Establece el estado de partida de una CPU sobre 64K de RAM
+	 */
+	private void prepare(Z80 cpu, byte[] memory, int pc, int hl, int de, byte[] reg) throws Exception {
+		Bus16 bus = new Bus16();
+		RAM ram = new RAM(64, RAM.KB, 0);
+		bus.addComponent(ram);
+		for (int idx = 0; idx < memory.length; idx++) {
+			ram.write(idx, memory[idx]);
+		}
+		cpu.setDataBus(bus);
+		cpu.setULA(new ULA());
+
+		cpu.setPC(pc);
+		cpu.setSP(0xFF00);
+		cpu.setA(reg[0]);
+		cpu.setF(reg[1]);
+		cpu.setB(reg[2]);
+		cpu.setC(reg[3]);
+		cpu.setH((byte) (hl >> 8));
+		cpu.setL((byte) hl);
+		cpu.setD((byte) (de >> 8));
+		cpu.setE((byte) de);
+	}
+}
@@ -0,0 +1,207 @@
+package org.maox.emulator.cpu.z80;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.maox.emulator.Emulator;
+import org.maox.emulator.core.Bus16;
+import org.maox.emulator.core.RAM;
+import org.maox.emulator.peripheral.z80.ULA;
+import org.maox.emulator.virtual.Spectrum;
+
+/**
+ * Equivalencia del núcleo con recompilación dinámica con el núcleo de referencia: por cada ejecución del dynarec (una
+ * instrucción o un bloque completo) se ejecutan en el núcleo de referencia las instrucciones que suman los mismos ciclos
+ * y se compara el estado
+ */
+public class Z80DynarecTest {
+
+	/* Bucle con lecturas y escrituras fuera y dentro de la página del código */
+	final private static int[] LOOP = { 0x21, 0x40, 0x80, /* 8000 LD HL, 8040h */
+			0x0E, 0x80, /* 8003 LD C, 80h */
+			0x7E, /* 8005 LD A, (HL) */
+			0xC6, 0x03, /* 8006 ADD 3 */
+			0x77, /* 8008 LD (HL), A */
+			0x23, /* 8009 INC HL */
+			0x0D, /* 800A DEC C */
+			0x20, 0xF8, /* 800B JR NZ, 8005h */
+			0x15, /* 800D DEC D */
+			0xC3, 0x03, 0x80 }; /* 800E JP 8003h */
+
+	/* EI no se traduce, el bloque que empieza en él no se puede compilar */
+	final private static int[] NOT_COMPILABLE = { 0xFB, /* 8000 EI */
+			0x04, /* 8001 INC B */
+			0xC3, 0x00, 0x80 }; /* 8002 JP 8000h */
+
+	/* El bloque cambia una instrucción posterior del mismo bloque: NOP <-> INC A */
+	final private static int[] SELF_MODIFYING = { 0x3A, 0x0A, 0x80, /* 8000 LD A, (800Ah) */
+			0xEE, 0x3C, /* 8003 XOR 3Ch */
+			0x32, 0x0A, 0x80, /* 8005 LD (800Ah), A */
+			0x00, /* 8008 NOP */
+			0x00, /* 8009 NOP */
+			0x00, /* 800A NOP / INC A */
+			0x0C, /* 800B INC C */
+			0xC3, 0x00, 0x80 }; /* 800C JP 8000h */
+
+	/* Un bloque cambia el operando de otro bloque en cada vuelta */
+	final private static int[] PATCHER = { 0x21, 0x01, 0x81, /* 8000 LD HL, 8101h */
+			0x34, /* 8003 INC (HL) */
+			0xC3, 0x00, 0x81 }; /* 8004 JP 8100h */
+	final private static int[] PATCHED = { 0x3E, 0x00, /* 8100 LD A, n */
+			0x80, /* 8102 ADD B */
+			0x47, /* 8103 LD B, A */
+			0xC3, 0x00, 0x80 }; /* 8104 JP 8000h */
+
+	@Test
+	public void testBoot() {
+		try {
+			/* Arranque de la ROM del ZX48 con los 2 núcleos */
+			Spectrum reference = new Spectrum(Spectrum.CORE_REFERENCE);
+			Spectrum dynarec = new Spectrum(Spectrum.CORE_DYNAREC);
+			reference.getCPU().setDecodeCache(false);
+
+			for (int count = 0; count < 100000; count++) {
+				int cycles = dynarec.execute();
+				int sum = 0;
+				do {
+					sum += reference.execute();
+				} while (sum < cycles);
+				assertEquals("Execution " + count, cycles, sum);
+				assertEquals("Execution " + count, reference.dump(), dynarec.dump());
+			}
+
+		} catch (Exception e) {
+			Emulator.handleException(e);
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testFailedBlock() {
+		/* Se intenta compilar una sola vez y se queda en el intérprete, el bloque siguiente sí se compila */
+		Z80Dynarec dynarec = compare(10000, 0x8000, NOT_COMPILABLE);
+		assertEquals(1, dynarec.getFailedBlocks());
+		assertEquals(1, dynarec.getCompiledBlocks());
+		assertTrue(dynarec.getBlockExecutions() > 0);
+	}
+
+	@Test
+	public void testInterrupts() throws Exception {
+		/* Rutina en 38h: LD A, (9000h); INC A; LD (9000h), A; EI; JP 0001h */
+		int[] handler = { 0x3A, 0x00, 0x90, 0x3C, 0x32, 0x00, 0x90, 0xFB, 0xC3, 0x01, 0x00 };
+		/* EI y bucle de 20 NOP y JR 0001h, un bloque de 92 ciclos, más largo que la ventana de INT */
+		int[] loop = new int[23];
+		loop[0] = 0xFB;
+		loop[21] = 0x18;
+		loop[22] = 0xEA;
+
+		Z80 fast = new Z80FastCore();
+		Z80Dynarec dynarec = new Z80Dynarec();
+		for (Z80 cpu : new Z80[] { fast, dynarec }) {
+			prepare(cpu, 0x0000, loop, 0x0038, handler);
+			new ULA().setScheduler(cpu.getScheduler(), 0);
+			cpu.setInterruptMode(Z80.INTERRUPT_MODE_1);
+			cpu.run(200 * ULA.CYCLES_PER_FRAME);
+		}
+
+		/* Se aceptan todas, en los mismos límites de instrucción que con el intérprete */
+		assertTrue(dynarec.getBlockExecutions() > 0);
+		assertEquals(200, dynarec.getInterruptsAccepted());
+		assertEquals(0, dynarec.getInterruptsMissed());
+		assertEquals(fast.getMaxInterruptLatency(), dynarec.getMaxInterruptLatency());
+		assertEquals(fast.getClock(), dynarec.getClock());
+		assertEquals(state(fast), state(dynarec));
+		assertEquals((byte) 200, dynarec.read8(0x9000));
+	}
+
+	@Test
+	public void testLoop() {
+		Z80Dynarec dynarec = compare(30000, 0x8000, LOOP);
+		assertTrue(dynarec.getCompiledBlocks() > 0);
+		assertTrue(dynarec.getBlockExecutions() > 0);
+	}
+
+	@Test
+	public void testSelfModifyingBlock() {
+		Z80Dynarec dynarec = compare(10000, 0x8000, SELF_MODIFYING);
+		assertTrue(dynarec.getBlockExecutions() > 0);
+	}
+
+	@Test
+	public void testSelfModifyingCrossBlock() {
+		Z80Dynarec dynarec = compare(10000, 0x8000, PATCHER, 0x8100, PATCHED);
+		assertTrue(dynarec.getInvalidatedBlocks() > 0);
+		assertTrue(dynarec.getInvalidatedBlocks() <= Z80Dynarec.MAX_INVALIDATIONS);
+	}
+
+	/**
+	 * Ejecuta unos programas desde la primera dirección con los 2 núcleos
+	 * 
+	 * @param executions ejecuciones del dynarec
+	 * @param program dirección y código de cada programa
+	 * @return núcleo con recompilación dinámica, para sus estadísticas
+	 */
+	private Z80Dynarec compare(int executions, Object... program) {
+		try {
+			Z80 reference = new Z80();
+			Z80Dynarec dynarec = new Z80Dynarec();
+			prepare(reference, program);
+			prepare(dynarec, program);
+			reference.setDecodeCache(false);
+
+			for (int count = 0; count < executions; count++) {
+				int cycles = dynarec.fetch();
+				int sum = 0;
+				do {
+					sum += reference.fetch();
+				} while (sum < cycles);
+				assertEquals("Execution " + count, cycles, sum);
+				assertEquals("Execution " + count, state(reference), state(dynarec));
+			}
+			for (int address = 0x8000; address < 0x8200; address++) {
+				assertEquals(reference.read8(address), dynarec.read8(address));
+			}
+			return dynarec;
+
+		} catch (Exception e) {
+			Emulator.handleException(e);
+			fail(e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Carga los programas en 64K de RAM y sitúa el PC en el primero
+	 */
+	private void prepare(Z80 cpu, Object... program) throws Exception {
+		Bus16 bus = new Bus16();
+		bus.addComponent(new RAM(64, RAM.KB, 0));
+		cpu.setDataBus(bus);
+		cpu.setULA(new ULA());
+
+		for (int idx = 0; idx < program.length; idx += 2) {
+			int address = (Integer) program[idx];
+			for (int code : (int[]) program[idx + 1]) {
+				cpu.write8(address++, (byte) code);
+			}
+		}
+		cpu.setPC((Integer) program[0]);
+		cpu.setSP(0xFF00);
+	}
+
+	/**
+	 * Estado visible de una CPU, incluidos los registros alternativos
+	 */
+	private String state(Z80 cpu) {
+		StringBuilder state = new StringBuilder(cpu.dump());
+		state.append(" IFF=" + cpu.isIFF1() + cpu.isIFF2());
+		cpu.exchangeAF();
+		cpu.exchangeX();
+		state.append(" alt " + cpu.dump());
+		cpu.exchangeAF();
+		cpu.exchangeX();
+		return state.toString();
+	}
+}
@@ -0,0 +1,205 @@
+package org.maox.emulator.cpu.z80;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.maox.emulator.Emulator;
+import org.maox.emulator.core.Instruction;
+import org.maox.emulator.core.RAM;
+import org.maox.emulator.debug.Hex;
+import org.maox.emulator.exceptions.IllegalAddressException;
+import org.maox.emulator.peripheral.z80.ULA;
+import org.maox.emulator.virtual.Spectrum;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Equivalencia del núcleo rápido con el núcleo de referencia: cada instrucción del mapa se ejecuta en los 2 núcleos
+ * desde el mismo estado y se comparan registros, escrituras en memoria y ciclos
+ */
+public class Z80FastCoreTest {
+
+	final private static Logger logger = LoggerFactory.getLogger(Z80FastCoreTest.class);
+
+	/* Pruebas con estado aleatorio por instrucción */
+	final private static int TRIALS = 200;
+
+	/**
+	 * Memoria de 64K que registra las escrituras
+	 */
+	private static class RecordingRAM extends RAM {
+
+		private List<Integer> writes = new ArrayList<Integer>();
+
+		public RecordingRAM() {
+			super(64, RAM.KB, 0);
+		}
+
+		@Override
+		public void write(int address, byte data) throws IllegalAddressException {
+			super.write(address, data);
+			writes.add(address << 8 | data & 0xFF);
+		}
+	}
+
+	/* Prefijos de cada tabla del mapa */
+	final private static byte[][] PREFIXES = { {}, { (byte) 0xCB }, { (byte) 0xDD }, { (byte) 0xED }, { (byte) 0xFD },
+			{ (byte) 0xDD, (byte) 0xCB }, { (byte) 0xFD, (byte) 0xCB } };
+
+	@Test
+	public void testEveryInstruction() {
+		try {
+			Z80 reference = new Z80();
+			Z80FastCore fast = new Z80FastCore();
+			RecordingRAM refMemory = new RecordingRAM();
+			RecordingRAM fastMemory = new RecordingRAM();
+			reference.setDataBus(refMemory);
+			fast.setDataBus(fastMemory);
+			reference.setULA(new ULA());
+			fast.setULA(new ULA());
+
+			Random random = new Random(0x5A80);
+			Instruction[] table = ((Z80Map) reference.getInstructionMap()).tableCodes;
+
+			for (int idx = 0; idx < table.length; idx++) {
+				if (table[idx] == null)
+					continue;
+
+				int tableIdx = idx / Z80.MAP_SIZE;
+				byte[] prefix = PREFIXES[tableIdx];
+
+				for (int trial = 0; trial < TRIALS; trial++) {
+					/* Mismo estado de partida en los 2 núcleos */
+					byte[] memory = new byte[8];
+					random.nextBytes(memory);
+					byte[] registers = new byte[24];
+					random.nextBytes(registers);
+					int pc = 0x0100 + random.nextInt(0xFE00);
+
+					/* Código de instrucción, con el desplazamiento antes del opcode en DD CB y FD CB */
+					int pos = 0;
+					for (byte b : prefix) {
+						memory[pos++] = b;
+					}
+					if (prefix.length == 2) {
+						pos++;
+					}
+					memory[pos] = (byte) idx;
+
+					String name = Hex.addressToString(pc) + " " + table[idx].getAssembly();
+					prepare(reference, refMemory, pc, memory, registers);
+					prepare(fast, fastMemory, pc, memory, registers);
+
+					int refCycles = 0;
+					int fastCycles = 0;
+					Class<?> refError = null;
+					Class<?> fastError = null;
+					try {
+						refCycles = reference.fetch();
+					} catch (Exception e) {
+						refError = e.getClass();
+					}
+					try {
+						fastCycles = fast.fetch();
+					} catch (Exception e) {
+						fastError = e.getClass();
+					}
+
+					/* Un error de acceso a memoria detiene la emulación, el estado de la CPU no es comparable */
+					assertEquals(name, refError, fastError);
+					if (refError == null) {
+						assertEquals(name + " cycles", refCycles, fastCycles);
+						assertEquals(name, state(reference), state(fast));
+						assertEquals(name + " writes", refMemory.writes, fastMemory.writes);
+					}
+				}
+				logger.trace("{} OK", table[idx].getAssembly());
+			}
+
+		} catch (Exception e) {
+			Emulator.handleException(e);
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testBoot() {
+		try {
+			/* Arranque de la ROM del ZX48 con los 2 núcleos */
+			Spectrum reference = new Spectrum(Spectrum.CORE_REFERENCE);
+			Spectrum fast = new Spectrum(Spectrum.CORE_FAST);
+			reference.getCPU().setDecodeCache(false);
+
+			for (int count = 0; count < 100000; count++) {
+				assertEquals(reference.execute(), fast.execute());
+				if (count % 1000 == 0) {
+					assertEquals("Instruction " + count, reference.dump(), fast.dump());
+				}
+			}
+			assertEquals(reference.dump(), fast.dump());
+
+		} catch (Exception e) {
+			Emulator.handleException(e);
+			fail(e.getMessage());
+		}
+	}
+
+	/**
+	 * Establece el estado de partida de una CPU
+	 */
+	private void prepare(Z80 cpu, RecordingRAM ram, int pc, byte[] memory, byte[] reg) throws Exception {
+		for (int idx = 0; idx < memory.length; idx++) {
+			ram.write(pc + idx, memory[idx]);
+		}
+		/* Los datos apuntados por los registros quedan fijados por el contenido previo de la memoria */
+		ram.writes.clear();
+
+		cpu.setPC(pc);
+		cpu.setSP(0x0100 + (reg[0] & 0xFF) * 0xF0);
+		cpu.setA(reg[1]);
+		cpu.setF(reg[2]);
+		cpu.setB(reg[3]);
+		cpu.setC(reg[4]);
+		cpu.setD(reg[5]);
+		cpu.setE(reg[6]);
+		cpu.setH(reg[7]);
+		cpu.setL(reg[8]);
+		cpu.setI(reg[9]);
+		cpu.setR(reg[10]);
+		cpu.setIX(reg[11] << 8 | reg[12] & 0xFF);
+		cpu.setIY(reg[13] << 8 | reg[14] & 0xFF);
+		cpu.setIFF1((reg[15] & 1) != 0);
+		cpu.setIFF2((reg[15] & 2) != 0);
+		cpu.exchangeAF();
+		cpu.setA(reg[16]);
+		cpu.setF(reg[17]);
+		cpu.exchangeAF();
+		cpu.exchangeX();
+		cpu.setB(reg[18]);
+		cpu.setC(reg[19]);
+		cpu.setD(reg[20]);
+		cpu.setE(reg[21]);
+		cpu.setH(reg[22]);
+		cpu.setL(reg[23]);
+		cpu.exchangeX();
+	}
+
+	/**
+	 * Estado visible de una CPU, incluidos los registros alternativos
+	 */
+	private String state(Z80 cpu) {
+		StringBuilder state = new StringBuilder(cpu.dump());
+		state.append(" I=" + cpu.getI() + " R=" + cpu.getR() + " IFF=" + cpu.isIFF1() + cpu.isIFF2());
+		cpu.exchangeAF();
+		cpu.exchangeX();
+		state.append(" alt " + cpu.dump());
+		cpu.exchangeAF();
+		cpu.exchangeX();
+		return state.toString();
+	}
+}
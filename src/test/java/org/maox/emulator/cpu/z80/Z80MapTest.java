@@ -0,0 +1,143 @@
+package org.maox.emulator.cpu.z80;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.maox.emulator.Emulator;
+import org.maox.emulator.core.Instruction;
+import org.maox.emulator.core.RAM;
+import org.maox.emulator.cpu.z80.asm.Handlers;
+import org.maox.emulator.cpu.z80.asm.IM;
+import org.maox.emulator.cpu.z80.asm.LD;
+import org.maox.emulator.cpu.z80.asm.NOP;
+import org.maox.emulator.cpu.z80.asm.SET;
+import org.maox.emulator.exceptions.UnknowInstructionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class Z80MapTest {
+
+	final private static Logger logger = LoggerFactory.getLogger(Z80MapTest.class);
+
+	/* CPU para ejecutar las pruebas */
+	private static Z80 cpu;
+	private static RAM memory;
+
+	/**
+	 * Decodifica la instrucción que hay en una dirección como lo hace el fetch
+	 */
+	private Instruction decode(int address, byte... opcodes) throws Exception {
+		for (int idx = 0; idx < opcodes.length; idx++) {
+			cpu.write8(address + idx, opcodes[idx]);
+		}
+		cpu.setPC(address);
+		cpu.loadIR();
+		Instruction inst = cpu.getInstructionMap().getInstruction(cpu.getIR());
+		logger.trace(inst.getAssembly());
+		return inst;
+	}
+
+	@Test
+	public void testPrefixes() {
+		try {
+			/* Sin prefijo */
+			assertTrue(decode(0x0100, (byte) 0x00) instanceof NOP);
+			assertEquals(0x0101, cpu.getPC());
+
+			/* CB */
+			assertTrue(decode(0x0100, (byte) 0xCB, (byte) 0xC7) instanceof SET);
+			assertEquals(0x0102, cpu.getPC());
+
+			/* ED */
+			assertTrue(decode(0x0100, (byte) 0xED, (byte) 0x56) instanceof IM);
+			assertEquals(0x0102, cpu.getPC());
+
+			/* DD y FD, el desplazamiento lo lee la instrucción */
+			assertEquals("LD A, (IX + d)", decode(0x0100, (byte) 0xDD, (byte) 0x7E, (byte) 0x05).getAssembly());
+			assertEquals(0x0102, cpu.getPC());
+			assertEquals("LD A, (IY + d)", decode(0x0100, (byte) 0xFD, (byte) 0x7E, (byte) 0x05).getAssembly());
+			assertEquals(0x0102, cpu.getPC());
+
+			/* DD CB d op y FD CB d op, el PC queda tras el código de instrucción */
+			assertEquals("SET 3, (IX + d)",
+					decode(0x0100, (byte) 0xDD, (byte) 0xCB, (byte) 0x05, (byte) 0xDE).getAssembly());
+			assertEquals(0x0104, cpu.getPC());
+			assertEquals("SET 7, (IY + d)",
+					decode(0x0100, (byte) 0xFD, (byte) 0xCB, (byte) 0x05, (byte) 0xFE).getAssembly());
+			assertEquals(0x0104, cpu.getPC());
+
+			/* Mismo opcode en distinta tabla */
+			assertTrue(decode(0x0100, (byte) 0x46) instanceof LD);
+			assertEquals("LD B, (IX + d)", decode(0x0100, (byte) 0xDD, (byte) 0x46, (byte) 0x00).getAssembly());
+			assertTrue(decode(0x0100, (byte) 0xED, (byte) 0x46) instanceof IM);
+
+		} catch (Exception e) {
+			Emulator.handleException(e);
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testHandlers() {
+		try {
+			/* Los manejadores generados conservan la instrucción genérica para el debug y los ciclos */
+			Instruction inst = decode(0x0100, (byte) 0xDD, (byte) 0x77, (byte) 0x05);
+			assertTrue(inst instanceof LD);
+			assertEquals(Handlers.class, inst.getClass().getEnclosingClass());
+			assertEquals("LD (IX + d), A", inst.getAssembly());
+
+			cpu.setIX(0x0200);
+			cpu.setA((byte) 0x5A);
+			assertEquals(inst.getCycles(), inst.execute());
+			assertEquals((byte) 0x5A, cpu.read8(0x0205));
+			assertEquals(0x0103, cpu.getPC());
+
+			/* Los de acceso a registros especiales siguen siendo genéricos */
+			assertEquals(LD.class, decode(0x0100, (byte) 0xED, (byte) 0x57).getClass());
+
+		} catch (Exception e) {
+			Emulator.handleException(e);
+			fail(e.getMessage());
+		}
+	}
+
+	@Test(expected = UnknowInstructionException.class)
+	public void testUnknown() throws Exception {
+		decode(0x0100, (byte) 0xDD, (byte) 0xCB, (byte) 0x05, (byte) 0x00);
+	}
+
+	@Test
+	public void testComplete() {
+		try {
+			cpu.write8(0x0200, (byte) 0xFD);
+			cpu.write8(0x0201, (byte) 0xCB);
+			cpu.write8(0x0202, (byte) 0x05);
+			cpu.write8(0x0203, (byte) 0xC6);
+			cpu.setPC(0x0200);
+
+			Instruction inst = cpu.getInstructionMap().getInstructionComplete(0x0200);
+			assertEquals("SET 0, (IY + d)", inst.getAssembly());
+			assertEquals("FD CB 05 C6", inst.getStringOpCodes());
+			/* El PC no se altera */
+			assertEquals(0x0200, cpu.getPC());
+
+		} catch (Exception e) {
+			Emulator.handleException(e);
+			fail(e.getMessage());
+		}
+	}
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		/* Se crea una CPU Z80A */
+		cpu = new Z80();
+		/* Se crea un modulo de memoria de 8K */
+		memory = new RAM(8192);
+		/* Se le asigna la memoria a la CPU */
+		cpu.setDataBus(memory);
+	}
+
+}
@@ -71,6 +71,43 @@ public class Z80Test {
 		}
 	}
 
+	@Test
+	public void testExchangeRegisterPairs() {
+		logger.trace("Exchange Register Pairs");
+
+		/* Los pares y sus registros de 8 bits son vistas del mismo banco */
+		cpu.setBC(0x1234);
+		cpu.setDE(0xFEDC);
+		cpu.setH((byte) 0x80);
+		cpu.setL((byte) 0x01);
+		assertEquals((byte) 0x12, cpu.getB());
+		assertEquals((byte) 0x34, cpu.getC());
+		assertEquals((byte) 0xFE, cpu.getD());
+		assertEquals((byte) 0xDC, cpu.getE());
+		assertEquals(0x8001, cpu.getHL());
+
+		/* EXX cambia de juego sin afectar a AF */
+		cpu.setA((byte) 0x11);
+		cpu.exchangeX();
+		cpu.setBC(0xAAAA);
+		cpu.setDE(0xBBBB);
+		cpu.setHL(0xCCCC);
+		assertEquals((byte) 0x11, cpu.getA());
+		cpu.exchangeX();
+		assertEquals(0x1234, cpu.getBC());
+		assertEquals(0xFEDC, cpu.getDE());
+		assertEquals(0x8001, cpu.getHL());
+
+		/* EX DE, HL sólo en el juego activo */
+		cpu.exchangeDEHL();
+		assertEquals(0x8001, cpu.getDE());
+		assertEquals(0xFEDC, cpu.getHL());
+		cpu.exchangeX();
+		assertEquals(0xBBBB, cpu.getDE());
+		assertEquals(0xCCCC, cpu.getHL());
+		cpu.exchangeX();
+	}
+
 	@Test
 	public void testFlags() {
 		try {
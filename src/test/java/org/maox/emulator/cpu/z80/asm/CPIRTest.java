@@ -0,0 +1,186 @@
+package org.maox.emulator.cpu.z80.asm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.maox.emulator.Emulator;
+import org.maox.emulator.core.Bus16;
+import org.maox.emulator.core.RAM;
+import org.maox.emulator.cpu.z80.FlagTables;
+import org.maox.emulator.cpu.z80.Z80;
+import org.maox.emulator.cpu.z80.Z80FastCore;
+import org.maox.emulator.peripheral.z80.ULA;
+
+/**
+ * CPIR, CPDR, INIR y OTIR ejecutados en bloque: el estado final, la memoria, los accesos a los puertos y los ciclos
+ * deben ser los de las iteraciones ejecutadas por separado. Flags, incluidos los sin documentar, de CPI, INI y OUTI
+ */
+public class CPIRTest {
+
+	/* Dirección de la instrucción y fin de la prueba */
+	final private static int START = 0x8000;
+	final private static int END = 0x8010;
+
+	@Test
+	public void testCompare() {
+		/* Encontrado en distintas posiciones de las palabras de 8 bytes */
+		for (int position = 0; position < 20; position++) {
+			compare(0xB1, 0x9003, 0x0100, 0x9003 + position);
+			compare(0xB9, 0x9103, 0x0100, 0x9103 - position);
+		}
+		/* No encontrado antes de que BC llegue a 0, o en la última iteración */
+		compare(0xB1, 0x9000, 0x0100, 0xA000);
+		compare(0xB9, 0x9000, 0x0100, 0x8F00);
+		compare(0xB1, 0x9000, 0x0100, 0x90FF);
+		/* Con BC = 0 recorre el espacio de direcciones hasta el final y da la vuelta */
+		compare(0xB1, 0xF000, 0x0000, 0x1000);
+		compare(0xB9, 0x1000, 0x0000, 0xF000);
+	}
+
+	@Test
+	public void testFlags() {
+		try {
+			for (int core = 0; core < 2; core++) {
+				/* CPI: 55h - 4Ah = 0Bh con acarreo del nibble, A - (HL) - H = 0Ah da F5 y F3 */
+				Z80 cpu = flags(core, 0xA1, 0x0002, 0x4A);
+				assertEquals(FlagTables.F5 | FlagTables.H | FlagTables.F3 | FlagTables.PV | FlagTables.N, cpu.getF());
+				/* 55h - 4Eh = 07h con acarreo del nibble, 06h da sólo F5 */
+				cpu = flags(core, 0xA1, 0x0002, 0x4E);
+				assertEquals(FlagTables.F5 | FlagTables.H | FlagTables.PV | FlagTables.N, cpu.getF());
+
+				/* INI: el puerto devuelve 1, 1 + (C + 1) = 100h da H y C; B = 1 y paridad de 0 xor 1 impar */
+				cpu = flags(core, 0xA2, 0x02FE, 0x00);
+				assertEquals(FlagTables.H | FlagTables.C, cpu.getF());
+				/* OUTI: 85h + L = 86h sin acarreo; B = 0, N del bit 7 y paridad de 6 xor 0 par */
+				cpu = flags(core, 0xA3, 0x01FE, 0x85);
+				assertEquals(FlagTables.Z | FlagTables.PV | FlagTables.N, cpu.getF());
+			}
+
+		} catch (Exception e) {
+			Emulator.handleException(e);
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testTransfer() {
+		/* INIR y OTIR con B = 0 son 256 iteraciones */
+		compare(0xB2, 0x9000, 0x00FE, -1);
+		compare(0xB2, 0x9000, 0x10FE, -1);
+		compare(0xB3, 0x9000, 0x00FE, -1);
+		compare(0xB3, 0x9000, 0x20FE, -1);
+		/* INIR que termina justo antes de la instrucción */
+		compare(0xB2, 0x7F00, 0x00FE, -1);
+	}
+
+	/**
+	 * Ejecuta una instrucción iteración a iteración en el núcleo de referencia y en bloque en los 2 núcleos
+	 * 
+	 * @param target dirección en la que se coloca el byte buscado, -1 para ninguna
+	 */
+	private void compare(int opCode, int hl, int bc, int target) {
+		try {
+			Z80 single = prepare(new Z80(), opCode, hl, bc, target);
+			int cycles = run(single);
+
+			for (Z80 bulk : new Z80[] { new Z80(), new Z80FastCore() }) {
+				prepare(bulk, opCode, hl, bc, target);
+				bulk.setCycleBudget(Integer.MAX_VALUE);
+				assertEquals(cycles, run(bulk));
+				assertEquals(single.dump(), bulk.dump());
+				assertEquals(((Port) single.getULA()).accesses, ((Port) bulk.getULA()).accesses);
+				for (int address = 0; address < 0x10000; address++) {
+					assertEquals(single.read8(address), bulk.read8(address));
+				}
+			}
+
+		} catch (Exception e) {
+			Emulator.handleException(e);
+			fail(e.getMessage());
+		}
+	}
+
+	/**
+	 * Ejecuta una instrucción sin repetición con los flags a 0 y el byte indicado en (HL) = 9000h
+	 * 
+	 * @param core 0 núcleo de referencia, 1 núcleo rápido
+	 * @return CPU tras la ejecución
+	 */
+	private Z80 flags(int core, int opCode, int bc, int data) throws Exception {
+		Z80 cpu = prepare(core == 0 ? new Z80() : new Z80FastCore(), opCode, 0x9000, bc, -1);
+		cpu.write8(0x9000, (byte) data);
+		cpu.setF((byte) 0);
+		run(cpu);
+		return cpu;
+	}
+
+	/**
+	 * Prepara una CPU con 64K de RAM sin el byte buscado salvo en la dirección indicada, un puerto que registra los
+	 * accesos y los registros
+	 */
+	private Z80 prepare(Z80 cpu, int opCode, int hl, int bc, int target) throws Exception {
+		Bus16 bus = new Bus16();
+		bus.addComponent(new RAM(64, RAM.KB, 0));
+		cpu.setDataBus(bus);
+		cpu.setULA(new Port());
+
+		for (int address = 0; address < 0x10000; address++) {
+			cpu.write8(address, (byte) ((address * 7 + (address >> 8)) % 0x50));
+		}
+		for (int address = START; address < END; address++) {
+			cpu.write8(address, (byte) 0x00);
+		}
+		cpu.write8(START, (byte) 0xED);
+		cpu.write8(START + 1, (byte) opCode);
+		if (target >= 0) {
+			cpu.write8(target, (byte) 0x55);
+		}
+
+		cpu.setPC(START);
+		cpu.setHL(hl);
+		cpu.setBC(bc);
+		cpu.setA((byte) 0x55);
+		return cpu;
+	}
+
+	/**
+	 * Ejecuta hasta llegar al final de la prueba
+	 * 
+	 * @return ciclos consumidos
+	 */
+	private int run(Z80 cpu) throws Exception {
+		int cycles = 0;
+		while (cpu.getPC() != END) {
+			cycles += cpu.fetch();
+		}
+		return cycles;
+	}
+
+	/**
+	 * Puerto que devuelve un valor distinto en cada lectura y registra el byte bajo del puerto y el dato de cada acceso
+	 */
+	private static class Port extends ULA {
+
+		List<Integer> accesses = new ArrayList<Integer>();
+
+		Port() throws IOException {
+			super();
+		}
+
+		@Override
+		public byte readIO(int address) {
+			accesses.add((address & 0xFF) << 8 | accesses.size() & 0xFF);
+			return (byte) accesses.size();
+		}
+
+		@Override
+		public void writeIO(int address, byte data) {
+			accesses.add((address & 0xFF) << 8 | data & 0xFF);
+		}
+	}
+}
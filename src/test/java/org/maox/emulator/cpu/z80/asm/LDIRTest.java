@@ -0,0 +1,157 @@
+package org.maox.emulator.cpu.z80.asm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.maox.emulator.Emulator;
+import org.maox.emulator.core.Bus16;
+import org.maox.emulator.core.RAM;
+import org.maox.emulator.cpu.z80.FlagTables;
+import org.maox.emulator.cpu.z80.Z80;
+import org.maox.emulator.cpu.z80.Z80FastCore;
+
+/**
+ * LDIR y LDDR ejecutados en bloque: el estado final, la memoria y los ciclos deben ser los de las iteraciones
+ * ejecutadas por separado. Flags, incluidos los sin documentar, de LDI y LDIR
+ */
+public class LDIRTest {
+
+	/* Dirección de la instrucción y fin de la prueba */
+	final private static int START = 0x8000;
+	final private static int END = 0x8010;
+
+	@Test
+	public void testBudget() {
+		try {
+			/* Cada ejecución en bloque no pasa de los ciclos disponibles */
+			Z80 cpu = prepare(new Z80(), 0xB0, 0x6000, 0x9000, 0x1B00);
+			cpu.setCycleBudget(1000);
+			int executions = 0;
+			while (cpu.getPC() != START + 2) {
+				assertTrue(cpu.fetch() <= 1000);
+				executions++;
+			}
+			/* 47 iteraciones de 21 ciclos en cada ejecución */
+			assertEquals((0x1B00 + 46) / 47, executions);
+			assertEquals(0, cpu.getBC());
+
+		} catch (Exception e) {
+			Emulator.handleException(e);
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testCopy() {
+		/* Pantalla completa sin solapamiento */
+		compare(0xB0, 0x4000, 0xA000, 0x1B00);
+		compare(0xB8, 0x5AFF, 0xBAFF, 0x1B00);
+		/* Relleno con el byte anterior o posterior: los bloques se solapan */
+		compare(0xB0, 0x6000, 0x6001, 0x0800);
+		compare(0xB8, 0x6800, 0x67FF, 0x0800);
+		/* Con BC = 0 son 64K iteraciones, en bloques hasta el final del espacio de direcciones y la instrucción */
+		compare(0xB0, 0x9000, 0x9000, 0x0000);
+		/* Copia de NOP que sobrescribe la propia instrucción */
+		compare(0xB0, 0x2000, 0x7F00, 0x0400);
+		/* Copia descendente que termina justo tras la instrucción */
+		compare(0xB8, 0x20FD, 0x80FF, 0x00FE);
+	}
+
+	@Test
+	public void testFlags() {
+		try {
+			for (int core = 0; core < 3; core++) {
+				Z80 cpu = core < 2 ? new Z80() : new Z80FastCore();
+				/* LDI: B5h + A = 10Ah, F5 del bit 1 y F3 del bit 3; BC sigue distinto de 0 */
+				prepare(cpu, 0xA0, 0x9000, 0xA000, 0x0002);
+				cpu.write8(0x9000, (byte) 0xB5);
+				cpu.setF((byte) 0);
+				run(cpu);
+				assertEquals(FlagTables.F5 | FlagTables.F3 | FlagTables.PV, cpu.getF());
+
+				/* LDIR, iteración a iteración o en bloque: 31h + A = 86h del último byte, sólo F5 */
+				prepare(cpu, 0xB0, 0x9000, 0xA000, 0x0010);
+				cpu.write8(0x900F, (byte) 0x31);
+				cpu.setF((byte) 0);
+				cpu.setCycleBudget(core == 0 ? 0 : Integer.MAX_VALUE);
+				run(cpu);
+				assertEquals(FlagTables.F5, cpu.getF());
+			}
+
+		} catch (Exception e) {
+			Emulator.handleException(e);
+			fail(e.getMessage());
+		}
+	}
+
+	/**
+	 * Ejecuta una instrucción iteración a iteración en el núcleo de referencia y en bloque en los 2 núcleos
+	 */
+	private void compare(int opCode, int hl, int de, int bc) {
+		try {
+			Z80 single = prepare(new Z80(), opCode, hl, de, bc);
+			int cycles = run(single);
+
+			for (Z80 bulk : new Z80[] { new Z80(), new Z80FastCore() }) {
+				prepare(bulk, opCode, hl, de, bc);
+				bulk.setCycleBudget(Integer.MAX_VALUE);
+				assertEquals(cycles, run(bulk));
+				assertEquals(single.dump(), bulk.dump());
+				for (int address = 0; address < 0x10000; address++) {
+					assertEquals(single.read8(address), bulk.read8(address));
+				}
+				assertArrayEquals(((Bus16) single.getDataBus()).getWriteGenerations(),
+						((Bus16) bulk.getDataBus()).getWriteGenerations());
+			}
+
+		} catch (Exception e) {
+			Emulator.handleException(e);
+			fail(e.getMessage());
+		}
+	}
+
+	/**
+	 * Prepara una CPU con 64K de RAM con contenido distinto en cada página, NOP en 2000h-27FFh y tras la
+	 * instrucción y los registros
+	 */
+	private Z80 prepare(Z80 cpu, int opCode, int hl, int de, int bc) throws Exception {
+		Bus16 bus = new Bus16();
+		bus.addComponent(new RAM(64, RAM.KB, 0));
+		cpu.setDataBus(bus);
+
+		for (int address = 0; address < 0x10000; address++) {
+			cpu.write8(address, (byte) (address * 7 + (address >> 8)));
+		}
+		for (int address = 0x2000; address < 0x2800; address++) {
+			cpu.write8(address, (byte) 0x00);
+		}
+		for (int address = START; address < END; address++) {
+			cpu.write8(address, (byte) 0x00);
+		}
+		cpu.write8(START, (byte) 0xED);
+		cpu.write8(START + 1, (byte) opCode);
+
+		cpu.setPC(START);
+		cpu.setHL(hl);
+		cpu.setDE(de);
+		cpu.setBC(bc);
+		cpu.setA((byte) 0x55);
+		return cpu;
+	}
+
+	/**
+	 * Ejecuta hasta llegar al final de la prueba
+	 * 
+	 * @return ciclos consumidos
+	 */
+	private int run(Z80 cpu) throws Exception {
+		int cycles = 0;
+		while (cpu.getPC() != END) {
+			cycles += cpu.fetch();
+		}
+		return cycles;
+	}
+}
@@ -0,0 +1,99 @@
+package org.maox.emulator.gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * Intercambio de frames con 3 buffers: último frame completo, frames perdidos y repetidos y ausencia de frames a medio
+ * escribir con los 2 hilos a la vez
+ */
+public class FrameExchangeTest {
+
+	/* Tamaño de los frames */
+	final private static int WIDTH = 320;
+	final private static int HEIGHT = 240;
+
+	@Test
+	public void testConcurrent() throws Exception {
+		final FrameExchange exchange = new FrameExchange(WIDTH, HEIGHT);
+		final BufferedImage frame = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+		final int source[] = pixels(frame);
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final int published = 20000;
+
+		/* Cada frame con todos sus pixels al número de frame */
+		Thread emulation = new Thread() {
+			@Override
+			public void run() {
+				for (int number = 1; number <= published; number++) {
+					Arrays.fill(source, number);
+					exchange.publish(frame);
+				}
+				running.set(false);
+			}
+		};
+		emulation.start();
+
+		int last = 0;
+		do {
+			int screen[] = pixels(exchange.acquire());
+			int number = screen[0] & 0xFFFFFF;
+			/* Frame completo y nunca anterior al ya pintado */
+			assertTrue(number >= last);
+			assertEquals(number, screen[screen.length - 1] & 0xFFFFFF);
+			assertEquals(number, screen[screen.length / 2] & 0xFFFFFF);
+			last = number;
+		} while (running.get());
+		emulation.join();
+
+		/* Al terminar se recoge el último */
+		assertEquals(published, pixels(exchange.acquire())[0]);
+		assertEquals(published, exchange.getPublishedFrames());
+		assertEquals(published, exchange.getPresentedFrames() + exchange.getDroppedFrames());
+	}
+
+	@Test
+	public void testCounters() {
+		FrameExchange exchange = new FrameExchange(WIDTH, HEIGHT);
+		BufferedImage frame = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+
+		/* Sin frame nuevo se repite el actual */
+		BufferedImage first = exchange.acquire();
+		assertSame(first, exchange.acquire());
+		assertEquals(2, exchange.getDuplicatedFrames());
+
+		/* El frame se copia: los cambios posteriores no afectan al publicado */
+		pixels(frame)[0] = 1;
+		exchange.publish(frame);
+		pixels(frame)[0] = 2;
+		BufferedImage second = exchange.acquire();
+		assertNotSame(first, second);
+		assertEquals(1, second.getRGB(0, 0) & 0xFFFFFF);
+
+		/* 2 frames sin recoger: se pinta el último y se pierde el anterior */
+		exchange.publish(frame);
+		pixels(frame)[0] = 3;
+		exchange.publish(frame);
+		assertEquals(3, exchange.acquire().getRGB(0, 0) & 0xFFFFFF);
+		assertEquals(1, exchange.getDroppedFrames());
+		assertEquals(3, exchange.getPublishedFrames());
+		assertEquals(2, exchange.getPresentedFrames());
+		assertEquals(2, exchange.getDuplicatedFrames());
+	}
+
+	/**
+	 * Array de pixels de una imagen
+	 */
+	private static int[] pixels(BufferedImage image) {
+		return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+	}
+}
@@ -0,0 +1,184 @@
+package org.maox.emulator.peripheral.z80;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.maox.emulator.core.Bus16;
+import org.maox.emulator.core.RAM;
+import org.maox.emulator.cpu.z80.Z80;
+import org.maox.emulator.cpu.z80.Z80Dynarec;
+import org.maox.emulator.cpu.z80.Z80FastCore;
+
+/**
+ * Contención de la memoria de la ULA: tabla de retrasos por T-state del frame, páginas contenidas del bus y efecto en
+ * la ejecución
+ */
+public class ContentionTest {
+
+	@Test
+	public void testAccessClock() throws Exception {
+		/*
+		 * Cada acceso se retrasa según su T-state: el reloj al inicio de la instrucción más los ciclos ya
+		 * transcurridos en ella. Intérprete con y sin caché de instrucciones decodificadas y núcleo rápido
+		 */
+		Z80 cores[] = new Z80[] { new Z80(), new Z80(), new Z80FastCore() };
+		for (int idx = 0; idx < cores.length; idx++) {
+			Z80 cpu = cores[idx];
+			prepare(cpu);
+			if (idx == 1)
+				cpu.setDecodeCache(false);
+			cpu.write8(0x6000, (byte) 0x77);
+			cpu.write8(0x8000, (byte) 0x32);
+			cpu.write8(0x8001, (byte) 0x00);
+			cpu.write8(0x8002, (byte) 0x40);
+
+			/* LD (4000h), A escribe 10 T-states tras empezar, en el primer T-state contenido: 13 + 6 ciclos */
+			long start = ULA.CONTENTION_START - 10;
+			cpu.delay((int) (start - cpu.getClock()));
+			cpu.setPC(0x8000);
+			cpu.run(1);
+			assertEquals(start + 13 + 6, cpu.getClock());
+
+			/*
+			 * LD (HL), A en la memoria contenida: el código espera 6 ciclos y la escritura, 4 T-states después, cae
+			 * en el retraso 4 del patrón: 7 + 6 + 4 ciclos
+			 */
+			start = ULA.CONTENTION_START + ULA.CYCLES_PER_LINE;
+			cpu.delay((int) (start - cpu.getClock()));
+			cpu.setHL(0x5000);
+			cpu.setPC(0x6000);
+			cpu.run(1);
+			assertEquals(start + 7 + 6 + 4, cpu.getClock());
+		}
+	}
+
+	@Test
+	public void testBus() throws Exception {
+		Z80 cpu = new Z80();
+		ULA ula = prepare(cpu);
+		Bus16 bus = (Bus16) cpu.getDataBus();
+
+		/* Primer T-state contenido: espera 6 ciclos y el siguiente acceso cae en un T-state sin retraso */
+		cpu.delay(ULA.CONTENTION_START);
+		bus.read(0x4000);
+		assertEquals(ULA.CONTENTION_START + 6, cpu.getClock());
+		bus.write(0x5AFF, (byte) 1);
+		assertEquals(ULA.CONTENTION_START + 6, cpu.getClock());
+
+		/* Las páginas no contenidas no retrasan */
+		cpu.delay(-6);
+		bus.read(0x8000);
+		bus.write(0x3FFF, (byte) 1);
+		assertEquals(ULA.CONTENTION_START, cpu.getClock());
+
+		/* Sin contención */
+		bus.setContention(0x4000, 16 * RAM.KB, null);
+		bus.read(0x4000);
+		assertEquals(ULA.CONTENTION_START, cpu.getClock());
+
+		/* Una memoria de acceso directo contenida pierde el acceso directo hasta que se quita la contención */
+		bus.setContention(0x8000, RAM.KB, ula);
+		assertEquals(-1, bus.search(0x8000, 16, (byte) 0, 1));
+		bus.setContention(0x8000, RAM.KB, null);
+		assertEquals(0, bus.search(0x8000, 16, (byte) 0, 1));
+	}
+
+	@Test
+	public void testCode() throws Exception {
+		/*
+		 * Bucle en la memoria contenida: LD (HL),A; INC HL; INC IX; DEC B; JR NZ, 6000h; JP 6000h durante un frame.
+		 * Intérprete con y sin caché de instrucciones decodificadas, núcleo rápido y recompilador
+		 */
+		Z80 cores[] = new Z80[] { new Z80(), new Z80(), new Z80FastCore(), new Z80Dynarec(), new Z80() };
+		for (int idx = 0; idx < cores.length; idx++) {
+			Z80 cpu = cores[idx];
+			prepare(cpu);
+			if (idx == 1)
+				cpu.setDecodeCache(false);
+			if (idx == 4)
+				((Bus16) cpu.getDataBus()).setContention(0x4000, 16 * RAM.KB, null);
+			int address = 0x6000;
+			for (int code : new int[] { 0x77, 0x23, 0xDD, 0x23, 0x05, 0x20, 0xF9, 0xC3, 0x00, 0x60 }) {
+				cpu.write8(address++, (byte) code);
+			}
+			cpu.setHL(0x8000);
+			cpu.setPC(0x6000);
+			cpu.run(ULA.CYCLES_PER_FRAME);
+		}
+
+		/* La lectura de cada código se retrasa igual, al ejecutarlo y no al decodificarlo o compilarlo */
+		for (int idx = 1; idx < 4; idx++) {
+			assertEquals(cores[0].getIX(), cores[idx].getIX());
+			assertEquals(cores[0].getClock(), cores[idx].getClock());
+		}
+		assertTrue(cores[0].getDecodeHitRate() > 0.99);
+		assertEquals(0, ((Z80Dynarec) cores[3]).getCompiledBlocks());
+		assertTrue(cores[0].getIX() < cores[4].getIX());
+	}
+
+	@Test
+	public void testRun() throws Exception {
+		/* Bucle INC HL; LD (4000h),A; JP 8000h durante un frame, con y sin contención */
+		int iterations[] = new int[4];
+		Z80 cores[] = new Z80[] { new Z80(), new Z80FastCore(), new Z80(), new Z80Dynarec() };
+		for (int idx = 0; idx < cores.length; idx++) {
+			Z80 cpu = cores[idx];
+			prepare(cpu);
+			if (idx == 2)
+				((Bus16) cpu.getDataBus()).setContention(0x4000, 16 * RAM.KB, null);
+			int address = 0x8000;
+			for (int code : new int[] { 0x23, 0x32, 0x00, 0x40, 0xC3, 0x00, 0x80 }) {
+				cpu.write8(address++, (byte) code);
+			}
+			cpu.setPC(0x8000);
+			cpu.run(ULA.CYCLES_PER_FRAME);
+			iterations[idx] = cpu.getHL();
+		}
+
+		/* Los núcleos y el bloque compilado acceden igual a la memoria y sufren los mismos retrasos */
+		assertEquals(iterations[0], iterations[1]);
+		assertEquals(iterations[0], iterations[3]);
+		assertTrue(((Z80Dynarec) cores[3]).getBlockExecutions() > 0);
+		/* Sin contención cada iteración son 29 ciclos */
+		assertEquals((ULA.CYCLES_PER_FRAME + 28) / 29, iterations[2]);
+		assertTrue(iterations[0] < iterations[2]);
+	}
+
+	@Test
+	public void testTable() throws Exception {
+		ULA ula = new ULA();
+		int total = 0;
+		for (int tState = 0; tState < ULA.CYCLES_PER_FRAME; tState++) {
+			total += ula.getContention(tState);
+		}
+		/* 16 grupos de 8 T-states con 6 + 5 + 4 + 3 + 2 + 1 ciclos en cada línea de pantalla */
+		assertEquals(ULA.CONTENTION_LINES * 16 * 21, total);
+
+		assertEquals(0, ula.getContention(ULA.CONTENTION_START - 1));
+		assertEquals(6, ula.getContention(ULA.CONTENTION_START));
+		assertEquals(1, ula.getContention(ULA.CONTENTION_START + 5));
+		assertEquals(0, ula.getContention(ULA.CONTENTION_START + 7));
+		assertEquals(0, ula.getContention(ULA.CONTENTION_START + ULA.CONTENTION_CYCLES));
+		assertEquals(6, ula.getContention(ULA.CONTENTION_START + ULA.CYCLES_PER_LINE));
+	}
+
+	/**
+	 * Prepara una CPU con RAM en 0000h-3FFFh y 8000h-FFFFh y la ULA en 4000h-7FFFh, contenida, con el frame iniciado
+	 * en el ciclo 0
+	 */
+	private ULA prepare(Z80 cpu) throws Exception {
+		ULA ula = new ULA();
+		ula.addComponent(new RAM(16, RAM.KB, 0x4000));
+		Bus16 bus = new Bus16();
+		bus.addComponent(new RAM(16, RAM.KB, 0x0000));
+		bus.addComponent(ula);
+		bus.addComponent(new RAM(32, RAM.KB, 0x8000));
+		cpu.setDataBus(bus);
+
+		ula.setCPU(cpu);
+		ula.setScheduler(cpu.getScheduler(), 0);
+		bus.setContention(0x4000, 16 * RAM.KB, ula);
+		return ula;
+	}
+}
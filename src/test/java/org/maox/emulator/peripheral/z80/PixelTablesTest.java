@@ -0,0 +1,38 @@
+package org.maox.emulator.peripheral.z80;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tablas de pixels: cada byte del bitmap con cada atributo y fase de FLASH da los mismos 8 pixels que recorriendo sus
+ * bits
+ */
+public class PixelTablesTest {
+
+	@Test
+	public void testExpand() {
+		int expected[] = new int[8];
+		int pixels[] = new int[8 + 8];
+		for (boolean flash : new boolean[] { false, true }) {
+			for (int attribute = 0; attribute < 256; attribute++) {
+				for (int bitmap = 0; bitmap < 256; bitmap++) {
+					int bright = (attribute & 0x40) >> 3;
+					int ink = PixelTables.PALETTE[attribute & 0x07 | bright];
+					int paper = PixelTables.PALETTE[attribute >> 3 & 0x07 | bright];
+					boolean inverted = flash && (attribute & 0x80) != 0;
+					for (int bit = 0; bit < 8; bit++) {
+						boolean set = (bitmap & 0x80 >> bit) != 0;
+						expected[bit] = set != inverted ? ink : paper;
+					}
+
+					/* Con el byte con signo, como se lee de la memoria, y en cualquier posición del destino */
+					PixelTables.expand((byte) bitmap, attribute, flash, pixels, 8);
+					assertArrayEquals(expected, Arrays.copyOfRange(pixels, 8, 16));
+				}
+			}
+		}
+	}
+}
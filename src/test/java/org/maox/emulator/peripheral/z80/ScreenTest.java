@@ -0,0 +1,200 @@
+package org.maox.emulator.peripheral.z80;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+import org.maox.emulator.core.OffHeapRAM;
+import org.maox.emulator.core.RAM;
+import org.maox.emulator.core.Scheduler;
+import org.maox.emulator.cpu.z80.Z80;
+
+/**
+ * Imagen de pantalla de la ULA: bitmap entrelazado, atributos, borde y fase de FLASH
+ */
+public class ScreenTest {
+
+	/* Colores sin y con brillo */
+	final private static int BLUE = 0x0000D7;
+	final private static int WHITE = 0xD7D7D7;
+	final private static int BRIGHT_YELLOW = 0xFFFF00;
+	final private static int RED = 0xD70000;
+	final private static int GREEN = 0x00D700;
+
+	@Test
+	public void testDirty() throws Exception {
+		ULA ula = prepare();
+		Scheduler scheduler = new Scheduler();
+		ula.setScheduler(scheduler, 0);
+		scheduler.dispatch(0);
+
+		/* El primer frame se pinta completo y una pantalla estática no pinta nada */
+		ula.getFrame();
+		assertEquals(ScreenRenderer.BITMAP_SIZE, ula.getRenderedBytes());
+		ula.getFrame();
+		assertEquals(0, ula.getRenderedBytes());
+
+		/* Un byte en la última línea de la fila 23, columna 31, su atributo y otro byte de la misma celda */
+		ula.write(0x57FF, (byte) 0xFF);
+		ula.write(0x5AFF, (byte) 0x87);
+		ula.write(0x50FF, (byte) 0x01);
+		/* Fuera de la memoria de vídeo */
+		ula.write(0x6000, (byte) 0xFF);
+		BufferedImage image = ula.getFrame();
+		assertEquals(8, ula.getRenderedBytes());
+		assertEquals(WHITE, pixel(image, 255, 191));
+		assertEquals(0, pixel(image, 248, 184));
+		assertEquals(WHITE, pixel(image, 255, 184));
+
+		/* Al cambiar la fase de FLASH sólo se pintan las celdas que parpadean */
+		ula.write(0x5800, (byte) (0x80 | 7 << 3));
+		assertEquals(WHITE, pixel(ula.getFrame(), 0, 0));
+		for (int frame = 1; frame <= ULA.FLASH_FRAMES; frame++) {
+			scheduler.dispatch((long) frame * ULA.CYCLES_PER_FRAME);
+		}
+		image = ula.getFrame();
+		assertEquals(2 * 8, ula.getRenderedBytes());
+		assertEquals(0, pixel(image, 255, 191));
+		assertEquals(0, pixel(image, 0, 0));
+
+		/* Cambios directos en la memoria */
+		ula.invalidateFrame();
+		ula.getFrame();
+		assertEquals(ScreenRenderer.BITMAP_SIZE, ula.getRenderedBytes());
+	}
+
+	@Test
+	public void testFlash() throws Exception {
+		ULA ula = prepare();
+		Scheduler scheduler = new Scheduler();
+		ula.setScheduler(scheduler, 0);
+		/* Tinta azul, papel blanco y parpadeo en la celda 0, 0 */
+		ula.write(0x5800, (byte) (0x80 | 7 << 3 | 1));
+		ula.write(0x4000, (byte) 0x80);
+
+		/* El primer frame ya ha empezado al asociar el planificador */
+		scheduler.dispatch(0);
+		assertEquals(BLUE, pixel(ula.getFrame(), 0, 0));
+		/* Tras FLASH_FRAMES frames se intercambian tinta y papel */
+		for (int frame = 1; frame <= ULA.FLASH_FRAMES; frame++) {
+			scheduler.dispatch((long) frame * ULA.CYCLES_PER_FRAME);
+		}
+		assertEquals(WHITE, pixel(ula.getFrame(), 0, 0));
+		assertEquals(BLUE, pixel(ula.getFrame(), 1, 0));
+	}
+
+	@Test
+	public void testOffHeap() throws Exception {
+		OffHeapRAM ram = new OffHeapRAM(16, RAM.KB, 0x4000);
+		ULA ula = new ULA();
+		ula.addComponent(ram);
+
+		/* La pantalla se lee del buffer, también lo escrito sin pasar por la ULA */
+		ula.write(0x5800, (byte) 1);
+		ram.write(0x4000, (byte) 0x80);
+		ula.invalidateFrame();
+		BufferedImage image = ula.getFrame();
+		assertEquals(BLUE, pixel(image, 0, 0));
+		assertEquals(0, pixel(image, 1, 0));
+	}
+
+	@Test
+	public void testRaster() throws Exception {
+		Z80 cpu = new Z80();
+		ULA ula = prepare();
+		ula.setCPU(cpu);
+		ula.setScheduler(cpu.getScheduler(), 0);
+		cpu.getScheduler().dispatch(0);
+
+		/* Borde azul y líneas 0 y 7 de la celda 0, 0 con tinta azul */
+		ula.writeIO(0xFE, (byte) 1);
+		ula.write(0x4000, (byte) 0xFF);
+		ula.write(0x4700, (byte) 0xFF);
+		ula.write(0x5800, (byte) 1);
+
+		/* Borde rojo desde la fila 10, verde desde la mitad de la fila 12 y tinta roja desde la línea 4 del bitmap */
+		advance(cpu, ScreenRenderer.FIRST_CYCLE + 10 * ULA.CYCLES_PER_LINE);
+		ula.writeIO(0xFE, (byte) 2);
+		advance(cpu, ScreenRenderer.FIRST_CYCLE + 12 * ULA.CYCLES_PER_LINE + ScreenRenderer.ROW_CYCLES / 2);
+		ula.writeIO(0xFE, (byte) 4);
+		advance(cpu, ScreenRenderer.SCREEN_CYCLE + 4 * ULA.CYCLES_PER_LINE);
+		ula.write(0x5800, (byte) 2);
+
+		/* El frame se completa al empezar el siguiente */
+		advance(cpu, ULA.CYCLES_PER_FRAME);
+		cpu.getScheduler().dispatch(cpu.getClock());
+		BufferedImage image = ula.getFrame();
+		assertEquals(BLUE, image.getRGB(0, 9) & 0xFFFFFF);
+		assertEquals(RED, image.getRGB(ScreenRenderer.WIDTH - 1, 10) & 0xFFFFFF);
+		assertEquals(RED, image.getRGB(0, 12) & 0xFFFFFF);
+		assertEquals(GREEN, image.getRGB(ScreenRenderer.WIDTH - 1, 12) & 0xFFFFFF);
+		assertEquals(GREEN, image.getRGB(0, ScreenRenderer.HEIGHT - 1) & 0xFFFFFF);
+		assertEquals(BLUE, pixel(image, 0, 0));
+		assertEquals(RED, pixel(image, 0, 7));
+
+		/* En el frame siguiente sólo quedan las líneas 0 a 3 de la celda, ya pasadas al cambiar el atributo */
+		advance(cpu, 2 * ULA.CYCLES_PER_FRAME);
+		cpu.getScheduler().dispatch(cpu.getClock());
+		image = ula.getFrame();
+		assertEquals(4, ula.getRenderedBytes());
+		assertEquals(RED, pixel(image, 0, 0));
+		assertEquals(GREEN, image.getRGB(0, 9) & 0xFFFFFF);
+
+		/* La línea de la señal se calcula con el reloj */
+		advance(cpu, 2 * ULA.CYCLES_PER_FRAME + 100 * ULA.CYCLES_PER_LINE + 5);
+		assertEquals(100, ula.getLine());
+	}
+
+	@Test
+	public void testRender() throws Exception {
+		ULA ula = prepare();
+		ula.writeIO(0xFE, (byte) 2);
+		/* Línea 9 (tercio 0, fila 1, línea 1 de la fila): 4000h + 1 << 8 + 1 << 5, columna 3 */
+		ula.write(0x4000 + 0x0100 + 0x0020 + 3, (byte) 0xA0);
+		/* Atributo de la fila 1, columna 3: tinta amarilla y papel azul con brillo */
+		ula.write(0x5800 + 32 + 3, (byte) (0x40 | 1 << 3 | 6));
+
+		BufferedImage image = ula.getFrame();
+		assertEquals(BufferedImage.TYPE_INT_RGB, image.getType());
+		assertEquals(ScreenRenderer.WIDTH, image.getWidth());
+		assertEquals(ScreenRenderer.HEIGHT, image.getHeight());
+		assertSame(image, ula.getFrame());
+
+		/* Borde rojo */
+		assertEquals(RED, image.getRGB(0, 0) & 0xFFFFFF);
+		assertEquals(RED, image.getRGB(ScreenRenderer.WIDTH - 1, ScreenRenderer.HEIGHT / 2) & 0xFFFFFF);
+		/* Bits 10100000 */
+		assertEquals(BRIGHT_YELLOW, pixel(image, 24, 9));
+		assertEquals(0x0000FF, pixel(image, 25, 9));
+		assertEquals(BRIGHT_YELLOW, pixel(image, 26, 9));
+		assertEquals(0x0000FF, pixel(image, 27, 9));
+		/* Papel de la celda en otra línea y resto de la pantalla con tinta y papel negros */
+		assertEquals(0x0000FF, pixel(image, 24, 8));
+		assertEquals(0, pixel(image, 23, 9));
+	}
+
+	/**
+	 * Avanza el reloj de la CPU hasta un ciclo
+	 */
+	private void advance(Z80 cpu, long time) {
+		cpu.delay((int) (time - cpu.getClock()));
+	}
+
+	/**
+	 * Color de un pixel del bitmap
+	 */
+	private int pixel(BufferedImage image, int x, int y) {
+		return image.getRGB(ScreenRenderer.BORDER_LEFT + x, ScreenRenderer.BORDER_TOP + y) & 0xFFFFFF;
+	}
+
+	/**
+	 * ULA con su bloque de memoria de 16 KB
+	 */
+	private ULA prepare() throws Exception {
+		ULA ula = new ULA();
+		ula.addComponent(new RAM(16, RAM.KB, 0x4000));
+		return ula;
+	}
+}